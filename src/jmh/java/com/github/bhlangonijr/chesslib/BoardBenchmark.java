@@ -0,0 +1,135 @@
+/*
+ * Copyright 2017 Ben-Hur Carlos Vieira Langoni Junior
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.bhlangonijr.chesslib;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.github.bhlangonijr.chesslib.move.Move;
+import com.github.bhlangonijr.chesslib.move.MoveBuffer;
+import com.github.bhlangonijr.chesslib.move.MoveGenerator;
+import com.github.bhlangonijr.chesslib.move.MoveList;
+import com.github.bhlangonijr.chesslib.util.Perft;
+
+/**
+ * Measures the hot paths of the {@link Board}: move execution and reversal, legal move generation, conversion from and
+ * to the Forsyth-Edwards Notation (FEN), encoding of moves in Short Algebraic Notation (SAN) and a shallow perft.
+ * <p>
+ * The benchmarks operating on moves process all the legal moves of the position at once.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardBenchmark {
+
+    @Param({
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10"
+    })
+    public String fen;
+
+    private Board board;
+    private Board scratch;
+    private MoveBuffer buffer;
+    private Move[] moves;
+    private int[] packedMoves;
+    private Perft perft;
+
+    @Setup
+    public void setup() {
+        board = new Board();
+        board.loadFromFen(fen);
+        scratch = new Board();
+        buffer = new MoveBuffer();
+        List<Move> legalMoves = MoveGenerator.generateLegalMoves(board);
+        moves = legalMoves.toArray(new Move[0]);
+        packedMoves = new int[moves.length];
+        for (int i = 0; i < moves.length; i++) {
+            packedMoves[i] = moves[i].toPacked();
+        }
+        perft = new Perft(board, 3);
+    }
+
+    @Benchmark
+    public void doUndoMove(Blackhole blackhole) {
+        for (Move move : moves) {
+            blackhole.consume(board.doMove(move));
+            blackhole.consume(board.undoMove());
+        }
+    }
+
+    @Benchmark
+    public void doUndoPackedMove(Blackhole blackhole) {
+        for (int move : packedMoves) {
+            blackhole.consume(board.doMove(move));
+            blackhole.consume(board.undoPackedMove());
+        }
+    }
+
+    @Benchmark
+    public List<Move> generateLegalMoves() {
+        return MoveGenerator.generateLegalMoves(board);
+    }
+
+    @Benchmark
+    public int generateLegalMovesBuffer() {
+        MoveGenerator.generateLegalMoves(board, buffer);
+        return buffer.size();
+    }
+
+    @Benchmark
+    public String getFen() {
+        return board.getFen();
+    }
+
+    @Benchmark
+    public long loadFromFen() {
+        scratch.loadFromFen(fen);
+        return scratch.getIncrementalHashKey();
+    }
+
+    @Benchmark
+    public void encodeToSan(Blackhole blackhole) {
+        for (Move move : moves) {
+            // encoding plays the move on the board
+            blackhole.consume(MoveList.encodeToSan(board, move));
+            board.undoMove();
+        }
+    }
+
+    @Benchmark
+    public long perft() {
+        return perft.count(3);
+    }
+}
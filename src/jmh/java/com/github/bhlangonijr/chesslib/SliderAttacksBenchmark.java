@@ -0,0 +1,83 @@
+/*
+ * Copyright 2017 Ben-Hur Carlos Vieira Langoni Junior
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.bhlangonijr.chesslib;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.github.bhlangonijr.chesslib.util.XorShiftRandom;
+
+/**
+ * Compares the magic bitboard lookups of slider attacks with the classic implementation scanning the rays of the
+ * pieces. Every invocation computes the attacks of a bishop and a rook on each square of the board, for a set of
+ * pseudorandom occupancies.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SliderAttacksBenchmark {
+
+    private static final int OCCUPANCIES = 64;
+
+    private final long[] occupancies = new long[OCCUPANCIES];
+    private final Square[] squares = new Square[64];
+
+    @Setup
+    public void setup() {
+        XorShiftRandom random = new XorShiftRandom(49109794719L);
+        for (int i = 0; i < OCCUPANCIES; i++) {
+            occupancies[i] = random.nextLong() & random.nextLong();
+        }
+        for (int i = 0; i < 64; i++) {
+            squares[i] = Square.squareAt(i);
+        }
+    }
+
+    @Benchmark
+    public void magic(Blackhole blackhole) {
+        for (long occupied : occupancies) {
+            for (Square square : squares) {
+                blackhole.consume(Bitboard.getBishopAttacksMagic(occupied, square));
+                blackhole.consume(Bitboard.getRookAttacksMagic(occupied, square));
+            }
+        }
+    }
+
+    @Benchmark
+    public void classic(Blackhole blackhole) {
+        for (long occupied : occupancies) {
+            for (Square square : squares) {
+                blackhole.consume(Bitboard.getBishopAttacksClassic(occupied, square));
+                blackhole.consume(Bitboard.getRookAttacksClassic(occupied, square));
+            }
+        }
+    }
+}
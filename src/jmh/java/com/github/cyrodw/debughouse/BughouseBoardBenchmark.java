@@ -0,0 +1,93 @@
+package com.github.cyrodw.debughouse;
+
+import com.github.bhlangonijr.chesslib.Side;
+import com.github.bhlangonijr.chesslib.Square;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures move validation on a bughouse board: legality checks of moves and drops
+ * with and without a cached move set, premove validation and the drop-aware perft.
+ * Every invocation checks all the candidate moves of the position.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BughouseBoardBenchmark {
+
+    private static final String fen = "r1bqk2r/pppp1ppp/2n2n2/2b1p3/2B1P3/5N2/PPPP1PPP/RNBQK2R w KQkq - 4 4";
+    private static final String pocketFen =
+            "r1bqk2r/pppp1ppp/2n2n2/2b1p3/2B1P3/5N2/PPPP1PPP/RNBQK2R[QRBNPqrbnp] w KQkq - 4 4";
+
+    private BughouseBoard board;
+    // Board with the opponent on turn, as when premoves are validated
+    private BughouseBoard premoveBoard;
+    private String[] candidates;
+    private BughousePerft perft;
+
+    @Setup
+    public void setup() {
+        board = new BughouseBoard();
+        board.loadFromFen(fen);
+        board.setHand("NBP", Side.WHITE);
+        board.setHand("nq", Side.BLACK);
+        premoveBoard = new BughouseBoard();
+        premoveBoard.loadFromFen(fen.replace(" w ", " b "));
+
+        // Every move of a white piece to any other square, and every drop on any square
+        List<String> moves = new ArrayList<>();
+        for (Square from : Square.values()) {
+            if (from == Square.NONE || board.getPiece(from).getPieceSide() != Side.WHITE) {
+                continue;
+            }
+            for (Square to : Square.values()) {
+                if (to != Square.NONE && to != from) {
+                    moves.add((from.value() + to.value()).toLowerCase());
+                }
+            }
+        }
+        for (Square to : Square.values()) {
+            if (to == Square.NONE) {
+                continue;
+            }
+            for (String piece : new String[]{"P", "N", "B", "R", "Q"}) {
+                moves.add(piece + "@" + to.value());
+            }
+        }
+        candidates = moves.toArray(new String[0]);
+        perft = new BughousePerft(pocketFen, 2);
+    }
+
+    @Benchmark
+    public void isLegal(Blackhole blackhole) {
+        for (String move : candidates) {
+            blackhole.consume(board.isLegal(move));
+        }
+    }
+
+    @Benchmark
+    public boolean isLegalAfterPositionChange() {
+        // Loading the position invalidates the cached move set
+        board.loadFromFen(fen);
+        return board.isLegal(candidates[0]);
+    }
+
+    @Benchmark
+    public void isValidPremove(Blackhole blackhole) {
+        for (String move : candidates) {
+            blackhole.consume(premoveBoard.isValidPremove(move));
+        }
+    }
+
+    @Benchmark
+    public long dropPerft() {
+        return perft.count(2);
+    }
+}
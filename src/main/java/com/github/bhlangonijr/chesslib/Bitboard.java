@@ -34,6 +34,16 @@ import java.util.List;
  */
 public class Bitboard {
 
+    /**
+     * The name of the system property selecting the implementation of slider attacks. When set to {@code classic}, the
+     * attacks are computed scanning the rays of the pieces instead of looking them up in the magic bitboard tables,
+     * e.g. to verify the results of the two implementations against each other.
+     */
+    public static final String SLIDER_ATTACKS_PROPERTY = "chesslib.sliderAttacks";
+
+    private static final boolean classicSliderAttacks =
+            "classic".equalsIgnoreCase(System.getProperty(SLIDER_ATTACKS_PROPERTY));
+
     /**
      * The bitboard representing the light squares on a chessboard.
      */
@@ -449,26 +459,88 @@ public class Bitboard {
      * Returns the bitboard representing the bishop movement attacks, computed applying the provided mask. It could
      * either refer to the squares attacked by a bishop placed on the input square, or conversely the bishops that can
      * attack the square.
+     * <p>
+     * The attacks are looked up in the magic bitboard tables, unless the classic implementation has been selected
+     * setting the system property {@value #SLIDER_ATTACKS_PROPERTY} to {@code classic}.
      *
      * @param square the square for which to calculate the bishop attacks
      * @param mask   the mask to apply to the bishop attacks
      * @return the bitboard of bishop movement attacks
+     * @see Bitboard#getBishopAttacksMagic(long, Square)
+     * @see Bitboard#getBishopAttacksClassic(long, Square)
      */
     public static long getBishopAttacks(long mask, Square square) {
-        return getSliderAttacks(diagA1H8Attacks[square.ordinal()], mask, square.ordinal()) |
-                getSliderAttacks(diagH1A8Attacks[square.ordinal()], mask, square.ordinal());
+        return classicSliderAttacks ? getBishopAttacksClassic(mask, square) :
+                SliderMagics.getBishopAttacks(mask, square.ordinal());
     }
 
     /**
      * Returns the bitboard representing the rook movement attacks, computed applying the provided mask. It could either
      * refer to the squares attacked by a rook placed on the input square, or conversely the rooks that can attack the
      * square.
+     * <p>
+     * The attacks are looked up in the magic bitboard tables, unless the classic implementation has been selected
+     * setting the system property {@value #SLIDER_ATTACKS_PROPERTY} to {@code classic}.
      *
      * @param square the square for which to calculate the rook attacks
      * @param mask   the mask to apply to the rook attacks
      * @return the bitboard of rook movement attacks
+     * @see Bitboard#getRookAttacksMagic(long, Square)
+     * @see Bitboard#getRookAttacksClassic(long, Square)
      */
     public static long getRookAttacks(long mask, Square square) {
+        return classicSliderAttacks ? getRookAttacksClassic(mask, square) :
+                SliderMagics.getRookAttacks(mask, square.ordinal());
+    }
+
+    /**
+     * Returns the bitboard representing the bishop movement attacks, computed applying the provided mask, looking them
+     * up in the precomputed magic bitboard tables.
+     *
+     * @param mask   the mask to apply to the bishop attacks
+     * @param square the square for which to calculate the bishop attacks
+     * @return the bitboard of bishop movement attacks
+     */
+    public static long getBishopAttacksMagic(long mask, Square square) {
+        return SliderMagics.getBishopAttacks(mask, square.ordinal());
+    }
+
+    /**
+     * Returns the bitboard representing the rook movement attacks, computed applying the provided mask, looking them up
+     * in the precomputed magic bitboard tables.
+     *
+     * @param mask   the mask to apply to the rook attacks
+     * @param square the square for which to calculate the rook attacks
+     * @return the bitboard of rook movement attacks
+     */
+    public static long getRookAttacksMagic(long mask, Square square) {
+        return SliderMagics.getRookAttacks(mask, square.ordinal());
+    }
+
+    /**
+     * Returns the bitboard representing the bishop movement attacks, computed applying the provided mask, scanning the
+     * two diagonals of the square for the nearest blockers. This is the reference implementation the magic bitboard
+     * tables are built from.
+     *
+     * @param mask   the mask to apply to the bishop attacks
+     * @param square the square for which to calculate the bishop attacks
+     * @return the bitboard of bishop movement attacks
+     */
+    public static long getBishopAttacksClassic(long mask, Square square) {
+        return getSliderAttacks(diagA1H8Attacks[square.ordinal()], mask, square.ordinal()) |
+                getSliderAttacks(diagH1A8Attacks[square.ordinal()], mask, square.ordinal());
+    }
+
+    /**
+     * Returns the bitboard representing the rook movement attacks, computed applying the provided mask, scanning the
+     * rank and the file of the square for the nearest blockers. This is the reference implementation the magic
+     * bitboard tables are built from.
+     *
+     * @param mask   the mask to apply to the rook attacks
+     * @param square the square for which to calculate the rook attacks
+     * @return the bitboard of rook movement attacks
+     */
+    public static long getRookAttacksClassic(long mask, Square square) {
         return getSliderAttacks(fileAttacks[square.ordinal()], mask, square.ordinal()) |
                 getSliderAttacks(rankAttacks[square.ordinal()], mask, square.ordinal());
     }
@@ -19,7 +19,6 @@ package com.github.bhlangonijr.chesslib;
 import static com.github.bhlangonijr.chesslib.Bitboard.extractLsb;
 import static com.github.bhlangonijr.chesslib.Constants.emptyMove;
 
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.EnumMap;
@@ -33,7 +32,7 @@ import com.github.bhlangonijr.chesslib.game.GameContext;
 import com.github.bhlangonijr.chesslib.move.Move;
 import com.github.bhlangonijr.chesslib.move.MoveGenerator;
 import com.github.bhlangonijr.chesslib.move.MoveList;
-import com.github.bhlangonijr.chesslib.util.XorShiftRandom;
+import com.github.bhlangonijr.chesslib.move.PackedMove;
 
 /**
  * The definition of a chessboard position and its status. It exposes methods to manipulate the board, evolve the
@@ -52,30 +51,18 @@ import com.github.bhlangonijr.chesslib.util.XorShiftRandom;
  */
 public class Board implements Cloneable, BoardEvent {
 
-    private static final List<Long> keys = new ArrayList<>();
-    private static final long RANDOM_SEED = 49109794719L;
-    private static final int ZOBRIST_TABLE_SIZE = 2000;
-
-    static {
-        final XorShiftRandom random = new XorShiftRandom(RANDOM_SEED);
-        for (int i = 0; i < ZOBRIST_TABLE_SIZE; i++) {
-            long key = random.nextLong();
-            keys.add(key);
-        }
-    }
-
-    private final LinkedList<MoveBackup> backup;
+    private final MoveBackupStack backup;
     private final EnumMap<BoardEventType, List<BoardEventListener>> eventListener;
     private final long[] bitboard;
     private final long[] bbSide;
     private final Piece[] occupation;
     private final EnumMap<Side, CastleRight> castleRight;
-    private final LinkedList<Long> history = new LinkedList<>();
+    private final PositionHistory history;
     private Side sideToMove;
     private Square enPassantTarget;
     private Square enPassant;
-    private Integer moveCounter;
-    private Integer halfMoveCounter;
+    private int moveCounter;
+    private int halfMoveCounter;
     private GameContext context;
     private boolean enableEvents;
     private final boolean updateHistory;
@@ -97,14 +84,30 @@ public class Board implements Cloneable, BoardEvent {
      *
      * @param gameContext   the game context to use for this board
      * @param updateHistory whether to keep the history updated or not
+     * @see Board#Board(GameContext, boolean, boolean)
      */
     public Board(GameContext gameContext, boolean updateHistory) {
+        this(gameContext, updateHistory, true);
+    }
+
+    /**
+     * Constructs a new board, using the game context provided in input. When history updates are enabled, the board
+     * will keep the hashes of all positions encountered, and optionally a count of the occurrences of each of them,
+     * which allows to detect repetitions in constant time instead of scanning the history.
+     *
+     * @param gameContext      the game context to use for this board
+     * @param updateHistory    whether to keep the history updated or not
+     * @param countRepetitions whether to count the occurrences of each position in the history or not
+     * @see PositionHistory
+     */
+    public Board(GameContext gameContext, boolean updateHistory, boolean countRepetitions) {
 
         bitboard = new long[Piece.allPieces.length];
         bbSide = new long[Side.allSides.length];
         occupation = new Piece[Square.values().length];
         castleRight = new EnumMap<>(Side.class);
-        backup = new LinkedList<>();
+        backup = new MoveBackupStack(this);
+        history = new PositionHistory(updateHistory && countRepetitions);
         context = gameContext;
         eventListener = new EnumMap<>(BoardEventType.class);
         this.updateHistory = updateHistory;
@@ -123,12 +126,12 @@ public class Board implements Cloneable, BoardEvent {
     /*
      * does move lead to a promotion?
      */
-    private static boolean isPromoRank(Side side, Move move) {
+    private static boolean isPromoRank(Side side, Square to) {
         if (side.equals(Side.WHITE) &&
-                move.getTo().getRank().equals(Rank.RANK_8)) {
+                to.getRank().equals(Rank.RANK_8)) {
             return true;
         } else return side.equals(Side.BLACK) &&
-                move.getTo().getRank().equals(Rank.RANK_1);
+                to.getRank().equals(Rank.RANK_1);
 
     }
 
@@ -210,25 +213,99 @@ public class Board implements Cloneable, BoardEvent {
      * @return {@code true} if the move was successful and the resulting position is valid
      */
     public boolean doMove(final Move move, boolean fullValidation) {
+        return doMove(PackedMove.fromMove(move), move);
+    }
 
-        Piece movingPiece = getPiece(move.getFrom());
-        Side side = getSideToMove();
+    /**
+     * Executes a packed move on the board without performing a full validation of the position. It returns
+     * {@code true} if the operation has been successful and the position changed after the move.
+     * <p>
+     * Same as invoking {@code doMove(move, false)}.
+     *
+     * @param move the packed move to execute
+     * @return {@code true} if the move was successful and the resulting position is valid
+     * @see #doMove(int, boolean)
+     * @see PackedMove
+     */
+    public boolean doMove(final int move) {
+        return doMove(move, false);
+    }
+
+    /**
+     * Executes a packed move on the board. It behaves like {@link #doMove(Move, boolean)}, without allocating any move
+     * object unless some observers of the {@link BoardEventType#ON_MOVE} events are registered.
+     * <p>
+     * Packed moves can also be drops, in which case the dropped piece is placed on the destination square and the turn
+     * passes to the other side. The caller is responsible for the availability of the dropped piece.
+     *
+     * @param move           the packed move to execute
+     * @param fullValidation whether to perform a full validation of the position or not
+     * @return {@code true} if the move was successful and the resulting position is valid
+     * @see PackedMove
+     */
+    public boolean doMove(final int move, boolean fullValidation) {
+        return doMove(move, null);
+    }
 
-        MoveBackup backupMove = new MoveBackup(this, move);
-        final boolean isCastle = context.isCastleMove(move);
+    private boolean doMove(final int move, final Move moveEvent) {
+
+        Side side = getSideToMove();
+        final Square to = PackedMove.getTo(move);
+        final long hashKey = incrementalHashKey;
+        backup.push(move, moveCounter, halfMoveCounter);
 
         incrementalHashKey ^= getSideKey(getSideToMove());
         if (getEnPassantTarget() != Square.NONE) {
             incrementalHashKey ^= getEnPassantKey(getEnPassantTarget());
         }
 
+        if (PackedMove.isDrop(move)) {
+            setPiece(PackedMove.getDropPiece(move), to);
+            halfMoveCounter++;
+            setEnPassantTarget(Square.NONE);
+            setEnPassant(Square.NONE);
+        } else if (!applyBoardMove(move, side, to)) {
+            backup.pop();
+            incrementalHashKey = hashKey;
+            return false;
+        }
+
+        if (side == Side.BLACK) {
+            moveCounter++;
+        }
+
+        setSideToMove(side.flip());
+        incrementalHashKey ^= getSideKey(getSideToMove());
+
+        if (updateHistory) {
+            history.add(getIncrementalHashKey());
+        }
+
+        // call listeners
+        if (isEnableEvents() && eventListener.get(BoardEventType.ON_MOVE).size() > 0) {
+            final Move event = moveEvent != null ? moveEvent : PackedMove.toMove(move);
+            for (BoardEventListener evl : eventListener.get(BoardEventType.ON_MOVE)) {
+                evl.onEvent(event);
+            }
+        }
+        return true;
+    }
+
+    /*
+     * moves the pieces of a board move, updating castle rights, counters and en passant squares
+     */
+    private boolean applyBoardMove(final int move, final Side side, final Square to) {
+
+        final Square from = PackedMove.getFrom(move);
+        Piece movingPiece = getPiece(from);
+
         if (PieceType.KING.equals(movingPiece.getPieceType())) {
-            if (isCastle) {
+            if (context.isCastleMove(move)) {
                 if (context.hasCastleRight(move, getCastleRight(side))) {
                     CastleRight c = context.isKingSideCastle(move) ? CastleRight.KING_SIDE :
                             CastleRight.QUEEN_SIDE;
                     Move rookMove = context.getRookCastleMove(side, c);
-                    movePiece(rookMove, backupMove);
+                    movePiece(rookMove.getFrom(), rookMove.getTo(), Piece.NONE, false);
                 } else {
                     return false;
                 }
@@ -242,7 +319,7 @@ public class Board implements Cloneable, BoardEvent {
             final Move oo = context.getRookoo(side);
             final Move ooo = context.getRookooo(side);
 
-            if (move.getFrom() == oo.getFrom()) {
+            if (from == oo.getFrom()) {
                 if (CastleRight.KING_AND_QUEEN_SIDE == getCastleRight(side)) {
                     incrementalHashKey ^= getCastleRightKey(side);
                     getCastleRight().put(side, CastleRight.QUEEN_SIDE);
@@ -251,7 +328,7 @@ public class Board implements Cloneable, BoardEvent {
                     incrementalHashKey ^= getCastleRightKey(side);
                     getCastleRight().put(side, CastleRight.NONE);
                 }
-            } else if (move.getFrom() == ooo.getFrom()) {
+            } else if (from == ooo.getFrom()) {
                 if (CastleRight.KING_AND_QUEEN_SIDE == getCastleRight(side)) {
                     incrementalHashKey ^= getCastleRightKey(side);
                     getCastleRight().put(side, CastleRight.KING_SIDE);
@@ -263,12 +340,17 @@ public class Board implements Cloneable, BoardEvent {
             }
         }
 
-        Piece capturedPiece = movePiece(move, backupMove);
+        final Square enPassantTarget = getEnPassantTarget();
+        final boolean emptyTarget = Piece.NONE == getPiece(to);
+        Piece capturedPiece = movePiece(from, to, PackedMove.getPromotion(move), true);
+        if (emptyTarget && Piece.NONE != capturedPiece) {
+            backup.setEnPassantCapture(capturedPiece, enPassantTarget);
+        }
 
         if (PieceType.ROOK == capturedPiece.getPieceType()) {
             final Move oo = context.getRookoo(side.flip());
             final Move ooo = context.getRookooo(side.flip());
-            if (move.getTo() == oo.getFrom()) {
+            if (to == oo.getFrom()) {
                 if (CastleRight.KING_AND_QUEEN_SIDE == getCastleRight(side.flip())) {
                     incrementalHashKey ^= getCastleRightKey(side.flip());
                     getCastleRight().put(side.flip(), CastleRight.QUEEN_SIDE);
@@ -277,7 +359,7 @@ public class Board implements Cloneable, BoardEvent {
                     incrementalHashKey ^= getCastleRightKey(side.flip());
                     getCastleRight().put(side.flip(), CastleRight.NONE);
                 }
-            } else if (move.getTo() == ooo.getFrom()) {
+            } else if (to == ooo.getFrom()) {
                 if (CastleRight.KING_AND_QUEEN_SIDE == getCastleRight(side.flip())) {
                     incrementalHashKey ^= getCastleRightKey(side.flip());
                     getCastleRight().put(side.flip(), CastleRight.KING_SIDE);
@@ -290,46 +372,28 @@ public class Board implements Cloneable, BoardEvent {
         }
 
         if (Piece.NONE == capturedPiece) {
-            setHalfMoveCounter(getHalfMoveCounter() + 1);
+            halfMoveCounter++;
         } else {
-            setHalfMoveCounter(0);
+            halfMoveCounter = 0;
         }
 
         setEnPassantTarget(Square.NONE);
         setEnPassant(Square.NONE);
 
         if (PieceType.PAWN == movingPiece.getPieceType()) {
-            if (Math.abs(move.getTo().getRank().ordinal() -
-                    move.getFrom().getRank().ordinal()) == 2) {
+            if (Math.abs(to.getRank().ordinal() -
+                    from.getRank().ordinal()) == 2) {
                 Piece otherPawn = Piece.make(side.flip(), PieceType.PAWN);
-                setEnPassant(findEnPassant(move.getTo(), side));
-                if (hasPiece(otherPawn, move.getTo().getSideSquares()) &&
-                        verifyNotPinnedPiece(side, getEnPassant(), move.getTo())) {
-                    setEnPassantTarget(move.getTo());
+                setEnPassant(findEnPassant(to, side));
+                if (hasPiece(otherPawn, to.getSideSquares()) &&
+                        verifyNotPinnedPiece(side, getEnPassant(), to)) {
+                    setEnPassantTarget(to);
                     incrementalHashKey ^= getEnPassantKey(getEnPassantTarget());
                 }
             }
-            setHalfMoveCounter(0);
-        }
-
-        if (side == Side.BLACK) {
-            setMoveCounter(getMoveCounter() + 1);
-        }
-
-        setSideToMove(side.flip());
-        incrementalHashKey ^= getSideKey(getSideToMove());
-
-        if (updateHistory) {
-            getHistory().addLast(getIncrementalHashKey());
+            halfMoveCounter = 0;
         }
 
-        backup.add(backupMove);
-        // call listeners
-        if (isEnableEvents() && eventListener.get(BoardEventType.ON_MOVE).size() > 0) {
-            for (BoardEventListener evl : eventListener.get(BoardEventType.ON_MOVE)) {
-                evl.onEvent(move);
-            }
-        }
         return true;
     }
 
@@ -345,9 +409,9 @@ public class Board implements Cloneable, BoardEvent {
     public boolean doNullMove() {
 
         Side side = getSideToMove();
-        MoveBackup backupMove = new MoveBackup(this, emptyMove);
+        backup.push(PackedMove.NONE, moveCounter, halfMoveCounter);
 
-        setHalfMoveCounter(getHalfMoveCounter() + 1);
+        halfMoveCounter++;
 
         setEnPassantTarget(Square.NONE);
         setEnPassant(Square.NONE);
@@ -356,9 +420,8 @@ public class Board implements Cloneable, BoardEvent {
         setSideToMove(side.flip());
         incrementalHashKey ^= getSideKey(getSideToMove());
         if (updateHistory) {
-            getHistory().addLast(getIncrementalHashKey());
+            history.add(getIncrementalHashKey());
         }
-        backup.add(backupMove);
         return true;
     }
 
@@ -369,23 +432,103 @@ public class Board implements Cloneable, BoardEvent {
      * @return the reverted move, or null if no previous moves were played
      */
     public Move undoMove() {
-        Move move = null;
-        final MoveBackup b = backup.removeLast();
-        if (updateHistory) {
-            getHistory().removeLast();
+        if (backup.isEmpty()) {
+            return null;
         }
-        if (b != null) {
-            move = b.getMove();
-            b.restore(this);
+        final MoveBackup event = createUndoMoveEvent();
+        final int move = restoreLastMove();
+        notifyUndoMove(event);
+        if (event != null) {
+            return event.getMove();
         }
-        // call listeners
-        if (isEnableEvents() &&
-                eventListener.get(BoardEventType.ON_UNDO_MOVE).size() > 0) {
-            for (BoardEventListener evl :
-                    eventListener.get(BoardEventType.ON_UNDO_MOVE)) {
-                evl.onEvent(b);
+        return move == PackedMove.NONE ? emptyMove : PackedMove.toMove(move);
+    }
+
+    /**
+     * Reverts the latest move played on the board and returns it packed into an integer. If no moves were previously
+     * executed, it returns {@link PackedMove#NONE}.
+     * <p>
+     * Unlike {@link #undoMove()}, it does not allocate any object, unless some observers of the
+     * {@link BoardEventType#ON_UNDO_MOVE} events are registered.
+     *
+     * @return the reverted packed move, or {@link PackedMove#NONE} if no previous moves were played
+     * @see PackedMove
+     */
+    public int undoPackedMove() {
+        if (backup.isEmpty()) {
+            return PackedMove.NONE;
+        }
+        final MoveBackup event = createUndoMoveEvent();
+        final int move = restoreLastMove();
+        notifyUndoMove(event);
+        return move;
+    }
+
+    /*
+     * builds the move backup passed to the observers of undo move events, if any
+     */
+    private MoveBackup createUndoMoveEvent() {
+        if (isEnableEvents() && eventListener.get(BoardEventType.ON_UNDO_MOVE).size() > 0) {
+            return backup.toMoveBackup(backup.size() - 1);
+        }
+        return null;
+    }
+
+    private void notifyUndoMove(MoveBackup event) {
+        if (event != null) {
+            for (BoardEventListener evl : eventListener.get(BoardEventType.ON_UNDO_MOVE)) {
+                evl.onEvent(event);
+            }
+        }
+    }
+
+    /*
+     * restores the status of the board from the latest entry of the backup stack, and returns the reverted move
+     */
+    private int restoreLastMove() {
+        final int i = backup.size() - 1;
+        final int move = backup.getMove(i);
+        final Side side = backup.getSideToMove(i);
+
+        if (updateHistory) {
+            history.removeLast();
+        }
+        setSideToMove(side);
+        setEnPassantTarget(backup.getEnPassantTarget(i));
+        setEnPassant(backup.getEnPassant(i));
+        moveCounter = backup.getMoveCounter(i);
+        halfMoveCounter = backup.getHalfMoveCounter(i);
+        castleRight.put(Side.WHITE, backup.getCastleRight(i, Side.WHITE));
+        castleRight.put(Side.BLACK, backup.getCastleRight(i, Side.BLACK));
+
+        if (move != PackedMove.NONE) {
+            final Square to = PackedMove.getTo(move);
+            if (PackedMove.isDrop(move)) {
+                unsetPiece(PackedMove.getDropPiece(move), to);
+            } else {
+                final Piece promotion = PackedMove.getPromotion(move);
+                final Piece movingPiece = promotion == Piece.NONE ? backup.getMovingPiece(i) : promotion;
+                final Square from = PackedMove.getFrom(move);
+
+                if (PieceType.KING == movingPiece.getPieceType() && context.isCastleMove(move)) {
+                    CastleRight c = context.isKingSideCastle(move) ? CastleRight.KING_SIDE :
+                            CastleRight.QUEEN_SIDE;
+                    undoMovePiece(context.getRookCastleMove(side, c));
+                }
+                unsetPiece(movingPiece, to);
+                if (Piece.NONE == promotion) {
+                    setPiece(movingPiece, from);
+                } else {
+                    setPiece(Piece.make(side, PieceType.PAWN), from);
+                }
+                final Piece capturedPiece = backup.getCapturedPiece(i);
+                if (Piece.NONE != capturedPiece) {
+                    setPiece(capturedPiece, backup.getCapturedSquare(i));
+                }
             }
         }
+        incrementalHashKey = backup.getIncrementalHashKey(i);
+        backup.pop();
         return move;
     }
 
@@ -417,6 +560,20 @@ public class Board implements Cloneable, BoardEvent {
      * @return the captured piece, if present, or {@link Piece#NONE} otherwise
      */
     protected Piece movePiece(Square from, Square to, Piece promotion, MoveBackup backup) {
+        final Square enPassantTarget = getEnPassantTarget();
+        final boolean emptyTarget = Piece.NONE == getPiece(to);
+        final Piece capturedPiece = movePiece(from, to, promotion, backup != null);
+        if (backup != null && emptyTarget && !Piece.NONE.equals(capturedPiece)) {
+            backup.setCapturedSquare(enPassantTarget);
+            backup.setCapturedPiece(capturedPiece);
+        }
+        return capturedPiece;
+    }
+
+    /*
+     * moves a piece, removing the pawn captured en passant only when requested, and returns the captured piece
+     */
+    private Piece movePiece(Square from, Square to, Piece promotion, boolean captureEnPassant) {
         Piece movingPiece = getPiece(from);
         Piece capturedPiece = getPiece(to);
 
@@ -435,10 +592,8 @@ public class Board implements Cloneable, BoardEvent {
                 !to.getFile().equals(from.getFile()) &&
                 Piece.NONE.equals(capturedPiece)) {
             capturedPiece = getPiece(getEnPassantTarget());
-            if (backup != null && !Piece.NONE.equals(capturedPiece)) {
+            if (captureEnPassant && !Piece.NONE.equals(capturedPiece)) {
                 unsetPiece(capturedPiece, getEnPassantTarget());
-                backup.setCapturedSquare(getEnPassantTarget());
-                backup.setCapturedPiece(capturedPiece);
             }
         }
         return capturedPiece;
@@ -695,13 +850,32 @@ public class Board implements Cloneable, BoardEvent {
         this.context = context;
     }
 
+    /**
+     * Returns the stack of the states needed to revert the moves performed on the board, ordered from the first move
+     * to the latest one.
+     *
+     * @return the backup stack of the board
+     */
+    public MoveBackupStack getBackupStack() {
+        return backup;
+    }
+
     /**
      * Returns the current ordered list of move backups generated from the moves performed on the board.
+     * <p>
+     * The move backups are built from the entries of the backup stack of the board at each invocation, hence changes
+     * to the list do not affect the board.
      *
-     * @return the list of move backups
+     * @return a new list of move backups
+     * @deprecated use {@link Board#getBackupStack()} instead, which does not allocate a move backup for each move
      */
+    @Deprecated
     public LinkedList<MoveBackup> getBackup() {
-        return backup;
+        LinkedList<MoveBackup> list = new LinkedList<>();
+        for (int i = 0; i < backup.size(); i++) {
+            list.add(backup.toMoveBackup(i));
+        }
+        return list;
     }
 
     /**
@@ -713,7 +887,7 @@ public class Board implements Cloneable, BoardEvent {
         setEnPassant(Square.NONE);
         setMoveCounter(0);
         setHalfMoveCounter(0);
-        getHistory().clear();
+        history.clear();
 
         Arrays.fill(bitboard, 0L);
         Arrays.fill(bbSide, 0L);
@@ -830,7 +1004,7 @@ public class Board implements Cloneable, BoardEvent {
 
         incrementalHashKey = getZobristKey();
         if (updateHistory) {
-            getHistory().addLast(this.getZobristKey());
+            history.add(this.getZobristKey());
         }
         // call listeners
         if (isEnableEvents() &&
@@ -1192,13 +1366,46 @@ public class Board implements Cloneable, BoardEvent {
      * @return {@code true} if the move is considered valid
      */
     public boolean isMoveLegal(Move move, boolean fullValidation) {
+        return isMoveLegal(PackedMove.fromMove(move), fullValidation);
+    }
 
-        final Piece fromPiece = getPiece(move.getFrom());
+    /**
+     * Verifies if the packed move still to be executed will leave the resulting board in a valid (legal) position,
+     * exactly as {@link #isMoveLegal(Move, boolean)} does for move objects.
+     * <p>
+     * Packed moves can also be drops. A drop is considered valid if its destination square is empty and the own king is
+     * not left in check. The full validation additionally checks the dropped piece belongs to the side to move, and
+     * pawns are not dropped on the first or last rank.
+     *
+     * @param move           the packed move to validate
+     * @param fullValidation performs a full validation of the move
+     * @return {@code true} if the move is considered valid
+     * @see PackedMove
+     */
+    public boolean isMoveLegal(int move, boolean fullValidation) {
+
+        final Square to = PackedMove.getTo(move);
         final Side side = getSideToMove();
+        final boolean drop = PackedMove.isDrop(move);
+        final Square from = drop ? Square.NONE : PackedMove.getFrom(move);
+        final Piece fromPiece = drop ? PackedMove.getDropPiece(move) : getPiece(from);
         final PieceType fromType = fromPiece.getPieceType();
-        final Piece capturedPiece = getPiece(move.getTo());
+        final Piece capturedPiece = getPiece(to);
 
-        if (fullValidation) {
+        if (drop) {
+            if (!Piece.NONE.equals(capturedPiece)) {
+                return false;
+            }
+            if (fullValidation) {
+                if (!side.equals(fromPiece.getPieceSide())) {
+                    return false;
+                }
+                if (fromType.equals(PieceType.PAWN) &&
+                        (to.getRank().equals(Rank.RANK_1) || to.getRank().equals(Rank.RANK_8))) {
+                    return false;
+                }
+            }
+        } else if (fullValidation) {
             if (Piece.NONE.equals(fromPiece)) {
                 throw new RuntimeException("From piece cannot be null");
             }
@@ -1212,8 +1419,8 @@ public class Board implements Cloneable, BoardEvent {
             }
 
             boolean pawnPromoting = fromPiece.getPieceType().equals(PieceType.PAWN) &&
-                    isPromoRank(side, move);
-            boolean hasPromoPiece = !move.getPromotion().equals(Piece.NONE);
+                    isPromoRank(side, to);
+            boolean hasPromoPiece = PackedMove.isPromotion(move);
 
             if (hasPromoPiece != pawnPromoting) {
                 return false;
@@ -1239,18 +1446,18 @@ public class Board implements Cloneable, BoardEvent {
                 }
             }
         }
-        if (fromType.equals(PieceType.KING)) {
-            if (squareAttackedBy(move.getTo(), side.flip()) != 0L) {
+        if (fromType.equals(PieceType.KING) && !drop) {
+            if (squareAttackedBy(to, side.flip()) != 0L) {
                 return false;
             }
         }
-        Square kingSq = (fromType.equals(PieceType.KING) ?
-                move.getTo() : getKingSquare(side));
+        Square kingSq = (fromType.equals(PieceType.KING) && !drop ?
+                to : getKingSquare(side));
         Side other = side.flip();
-        long moveTo = move.getTo().getBitboard();
-        long moveFrom = move.getFrom().getBitboard();
-        long ep = getEnPassantTarget() != Square.NONE && move.getTo() == getEnPassant() &&
-                (fromType.equals(PieceType.PAWN)) ? getEnPassantTarget().getBitboard() : 0;
+        long moveTo = to.getBitboard();
+        long moveFrom = drop ? 0L : from.getBitboard();
+        long ep = getEnPassantTarget() != Square.NONE && to == getEnPassant() &&
+                (fromType.equals(PieceType.PAWN)) && !drop ? getEnPassantTarget().getBitboard() : 0;
         long allPieces = (getBitboard() ^ moveFrom ^ ep) | moveTo;
 
         long bishopAndQueens = ((getBitboard(Piece.make(other, PieceType.BISHOP)) |
@@ -1328,13 +1535,28 @@ public class Board implements Cloneable, BoardEvent {
     /**
      * Returns the history of the board, represented by the hashes of all the positions occurred on the board.
      *
-     * @return the list of hashes of all the positions occurred on the board
+     * @return the history of the hashes of all the positions occurred on the board
      * @see Board#getIncrementalHashKey()
      */
-    public LinkedList<Long> getHistory() {
+    public PositionHistory getPositionHistory() {
         return history;
     }
 
+    /**
+     * Returns the history of the board, represented by the hashes of all the positions occurred on the board.
+     * <p>
+     * The list is built from the position history of the board at each invocation, hence changes to the list do not
+     * affect the board.
+     *
+     * @return a new list of hashes of all the positions occurred on the board
+     * @see Board#getIncrementalHashKey()
+     * @deprecated use {@link Board#getPositionHistory()} instead, which does not box the hashes
+     */
+    @Deprecated
+    public LinkedList<Long> getHistory() {
+        return history.toList();
+    }
+
     /**
      * Verifies in the current position if the king of the side to move is mated.
      *
@@ -1373,7 +1595,7 @@ public class Board implements Cloneable, BoardEvent {
         if (isInsufficientMaterial()) {
             return true;
         }
-        if (getHalfMoveCounter() >= 100) {
+        if (halfMoveCounter >= 100) {
             return true;
         }
         return isStaleMate();
@@ -1388,15 +1610,21 @@ public class Board implements Cloneable, BoardEvent {
      */
     public boolean isRepetition(int n) {
 
-        final int i = Math.min(getHistory().size() - 1, getHalfMoveCounter());
-        if (getHistory().size() >= 4) {
-            long lastKey = getHistory().get(getHistory().size() - 1);
-            int rep = 0;
-            for (int x = 4; x <= i; x += 2) {
-                final long k = getHistory().get(getHistory().size() - x - 1);
-                if (k == lastKey && ++rep >= n - 1) {
-                    return true;
-                }
+        final int size = history.size();
+        if (size < 4) {
+            return false;
+        }
+        final long lastKey = history.get(size - 1);
+        // the position cannot be repeated in the latest moves if it does not occur often enough in the whole game
+        if (history.isCountEnabled() && history.count(lastKey) < n) {
+            return false;
+        }
+        final int i = Math.min(size - 1, halfMoveCounter);
+        int rep = 0;
+        for (int x = 4; x <= i; x += 2) {
+            final long k = history.get(size - x - 1);
+            if (k == lastKey && ++rep >= n - 1) {
+                return true;
             }
         }
         return false;
@@ -1615,7 +1843,7 @@ public class Board implements Cloneable, BoardEvent {
     public boolean strictEquals(Object obj) {
         if (obj instanceof Board) {
             Board board = (Board) obj;
-            return equals(board) && board.getHistory().equals(this.getHistory());
+            return equals(board) && board.history.equals(this.history);
         }
         return false;
     }
@@ -1636,7 +1864,7 @@ public class Board implements Cloneable, BoardEvent {
      * passant target.
      *
      * @return a Zobrist hash value for this board
-     * @see <a href="https://en.wikipedia.org/wiki/Zobrist_hashing">Zobrist hashing in Wikipedia</a>
+     * @see Zobrist
      */
     public long getZobristKey() {
         long hash = 0;
@@ -1662,19 +1890,19 @@ public class Board implements Cloneable, BoardEvent {
     }
 
     private long getCastleRightKey(Side side) {
-        return keys.get(3 * getCastleRight(side).ordinal() + 300 + 3 * side.ordinal());
+        return Zobrist.getCastleRightKey(side, getCastleRight(side));
     }
 
     private long getSideKey(Side side) {
-        return keys.get(3 * side.ordinal() + 500);
+        return Zobrist.getSideKey(side);
     }
 
     private long getEnPassantKey(Square enPassantTarget) {
-        return keys.get(3 * enPassantTarget.ordinal() + 400);
+        return Zobrist.getEnPassantKey(enPassantTarget);
     }
 
     private long getPieceSquareKey(Piece piece, Square square) {
-        return keys.get(57 * piece.ordinal() + 13 * square.ordinal());
+        return Zobrist.getPieceSquareKey(piece, square);
     }
 
     /**
@@ -1754,12 +1982,12 @@ public class Board implements Cloneable, BoardEvent {
      */
     @Override
     public Board clone() {
-        Board copy = new Board(getContext(), this.updateHistory);
+        Board copy = new Board(getContext(), this.updateHistory, history.isCountEnabled());
         copy.loadFromFen(this.getFen());
         copy.setEnPassantTarget(this.getEnPassantTarget());
-        copy.getHistory().clear();
-        for (long key : getHistory()) {
-            copy.getHistory().add(key);
+        copy.history.clear();
+        for (int i = 0; i < history.size(); i++) {
+            copy.history.add(history.get(i));
         }
         return copy;
     }
@@ -16,11 +16,10 @@
 
 package com.github.bhlangonijr.chesslib;
 
-import static com.github.bhlangonijr.chesslib.Constants.emptyMove;
-
 import java.util.EnumMap;
 
 import com.github.bhlangonijr.chesslib.move.Move;
+import com.github.bhlangonijr.chesslib.move.PackedMove;
 
 /**
  * A structure that can be used to cancel the effects of a move and to restore the board to a previous status. The
@@ -39,6 +38,7 @@ public class MoveBackup implements BoardEvent {
     private Integer moveCounter;
     private Integer halfMoveCounter;
     private Move move;
+    private int packedMove;
     private Move rookCastleMove;
     private Piece capturedPiece;
     private Square capturedSquare;
@@ -66,6 +66,19 @@ public class MoveBackup implements BoardEvent {
         makeBackup(board, move);
     }
 
+    /**
+     * Constructs a new move backup taking a board and a packed move. At the same time, it both instantiates the data
+     * structure and takes a snapshot of the board status for a later restore.
+     *
+     * @param board the board that describes the status at the time of the move
+     * @param move  the packed move which could be potentially restored later in time
+     * @see PackedMove
+     */
+    public MoveBackup(Board board, int move) {
+        this();
+        makeBackup(board, move);
+    }
+
     /**
      * Initiates a new move backup, possibly overwriting any previously existing backup.
      *
@@ -73,6 +86,18 @@ public class MoveBackup implements BoardEvent {
      * @param move  the move which could be potentially restored later in time
      */
     public void makeBackup(Board board, Move move) {
+        makeBackup(board, PackedMove.fromMove(move));
+        this.move = move;
+    }
+
+    /**
+     * Initiates a new move backup from a packed move, possibly overwriting any previously existing backup.
+     *
+     * @param board the board that describes the status at the time of the move
+     * @param move  the packed move which could be potentially restored later in time
+     * @see PackedMove
+     */
+    public void makeBackup(Board board, int move) {
 
         setIncrementalHashKey(board.getIncrementalHashKey());
         setSideToMove(board.getSideToMove());
@@ -80,22 +105,33 @@ public class MoveBackup implements BoardEvent {
         setEnPassant(board.getEnPassant());
         setMoveCounter(board.getMoveCounter());
         setHalfMoveCounter(board.getHalfMoveCounter());
-        setMove(move);
+        this.move = null;
+        this.packedMove = move;
         getCastleRight().put(Side.WHITE, board.getCastleRight(Side.WHITE));
         getCastleRight().put(Side.BLACK, board.getCastleRight(Side.BLACK));
-        setCapturedPiece(board.getPiece(move.getTo()));
-        setCapturedSquare(move.getTo());
-        Piece moving = board.getPiece(move.getFrom());
+        setRookCastleMove(null);
+        setCastleMove(false);
+        if (move == PackedMove.NONE) {
+            setCapturedPiece(Piece.NONE);
+            setCapturedSquare(Square.NONE);
+            setMovingPiece(Piece.NONE);
+            return;
+        }
+        final Square to = PackedMove.getTo(move);
+        setCapturedPiece(board.getPiece(to));
+        setCapturedSquare(to);
+        if (PackedMove.isDrop(move)) {
+            setMovingPiece(PackedMove.getDropPiece(move));
+            return;
+        }
+        Piece moving = board.getPiece(PackedMove.getFrom(move));
         setMovingPiece(moving);
-        if (board.getContext().isCastleMove(move) && movingPiece == Piece.make(board.getSideToMove(), PieceType.KING)) {
+        if (movingPiece == Piece.make(board.getSideToMove(), PieceType.KING) && board.getContext().isCastleMove(move)) {
             CastleRight c = board.getContext().isKingSideCastle(move) ? CastleRight.KING_SIDE :
                     CastleRight.QUEEN_SIDE;
             Move rookMove = board.getContext().getRookCastleMove(board.getSideToMove(), c);
             setRookCastleMove(rookMove);
             setCastleMove(true);
-        } else {
-            setRookCastleMove(null);
-            setCastleMove(false);
         }
     }
 
@@ -115,24 +151,30 @@ public class MoveBackup implements BoardEvent {
         board.setEnPassant(getEnPassant());
         board.setMoveCounter(getMoveCounter());
         board.setHalfMoveCounter(getHalfMoveCounter());
-        Piece movingPiece = move.getPromotion() == Piece.NONE ? getMovingPiece() : move.getPromotion();
         board.getCastleRight().put(Side.WHITE, getCastleRight().get(Side.WHITE));
         board.getCastleRight().put(Side.BLACK, getCastleRight().get(Side.BLACK));
 
-        if (move != emptyMove) {
-            final boolean isCastle = board.getContext().isCastleMove(getMove());
-
-            if (PieceType.KING.equals(movingPiece.getPieceType()) && isCastle) {
-                board.undoMovePiece(getRookCastleMove());
-            }
-            board.unsetPiece(movingPiece, getMove().getTo());
-            if (Piece.NONE.equals(getMove().getPromotion())) {
-                board.setPiece(movingPiece, getMove().getFrom());
+        if (packedMove != PackedMove.NONE) {
+            final Square to = PackedMove.getTo(packedMove);
+            if (PackedMove.isDrop(packedMove)) {
+                board.unsetPiece(PackedMove.getDropPiece(packedMove), to);
             } else {
-                board.setPiece(Piece.make(getSideToMove(), PieceType.PAWN), getMove().getFrom());
-            }
-            if (!Piece.NONE.equals(getCapturedPiece())) {
-                board.setPiece(getCapturedPiece(), getCapturedSquare());
+                final Piece promotion = PackedMove.getPromotion(packedMove);
+                final Piece movingPiece = promotion == Piece.NONE ? getMovingPiece() : promotion;
+                final Square from = PackedMove.getFrom(packedMove);
+
+                if (PieceType.KING.equals(movingPiece.getPieceType()) && board.getContext().isCastleMove(packedMove)) {
+                    board.undoMovePiece(getRookCastleMove());
+                }
+                board.unsetPiece(movingPiece, to);
+                if (Piece.NONE.equals(promotion)) {
+                    board.setPiece(movingPiece, from);
+                } else {
+                    board.setPiece(Piece.make(getSideToMove(), PieceType.PAWN), from);
+                }
+                if (!Piece.NONE.equals(getCapturedPiece())) {
+                    board.setPiece(getCapturedPiece(), getCapturedSquare());
+                }
             }
         }
         board.setIncrementalHashKey(getIncrementalHashKey());
@@ -236,6 +278,9 @@ public class MoveBackup implements BoardEvent {
      * @return the move to revert
      */
     public Move getMove() {
+        if (move == null && packedMove != PackedMove.NONE) {
+            move = PackedMove.toMove(packedMove);
+        }
         return move;
     }
 
@@ -246,6 +291,28 @@ public class MoveBackup implements BoardEvent {
      */
     public void setMove(Move move) {
         this.move = move;
+        this.packedMove = PackedMove.fromMove(move);
+    }
+
+    /**
+     * Returns the packed move to revert in the case a board has to be restored.
+     *
+     * @return the packed move to revert, or {@link PackedMove#NONE} for a null move
+     * @see PackedMove
+     */
+    public int getPackedMove() {
+        return packedMove;
+    }
+
+    /**
+     * Sets the packed move to revert in the case a board has to be restored.
+     *
+     * @param packedMove the packed move to revert, or {@link PackedMove#NONE} for a null move
+     * @see PackedMove
+     */
+    public void setPackedMove(int packedMove) {
+        this.move = null;
+        this.packedMove = packedMove;
     }
 
     /**
@@ -0,0 +1,309 @@
+/*
+ * Copyright 2017 Ben-Hur Carlos Vieira Langoni Junior
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.bhlangonijr.chesslib;
+
+import java.util.Arrays;
+
+import com.github.bhlangonijr.chesslib.move.PackedMove;
+
+/**
+ * The stack of the states needed to revert the moves played on a board, stored as primitives in parallel arrays.
+ * <p>
+ * Each entry holds the move packed into an integer, the castle rights of both sides and the side to move packed into
+ * the bits of a byte, the en passant squares and the moved and captured pieces as byte ordinals, the move counters as
+ * integers and the incremental hash key as a long. Pushing and popping entries does not allocate any object, except
+ * when the arrays have to grow to hold a longer game.
+ * <p>
+ * The stack is owned and updated by a {@link Board}, and it can be inspected through
+ * {@link Board#getBackupStack()}. The entries are indexed from 0, the first move played, to {@code size() - 1}, the
+ * latest one.
+ *
+ * @see MoveBackup
+ */
+public final class MoveBackupStack {
+
+    private static final int DEFAULT_CAPACITY = 256;
+    private static final int CASTLE_RIGHT_BITS = 2;
+    private static final int CASTLE_RIGHT_MASK = (1 << CASTLE_RIGHT_BITS) - 1;
+    private static final int SIDE_SHIFT = 2 * CASTLE_RIGHT_BITS;
+    private static final CastleRight[] castleRights = CastleRight.values();
+
+    private final Board board;
+    private int[] moves;
+    private byte[] states;
+    private byte[] enPassantTargets;
+    private byte[] enPassants;
+    private byte[] movingPieces;
+    private byte[] capturedPieces;
+    private byte[] capturedSquares;
+    private int[] moveCounters;
+    private int[] halfMoveCounters;
+    private long[] hashKeys;
+    private int size;
+
+    MoveBackupStack(Board board) {
+        this.board = board;
+        this.moves = new int[DEFAULT_CAPACITY];
+        this.states = new byte[DEFAULT_CAPACITY];
+        this.enPassantTargets = new byte[DEFAULT_CAPACITY];
+        this.enPassants = new byte[DEFAULT_CAPACITY];
+        this.movingPieces = new byte[DEFAULT_CAPACITY];
+        this.capturedPieces = new byte[DEFAULT_CAPACITY];
+        this.capturedSquares = new byte[DEFAULT_CAPACITY];
+        this.moveCounters = new int[DEFAULT_CAPACITY];
+        this.halfMoveCounters = new int[DEFAULT_CAPACITY];
+        this.hashKeys = new long[DEFAULT_CAPACITY];
+    }
+
+    /*
+     * pushes the status of the board before the execution of the move
+     */
+    void push(int move, int moveCounter, int halfMoveCounter) {
+        if (size == moves.length) {
+            grow();
+        }
+        final int i = size++;
+        moves[i] = move;
+        states[i] = (byte) (board.getCastleRight(Side.WHITE).ordinal() |
+                board.getCastleRight(Side.BLACK).ordinal() << CASTLE_RIGHT_BITS |
+                board.getSideToMove().ordinal() << SIDE_SHIFT);
+        enPassantTargets[i] = (byte) board.getEnPassantTarget().ordinal();
+        enPassants[i] = (byte) board.getEnPassant().ordinal();
+        moveCounters[i] = moveCounter;
+        halfMoveCounters[i] = halfMoveCounter;
+        hashKeys[i] = board.getIncrementalHashKey();
+        if (move == PackedMove.NONE) {
+            movingPieces[i] = (byte) Piece.NONE.ordinal();
+            capturedPieces[i] = (byte) Piece.NONE.ordinal();
+            capturedSquares[i] = (byte) Square.NONE.ordinal();
+            return;
+        }
+        final int to = PackedMove.getToIndex(move);
+        movingPieces[i] = (byte) (PackedMove.isDrop(move) ? PackedMove.getDropPiece(move) :
+                board.getPiece(Square.squareAt(PackedMove.getFromIndex(move)))).ordinal();
+        capturedPieces[i] = (byte) board.getPiece(Square.squareAt(to)).ordinal();
+        capturedSquares[i] = (byte) to;
+    }
+
+    /*
+     * records the pawn captured en passant by the latest move
+     */
+    void setEnPassantCapture(Piece capturedPiece, Square capturedSquare) {
+        capturedPieces[size - 1] = (byte) capturedPiece.ordinal();
+        capturedSquares[size - 1] = (byte) capturedSquare.ordinal();
+    }
+
+    /*
+     * discards the latest entry, once the board has been restored from it
+     */
+    void pop() {
+        size--;
+    }
+
+    /*
+     * discards all the entries, retaining the arrays
+     */
+    void clear() {
+        size = 0;
+    }
+
+    private void grow() {
+        final int capacity = moves.length * 2;
+        moves = Arrays.copyOf(moves, capacity);
+        states = Arrays.copyOf(states, capacity);
+        enPassantTargets = Arrays.copyOf(enPassantTargets, capacity);
+        enPassants = Arrays.copyOf(enPassants, capacity);
+        movingPieces = Arrays.copyOf(movingPieces, capacity);
+        capturedPieces = Arrays.copyOf(capturedPieces, capacity);
+        capturedSquares = Arrays.copyOf(capturedSquares, capacity);
+        moveCounters = Arrays.copyOf(moveCounters, capacity);
+        halfMoveCounters = Arrays.copyOf(halfMoveCounters, capacity);
+        hashKeys = Arrays.copyOf(hashKeys, capacity);
+    }
+
+    /**
+     * Returns the number of entries in the stack, that is, the number of moves that can be reverted.
+     *
+     * @return the number of entries
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks whether the stack contains no entries.
+     *
+     * @return {@code true} if the stack is empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the move of an entry, packed into an integer.
+     *
+     * @param index the index of the entry
+     * @return the packed move, or {@link PackedMove#NONE} for a null move
+     * @see PackedMove
+     */
+    public int getMove(int index) {
+        return moves[index];
+    }
+
+    /**
+     * Returns the side to move before the move of an entry was played.
+     *
+     * @param index the index of the entry
+     * @return the side to move
+     */
+    public Side getSideToMove(int index) {
+        return Side.allSides[states[index] >> SIDE_SHIFT & 1];
+    }
+
+    /**
+     * Returns the castle right of a side before the move of an entry was played.
+     *
+     * @param index the index of the entry
+     * @param side  the side for which the castle right must be returned
+     * @return the castle right of the side
+     */
+    public CastleRight getCastleRight(int index, Side side) {
+        return castleRights[states[index] >> CASTLE_RIGHT_BITS * side.ordinal() & CASTLE_RIGHT_MASK];
+    }
+
+    /**
+     * Returns the en passant target square before the move of an entry was played.
+     *
+     * @param index the index of the entry
+     * @return the en passant target square, or {@link Square#NONE} if en passant was not possible
+     */
+    public Square getEnPassantTarget(int index) {
+        return Square.squareAt(enPassantTargets[index]);
+    }
+
+    /**
+     * Returns the en passant destination square before the move of an entry was played.
+     *
+     * @param index the index of the entry
+     * @return the en passant destination square, or {@link Square#NONE} if en passant was not possible
+     */
+    public Square getEnPassant(int index) {
+        return Square.squareAt(enPassants[index]);
+    }
+
+    /**
+     * Returns the piece moved, or dropped, with the move of an entry.
+     *
+     * @param index the index of the entry
+     * @return the moved piece, or {@link Piece#NONE} for a null move
+     */
+    public Piece getMovingPiece(int index) {
+        return Piece.allPieces[movingPieces[index]];
+    }
+
+    /**
+     * Returns the piece captured with the move of an entry.
+     *
+     * @param index the index of the entry
+     * @return the captured piece, or {@link Piece#NONE} if no piece was captured
+     */
+    public Piece getCapturedPiece(int index) {
+        return Piece.allPieces[capturedPieces[index]];
+    }
+
+    /**
+     * Returns the square of the piece captured with the move of an entry, which differs from the destination square
+     * of the move in case of en passant captures.
+     *
+     * @param index the index of the entry
+     * @return the square of the captured piece
+     */
+    public Square getCapturedSquare(int index) {
+        return Square.squareAt(capturedSquares[index]);
+    }
+
+    /**
+     * Returns the counter of full moves before the move of an entry was played.
+     *
+     * @param index the index of the entry
+     * @return the counter of full moves
+     */
+    public int getMoveCounter(int index) {
+        return moveCounters[index];
+    }
+
+    /**
+     * Returns the counter of half moves before the move of an entry was played.
+     *
+     * @param index the index of the entry
+     * @return the counter of half moves
+     */
+    public int getHalfMoveCounter(int index) {
+        return halfMoveCounters[index];
+    }
+
+    /**
+     * Returns the incremental hash key of the board before the move of an entry was played.
+     *
+     * @param index the index of the entry
+     * @return the incremental hash key
+     */
+    public long getIncrementalHashKey(int index) {
+        return hashKeys[index];
+    }
+
+    /**
+     * Returns a new move backup holding the same status as an entry. Unlike the entries of the stack, the returned
+     * object is not updated by the board, and it can be retained after the move has been reverted.
+     *
+     * @param index the index of the entry
+     * @return a new move backup equivalent to the entry
+     */
+    public MoveBackup toMoveBackup(int index) {
+        final MoveBackup backup = new MoveBackup();
+        final int move = moves[index];
+        final Side side = getSideToMove(index);
+        if (move == PackedMove.NONE) {
+            backup.setMove(Constants.emptyMove);
+        } else {
+            backup.setPackedMove(move);
+        }
+        backup.setSideToMove(side);
+        backup.getCastleRight().put(Side.WHITE, getCastleRight(index, Side.WHITE));
+        backup.getCastleRight().put(Side.BLACK, getCastleRight(index, Side.BLACK));
+        backup.setEnPassantTarget(getEnPassantTarget(index));
+        backup.setEnPassant(getEnPassant(index));
+        backup.setMoveCounter(getMoveCounter(index));
+        backup.setHalfMoveCounter(getHalfMoveCounter(index));
+        backup.setIncrementalHashKey(getIncrementalHashKey(index));
+        backup.setMovingPiece(getMovingPiece(index));
+        backup.setCapturedPiece(getCapturedPiece(index));
+        backup.setCapturedSquare(getCapturedSquare(index));
+        if (move != PackedMove.NONE && !PackedMove.isDrop(move)) {
+            if (getMovingPiece(index).getPieceType() == PieceType.KING &&
+                    board.getContext().isCastleMove(move)) {
+                CastleRight c = board.getContext().isKingSideCastle(move) ? CastleRight.KING_SIDE :
+                        CastleRight.QUEEN_SIDE;
+                backup.setRookCastleMove(board.getContext().getRookCastleMove(side, c));
+                backup.setCastleMove(true);
+            }
+            backup.setEnPassantMove(getCapturedPiece(index) != Piece.NONE &&
+                    capturedSquares[index] != PackedMove.getToIndex(move));
+        }
+        return backup;
+    }
+}
@@ -0,0 +1,290 @@
+/*
+ * Copyright 2017 Ben-Hur Carlos Vieira Langoni Junior
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.bhlangonijr.chesslib;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+
+/**
+ * The history of a board, represented by the hashes of all the positions occurred on the board, in order of
+ * occurrence. The hashes are stored in a growable array of primitives, hence they can be accessed by index in constant
+ * time and without boxing.
+ * <p>
+ * Optionally, the history also keeps a table counting the occurrences of each hash, which allows to look up how many
+ * times a position occurred in constant time. The table is updated on every addition and removal, at the cost of a
+ * lookup in an open-addressing hash table.
+ *
+ * @see Board#getPositionHistory()
+ */
+public final class PositionHistory {
+
+    private static final int DEFAULT_CAPACITY = 256;
+
+    private final boolean countEnabled;
+    private long[] keys;
+    private int size;
+    // open-addressing table of the occurrences of each hash, with a power of two capacity
+    private long[] countKeys;
+    private int[] counts;
+    private boolean[] used;
+    private int usedCount;
+
+    /**
+     * Constructs a new empty history, optionally keeping a count of the occurrences of each hash.
+     *
+     * @param countEnabled whether to keep the table of occurrences or not
+     */
+    public PositionHistory(boolean countEnabled) {
+        this.countEnabled = countEnabled;
+        this.keys = new long[DEFAULT_CAPACITY];
+        if (countEnabled) {
+            initCounts(DEFAULT_CAPACITY * 2);
+        }
+    }
+
+    /**
+     * Appends the hash of a position to the history.
+     *
+     * @param key the hash of the position
+     */
+    public void add(long key) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+        }
+        keys[size++] = key;
+        if (countEnabled) {
+            // the slot is looked up first, as claiming it may rebuild the table
+            final int slot = slot(key);
+            counts[slot]++;
+        }
+    }
+
+    /**
+     * Removes the hash of the latest position from the history.
+     *
+     * @return the removed hash
+     * @throws IllegalStateException if the history is empty
+     */
+    public long removeLast() {
+        if (size == 0) {
+            throw new IllegalStateException("The position history is empty");
+        }
+        final long key = keys[--size];
+        if (countEnabled) {
+            final int slot = slot(key);
+            counts[slot]--;
+        }
+        return key;
+    }
+
+    /**
+     * Removes all the hashes from the history. The backing arrays are retained.
+     */
+    public void clear() {
+        size = 0;
+        if (countEnabled) {
+            Arrays.fill(used, false);
+            Arrays.fill(counts, 0);
+            usedCount = 0;
+        }
+    }
+
+    /**
+     * Returns the hash at the given position of the history.
+     *
+     * @param index the position of the hash, between 0 (inclusive) and {@link PositionHistory#size()} (exclusive)
+     * @return the hash of the position
+     */
+    public long get(int index) {
+        return keys[index];
+    }
+
+    /**
+     * Returns the hash of the latest position of the history.
+     *
+     * @return the hash of the latest position
+     * @throws IllegalStateException if the history is empty
+     */
+    public long getLast() {
+        if (size == 0) {
+            throw new IllegalStateException("The position history is empty");
+        }
+        return keys[size - 1];
+    }
+
+    /**
+     * Returns the number of hashes in the history.
+     *
+     * @return the number of hashes
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks whether the history contains no hashes.
+     *
+     * @return {@code true} if the history is empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Checks whether the history keeps the table of occurrences of each hash.
+     *
+     * @return {@code true} if the occurrences are counted
+     */
+    public boolean isCountEnabled() {
+        return countEnabled;
+    }
+
+    /**
+     * Returns how many times a hash occurs in the whole history. The lookup takes constant time if the table of
+     * occurrences is enabled, linear time otherwise.
+     *
+     * @param key the hash of the position
+     * @return the number of occurrences of the hash
+     */
+    public int count(long key) {
+        if (countEnabled) {
+            int mask = countKeys.length - 1;
+            for (int i = mix(key) & mask; used[i]; i = (i + 1) & mask) {
+                if (countKeys[i] == key) {
+                    return counts[i];
+                }
+            }
+            return 0;
+        }
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (keys[i] == key) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the hashes of the history as a list.
+     *
+     * @return a new list containing the hashes, in order of occurrence
+     */
+    public LinkedList<Long> toList() {
+        LinkedList<Long> list = new LinkedList<>();
+        for (int i = 0; i < size; i++) {
+            list.add(keys[i]);
+        }
+        return list;
+    }
+
+    /**
+     * Checks if this history contains the same hashes as another history, in the same order.
+     *
+     * @param obj the other object reference to compare to this history
+     * @return {@code true} if this history and the object reference are equivalent
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof PositionHistory)) {
+            return false;
+        }
+        PositionHistory history = (PositionHistory) obj;
+        return size == history.size &&
+                Arrays.equals(keys, 0, size, history.keys, 0, size);
+    }
+
+    /**
+     * Returns a hash code value for this history.
+     *
+     * @return a hash value for this history
+     */
+    @Override
+    public int hashCode() {
+        int result = 1;
+        for (int i = 0; i < size; i++) {
+            result = 31 * result + Long.hashCode(keys[i]);
+        }
+        return result;
+    }
+
+    /*
+     * returns the slot of the table of occurrences for the key, claiming a free slot if the key is not present
+     */
+    private int slot(long key) {
+        int mask = countKeys.length - 1;
+        int i = mix(key) & mask;
+        while (used[i]) {
+            if (countKeys[i] == key) {
+                return i;
+            }
+            i = (i + 1) & mask;
+        }
+        if ((usedCount + 1) * 2 > countKeys.length) {
+            rehash();
+            return slot(key);
+        }
+        used[i] = true;
+        countKeys[i] = key;
+        usedCount++;
+        return i;
+    }
+
+    /*
+     * rebuilds the table of occurrences, dropping the hashes no longer in the history and growing it if needed
+     */
+    private void rehash() {
+        final long[] oldKeys = countKeys;
+        final int[] oldCounts = counts;
+        final boolean[] oldUsed = used;
+        int live = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldUsed[i] && oldCounts[i] > 0) {
+                live++;
+            }
+        }
+        int capacity = oldKeys.length;
+        while ((live + 1) * 4 > capacity) {
+            capacity *= 2;
+        }
+        initCounts(capacity);
+        final int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldUsed[i] && oldCounts[i] > 0) {
+                int j = mix(oldKeys[i]) & mask;
+                while (used[j]) {
+                    j = (j + 1) & mask;
+                }
+                used[j] = true;
+                countKeys[j] = oldKeys[i];
+                counts[j] = oldCounts[i];
+                usedCount++;
+            }
+        }
+    }
+
+    private void initCounts(int capacity) {
+        countKeys = new long[capacity];
+        counts = new int[capacity];
+        used = new boolean[capacity];
+        usedCount = 0;
+    }
+
+    private static int mix(long key) {
+        return (int) (key ^ (key >>> 32));
+    }
+}
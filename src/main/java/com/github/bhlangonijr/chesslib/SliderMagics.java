@@ -0,0 +1,160 @@
+/*
+ * Copyright 2017 Ben-Hur Carlos Vieira Langoni Junior
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.bhlangonijr.chesslib;
+
+/**
+ * The precomputed tables used to look up the attacks of sliding pieces (bishops, rooks and queens) using <i>magic
+ * bitboards</i>.
+ * <p>
+ * For each square, only the occupancy of the squares that can block a slider (its <i>relevant mask</i>) matters. The
+ * relevant occupancy is multiplied by a <i>magic</i> number and shifted, which maps it to a unique index of a table
+ * holding the attacks for that occupancy. Hence, a lookup costs one multiplication and one array load.
+ * <p>
+ * The magic numbers have been found with a trial-and-error search over sparse pseudorandom numbers, and the tables are
+ * filled when the class is initialized using the classic slider attacks implementation of {@link Bitboard}.
+ */
+final class SliderMagics {
+
+    private static final long edgeRanks = Bitboard.rankBB[0] | Bitboard.rankBB[7];
+    private static final long edgeFiles = Bitboard.fileBB[0] | Bitboard.fileBB[7];
+
+    private static final long[] bishopMasks = new long[64];
+    private static final long[] bishopMagics = {
+            0x0051421808002640L, 0x0020010C11004A00L, 0x0844181A0940A002L, 0x00020A0200200000L,
+            0x8091104008412000L, 0x000088200802420CL, 0x4008445004100000L, 0x0030804C00A00888L,
+            0x0400200850011040L, 0x440422080801044AL, 0x2820282604620200L, 0x0800842420810080L,
+            0x0024045040092288L, 0x0000620A90040060L, 0x0000810090C42000L, 0x0000520055088804L,
+            0x6405000820044400L, 0x0082108802144400L, 0x0030001880244100L, 0x0028000082004090L,
+            0x800C840400A00008L, 0x0000408A00422044L, 0x0401002C01080310L, 0x8804200605040280L,
+            0x423004000A089020L, 0x0010080004014400L, 0x830C02001003A240L, 0x0020060020401040L,
+            0x01098C000080A002L, 0x1822220000209000L, 0x1002020044009240L, 0x00108210628200A0L,
+            0x04C4202018080200L, 0x8401242020100102L, 0x2000105001181281L, 0x0000400820120200L,
+            0x0040010010010040L, 0x0000880640020100L, 0x000408020030A080L, 0x1426008300042C00L,
+            0x1004100C3422D012L, 0x0144020202125080L, 0x0081001090000200L, 0x000A004200880800L,
+            0x000004100C000080L, 0x0001200102100100L, 0x0148300082144880L, 0x0C21040400420482L,
+            0x000082086004A020L, 0x0021012110420400L, 0x0B80002201109940L, 0x0020050020881820L,
+            0x8000521002088141L, 0x2404312081250280L, 0x0060021042408022L, 0x100822080A00202AL,
+            0x810C820850020890L, 0x10A0020051080819L, 0x0080005304020900L, 0x0800000060420208L,
+            0x0400005C40882208L, 0x2184902002028200L, 0x4800101268392410L, 0x0002080A048C0108L
+    };
+    private static final int[] bishopShifts = new int[64];
+    private static final int[] bishopOffsets = new int[64];
+    private static final long[] bishopTable;
+
+    private static final long[] rookMasks = new long[64];
+    private static final long[] rookMagics = {
+            0x0200104081002200L, 0x0240200040021004L, 0x4900082000450010L, 0x018030008008000CL,
+            0x0200020004081020L, 0x0B80034600802400L, 0x0080008001000200L, 0x4100002208824B00L,
+            0x0205800020400A89L, 0x4908401000200040L, 0x000280100120008CL, 0x0002800800100080L,
+            0x2002002004100A00L, 0x0212004810020004L, 0x004C004410080102L, 0x8002000500A40842L,
+            0x0290288000400080L, 0x022042C001201001L, 0x4020018010002088L, 0x1430008080100800L,
+            0x0100808004000800L, 0x800C004002010040L, 0x0000808001000200L, 0x00600A0000708C01L,
+            0x0080004840002000L, 0x0820004040003000L, 0x0029001100200040L, 0x2C12002200081040L,
+            0x0200080080040080L, 0x8001004900040002L, 0x0001010080800200L, 0x0058010200004894L,
+            0x00804000818000A0L, 0x0884401004402000L, 0x4400200082801000L, 0x000040120200200AL,
+            0x0010100501000800L, 0x0022904008012004L, 0x0080221084004108L, 0x044112640E000281L,
+            0x0080004020004010L, 0x200A45201000C000L, 0x2008200500110040L, 0x0008008010028008L,
+            0x1004004080080800L, 0x0002000411020008L, 0x0000010002008080L, 0x840044410086000CL,
+            0x5808310040800100L, 0x0510004000200440L, 0x0000200018450100L, 0x0001000810002300L,
+            0x0204100801000500L, 0x0000020080040080L, 0x2003080182100400L, 0x0000404100941200L,
+            0x2600402019008001L, 0x0443020020881242L, 0x2000400880120022L, 0x0010000409001021L,
+            0x0201000800041023L, 0x0129000204000801L, 0x0280410812100084L, 0x008C082504408412L
+    };
+    private static final int[] rookShifts = new int[64];
+    private static final int[] rookOffsets = new int[64];
+    private static final long[] rookTable;
+
+    static {
+        for (int sq = 0; sq < 64; sq++) {
+            bishopMasks[sq] = (Bitboard.diagA1H8Attacks[sq] | Bitboard.diagH1A8Attacks[sq]) &
+                    ~(edgeRanks | edgeFiles);
+            rookMasks[sq] = (Bitboard.fileAttacks[sq] & ~edgeRanks) | (Bitboard.rankAttacks[sq] & ~edgeFiles);
+        }
+        bishopTable = new long[initOffsets(bishopMasks, bishopShifts, bishopOffsets)];
+        rookTable = new long[initOffsets(rookMasks, rookShifts, rookOffsets)];
+        for (int sq = 0; sq < 64; sq++) {
+            fillTable(sq, false);
+            fillTable(sq, true);
+        }
+    }
+
+    private SliderMagics() {
+    }
+
+    /**
+     * Returns the bitboard of bishop attacks from the square with the given index, for the given occupancy.
+     *
+     * @param occupied the bitboard of the occupied squares
+     * @param index    the index of the square
+     * @return the bitboard of bishop attacks
+     */
+    static long getBishopAttacks(long occupied, int index) {
+        return bishopTable[bishopOffsets[index] +
+                (int) (((occupied & bishopMasks[index]) * bishopMagics[index]) >>> bishopShifts[index])];
+    }
+
+    /**
+     * Returns the bitboard of rook attacks from the square with the given index, for the given occupancy.
+     *
+     * @param occupied the bitboard of the occupied squares
+     * @param index    the index of the square
+     * @return the bitboard of rook attacks
+     */
+    static long getRookAttacks(long occupied, int index) {
+        return rookTable[rookOffsets[index] +
+                (int) (((occupied & rookMasks[index]) * rookMagics[index]) >>> rookShifts[index])];
+    }
+
+    /*
+     * computes the shift and the offset in the shared table of each square, and returns the total size of the table
+     */
+    private static int initOffsets(long[] masks, int[] shifts, int[] offsets) {
+        int size = 0;
+        for (int sq = 0; sq < 64; sq++) {
+            int bits = Long.bitCount(masks[sq]);
+            shifts[sq] = 64 - bits;
+            offsets[sq] = size;
+            size += 1 << bits;
+        }
+        return size;
+    }
+
+    /*
+     * fills the table entries of the square with the attacks of every relevant occupancy, checking the magic number
+     * maps different attacks to different entries
+     */
+    private static void fillTable(int sq, boolean rook) {
+        final Square square = Square.squareAt(sq);
+        final long mask = rook ? rookMasks[sq] : bishopMasks[sq];
+        final long magic = rook ? rookMagics[sq] : bishopMagics[sq];
+        final int shift = rook ? rookShifts[sq] : bishopShifts[sq];
+        final int offset = rook ? rookOffsets[sq] : bishopOffsets[sq];
+        final long[] table = rook ? rookTable : bishopTable;
+
+        long occ = 0L;
+        do {
+            long attacks = rook ? Bitboard.getRookAttacksClassic(occ, square) :
+                    Bitboard.getBishopAttacksClassic(occ, square);
+            int index = offset + (int) ((occ * magic) >>> shift);
+            if (table[index] != 0L && table[index] != attacks) {
+                throw new IllegalStateException("Invalid magic number for square " + square);
+            }
+            table[index] = attacks;
+            occ = (occ - mask) & mask;
+        } while (occ != 0L);
+    }
+}
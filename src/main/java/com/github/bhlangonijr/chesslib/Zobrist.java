@@ -0,0 +1,123 @@
+/*
+ * Copyright 2017 Ben-Hur Carlos Vieira Langoni Junior
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.bhlangonijr.chesslib;
+
+import com.github.bhlangonijr.chesslib.util.XorShiftRandom;
+
+/**
+ * The table of pseudorandom keys used to compute the Zobrist hashes of the positions. The hash of a position is the
+ * exclusive or of the keys of its features, hence it can be updated incrementally whenever a feature changes.
+ * <p>
+ * The keys are stored in a single array of primitives, laid out in contiguous sections: one key per piece and square,
+ * one key per side and castle right, one key per en passant target square, one key per side to move and one key per
+ * piece and count of pieces in a <i>pocket</i>. Pocket keys allow variants with drops, such as bughouse, to include the
+ * pieces in hand in the hash of a position. The key of an empty pocket is zero, so that positions without pieces in
+ * hand hash the same as the corresponding board.
+ *
+ * @see <a href="https://en.wikipedia.org/wiki/Zobrist_hashing">Zobrist hashing in Wikipedia</a>
+ */
+public final class Zobrist {
+
+    /**
+     * The maximum count of pieces of the same kind in a pocket with a distinct key. Larger counts share the key of the
+     * maximum count.
+     */
+    public static final int MAX_POCKET_COUNT = 32;
+
+    private static final long RANDOM_SEED = 49109794719L;
+    private static final int PIECES = 12;
+    private static final int SQUARES = 64;
+    private static final int CASTLE_RIGHTS = CastleRight.values().length;
+    private static final int PIECE_SQUARE_OFFSET = 0;
+    private static final int CASTLE_RIGHT_OFFSET = PIECE_SQUARE_OFFSET + PIECES * SQUARES;
+    private static final int EN_PASSANT_OFFSET = CASTLE_RIGHT_OFFSET + 2 * CASTLE_RIGHTS;
+    private static final int SIDE_OFFSET = EN_PASSANT_OFFSET + SQUARES;
+    private static final int POCKET_OFFSET = SIDE_OFFSET + 2;
+    private static final int TABLE_SIZE = POCKET_OFFSET + PIECES * (MAX_POCKET_COUNT + 1);
+
+    private static final long[] keys = new long[TABLE_SIZE];
+
+    static {
+        final XorShiftRandom random = new XorShiftRandom(RANDOM_SEED);
+        for (int i = 0; i < TABLE_SIZE; i++) {
+            keys[i] = random.nextLong();
+        }
+        for (int piece = 0; piece < PIECES; piece++) {
+            keys[POCKET_OFFSET + piece * (MAX_POCKET_COUNT + 1)] = 0L;
+        }
+    }
+
+    private Zobrist() {
+    }
+
+    /**
+     * Returns the key of a piece placed on a square.
+     *
+     * @param piece  the piece, other than {@link Piece#NONE}
+     * @param square the square, other than {@link Square#NONE}
+     * @return the key of the piece on the square
+     */
+    public static long getPieceSquareKey(Piece piece, Square square) {
+        return keys[PIECE_SQUARE_OFFSET + piece.ordinal() * SQUARES + square.ordinal()];
+    }
+
+    /**
+     * Returns the key of the castle right of a side.
+     *
+     * @param side        the side
+     * @param castleRight the castle right of the side
+     * @return the key of the castle right
+     */
+    public static long getCastleRightKey(Side side, CastleRight castleRight) {
+        return keys[CASTLE_RIGHT_OFFSET + side.ordinal() * CASTLE_RIGHTS + castleRight.ordinal()];
+    }
+
+    /**
+     * Returns the key of an en passant target square.
+     *
+     * @param enPassantTarget the en passant target square, other than {@link Square#NONE}
+     * @return the key of the en passant target square
+     */
+    public static long getEnPassantKey(Square enPassantTarget) {
+        return keys[EN_PASSANT_OFFSET + enPassantTarget.ordinal()];
+    }
+
+    /**
+     * Returns the key of the side to move.
+     *
+     * @param side the side to move
+     * @return the key of the side to move
+     */
+    public static long getSideKey(Side side) {
+        return keys[SIDE_OFFSET + side.ordinal()];
+    }
+
+    /**
+     * Returns the key of a given count of pieces of the same kind in a pocket. The key of a count of zero is zero.
+     * <p>
+     * When the count changes from {@code n} to {@code m}, a hash is updated by applying the exclusive or of both
+     * {@code getPocketKey(piece, n)} and {@code getPocketKey(piece, m)}.
+     *
+     * @param piece the piece in the pocket, other than {@link Piece#NONE}
+     * @param count the number of pieces in the pocket
+     * @return the key of the count of pieces in the pocket
+     */
+    public static long getPocketKey(Piece piece, int count) {
+        return keys[POCKET_OFFSET + piece.ordinal() * (MAX_POCKET_COUNT + 1) +
+                Math.max(0, Math.min(count, MAX_POCKET_COUNT))];
+    }
+}
@@ -21,6 +21,7 @@ import com.github.bhlangonijr.chesslib.Constants;
 import com.github.bhlangonijr.chesslib.Side;
 import com.github.bhlangonijr.chesslib.Square;
 import com.github.bhlangonijr.chesslib.move.Move;
+import com.github.bhlangonijr.chesslib.move.PackedMove;
 
 import java.util.List;
 
@@ -47,6 +48,13 @@ public class GameContext {
      * The definition of the black king shift in the default long castle move.
      */
     protected Move blackooo;
+    /*
+     * The king castle moves packed, kept in step by their setters for the packed move checks.
+     */
+    private int packedWhiteoo = PackedMove.NONE;
+    private int packedWhiteooo = PackedMove.NONE;
+    private int packedBlackoo = PackedMove.NONE;
+    private int packedBlackooo = PackedMove.NONE;
 
     /**
      * The definition of the white rook shift in the default short castle move.
@@ -300,6 +308,64 @@ public class GameContext {
                 move.equals(getBlackooo());
     }
 
+    /**
+     * Checks if the packed move is a castle move or not.
+     *
+     * @param move the packed move to check
+     * @return {@code true} if the move is a castle one
+     * @see PackedMove
+     */
+    public boolean isCastleMove(final int move) {
+        final int m = PackedMove.withoutFlags(move);
+        return m != PackedMove.NONE &&
+                (m == packedWhiteoo || m == packedWhiteooo || m == packedBlackoo || m == packedBlackooo);
+    }
+
+    /**
+     * Checks if the packed castle move is valid according to the castle rights.
+     *
+     * @param move        the packed move to check
+     * @param castleRight the castle rights to compare the move against
+     * @return {@code true} if the castle move is valid
+     * @see PackedMove
+     */
+    public boolean hasCastleRight(final int move, final CastleRight castleRight) {
+
+        final CastleRight r = castleRight;
+
+        return (CastleRight.KING_AND_QUEEN_SIDE.equals(r)) ||
+                (isKingSideCastle(move) && CastleRight.KING_SIDE.equals(r)) ||
+                (isQueenSideCastle(move) && CastleRight.QUEEN_SIDE.equals(r));
+    }
+
+    /**
+     * Checks if the packed move is a king-side (short) castle move.
+     *
+     * @param move the packed move to check
+     * @return {@code true} if the move is a king-side castle one
+     * @see PackedMove
+     */
+    public boolean isKingSideCastle(int move) {
+        final int m = PackedMove.withoutFlags(move);
+        return m != PackedMove.NONE && (m == packedWhiteoo || m == packedBlackoo);
+    }
+
+    /**
+     * Checks if the packed move is a queen-side (long) castle move.
+     *
+     * @param move the packed move to check
+     * @return {@code true} if the move is a queen-side castle one
+     * @see PackedMove
+     */
+    public boolean isQueenSideCastle(int move) {
+        final int m = PackedMove.withoutFlags(move);
+        return m != PackedMove.NONE && (m == packedWhiteooo || m == packedBlackooo);
+    }
+
+    private static int pack(Move move) {
+        return move == null ? PackedMove.NONE : PackedMove.fromMove(move);
+    }
+
     /**
      * Returns white king move in case of short castle.
      *
@@ -316,6 +382,7 @@ public class GameContext {
      */
     public void setWhiteoo(Move whiteoo) {
         this.whiteoo = whiteoo;
+        this.packedWhiteoo = pack(whiteoo);
     }
 
     /**
@@ -334,6 +401,7 @@ public class GameContext {
      */
     public void setWhiteooo(Move whiteooo) {
         this.whiteooo = whiteooo;
+        this.packedWhiteooo = pack(whiteooo);
     }
 
     /**
@@ -352,6 +420,7 @@ public class GameContext {
      */
     public void setBlackoo(Move blackoo) {
         this.blackoo = blackoo;
+        this.packedBlackoo = pack(blackoo);
     }
 
     /**
@@ -370,6 +439,7 @@ public class GameContext {
      */
     public void setBlackooo(Move blackooo) {
         this.blackooo = blackooo;
+        this.packedBlackooo = pack(blackooo);
     }
 
     /**
@@ -25,6 +25,11 @@ import com.github.bhlangonijr.chesslib.Square;
 /**
  * The definition of a chess move, that is, a piece movement from its starting square (the origin square) to a
  * destination square. Optionally, the move could specify a promotion piece used to replace a pawn in case of promotion.
+ * A move can also be the drop of a piece from outside the board on the destination square, in which case it has no
+ * origin square.
+ * <p>
+ * The move object is a wrapper of the same information encoded by a {@link PackedMove}, which is the preferred
+ * representation where allocations must be avoided.
  * <p>
  * The move is also a {@link BoardEvent}, and hence it can be passed to the observers of the
  * {@link BoardEventType#ON_MOVE} events, emitted when a move is executed on a board.
@@ -34,6 +39,7 @@ public class Move implements BoardEvent {
     private final Square from;
     private final Square to;
     private final Piece promotion;
+    private final Piece dropPiece;
     private String san;
 
     /**
@@ -59,6 +65,21 @@ public class Move implements BoardEvent {
         this.promotion = promotion;
         this.from = from;
         this.to = to;
+        this.dropPiece = Piece.NONE;
+    }
+
+    /**
+     * Creates a new drop move, defined by the dropped piece and its destination square. The origin square of the move
+     * is {@link Square#NONE}.
+     *
+     * @param dropPiece the dropped piece
+     * @param to        the destination square
+     */
+    public Move(Piece dropPiece, Square to) {
+        this.promotion = Piece.NONE;
+        this.from = Square.NONE;
+        this.to = to;
+        this.dropPiece = dropPiece;
     }
 
     /**
@@ -108,6 +129,34 @@ public class Move implements BoardEvent {
         return promotion;
     }
 
+    /**
+     * Returns the dropped piece, if the move is a drop.
+     *
+     * @return the dropped piece, or {@link Piece#NONE} if the move is not a drop
+     */
+    public Piece getDropPiece() {
+        return dropPiece;
+    }
+
+    /**
+     * Checks whether the move is the drop of a piece.
+     *
+     * @return {@code true} if the move is a drop
+     */
+    public boolean isDrop() {
+        return !Piece.NONE.equals(dropPiece);
+    }
+
+    /**
+     * Returns the move packed into a single integer.
+     *
+     * @return the packed move
+     * @see PackedMove#fromMove(Move)
+     */
+    public int toPacked() {
+        return PackedMove.fromMove(this);
+    }
+
     /**
      * Checks if this move is equivalent to another, according to its definition.
      *
@@ -122,7 +171,8 @@ public class Move implements BoardEvent {
         Move move = (Move) obj;
         return move.getFrom().equals(getFrom()) &&
                 move.getTo().equals(getTo()) &&
-                move.getPromotion().equals(getPromotion());
+                move.getPromotion().equals(getPromotion()) &&
+                move.getDropPiece().equals(getDropPiece());
 
     }
 
@@ -137,12 +187,16 @@ public class Move implements BoardEvent {
     }
 
     /**
-     * Returns a string representation of this move.
+     * Returns a string representation of this move. Drops are represented by the symbol of the dropped piece, followed
+     * by {@code @} and the destination square, e.g. {@code "N@f3"}.
      *
      * @return a string representation of this move
      */
     @Override
     public String toString() {
+        if (isDrop()) {
+            return dropPiece.getFenSymbol().toUpperCase() + "@" + to.toString().toLowerCase();
+        }
         String promo = "";
         if (!Piece.NONE.equals(promotion)) {
             promo = promotion.getFenSymbol();
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2017 Ben-Hur Carlos Vieira Langoni Junior
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.bhlangonijr.chesslib.move;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A reusable, array-backed buffer of moves packed into integers, to be filled by the overloads of the
+ * {@link MoveGenerator} methods accepting it.
+ * <p>
+ * A buffer is meant to be allocated once, for instance once per ply of a search, and then cleared and refilled for
+ * every position, so that generating moves does not allocate any object. The default capacity,
+ * {@link MoveGenerator#MAX_MOVES}, is large enough to hold all the moves of any position.
+ *
+ * @see PackedMove
+ */
+public class MoveBuffer {
+
+    private final int[] moves;
+    private int size;
+
+    /**
+     * Constructs an empty move buffer, with a capacity of {@link MoveGenerator#MAX_MOVES} moves.
+     */
+    public MoveBuffer() {
+        this(MoveGenerator.MAX_MOVES);
+    }
+
+    /**
+     * Constructs an empty move buffer with the given capacity. The generators do not check the capacity while
+     * adding moves, so it must be at least {@link MoveGenerator#MAX_MOVES}.
+     *
+     * @param capacity the maximum number of moves the buffer can hold
+     * @throws IllegalArgumentException if the capacity is below {@link MoveGenerator#MAX_MOVES}
+     */
+    public MoveBuffer(int capacity) {
+        if (capacity < MoveGenerator.MAX_MOVES) {
+            throw new IllegalArgumentException("Move buffer capacity " + capacity +
+                    " is below the maximum number of moves of a position, " + MoveGenerator.MAX_MOVES);
+        }
+        this.moves = new int[capacity];
+    }
+
+    /**
+     * Removes all the moves from the buffer. The backing array is retained.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Appends a packed move to the buffer.
+     *
+     * @param move the packed move to append
+     */
+    public void add(int move) {
+        moves[size++] = move;
+    }
+
+    /**
+     * Returns the packed move at the given position of the buffer.
+     *
+     * @param index the position of the move, between 0 (inclusive) and {@link MoveBuffer#size()} (exclusive)
+     * @return the packed move
+     */
+    public int get(int index) {
+        return moves[index];
+    }
+
+    /**
+     * Replaces the packed move at the given position of the buffer, e.g. to reorder the moves in place.
+     *
+     * @param index the position of the move, between 0 (inclusive) and {@link MoveBuffer#size()} (exclusive)
+     * @param move  the packed move to set
+     */
+    public void set(int index, int move) {
+        moves[index] = move;
+    }
+
+    /**
+     * Swaps the packed moves at two positions of the buffer.
+     *
+     * @param i the position of the first move
+     * @param j the position of the second move
+     */
+    public void swap(int i, int j) {
+        int move = moves[i];
+        moves[i] = moves[j];
+        moves[j] = move;
+    }
+
+    /**
+     * Returns the number of moves in the buffer.
+     *
+     * @return the number of moves
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks whether the buffer contains no moves.
+     *
+     * @return {@code true} if the buffer is empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Checks whether the buffer contains the given packed move, regardless of the flags of the moves.
+     *
+     * @param move the packed move to look for
+     * @return {@code true} if the move is in the buffer
+     */
+    public boolean contains(int move) {
+        int key = PackedMove.withoutFlags(move);
+        for (int i = 0; i < size; i++) {
+            if (PackedMove.withoutFlags(moves[i]) == key) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the array backing the buffer. Only the first {@link MoveBuffer#size()} elements are meaningful.
+     *
+     * @return the backing array
+     */
+    public int[] getArray() {
+        return moves;
+    }
+
+    /**
+     * Sets the number of meaningful moves in the backing array, after it has been filled directly.
+     *
+     * @param size the new number of moves
+     */
+    public void setSize(int size) {
+        this.size = size;
+    }
+
+    /**
+     * Returns the moves of the buffer as a list of move objects.
+     *
+     * @return a new list containing the move objects of the buffer, in the same order
+     */
+    public List<Move> toList() {
+        List<Move> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(PackedMove.toMove(moves[i]));
+        }
+        return list;
+    }
+
+    /**
+     * Returns a string representation of the moves of the buffer, separated by spaces.
+     *
+     * @return a string representation of the buffer
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                sb.append(' ');
+            }
+            sb.append(PackedMove.toString(moves[i]));
+        }
+        return sb.toString();
+    }
+}
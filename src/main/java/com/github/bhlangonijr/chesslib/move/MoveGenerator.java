@@ -18,7 +18,7 @@ package com.github.bhlangonijr.chesslib.move;
 
 import com.github.bhlangonijr.chesslib.*;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 
 import static com.github.bhlangonijr.chesslib.Bitboard.bitScanForward;
@@ -26,9 +26,19 @@ import static com.github.bhlangonijr.chesslib.Bitboard.extractLsb;
 
 /**
  * A handy collection of static utility methods for generating moves from a chess position.
+ * <p>
+ * Besides the methods producing lists of {@link Move} objects, an allocation-free variant of each generator is
+ * available, which appends {@link PackedMove} integers to an array provided by the caller and returns the updated
+ * number of moves in it. Arrays of size {@link MoveGenerator#MAX_MOVES} are large enough to hold all the moves of any
+ * position. The same generators are also available for a {@link MoveBuffer}, a reusable wrapper of such arrays.
  */
 public class MoveGenerator {
 
+    /**
+     * The maximum number of packed moves the generators can append to an array for a single position.
+     */
+    public static final int MAX_MOVES = 512;
+
     private MoveGenerator() {
     }
 
@@ -368,7 +378,7 @@ public class MoveGenerator {
      * @return the list of pseudo-legal moves available in the position
      */
     public static List<Move> generatePseudoLegalMoves(Board board) {
-        List<Move> moves = new LinkedList<>();
+        List<Move> moves = new ArrayList<>();
         generatePawnCaptures(board, moves);
         generatePawnMoves(board, moves);
         generateKnightMoves(board, moves);
@@ -391,7 +401,7 @@ public class MoveGenerator {
      * @return the list of pseudo-legal captures available in the position
      */
     public static List<Move> generatePseudoLegalCaptures(Board board) {
-        List<Move> moves = new LinkedList<>();
+        List<Move> moves = new ArrayList<>();
         Side other = board.getSideToMove().flip();
         generatePawnCaptures(board, moves);
         generateKnightMoves(board, moves, board.getBitboard(other));
@@ -419,4 +429,524 @@ public class MoveGenerator {
         }
     }
 
+    /**
+     * Generates all pawn captures for the playing side in the given position, and appends them packed to the array
+     * passed as an argument, starting at the given index.
+     * <p>
+     * All moves have to be considered pseudo-legal: although the captures are legal according to the standard rules of
+     * pawn movements, the resulting position might not be considered legal after they are played on the board.
+     *
+     * @param board the board from which to generate the pawn captures
+     * @param moves the array in which to append the generated packed moves
+     * @param count the number of moves already in the array
+     * @return the number of moves in the array after the generation
+     * @see PackedMove
+     */
+    public static int generatePawnCaptures(Board board, int[] moves, int count) {
+        Side side = board.getSideToMove();
+        long pieces = board.getBitboard(Piece.make(side, PieceType.PAWN));
+        long enemies = board.getBitboard(side.flip());
+        while (pieces != 0L) {
+            int sourceIndex = bitScanForward(pieces);
+            pieces = extractLsb(pieces);
+            Square sqSource = Square.squareAt(sourceIndex);
+            long attacks = Bitboard.getPawnCaptures(side, sqSource,
+                    board.getBitboard(), board.getEnPassantTarget()) & ~board.getBitboard(side);
+            while (attacks != 0L) {
+                int targetIndex = bitScanForward(attacks);
+                attacks = extractLsb(attacks);
+                Square sqTarget = Square.squareAt(targetIndex);
+                int flags = (enemies & sqTarget.getBitboard()) != 0L ?
+                        PackedMove.FLAG_CAPTURE : PackedMove.FLAG_CAPTURE | PackedMove.FLAG_EN_PASSANT;
+                count = addPromotions(moves, count, side, sqTarget, sqSource, flags);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Generates all pawn moves, excluding captures, for the playing side in the given position, and appends them packed
+     * to the array passed as an argument, starting at the given index.
+     * <p>
+     * All moves have to be considered pseudo-legal: although the moves are legal according to the standard rules of
+     * pawn movements, the resulting position might not be considered legal after they are played on the board.
+     *
+     * @param board the board from which to generate the pawn moves
+     * @param moves the array in which to append the generated packed moves
+     * @param count the number of moves already in the array
+     * @return the number of moves in the array after the generation
+     * @see PackedMove
+     */
+    public static int generatePawnMoves(Board board, int[] moves, int count) {
+        Side side = board.getSideToMove();
+        long pieces = board.getBitboard(Piece.make(side, PieceType.PAWN));
+        while (pieces != 0L) {
+            int sourceIndex = bitScanForward(pieces);
+            pieces = extractLsb(pieces);
+            Square sqSource = Square.squareAt(sourceIndex);
+            long attacks = Bitboard.getPawnMoves(side, sqSource, board.getBitboard());
+            while (attacks != 0L) {
+                int targetIndex = bitScanForward(attacks);
+                attacks = extractLsb(attacks);
+                Square sqTarget = Square.squareAt(targetIndex);
+                count = addPromotions(moves, count, side, sqTarget, sqSource, 0);
+            }
+        }
+        return count;
+    }
+
+    private static int addPromotions(int[] moves, int count, Side side, Square sqTarget, Square sqSource, int flags) {
+
+        if (Side.WHITE.equals(side) && Rank.RANK_8.equals(sqTarget.getRank())) {
+            moves[count++] = PackedMove.encode(sqSource, sqTarget, Piece.WHITE_QUEEN, flags);
+            moves[count++] = PackedMove.encode(sqSource, sqTarget, Piece.WHITE_ROOK, flags);
+            moves[count++] = PackedMove.encode(sqSource, sqTarget, Piece.WHITE_BISHOP, flags);
+            moves[count++] = PackedMove.encode(sqSource, sqTarget, Piece.WHITE_KNIGHT, flags);
+        } else if (Side.BLACK.equals(side) && Rank.RANK_1.equals(sqTarget.getRank())) {
+            moves[count++] = PackedMove.encode(sqSource, sqTarget, Piece.BLACK_QUEEN, flags);
+            moves[count++] = PackedMove.encode(sqSource, sqTarget, Piece.BLACK_ROOK, flags);
+            moves[count++] = PackedMove.encode(sqSource, sqTarget, Piece.BLACK_BISHOP, flags);
+            moves[count++] = PackedMove.encode(sqSource, sqTarget, Piece.BLACK_KNIGHT, flags);
+        } else {
+            moves[count++] = PackedMove.encode(sqSource, sqTarget, Piece.NONE, flags);
+        }
+        return count;
+    }
+
+    /**
+     * Generates all knight moves for the playing side in the given position, according to a bitboard mask used to
+     * specify the allowed target squares on the board. The generated moves are appended packed to the array passed as
+     * an argument, starting at the given index.
+     * <p>
+     * All moves have to be considered pseudo-legal: although the moves are legal according to the standard rules of
+     * knight movements, the resulting position might not be considered legal after they are played on the board.
+     *
+     * @param board the board from which to generate the knight moves
+     * @param moves the array in which to append the generated packed moves
+     * @param count the number of moves already in the array
+     * @param mask  bitboard mask of allowed targets
+     * @return the number of moves in the array after the generation
+     * @see PackedMove
+     */
+    public static int generateKnightMoves(Board board, int[] moves, int count, long mask) {
+        return generatePieceMoves(board, PieceType.KNIGHT, moves, count, mask);
+    }
+
+    /**
+     * Generates all bishop moves for the playing side in the given position, according to a bitboard mask used to
+     * specify the allowed target squares on the board. The generated moves are appended packed to the array passed as
+     * an argument, starting at the given index.
+     * <p>
+     * All moves have to be considered pseudo-legal: although the moves are legal according to the standard rules of
+     * bishop movements, the resulting position might not be considered legal after they are played on the board.
+     *
+     * @param board the board from which to generate the bishop moves
+     * @param moves the array in which to append the generated packed moves
+     * @param count the number of moves already in the array
+     * @param mask  bitboard mask of allowed targets
+     * @return the number of moves in the array after the generation
+     * @see PackedMove
+     */
+    public static int generateBishopMoves(Board board, int[] moves, int count, long mask) {
+        return generatePieceMoves(board, PieceType.BISHOP, moves, count, mask);
+    }
+
+    /**
+     * Generates all rook moves for the playing side in the given position, according to a bitboard mask used to specify
+     * the allowed target squares on the board. The generated moves are appended packed to the array passed as an
+     * argument, starting at the given index.
+     * <p>
+     * All moves have to be considered pseudo-legal: although the moves are legal according to the standard rules of
+     * rook movements, the resulting position might not be considered legal after they are played on the board.
+     *
+     * @param board the board from which to generate the rook moves
+     * @param moves the array in which to append the generated packed moves
+     * @param count the number of moves already in the array
+     * @param mask  bitboard mask of allowed targets
+     * @return the number of moves in the array after the generation
+     * @see PackedMove
+     */
+    public static int generateRookMoves(Board board, int[] moves, int count, long mask) {
+        return generatePieceMoves(board, PieceType.ROOK, moves, count, mask);
+    }
+
+    /**
+     * Generates all queen moves for the playing side in the given position, according to a bitboard mask used to
+     * specify the allowed target squares on the board. The generated moves are appended packed to the array passed as
+     * an argument, starting at the given index.
+     * <p>
+     * All moves have to be considered pseudo-legal: although the moves are legal according to the standard rules of
+     * queen movements, the resulting position might not be considered legal after they are played on the board.
+     *
+     * @param board the board from which to generate the queen moves
+     * @param moves the array in which to append the generated packed moves
+     * @param count the number of moves already in the array
+     * @param mask  bitboard mask of allowed targets
+     * @return the number of moves in the array after the generation
+     * @see PackedMove
+     */
+    public static int generateQueenMoves(Board board, int[] moves, int count, long mask) {
+        return generatePieceMoves(board, PieceType.QUEEN, moves, count, mask);
+    }
+
+    /**
+     * Generates all king moves for the playing side in the given position, according to a bitboard mask used to specify
+     * the allowed target squares on the board. The generated moves are appended packed to the array passed as an
+     * argument, starting at the given index.
+     * <p>
+     * All moves have to be considered pseudo-legal: although the moves are legal according to the standard rules of
+     * king movements, the resulting position might not be considered legal after they are played on the board.
+     *
+     * @param board the board from which to generate the king moves
+     * @param moves the array in which to append the generated packed moves
+     * @param count the number of moves already in the array
+     * @param mask  bitboard mask of allowed targets
+     * @return the number of moves in the array after the generation
+     * @see PackedMove
+     */
+    public static int generateKingMoves(Board board, int[] moves, int count, long mask) {
+        return generatePieceMoves(board, PieceType.KING, moves, count, mask);
+    }
+
+    private static int generatePieceMoves(Board board, PieceType type, int[] moves, int count, long mask) {
+        Side side = board.getSideToMove();
+        long occupied = board.getBitboard();
+        long enemies = board.getBitboard(side.flip());
+        long pieces = board.getBitboard(Piece.make(side, type));
+        while (pieces != 0L) {
+            int sourceIndex = bitScanForward(pieces);
+            pieces = extractLsb(pieces);
+            Square sqSource = Square.squareAt(sourceIndex);
+            long attacks;
+            switch (type) {
+                case KNIGHT:
+                    attacks = Bitboard.getKnightAttacks(sqSource, mask);
+                    break;
+                case BISHOP:
+                    attacks = Bitboard.getBishopAttacks(occupied, sqSource) & mask;
+                    break;
+                case ROOK:
+                    attacks = Bitboard.getRookAttacks(occupied, sqSource) & mask;
+                    break;
+                case QUEEN:
+                    attacks = Bitboard.getQueenAttacks(occupied, sqSource) & mask;
+                    break;
+                default:
+                    attacks = Bitboard.getKingAttacks(sqSource, mask);
+                    break;
+            }
+            while (attacks != 0L) {
+                int attackIndex = bitScanForward(attacks);
+                attacks = extractLsb(attacks);
+                int move = sourceIndex | (attackIndex << 6);
+                moves[count++] = (enemies & (1L << attackIndex)) != 0L ? move | PackedMove.FLAG_CAPTURE : move;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Generates all castle moves for the playing side in the given position, and appends them packed to the array
+     * passed as an argument, starting at the given index. Castle moves are encoded as the move of the king.
+     *
+     * @param board the board from which to generate the castle moves
+     * @param moves the array in which to append the generated packed moves
+     * @param count the number of moves already in the array
+     * @return the number of moves in the array after the generation
+     * @see PackedMove
+     */
+    public static int generateCastleMoves(Board board, int[] moves, int count) {
+        Side side = board.getSideToMove();
+        if (board.isKingAttacked()) {
+            return count;
+        }
+        if (board.getCastleRight(side).equals(CastleRight.KING_AND_QUEEN_SIDE) ||
+                (board.getCastleRight(side).equals(CastleRight.KING_SIDE))) {
+            if ((board.getBitboard() & board.getContext().getooAllSquaresBb(side)) == 0L) {
+                if (!board.isSquareAttackedBy(board.getContext().getooSquares(side), side.flip())) {
+                    moves[count++] = PackedMove.fromMove(board.getContext().getoo(side)) | PackedMove.FLAG_CASTLE;
+                }
+            }
+        }
+        if (board.getCastleRight(side).equals(CastleRight.KING_AND_QUEEN_SIDE) ||
+                (board.getCastleRight(side).equals(CastleRight.QUEEN_SIDE))) {
+            if ((board.getBitboard() & board.getContext().getoooAllSquaresBb(side)) == 0L) {
+                if (!board.isSquareAttackedBy(board.getContext().getoooSquares(side), side.flip())) {
+                    moves[count++] = PackedMove.fromMove(board.getContext().getooo(side)) | PackedMove.FLAG_CASTLE;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Generates all possible pseudo-legal moves for the given position, and writes them packed to the array passed as
+     * an argument, starting from its first element.
+     * <p>
+     * A move is considered pseudo-legal when it is legal according to the standard rules of chess piece movements, but
+     * the resulting position might not be legal because of other rules (e.g. checks to the king).
+     *
+     * @param board the board from which to generate the pseudo-legal moves
+     * @param moves the array in which to write the generated packed moves, of size {@link MoveGenerator#MAX_MOVES}
+     * @return the number of pseudo-legal moves written in the array
+     * @see PackedMove
+     */
+    public static int generatePseudoLegalMoves(Board board, int[] moves) {
+        long mask = ~board.getBitboard(board.getSideToMove());
+        int count = generatePawnCaptures(board, moves, 0);
+        count = generatePawnMoves(board, moves, count);
+        count = generateKnightMoves(board, moves, count, mask);
+        count = generateBishopMoves(board, moves, count, mask);
+        count = generateRookMoves(board, moves, count, mask);
+        count = generateQueenMoves(board, moves, count, mask);
+        count = generateKingMoves(board, moves, count, mask);
+        return generateCastleMoves(board, moves, count);
+    }
+
+    /**
+     * Generates all possible pseudo-legal captures for the given position, and writes them packed to the array passed
+     * as an argument, starting from its first element.
+     * <p>
+     * A move is considered a pseudo-legal capture when it takes an enemy piece and it is legal according to the
+     * standard rules of chess piece movements, but the resulting position might not be legal because of other rules
+     * (e.g. checks to the king).
+     *
+     * @param board the board from which to generate the pseudo-legal captures
+     * @param moves the array in which to write the generated packed moves, of size {@link MoveGenerator#MAX_MOVES}
+     * @return the number of pseudo-legal captures written in the array
+     * @see PackedMove
+     */
+    public static int generatePseudoLegalCaptures(Board board, int[] moves) {
+        long mask = board.getBitboard(board.getSideToMove().flip());
+        int count = generatePawnCaptures(board, moves, 0);
+        count = generateKnightMoves(board, moves, count, mask);
+        count = generateBishopMoves(board, moves, count, mask);
+        count = generateRookMoves(board, moves, count, mask);
+        count = generateQueenMoves(board, moves, count, mask);
+        return generateKingMoves(board, moves, count, mask);
+    }
+
+    /**
+     * Generates all possible legal moves for the position according to the standard rules of chess, and writes them
+     * packed to the array passed as an argument, starting from its first element.
+     *
+     * @param board the board from which to generate the legal moves
+     * @param moves the array in which to write the generated packed moves, of size {@link MoveGenerator#MAX_MOVES}
+     * @return the number of legal moves written in the array
+     * @throws MoveGeneratorException if it is not possible to generate the moves
+     * @see PackedMove
+     */
+    public static int generateLegalMoves(Board board, int[] moves) throws MoveGeneratorException {
+        try {
+            int count = generatePseudoLegalMoves(board, moves);
+            int legal = 0;
+            for (int i = 0; i < count; i++) {
+                if (board.isMoveLegal(moves[i], false)) {
+                    moves[legal++] = moves[i];
+                }
+            }
+            return legal;
+        } catch (Exception e) {
+            throw new MoveGeneratorException("Couldn't generate Legal moves: ", e);
+        }
+    }
+
+    /**
+     * Generates all pawn captures for the playing side in the given position, and appends them to the move buffer
+     * passed as an argument.
+     *
+     * @param board the board from which to generate the pawn captures
+     * @param moves the move buffer in which to append the generated moves
+     * @see MoveGenerator#generatePawnCaptures(Board, int[], int)
+     */
+    public static void generatePawnCaptures(Board board, MoveBuffer moves) {
+        moves.setSize(generatePawnCaptures(board, moves.getArray(), moves.size()));
+    }
+
+    /**
+     * Generates all pawn moves, excluding captures, for the playing side in the given position, and appends them to
+     * the move buffer passed as an argument.
+     *
+     * @param board the board from which to generate the pawn moves
+     * @param moves the move buffer in which to append the generated moves
+     * @see MoveGenerator#generatePawnMoves(Board, int[], int)
+     */
+    public static void generatePawnMoves(Board board, MoveBuffer moves) {
+        moves.setSize(generatePawnMoves(board, moves.getArray(), moves.size()));
+    }
+
+    /**
+     * Generates all knight moves for the playing side in the given position, according to a bitboard mask used to
+     * specify the allowed target squares on the board, and appends them to the move buffer passed as an argument.
+     *
+     * @param board the board from which to generate the knight moves
+     * @param moves the move buffer in which to append the generated moves
+     * @param mask  bitboard mask of allowed targets
+     * @see MoveGenerator#generateKnightMoves(Board, int[], int, long)
+     */
+    public static void generateKnightMoves(Board board, MoveBuffer moves, long mask) {
+        moves.setSize(generateKnightMoves(board, moves.getArray(), moves.size(), mask));
+    }
+
+    /**
+     * Generates all knight moves for the playing side in the given position, and appends them to the move buffer passed
+     * as an argument.
+     *
+     * @param board the board from which to generate the knight moves
+     * @param moves the move buffer in which to append the generated moves
+     * @see MoveGenerator#generateKnightMoves(Board, MoveBuffer, long)
+     */
+    public static void generateKnightMoves(Board board, MoveBuffer moves) {
+        generateKnightMoves(board, moves, ~board.getBitboard(board.getSideToMove()));
+    }
+
+    /**
+     * Generates all bishop moves for the playing side in the given position, according to a bitboard mask used to
+     * specify the allowed target squares on the board, and appends them to the move buffer passed as an argument.
+     *
+     * @param board the board from which to generate the bishop moves
+     * @param moves the move buffer in which to append the generated moves
+     * @param mask  bitboard mask of allowed targets
+     * @see MoveGenerator#generateBishopMoves(Board, int[], int, long)
+     */
+    public static void generateBishopMoves(Board board, MoveBuffer moves, long mask) {
+        moves.setSize(generateBishopMoves(board, moves.getArray(), moves.size(), mask));
+    }
+
+    /**
+     * Generates all bishop moves for the playing side in the given position, and appends them to the move buffer passed
+     * as an argument.
+     *
+     * @param board the board from which to generate the bishop moves
+     * @param moves the move buffer in which to append the generated moves
+     * @see MoveGenerator#generateBishopMoves(Board, MoveBuffer, long)
+     */
+    public static void generateBishopMoves(Board board, MoveBuffer moves) {
+        generateBishopMoves(board, moves, ~board.getBitboard(board.getSideToMove()));
+    }
+
+    /**
+     * Generates all rook moves for the playing side in the given position, according to a bitboard mask used to
+     * specify the allowed target squares on the board, and appends them to the move buffer passed as an argument.
+     *
+     * @param board the board from which to generate the rook moves
+     * @param moves the move buffer in which to append the generated moves
+     * @param mask  bitboard mask of allowed targets
+     * @see MoveGenerator#generateRookMoves(Board, int[], int, long)
+     */
+    public static void generateRookMoves(Board board, MoveBuffer moves, long mask) {
+        moves.setSize(generateRookMoves(board, moves.getArray(), moves.size(), mask));
+    }
+
+    /**
+     * Generates all rook moves for the playing side in the given position, and appends them to the move buffer passed
+     * as an argument.
+     *
+     * @param board the board from which to generate the rook moves
+     * @param moves the move buffer in which to append the generated moves
+     * @see MoveGenerator#generateRookMoves(Board, MoveBuffer, long)
+     */
+    public static void generateRookMoves(Board board, MoveBuffer moves) {
+        generateRookMoves(board, moves, ~board.getBitboard(board.getSideToMove()));
+    }
+
+    /**
+     * Generates all queen moves for the playing side in the given position, according to a bitboard mask used to
+     * specify the allowed target squares on the board, and appends them to the move buffer passed as an argument.
+     *
+     * @param board the board from which to generate the queen moves
+     * @param moves the move buffer in which to append the generated moves
+     * @param mask  bitboard mask of allowed targets
+     * @see MoveGenerator#generateQueenMoves(Board, int[], int, long)
+     */
+    public static void generateQueenMoves(Board board, MoveBuffer moves, long mask) {
+        moves.setSize(generateQueenMoves(board, moves.getArray(), moves.size(), mask));
+    }
+
+    /**
+     * Generates all queen moves for the playing side in the given position, and appends them to the move buffer passed
+     * as an argument.
+     *
+     * @param board the board from which to generate the queen moves
+     * @param moves the move buffer in which to append the generated moves
+     * @see MoveGenerator#generateQueenMoves(Board, MoveBuffer, long)
+     */
+    public static void generateQueenMoves(Board board, MoveBuffer moves) {
+        generateQueenMoves(board, moves, ~board.getBitboard(board.getSideToMove()));
+    }
+
+    /**
+     * Generates all king moves for the playing side in the given position, according to a bitboard mask used to
+     * specify the allowed target squares on the board, and appends them to the move buffer passed as an argument.
+     *
+     * @param board the board from which to generate the king moves
+     * @param moves the move buffer in which to append the generated moves
+     * @param mask  bitboard mask of allowed targets
+     * @see MoveGenerator#generateKingMoves(Board, int[], int, long)
+     */
+    public static void generateKingMoves(Board board, MoveBuffer moves, long mask) {
+        moves.setSize(generateKingMoves(board, moves.getArray(), moves.size(), mask));
+    }
+
+    /**
+     * Generates all king moves for the playing side in the given position, and appends them to the move buffer passed
+     * as an argument.
+     *
+     * @param board the board from which to generate the king moves
+     * @param moves the move buffer in which to append the generated moves
+     * @see MoveGenerator#generateKingMoves(Board, MoveBuffer, long)
+     */
+    public static void generateKingMoves(Board board, MoveBuffer moves) {
+        generateKingMoves(board, moves, ~board.getBitboard(board.getSideToMove()));
+    }
+
+    /**
+     * Generates all castle moves for the playing side in the given position, and appends them to the move buffer
+     * passed as an argument.
+     *
+     * @param board the board from which to generate the castle moves
+     * @param moves the move buffer in which to append the generated moves
+     * @see MoveGenerator#generateCastleMoves(Board, int[], int)
+     */
+    public static void generateCastleMoves(Board board, MoveBuffer moves) {
+        moves.setSize(generateCastleMoves(board, moves.getArray(), moves.size()));
+    }
+
+    /**
+     * Clears the move buffer passed as an argument and fills it with all possible pseudo-legal moves for the given
+     * position.
+     *
+     * @param board the board from which to generate the pseudo-legal moves
+     * @param moves the move buffer to fill
+     * @see MoveGenerator#generatePseudoLegalMoves(Board, int[])
+     */
+    public static void generatePseudoLegalMoves(Board board, MoveBuffer moves) {
+        moves.setSize(generatePseudoLegalMoves(board, moves.getArray()));
+    }
+
+    /**
+     * Clears the move buffer passed as an argument and fills it with all possible pseudo-legal captures for the given
+     * position.
+     *
+     * @param board the board from which to generate the pseudo-legal captures
+     * @param moves the move buffer to fill
+     * @see MoveGenerator#generatePseudoLegalCaptures(Board, int[])
+     */
+    public static void generatePseudoLegalCaptures(Board board, MoveBuffer moves) {
+        moves.setSize(generatePseudoLegalCaptures(board, moves.getArray()));
+    }
+
+    /**
+     * Clears the move buffer passed as an argument and fills it with all possible legal moves for the position
+     * according to the standard rules of chess.
+     *
+     * @param board the board from which to generate the legal moves
+     * @param moves the move buffer to fill
+     * @throws MoveGeneratorException if it is not possible to generate the moves
+     * @see MoveGenerator#generateLegalMoves(Board, int[])
+     */
+    public static void generateLegalMoves(Board board, MoveBuffer moves) throws MoveGeneratorException {
+        moves.setSize(generateLegalMoves(board, moves.getArray()));
+    }
+
 }
@@ -182,7 +182,7 @@ public class MoveList extends LinkedList<Move> implements List<Move> {
         }
 
 
-        Piece captured = board.getBackup().getLast().getCapturedPiece();
+        Piece captured = board.getBackupStack().getCapturedPiece(board.getBackupStack().size() - 1);
         boolean isCapture = !captured.equals(Piece.NONE);
         if (isCapture) {
             if (!ambResolved &&
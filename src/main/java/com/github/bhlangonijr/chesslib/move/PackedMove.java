@@ -0,0 +1,278 @@
+/*
+ * Copyright 2017 Ben-Hur Carlos Vieira Langoni Junior
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.bhlangonijr.chesslib.move;
+
+import com.github.bhlangonijr.chesslib.Piece;
+import com.github.bhlangonijr.chesslib.Square;
+
+/**
+ * A collection of static utility methods to handle moves packed into a single 32-bit integer, an allocation-free
+ * alternative to {@link Move} objects meant for move generation and search.
+ * <p>
+ * The layout of a packed move is the following:
+ * <ul>
+ *     <li>bits 0-5: the index of the origin square;</li>
+ *     <li>bits 6-11: the index of the destination square;</li>
+ *     <li>bits 12-15: the promotion piece, as the ordinal of the {@link Piece} plus one, or 0 if none;</li>
+ *     <li>bits 16-19: the dropped piece, as the ordinal of the {@link Piece} plus one, or 0 if the move is not a
+ *     drop;</li>
+ *     <li>bits 20-23: informational flags, such as {@link PackedMove#FLAG_CAPTURE}.</li>
+ * </ul>
+ * Drops place a piece from outside the board (e.g. from a bughouse pocket) on the destination square, and their
+ * origin square is meaningless. Flags are filled in by the move generator and are never required to play a move: two
+ * packed moves describe the same move when they are equal after {@link PackedMove#withoutFlags(int)}.
+ */
+public final class PackedMove {
+
+    /**
+     * The packed value representing no move.
+     */
+    public static final int NONE = 0;
+
+    /**
+     * Flag of moves capturing an enemy piece.
+     */
+    public static final int FLAG_CAPTURE = 1 << 20;
+    /**
+     * Flag of en passant captures.
+     */
+    public static final int FLAG_EN_PASSANT = 1 << 21;
+    /**
+     * Flag of castle moves, encoded as the move of the king.
+     */
+    public static final int FLAG_CASTLE = 1 << 22;
+
+    private static final int SQUARE_MASK = 0x3F;
+    private static final int PIECE_MASK = 0xF;
+    private static final int TO_SHIFT = 6;
+    private static final int PROMOTION_SHIFT = 12;
+    private static final int DROP_SHIFT = 16;
+    private static final int FLAGS_MASK = 0xF << 20;
+
+    private static final Piece[] pieces = Piece.values();
+
+    private PackedMove() {
+    }
+
+    /**
+     * Packs a move from its origin and destination squares.
+     *
+     * @param from the origin square
+     * @param to   the destination square
+     * @return the packed move
+     */
+    public static int encode(Square from, Square to) {
+        return from.ordinal() | (to.ordinal() << TO_SHIFT);
+    }
+
+    /**
+     * Packs a move from its origin and destination squares, and a promotion piece.
+     *
+     * @param from      the origin square
+     * @param to        the destination square
+     * @param promotion the promotion piece, or {@link Piece#NONE} if the move is not a promotion
+     * @return the packed move
+     */
+    public static int encode(Square from, Square to, Piece promotion) {
+        return encode(from, to) | pieceBits(promotion) << PROMOTION_SHIFT;
+    }
+
+    /**
+     * Packs a move from its origin and destination squares, a promotion piece and a set of flags.
+     *
+     * @param from      the origin square
+     * @param to        the destination square
+     * @param promotion the promotion piece, or {@link Piece#NONE} if the move is not a promotion
+     * @param flags     the flags of the move, e.g. {@link PackedMove#FLAG_CAPTURE}
+     * @return the packed move
+     */
+    public static int encode(Square from, Square to, Piece promotion, int flags) {
+        return encode(from, to, promotion) | (flags & FLAGS_MASK);
+    }
+
+    /**
+     * Packs the drop of a piece on the destination square.
+     *
+     * @param piece the dropped piece
+     * @param to    the destination square
+     * @return the packed move
+     */
+    public static int encodeDrop(Piece piece, Square to) {
+        return (to.ordinal() << TO_SHIFT) | pieceBits(piece) << DROP_SHIFT;
+    }
+
+    /**
+     * Packs the move object provided in input.
+     *
+     * @param move the move to pack
+     * @return the packed move, or {@link PackedMove#NONE} if the move is null or is missing a square
+     */
+    public static int fromMove(Move move) {
+        if (move == null || Square.NONE.equals(move.getTo())) {
+            return NONE;
+        }
+        if (move.isDrop()) {
+            return encodeDrop(move.getDropPiece(), move.getTo());
+        }
+        if (Square.NONE.equals(move.getFrom())) {
+            return NONE;
+        }
+        return encode(move.getFrom(), move.getTo(), move.getPromotion());
+    }
+
+    /**
+     * Creates the move object of a packed move. Flags are not part of the move object.
+     *
+     * @param move the packed move
+     * @return the move object
+     */
+    public static Move toMove(int move) {
+        if (isDrop(move)) {
+            return new Move(getDropPiece(move), getTo(move));
+        }
+        return new Move(getFrom(move), getTo(move), getPromotion(move));
+    }
+
+    /**
+     * Returns the origin square of a packed move.
+     *
+     * @param move the packed move
+     * @return the origin square, or {@link Square#NONE} if the move is a drop
+     */
+    public static Square getFrom(int move) {
+        return isDrop(move) ? Square.NONE : Square.squareAt(getFromIndex(move));
+    }
+
+    /**
+     * Returns the index of the origin square of a packed move.
+     *
+     * @param move the packed move
+     * @return the index of the origin square
+     */
+    public static int getFromIndex(int move) {
+        return move & SQUARE_MASK;
+    }
+
+    /**
+     * Returns the destination square of a packed move.
+     *
+     * @param move the packed move
+     * @return the destination square
+     */
+    public static Square getTo(int move) {
+        return Square.squareAt(getToIndex(move));
+    }
+
+    /**
+     * Returns the index of the destination square of a packed move.
+     *
+     * @param move the packed move
+     * @return the index of the destination square
+     */
+    public static int getToIndex(int move) {
+        return (move >>> TO_SHIFT) & SQUARE_MASK;
+    }
+
+    /**
+     * Returns the promotion piece of a packed move.
+     *
+     * @param move the packed move
+     * @return the promotion piece, or {@link Piece#NONE} if the move is not a promotion
+     */
+    public static Piece getPromotion(int move) {
+        return bitsPiece((move >>> PROMOTION_SHIFT) & PIECE_MASK);
+    }
+
+    /**
+     * Returns the piece dropped by a packed move.
+     *
+     * @param move the packed move
+     * @return the dropped piece, or {@link Piece#NONE} if the move is not a drop
+     */
+    public static Piece getDropPiece(int move) {
+        return bitsPiece((move >>> DROP_SHIFT) & PIECE_MASK);
+    }
+
+    /**
+     * Checks whether a packed move is a promotion.
+     *
+     * @param move the packed move
+     * @return {@code true} if the move is a promotion
+     */
+    public static boolean isPromotion(int move) {
+        return ((move >>> PROMOTION_SHIFT) & PIECE_MASK) != 0;
+    }
+
+    /**
+     * Checks whether a packed move is a drop.
+     *
+     * @param move the packed move
+     * @return {@code true} if the move is a drop
+     */
+    public static boolean isDrop(int move) {
+        return ((move >>> DROP_SHIFT) & PIECE_MASK) != 0;
+    }
+
+    /**
+     * Returns the flags of a packed move.
+     *
+     * @param move the packed move
+     * @return the flags of the move
+     */
+    public static int getFlags(int move) {
+        return move & FLAGS_MASK;
+    }
+
+    /**
+     * Checks whether a packed move has the given flag set.
+     *
+     * @param move the packed move
+     * @param flag the flag to check, e.g. {@link PackedMove#FLAG_CAPTURE}
+     * @return {@code true} if the flag is set
+     */
+    public static boolean hasFlag(int move, int flag) {
+        return (move & flag) != 0;
+    }
+
+    /**
+     * Returns the packed move without its flags, that is, only the information needed to play it.
+     *
+     * @param move the packed move
+     * @return the packed move without flags
+     */
+    public static int withoutFlags(int move) {
+        return move & ~FLAGS_MASK;
+    }
+
+    /**
+     * Returns a string representation of a packed move, in the same format of {@link Move#toString()}.
+     *
+     * @param move the packed move
+     * @return a string representation of the move
+     */
+    public static String toString(int move) {
+        return toMove(move).toString();
+    }
+
+    private static int pieceBits(Piece piece) {
+        return piece == null || Piece.NONE.equals(piece) ? 0 : piece.ordinal() + 1;
+    }
+
+    private static Piece bitsPiece(int bits) {
+        return bits == 0 ? Piece.NONE : pieces[bits - 1];
+    }
+}
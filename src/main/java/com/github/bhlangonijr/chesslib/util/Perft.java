@@ -0,0 +1,153 @@
+/*
+ * Copyright 2017 Ben-Hur Carlos Vieira Langoni Junior
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.bhlangonijr.chesslib.util;
+
+import com.github.bhlangonijr.chesslib.Board;
+import com.github.bhlangonijr.chesslib.move.MoveBuffer;
+import com.github.bhlangonijr.chesslib.move.MoveGenerator;
+import com.github.bhlangonijr.chesslib.move.PackedMove;
+
+/**
+ * A performance test (<i>perft</i>) driver, which counts the leaf nodes of the tree of legal moves up to a given depth.
+ * The node counts of well-known positions are published, hence perft both validates the move generator and measures
+ * the speed of move generation and execution.
+ * <p>
+ * When run as a program without arguments, the driver computes the node counts of a suite of reference positions and
+ * compares them with the expected ones, exiting with a non-zero status in case of mismatches. Alternatively, a position
+ * in Forsyth-Edwards Notation (FEN) and a depth can be provided, and the node count of each legal move is printed.
+ */
+public final class Perft {
+
+    /**
+     * The reference positions of the suite, each one defined by its FEN, a depth and the expected node count.
+     */
+    private static final String[][] suite = {
+            {"rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1", "5", "4865609"},
+            {"r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1", "4", "4085603"},
+            {"8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1", "5", "674624"},
+            {"r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1", "4", "422333"},
+            {"rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8", "4", "2103487"},
+            {"r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10", "4", "3894594"}
+    };
+
+    private final Board board;
+    private final MoveBuffer[] buffers;
+
+    /**
+     * Constructs a new perft driver for the given board, able to search up to the given depth. The board is used to
+     * play and revert the moves, and it is left in its original position after each count.
+     *
+     * @param board    the board holding the root position
+     * @param maxDepth the maximum depth of the searches
+     */
+    public Perft(Board board, int maxDepth) {
+        this.board = board;
+        this.buffers = new MoveBuffer[maxDepth + 1];
+        for (int i = 0; i <= maxDepth; i++) {
+            buffers[i] = new MoveBuffer();
+        }
+    }
+
+    /**
+     * Counts the leaf nodes of the tree of legal moves of the board position, up to the given depth.
+     *
+     * @param depth the depth of the search, not greater than the maximum depth of the driver
+     * @return the number of leaf nodes
+     */
+    public long count(int depth) {
+        if (depth == 0) {
+            return 1L;
+        }
+        MoveBuffer moves = buffers[depth];
+        MoveGenerator.generateLegalMoves(board, moves);
+        if (depth == 1) {
+            return moves.size();
+        }
+        long nodes = 0L;
+        for (int i = 0; i < moves.size(); i++) {
+            board.doMove(moves.get(i));
+            nodes += count(depth - 1);
+            board.undoPackedMove();
+        }
+        return nodes;
+    }
+
+    /**
+     * Counts the leaf nodes of the tree of legal moves of the board position up to the given depth, printing the count
+     * of the subtree of each legal move of the root position.
+     *
+     * @param depth the depth of the search, greater than zero and not greater than the maximum depth of the driver
+     * @return the number of leaf nodes
+     */
+    public long divide(int depth) {
+        MoveBuffer moves = new MoveBuffer();
+        MoveGenerator.generateLegalMoves(board, moves);
+        long nodes = 0L;
+        for (int i = 0; i < moves.size(); i++) {
+            board.doMove(moves.get(i));
+            long count = count(depth - 1);
+            board.undoPackedMove();
+            System.out.println(PackedMove.toString(moves.get(i)) + ": " + count);
+            nodes += count;
+        }
+        return nodes;
+    }
+
+    /**
+     * Runs the perft driver. Without arguments, it runs the suite of reference positions; otherwise, the arguments are
+     * a position in FEN and a depth, and the node count of each legal move of the position is printed.
+     *
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) {
+        if (args.length >= 2) {
+            Board board = new Board();
+            board.loadFromFen(args[0]);
+            int depth = Integer.parseInt(args[1]);
+            long start = System.nanoTime();
+            long nodes = new Perft(board, depth).divide(depth);
+            System.out.println("Nodes: " + nodes + report(nodes, System.nanoTime() - start));
+            return;
+        }
+        boolean failed = false;
+        long totalNodes = 0L;
+        long totalTime = 0L;
+        for (String[] test : suite) {
+            Board board = new Board();
+            board.loadFromFen(test[0]);
+            int depth = Integer.parseInt(test[1]);
+            long expected = Long.parseLong(test[2]);
+            long start = System.nanoTime();
+            long nodes = new Perft(board, depth).count(depth);
+            long time = System.nanoTime() - start;
+            totalNodes += nodes;
+            totalTime += time;
+            failed |= nodes != expected;
+            System.out.println((nodes == expected ? "OK   " : "FAIL ") + test[0] + " depth " + depth + ": " + nodes +
+                    (nodes == expected ? "" : " (expected " + expected + ")") + report(nodes, time));
+        }
+        System.out.println("Total: " + totalNodes + report(totalNodes, totalTime));
+        if (failed) {
+            System.exit(1);
+        }
+    }
+
+    private static String report(long nodes, long nanos) {
+        long millis = Math.max(1L, nanos / 1_000_000L);
+        return " in " + millis + " ms (" + nodes * 1000L / millis + " nodes/s)";
+    }
+}
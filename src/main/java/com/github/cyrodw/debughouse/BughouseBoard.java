@@ -4,7 +4,8 @@ import com.github.bhlangonijr.chesslib.*;
 import com.github.bhlangonijr.chesslib.move.Move;
 import com.github.bhlangonijr.chesslib.move.MoveList;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.List;
 
 public class BughouseBoard {
 
@@ -16,21 +17,24 @@ public class BughouseBoard {
     }
 
     // Actual pieces in hand
-    private HashMap<Piece, Integer> whiteHand;
-    private HashMap<Piece, Integer> blackHand;
+    private final Hand whiteHand = new Hand();
+    private final Hand blackHand = new Hand();
     // To accurately display pocket counts for premoves
-    private HashMap<Piece, Integer> whiteHandOffset;
-    private HashMap<Piece, Integer> blackHandOffset;
+    private final Hand whiteHandOffset = new Hand();
+    private final Hand blackHandOffset = new Hand();
+    // Displayed pocket counts, computed on access from the hands above
+    private final HandView whiteDisplayedHand = piece -> whiteHand.get(piece) + whiteHandOffset.get(piece);
+    private final HandView blackDisplayedHand = piece -> blackHand.get(piece) + blackHandOffset.get(piece);
 
     // board state
     private Board board;
 
+    // Legal moves of the current position, regenerated lazily after the position changes
+    private final BughouseMoveSet legalMoves = new BughouseMoveSet();
+    private boolean legalMovesValid = false;
+
 
     public BughouseBoard() {
-        blackHand = new HashMap<>();
-        whiteHand = new HashMap<>();
-        whiteHandOffset = new HashMap<>();
-        blackHandOffset = new HashMap<>();
         reset();
     }
 
@@ -39,6 +43,7 @@ public class BughouseBoard {
      */
     public void reset() {
         board = new Board();
+        invalidateLegalMoves();
         resetHand(Side.WHITE);
         resetHand(Side.BLACK);
         resetHandOffset(Side.WHITE);
@@ -51,15 +56,7 @@ public class BughouseBoard {
      * @param side
      */
     public void resetHandOffset(Side side) {
-        if (side.equals(Side.WHITE)) {
-            for (Piece piece : Piece.allPieces) {
-                whiteHandOffset.put(piece, 0);
-            }
-        } else {
-            for (Piece piece : Piece.allPieces) {
-                blackHandOffset.put(piece, 0);
-            }
-        }
+        getHandOffset(side).clear();
     }
 
     /**
@@ -76,34 +73,44 @@ public class BughouseBoard {
      * @param side
      */
     public void resetHand(Side side) {
-        if (side.equals(Side.WHITE)) {
-            for (Piece piece : Piece.allPieces) {
-                whiteHand.put(piece, 0);
-            }
-        } else {
-            for (Piece piece : Piece.allPieces) {
-                blackHand.put(piece, 0);
-            }
-        }
+        invalidateLegalMoves();
+        getHand(side).clear();
     }
 
     /**
-     * Return the displayed pocket piece counts which are adjusted for premoves
+     * Return the displayed pocket piece counts which are adjusted for premoves.
+     * The view is live, it reflects later changes of the hands.
      *
      * @param side
      */
-    public HashMap<Piece, Integer> getDisplayedHand(Side side) {
-        HashMap<Piece, Integer> hand = new HashMap<>();
-        if (side.equals(Side.WHITE)) {
-            for (Piece piece : Piece.allPieces) {
-                hand.put(piece, whiteHand.get(piece) + whiteHandOffset.get(piece));
-            }
-        } else {
-            for (Piece piece : Piece.allPieces) {
-                hand.put(piece, blackHand.get(piece) + blackHandOffset.get(piece));
+    public HandView getDisplayedHand(Side side) {
+        return side.equals(Side.WHITE) ? whiteDisplayedHand : blackDisplayedHand;
+    }
+
+    /**
+     * Returns the actual pocket pieces, not adjusted for premoves.
+     *
+     * @param side
+     */
+    public HandView getActualHand(Side side) {
+        return getHand(side);
+    }
+
+    /**
+     * Returns the actual pocket pieces as a string for setHand, e.g. "PPN".
+     *
+     * @param side
+     */
+    public String getHandString(Side side) {
+        Hand hand = getHand(side);
+        StringBuilder sb = new StringBuilder();
+        for (PieceType type : BughouseMoveGenerator.dropTypes) {
+            Piece piece = Piece.make(side, type);
+            for (int i = 0; i < hand.get(piece); i++) {
+                sb.append(piece.getFenSymbol());
             }
         }
-        return hand;
+        return sb.toString();
     }
 
     /**
@@ -114,14 +121,9 @@ public class BughouseBoard {
      */
     public void setHand(String hand, Side side) {
         resetHand(side);
-        char[] pieces = hand.toCharArray();
-        for (char p : pieces) {
-            Piece piece = Piece.fromFenSymbol(p + "");
-            if (side.equals(Side.WHITE)) {
-                whiteHand.put(piece, whiteHand.get(piece) + 1);
-            } else {
-                blackHand.put(piece, blackHand.get(piece) + 1);
-            }
+        Hand pocket = getHand(side);
+        for (char p : hand.toCharArray()) {
+            pocket.add(Piece.fromFenSymbol(p + ""), 1);
         }
     }
 
@@ -133,11 +135,7 @@ public class BughouseBoard {
      * @param side
      */
     public void addToHandOffset(Piece piece, Side side) {
-        if (side.equals(Side.WHITE)) {
-            whiteHandOffset.put(piece, whiteHandOffset.get(piece) + 1);
-        } else {
-            blackHandOffset.put(piece, blackHandOffset.get(piece) + 1);
-        }
+        getHandOffset(side).add(piece, 1);
     }
 
     /**
@@ -148,11 +146,7 @@ public class BughouseBoard {
      * @param side
      */
     public void subtractFromHandOffset(Piece piece, Side side) {
-        if (side.equals(Side.WHITE)) {
-            whiteHandOffset.put(piece, whiteHandOffset.get(piece) - 1);
-        } else {
-            blackHandOffset.put(piece, blackHandOffset.get(piece) - 1);
-        }
+        getHandOffset(side).add(piece, -1);
     }
 
     /**
@@ -160,11 +154,33 @@ public class BughouseBoard {
      * @param side
      */
     public void subtractFromHand(Piece piece, Side side) {
-        if (side.equals(Side.WHITE)) {
-            whiteHand.put(piece, whiteHand.get(piece) - 1);
-        } else {
-            blackHand.put(piece, blackHand.get(piece) - 1);
-        }
+        invalidateLegalMoves();
+        getHand(side).add(piece, -1);
+    }
+
+    /**
+     * @param piece
+     * @param side
+     */
+    public void addToHand(Piece piece, Side side) {
+        invalidateLegalMoves();
+        getHand(side).add(piece, 1);
+    }
+
+    private Hand getHand(Side side) {
+        return side.equals(Side.WHITE) ? whiteHand : blackHand;
+    }
+
+    private Hand getHandOffset(Side side) {
+        return side.equals(Side.WHITE) ? whiteHandOffset : blackHandOffset;
+    }
+
+    /**
+     * Returns the hash of the bughouse position: the board and the actual pieces in both hands.
+     * It is updated incrementally, so it is cheap to use as a cache key.
+     */
+    public long getHashKey() {
+        return board.getIncrementalHashKey() ^ whiteHand.getKey() ^ blackHand.getKey();
     }
 
     /**
@@ -174,11 +190,19 @@ public class BughouseBoard {
         return board.getSideToMove();
     }
 
+    /**
+     * @return true if the side to move is in check
+     */
+    public boolean isKingAttacked() {
+        return board.isKingAttacked();
+    }
+
     /**
      * @param fen
      */
     public void loadFromFen(String fen) {
         board.loadFromFen(fen);
+        invalidateLegalMoves();
     }
 
     /**
@@ -202,8 +226,15 @@ public class BughouseBoard {
      * @return piece on square
      */
     public Piece getPiece(int file, int rank) {
-        Square sq = Square.fromValue(Character.toString('A' + file) + (rank + 1));
-        return board.getPiece(sq);
+        return board.getPiece(Square.squareAt(rank * 8 + file));
+    }
+
+    /**
+     * @param piece
+     * @return squares occupied by the piece, bit i set for the square with ordinal i
+     */
+    public long getBitboard(Piece piece) {
+        return board.getBitboard(piece);
     }
 
     /**
@@ -212,49 +243,70 @@ public class BughouseBoard {
      * @param move
      */
     public boolean isLegal(String move) {
-        Side side = board.getSideToMove();
+        BughouseMoveSet moves = getLegalMoves();
+        Square to = Square.fromValue(move.substring(2, 4).toUpperCase());
         if (move.charAt(1) == '@') {
-            Piece drop;
-            if (side.equals(Side.WHITE)) {
-                drop = Piece.fromFenSymbol(Character.toUpperCase(move.charAt(0)) + "");
-                if (whiteHand.get(drop) <= 0) {
-                    return false;
-                }
-            } else {
-                drop = Piece.fromFenSymbol(Character.toLowerCase(move.charAt(0)) + "");
-                if (blackHand.get(drop) <= 0) {
-                    return false;
-                }
-            }
-            Piece piece = board.getPiece(Square.fromValue(move.substring(2, 4).toUpperCase()));
-            if (piece != Piece.NONE) {
-                return false;
-            }
-            boolean b = move.charAt(3) == '1' || move.charAt(3) == '8';
-            if (side.equals(Side.WHITE) && drop.equals(Piece.WHITE_PAWN) && b) {
-                return false;
-            }
-            if (side.equals(Side.BLACK) && drop.equals(Piece.BLACK_PAWN) && b) {
-                return false;
+            PieceType type = Piece.fromFenSymbol(Character.toUpperCase(move.charAt(0)) + "").getPieceType();
+            return moves.containsDrop(type, to);
+        }
+        Square from = Square.fromValue(move.substring(0, 2).toUpperCase());
+        if (!moves.containsMove(from, to)) {
+            return false;
+        }
+        boolean promotion = board.getPiece(from).getPieceType() == PieceType.PAWN
+                && (to.getRank() == Rank.RANK_1 || to.getRank() == Rank.RANK_8);
+        if (!promotion) {
+            return move.length() == 4;
+        }
+        return move.length() == 5 && "nbrq".indexOf(Character.toLowerCase(move.charAt(4))) >= 0;
+    }
+
+    /**
+     * Returns the legal moves and drops of the side to move.
+     * The set is cached until the position or the hands change.
+     */
+    public BughouseMoveSet getLegalMoves() {
+        if (!legalMovesValid) {
+            Side side = board.getSideToMove();
+            BughouseMoveGenerator.generateLegalMoves(board, getHand(side), legalMoves);
+            legalMovesValid = true;
+        }
+        return legalMoves;
+    }
+
+    /**
+     * Returns the legal moves and drops of the side to move in the format of the protocol,
+     * e.g. "e2e4", "e7e8q" or "N@f3". Promotions are to queens only.
+     */
+    public List<String> getLegalMoveList() {
+        BughouseMoveSet set = getLegalMoves();
+        List<String> moves = new ArrayList<>(set.size());
+        for (Square from : Square.values()) {
+            if (from == Square.NONE) {
+                continue;
             }
-            Square to = Square.fromValue(move.substring(2, 4).toUpperCase());
-            board.setPiece(drop, to);
-            boolean kingAttacked = board.isKingAttacked();
-            board.unsetPiece(drop, to);
-            if (kingAttacked) {
-                return false;
+            long targets = set.getMoveTargets(from);
+            boolean pawn = board.getPiece(from).getPieceType() == PieceType.PAWN;
+            while (targets != 0L) {
+                Square to = Square.squareAt(Long.numberOfTrailingZeros(targets));
+                targets &= targets - 1;
+                boolean promotion = pawn && (to.getRank() == Rank.RANK_1 || to.getRank() == Rank.RANK_8);
+                moves.add(from.value().toLowerCase() + to.value().toLowerCase() + (promotion ? "q" : ""));
             }
-            return true;
-        } else {
-            var moves = board.pseudoLegalMoves();
-            move = move.toLowerCase();
-            for (Move m : moves) {
-                if (m.toString().equals(move)) {
-                    return board.isMoveLegal(m, true);
-                }
+        }
+        for (PieceType type : BughouseMoveGenerator.dropTypes) {
+            long targets = set.getDropTargets(type);
+            while (targets != 0L) {
+                Square to = Square.squareAt(Long.numberOfTrailingZeros(targets));
+                targets &= targets - 1;
+                moves.add("PNBRQ".charAt(type.ordinal()) + "@" + to.value().toLowerCase());
             }
         }
-        return false;
+        return moves;
+    }
+
+    private void invalidateLegalMoves() {
+        legalMovesValid = false;
     }
 
     /**
@@ -385,7 +437,7 @@ public class BughouseBoard {
      */
     public void doMove(String move, MoveType type, Side userSide) {
         Side side = board.getSideToMove();
-        board.setSideToMove(userSide);
+        setSideToMove(userSide);
         Square to = Square.fromValue(move.substring(2, 4).toUpperCase());
         if (move.charAt(1) == '@') {
             Piece drop;
@@ -426,9 +478,23 @@ public class BughouseBoard {
             }
         }
         if (type.equals(MoveType.NORMAL) || type.equals(MoveType.EXECUTED_PREMOVE)) {
-            board.setSideToMove(side.flip());
+            setSideToMove(side.flip());
         } else if (type.equals(MoveType.PREMOVE) || type.equals(MoveType.REPLAYED_PREMOVE)) {
+            setSideToMove(side);
+        }
+        invalidateLegalMoves();
+    }
+
+    /**
+     * Sets the side to move, keeping the board hash consistent with it
+     *
+     * @param side
+     */
+    private void setSideToMove(Side side) {
+        Side previous = board.getSideToMove();
+        if (previous != side) {
             board.setSideToMove(side);
+            board.setIncrementalHashKey(board.getIncrementalHashKey() ^ Zobrist.getSideKey(previous) ^ Zobrist.getSideKey(side));
         }
     }
 
@@ -447,7 +513,7 @@ public class BughouseBoard {
     }
 
     /**
-     * Returns the SAN format string of a move
+     * Returns the SAN format string of a move, leaving the position as it was
      *
      * @param move
      */
@@ -461,6 +527,10 @@ public class BughouseBoard {
         }
         Square from = Square.fromValue(move.substring(0, 2).toUpperCase());
         Square to = Square.fromValue(move.substring(2, 4).toUpperCase());
-        return MoveList.encodeToSan(board, new Move(from, to));
+        // Encoding plays the move on the board, behind the legal move set
+        String san = MoveList.encodeToSan(board, new Move(from, to));
+        board.undoMove();
+        invalidateLegalMoves();
+        return san;
     }
 }
\ No newline at end of file
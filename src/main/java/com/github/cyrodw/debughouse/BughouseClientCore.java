@@ -0,0 +1,285 @@
+package com.github.cyrodw.debughouse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Client side of a bughouse game without a UI: the board of the user and the partner board,
+ * the premove queue, the clocks and the handling of the frames from the server.
+ * Frames are received on the network thread and applied when the owner polls, on its own thread,
+ * e.g. once per pulse of the JavaFX UI or in the loop of a bot. Observers are told about the
+ * changes from the polling thread, so a UI only has to render them.
+ * Each core is one session, a JVM can run as many as it has connections.
+ */
+public class BughouseClientCore {
+
+    /**
+     * Observer of a core, called on the thread that polls it.
+     */
+    public interface Listener {
+        /**
+         * Chat or server message to show.
+         *
+         * @param message
+         */
+        default void onMessage(String message) {
+        }
+
+        default void onGameStarted() {
+        }
+
+        default void onGameFinished() {
+        }
+
+        /**
+         * The position, hands or premoves of a board changed.
+         *
+         * @param board
+         */
+        default void onBoardChanged(ClientBoard board) {
+        }
+
+        /**
+         * @param board
+         */
+        default void onTimesChanged(ClientBoard board) {
+        }
+
+        /**
+         * The side of the user or the players of a board changed.
+         *
+         * @param board
+         */
+        default void onPlayersChanged(ClientBoard board) {
+        }
+    }
+
+    private final Consumer<String> sender;
+    private final LatencyEstimator latency;
+    private final ClientBoard userBoard = new ClientBoard(this, true);
+    private final ClientBoard partnerBoard = new ClientBoard(this, false);
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final InboundQueue inbound = new InboundQueue();
+    private final List<InboundEvent> events = new ArrayList<>(); // Events of the current poll
+    private boolean serverPremoves = false; // Premoves are triggered by the server, see "premovemode"
+    private volatile long lastStateSeq = -1; // Sequence number of the last state update applied
+
+    /**
+     * @param sender  - sends a command to the server, e.g. "move e2e4"
+     * @param latency - estimator answering the pings sent, see receive
+     */
+    public BughouseClientCore(Consumer<String> sender, LatencyEstimator latency) {
+        this.sender = sender;
+        this.latency = latency;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    public ClientBoard getUserBoard() {
+        return userBoard;
+    }
+
+    public ClientBoard getPartnerBoard() {
+        return partnerBoard;
+    }
+
+    public LatencyEstimator getLatency() {
+        return latency;
+    }
+
+    public boolean isServerPremoves() {
+        return serverPremoves;
+    }
+
+    /**
+     * Returns the sequence number of the last state update applied, to resume the session from.
+     */
+    public long getLastStateSeq() {
+        return lastStateSeq;
+    }
+
+    /**
+     * Sends a command to the server.
+     *
+     * @param message
+     */
+    public void send(String message) {
+        sender.accept(message);
+    }
+
+    /**
+     * Receives a text frame. Network thread only, pongs are timed here as they arrive.
+     *
+     * @param message
+     */
+    public void receive(String message) {
+        if (message.equals("message pong") || message.equals("pong") || message.startsWith("pong ")) {
+            if (!latency.pongReceived(System.nanoTime(), getServerMillis(message))) {
+                return;
+            }
+            message = "message pong";
+        }
+        inbound.put(InboundEvent.decode(message));
+    }
+
+    /**
+     * Receives a state update of the binary protocol. Network thread only.
+     *
+     * @param update
+     */
+    public void receiveState(GameStateUpdate update) {
+        inbound.put(InboundEvent.state(update));
+    }
+
+    /**
+     * Applies the events received since the last poll. Owner thread only.
+     *
+     * @return number of events applied
+     */
+    public int poll() {
+        events.clear();
+        inbound.drain(events);
+        int applied = events.size();
+        for (InboundEvent event : events) {
+            apply(event);
+        }
+        events.clear();
+        return applied;
+    }
+
+    /**
+     * Plays a move of the user on a board, see ClientBoard.doMove, and tells the observers if it changed.
+     *
+     * @param board
+     * @param move  - with the promotion piece
+     */
+    public ClientBoard.MoveResult doMove(ClientBoard board, String move) {
+        ClientBoard.MoveResult result = board.doMove(move);
+        if (result == ClientBoard.MoveResult.MOVED || result == ClientBoard.MoveResult.PREMOVED) {
+            listeners.forEach(l -> l.onBoardChanged(board));
+        }
+        return result;
+    }
+
+    /**
+     * Cancels the premoves of the user.
+     */
+    public void cancelPremoves() {
+        userBoard.cancelPremoves();
+        listeners.forEach(l -> l.onBoardChanged(userBoard));
+    }
+
+    /**
+     * Applies an event from the server.
+     *
+     * @param event
+     */
+    private void apply(InboundEvent event) {
+        ClientBoard board = event.getBoard() == 2 ? partnerBoard : userBoard;
+        switch (event.getType()) {
+            case CONNECTED -> listeners.forEach(l -> l.onMessage("Connected!"));
+            case MESSAGE -> listeners.forEach(l -> l.onMessage(event.getText()));
+            case STATE -> applyState(event.getState());
+            case PREMOVE_MODE -> serverPremoves = event.getText().equals("server");
+            case PREMOVES -> {
+                userBoard.reconcilePremoves(event.getValues());
+                listeners.forEach(l -> l.onBoardChanged(userBoard));
+            }
+            case STARTED -> {
+                lastStateSeq = -1;
+                userBoard.setPlaying(true);
+                partnerBoard.setPlaying(true);
+                listeners.forEach(Listener::onGameStarted);
+            }
+            case FINISHED -> {
+                userBoard.setPlaying(false);
+                partnerBoard.setPlaying(false);
+                userBoard.cancelPremoves();
+                listeners.forEach(Listener::onGameFinished);
+                userBoard.reset();
+                partnerBoard.reset();
+            }
+            case USERSIDE -> {
+                if (userBoard.setUserSide(event.getSide())) {
+                    listeners.forEach(l -> l.onPlayersChanged(userBoard));
+                }
+                if (partnerBoard.setUserSide(event.getSide().flip())) {
+                    listeners.forEach(l -> l.onPlayersChanged(partnerBoard));
+                }
+            }
+            case FEN -> {
+                board.setPlaying(true);
+                board.setFen(event.getText());
+                listeners.forEach(l -> l.onBoardChanged(board));
+            }
+            case MOVE -> {
+                if (event.getText().length() > 0) {
+                    board.pushMove(event.getText());
+                }
+            }
+            case HAND -> {
+                board.setHand(event.getText(), event.getSide());
+                listeners.forEach(l -> l.onBoardChanged(board));
+            }
+            case TIMES -> {
+                board.setTimes(event.getWhiteTime(), event.getBlackTime());
+                listeners.forEach(l -> l.onTimesChanged(board));
+            }
+            case PLAYERS -> board.setPlayers(event.getValues());
+            case RATINGS -> {
+                board.setRatings(event.getValues());
+                listeners.forEach(l -> l.onPlayersChanged(board));
+            }
+        }
+    }
+
+    /**
+     * Applies a state update to both boards, ignoring updates older than the last one applied.
+     *
+     * @param update
+     */
+    private void applyState(GameStateUpdate update) {
+        if (update.getSeq() <= lastStateSeq) {
+            return;
+        }
+        lastStateSeq = update.getSeq();
+        applyState(userBoard, update.getBoard(1));
+        applyState(partnerBoard, update.getBoard(2));
+    }
+
+    private void applyState(ClientBoard board, GameStateUpdate.BoardState state) {
+        if (state == null) {
+            return;
+        }
+        board.applyState(state);
+        listeners.forEach(l -> {
+            l.onTimesChanged(board);
+            l.onBoardChanged(board);
+        });
+    }
+
+    /**
+     * Returns the server time of a pong, e.g. "pong 1700000000000", or -1 if it has none.
+     *
+     * @param pong
+     */
+    private static long getServerMillis(String pong) {
+        String[] args = pong.split(" ");
+        if (args[0].equals("pong") && args.length > 1) {
+            try {
+                return Long.parseLong(args[1]);
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,131 @@
+package com.github.cyrodw.debughouse;
+
+import com.github.bhlangonijr.chesslib.*;
+import com.github.bhlangonijr.chesslib.move.MoveBuffer;
+import com.github.bhlangonijr.chesslib.move.MoveGenerator;
+import com.github.bhlangonijr.chesslib.move.PackedMove;
+
+/**
+ * Generates the legal moves of a bughouse position, board moves and pocket drops together.
+ */
+public class BughouseMoveGenerator {
+
+    // Piece types that can be held in hand and dropped
+    public static final PieceType[] dropTypes = {
+            PieceType.PAWN, PieceType.KNIGHT, PieceType.BISHOP, PieceType.ROOK, PieceType.QUEEN
+    };
+
+    // Pawns can't be dropped on the first or last rank
+    private static final long pawnDropMask = ~(Bitboard.getRankbb(Rank.RANK_1) | Bitboard.getRankbb(Rank.RANK_8));
+
+    // Scratch buffer for the board moves, reused across calls
+    private static final ThreadLocal<MoveBuffer> bufferHolder = ThreadLocal.withInitial(MoveBuffer::new);
+
+    private BughouseMoveGenerator() {
+    }
+
+    /**
+     * Returns the legal moves and drops for the side to move.
+     *
+     * @param board
+     * @param hand - pieces in hand of the side to move
+     */
+    public static BughouseMoveSet generateLegalMoves(Board board, HandView hand) {
+        BughouseMoveSet moves = new BughouseMoveSet();
+        generateLegalMoves(board, hand, moves);
+        return moves;
+    }
+
+    /**
+     * Clears the given move set and fills it with the legal moves and drops for the side to move.
+     *
+     * @param board
+     * @param hand  - pieces in hand of the side to move
+     * @param moves - the set to fill
+     */
+    public static void generateLegalMoves(Board board, HandView hand, BughouseMoveSet moves) {
+        moves.clear();
+        MoveBuffer buffer = bufferHolder.get();
+        MoveGenerator.generateLegalMoves(board, buffer);
+        for (int i = 0; i < buffer.size(); i++) {
+            int move = buffer.get(i);
+            moves.addMove(PackedMove.getFrom(move), PackedMove.getTo(move));
+        }
+        generateDrops(board, hand, moves);
+    }
+
+    /**
+     * Adds all legal drops for the side to move to the given move set.
+     *
+     * @param board
+     * @param hand  - pieces in hand of the side to move
+     * @param moves - the set to add to
+     */
+    public static void generateDrops(Board board, HandView hand, BughouseMoveSet moves) {
+        Side side = board.getSideToMove();
+        long targets = getDropMask(board);
+        if (targets == 0L) {
+            return;
+        }
+        for (PieceType type : dropTypes) {
+            if (hand.get(Piece.make(side, type)) <= 0) {
+                continue;
+            }
+            moves.addDrops(type, getDropTargets(type, targets));
+        }
+    }
+
+    /**
+     * Restricts the squares allowed by the drop mask to the ones a piece type can be dropped on.
+     *
+     * @param type
+     * @param dropMask - squares allowed by getDropMask
+     */
+    public static long getDropTargets(PieceType type, long dropMask) {
+        return type == PieceType.PAWN ? dropMask & pawnDropMask : dropMask;
+    }
+
+    /**
+     * Returns the squares a piece can be dropped on without leaving the own king in check.
+     * Drops never uncover an attack, so if the king is not in check every empty square is allowed,
+     * a single slider check can only be blocked, and any other check can't be answered by a drop.
+     *
+     * @param board
+     */
+    public static long getDropMask(Board board) {
+        Side side = board.getSideToMove();
+        long empty = ~board.getBitboard();
+        Square kingSq = board.getKingSquare(side);
+        if (kingSq == Square.NONE) {
+            return empty;
+        }
+        long checkers = board.squareAttackedBy(kingSq, side.flip());
+        if (checkers == 0L) {
+            return empty;
+        }
+        if (Long.bitCount(checkers) > 1) {
+            return 0L;
+        }
+        Square checkerSq = Square.squareAt(Bitboard.bitScanForward(checkers));
+        return getSquaresBetween(kingSq, checkerSq) & empty;
+    }
+
+    /**
+     * Returns the squares strictly between two squares sharing a rank, file or diagonal,
+     * or an empty bitboard if they are not aligned or adjacent.
+     *
+     * @param sq1
+     * @param sq2
+     */
+    public static long getSquaresBetween(Square sq1, Square sq2) {
+        long bb1 = sq1.getBitboard();
+        long bb2 = sq2.getBitboard();
+        if ((Bitboard.getBishopAttacks(bb2, sq1) & bb2) != 0L) {
+            return Bitboard.getBishopAttacks(bb2, sq1) & Bitboard.getBishopAttacks(bb1, sq2);
+        }
+        if ((Bitboard.getRookAttacks(bb2, sq1) & bb2) != 0L) {
+            return Bitboard.getRookAttacks(bb2, sq1) & Bitboard.getRookAttacks(bb1, sq2);
+        }
+        return 0L;
+    }
+}
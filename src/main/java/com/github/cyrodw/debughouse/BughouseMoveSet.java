@@ -0,0 +1,112 @@
+package com.github.cyrodw.debughouse;
+
+import com.github.bhlangonijr.chesslib.PieceType;
+import com.github.bhlangonijr.chesslib.Square;
+
+import java.util.Arrays;
+
+/**
+ * Set of legal bughouse moves for a position, stored as destination bitboards.
+ * Board moves are indexed by origin square and drops by the type of the dropped piece,
+ * so membership is a single bitboard lookup.
+ */
+public class BughouseMoveSet {
+
+    // Destination squares for each origin square
+    private final long[] moves = new long[64];
+    // Destination squares for each droppable piece type
+    private final long[] drops = new long[PieceType.values().length];
+
+    /**
+     * Removes all moves from the set.
+     */
+    public void clear() {
+        Arrays.fill(moves, 0L);
+        Arrays.fill(drops, 0L);
+    }
+
+    /**
+     * Adds a board move. Promotions are stored once regardless of promotion piece.
+     *
+     * @param from
+     * @param to
+     */
+    public void addMove(Square from, Square to) {
+        moves[from.ordinal()] |= to.getBitboard();
+    }
+
+    /**
+     * Adds the squares a piece type can be dropped on.
+     *
+     * @param type
+     * @param targets - bitboard of destination squares
+     */
+    public void addDrops(PieceType type, long targets) {
+        drops[type.ordinal()] |= targets;
+    }
+
+    /**
+     * @param from
+     * @param to
+     * @return true if the board move is in the set
+     */
+    public boolean containsMove(Square from, Square to) {
+        return (moves[from.ordinal()] & to.getBitboard()) != 0L;
+    }
+
+    /**
+     * @param type
+     * @param to
+     * @return true if the drop is in the set
+     */
+    public boolean containsDrop(PieceType type, Square to) {
+        return (drops[type.ordinal()] & to.getBitboard()) != 0L;
+    }
+
+    /**
+     * @param from
+     * @return bitboard of the destinations of board moves starting on a square
+     */
+    public long getMoveTargets(Square from) {
+        return moves[from.ordinal()];
+    }
+
+    /**
+     * @param type
+     * @return bitboard of the squares a piece type can be dropped on
+     */
+    public long getDropTargets(PieceType type) {
+        return drops[type.ordinal()];
+    }
+
+    /**
+     * Returns the number of moves in the set, counting each promotion once.
+     */
+    public int size() {
+        int size = 0;
+        for (long targets : moves) {
+            size += Long.bitCount(targets);
+        }
+        for (long targets : drops) {
+            size += Long.bitCount(targets);
+        }
+        return size;
+    }
+
+    /**
+     * Returns true if the side to move has neither a board move nor a drop.
+     */
+    public boolean isEmpty() {
+        for (long targets : moves) {
+            if (targets != 0L) {
+                return false;
+            }
+        }
+        for (long targets : drops) {
+            if (targets != 0L) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
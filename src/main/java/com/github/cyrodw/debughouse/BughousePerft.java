@@ -0,0 +1,129 @@
+package com.github.cyrodw.debughouse;
+
+import com.github.bhlangonijr.chesslib.*;
+import com.github.bhlangonijr.chesslib.move.MoveBuffer;
+import com.github.bhlangonijr.chesslib.move.MoveGenerator;
+import com.github.bhlangonijr.chesslib.move.PackedMove;
+
+/**
+ * Drop-aware perft driver for bughouse positions.
+ * Positions are FENs with the pockets in brackets after the piece placement,
+ * e.g. "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR[Nn] w KQkq - 0 1".
+ * Captured pieces go to the partner board in bughouse, so pockets only shrink during the search.
+ */
+public class BughousePerft {
+
+    // Reference positions: FEN with pockets, depth, expected node count
+    private static final String[][] suite = {
+            {"rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR[Pp] w KQkq - 0 1", "4", "2867427"},
+            {"r1bqk2r/pppp1ppp/2n2n2/2b1p3/2B1P3/5N2/PPPP1PPP/RNBQK2R[QRBNPqrbnp] w KQkq - 4 4", "3", "5001157"},
+            {"4k3/8/8/8/8/8/8/R3K2r[BNbn] w Q - 0 1", "4", "6773337"},
+            {"r3k2r/ppp2ppp/2n5/3q4/3P4/2N5/PPP2PPP/R3K2R[Bp] b KQkq - 0 12", "3", "311576"}
+    };
+
+    private final Board board = new Board();
+    // Pieces in hand by Piece ordinal
+    private final int[] hand = new int[Piece.values().length];
+    private final MoveBuffer[] buffers;
+
+    /**
+     * @param fen - position with pockets in brackets
+     * @param maxDepth - maximum depth of the searches
+     */
+    public BughousePerft(String fen, int maxDepth) {
+        int open = fen.indexOf('[');
+        int close = fen.indexOf(']');
+        if (open >= 0 && close > open) {
+            for (char p : fen.substring(open + 1, close).toCharArray()) {
+                hand[Piece.fromFenSymbol(p + "").ordinal()]++;
+            }
+            fen = fen.substring(0, open) + fen.substring(close + 1);
+        }
+        board.loadFromFen(fen);
+        buffers = new MoveBuffer[maxDepth + 1];
+        for (int i = 0; i <= maxDepth; i++) {
+            buffers[i] = new MoveBuffer();
+        }
+    }
+
+    /**
+     * Counts the leaf nodes of the tree of legal moves and drops up to the given depth.
+     *
+     * @param depth
+     */
+    public long count(int depth) {
+        if (depth == 0) {
+            return 1L;
+        }
+        MoveBuffer moves = buffers[depth];
+        MoveGenerator.generateLegalMoves(board, moves);
+        Side side = board.getSideToMove();
+        long dropMask = BughouseMoveGenerator.getDropMask(board);
+        if (depth == 1) {
+            long nodes = moves.size();
+            for (PieceType type : BughouseMoveGenerator.dropTypes) {
+                if (hand[Piece.make(side, type).ordinal()] > 0) {
+                    nodes += Long.bitCount(BughouseMoveGenerator.getDropTargets(type, dropMask));
+                }
+            }
+            return nodes;
+        }
+        long nodes = 0L;
+        for (int i = 0; i < moves.size(); i++) {
+            board.doMove(moves.get(i));
+            nodes += count(depth - 1);
+            board.undoPackedMove();
+        }
+        for (PieceType type : BughouseMoveGenerator.dropTypes) {
+            Piece piece = Piece.make(side, type);
+            if (hand[piece.ordinal()] == 0) {
+                continue;
+            }
+            long targets = BughouseMoveGenerator.getDropTargets(type, dropMask);
+            hand[piece.ordinal()]--;
+            while (targets != 0L) {
+                Square to = Square.squareAt(Bitboard.bitScanForward(targets));
+                targets = Bitboard.extractLsb(targets);
+                board.doMove(PackedMove.encodeDrop(piece, to));
+                nodes += count(depth - 1);
+                board.undoPackedMove();
+            }
+            hand[piece.ordinal()]++;
+        }
+        return nodes;
+    }
+
+    /**
+     * Runs the reference suite, or prints the node count of a single position
+     * when called with a FEN and a depth.
+     *
+     * @param args
+     */
+    public static void main(String[] args) {
+        if (args.length >= 2) {
+            int depth = Integer.parseInt(args[1]);
+            long start = System.nanoTime();
+            long nodes = new BughousePerft(args[0], depth).count(depth);
+            System.out.println("Nodes: " + nodes + report(nodes, System.nanoTime() - start));
+            return;
+        }
+        boolean failed = false;
+        for (String[] test : suite) {
+            int depth = Integer.parseInt(test[1]);
+            long expected = Long.parseLong(test[2]);
+            long start = System.nanoTime();
+            long nodes = new BughousePerft(test[0], depth).count(depth);
+            failed |= nodes != expected;
+            System.out.println((nodes == expected ? "OK   " : "FAIL ") + test[0] + " depth " + depth + ": " + nodes +
+                    (nodes == expected ? "" : " (expected " + expected + ")") + report(nodes, System.nanoTime() - start));
+        }
+        if (failed) {
+            System.exit(1);
+        }
+    }
+
+    private static String report(long nodes, long nanos) {
+        long millis = Math.max(1L, nanos / 1_000_000L);
+        return " in " + millis + " ms (" + nodes * 1000L / millis + " nodes/s)";
+    }
+}
@@ -0,0 +1,405 @@
+package com.github.cyrodw.debughouse;
+
+import com.github.bhlangonijr.chesslib.Piece;
+import com.github.bhlangonijr.chesslib.PieceType;
+import com.github.bhlangonijr.chesslib.Side;
+import com.github.bhlangonijr.chesslib.Square;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * State of one board of a client: the position, the pieces in hand, the premoves of the user,
+ * the clocks and the players. It has no UI, moves and premoves of the user are sent through the
+ * core it belongs to.
+ */
+public class ClientBoard {
+
+    public enum MoveResult {
+        MOVED, // Legal move of the user, sent
+        PREMOVED, // Premove of the user, sent
+        SUGGESTED_MOVE, // Legal move on the partner board
+        SUGGESTED_PREMOVE, // Premove on the partner board
+        REJECTED
+    }
+
+    private static final long NANOS_PER_DECISECOND = 100_000_000L;
+
+    private final BughouseClientCore core;
+    private final boolean userBoard;
+    private final BughouseBoard gameState = new BughouseBoard();
+    private final List<String> moveHistory = new ArrayList<>();
+    private final LinkedList<String> premoves = new LinkedList<>();
+    private final LinkedList<Boolean> predrops = new LinkedList<>();
+    private Side userSide = Side.WHITE;
+    private String fen = gameState.getFen();
+    private boolean playing = false;
+    private int whiteTime = 1800; // Deciseconds at timesSince
+    private int blackTime = 1800;
+    private long timesSince = System.nanoTime(); // System.nanoTime the server read the clocks
+    private String username1 = "username", username2 = "username"; // Opponent, then user
+    private String rating1 = "(1600)", rating2 = "(1600)";
+
+    /**
+     * @param core
+     * @param userBoard - true for the board of the user, false for the partner board
+     */
+    ClientBoard(BughouseClientCore core, boolean userBoard) {
+        this.core = core;
+        this.userBoard = userBoard;
+    }
+
+    public BughouseBoard getGameState() {
+        return gameState;
+    }
+
+    public boolean isUserBoard() {
+        return userBoard;
+    }
+
+    public Side getUserSide() {
+        return userSide;
+    }
+
+    /**
+     * @param side
+     * @return true if the side changed
+     */
+    public boolean setUserSide(Side side) {
+        if (userSide.equals(side)) {
+            return false;
+        }
+        userSide = side;
+        return true;
+    }
+
+    /**
+     * Returns the position last received, without premoves.
+     */
+    public String getFen() {
+        return fen;
+    }
+
+    public boolean isPlaying() {
+        return playing;
+    }
+
+    public void setPlaying(boolean playing) {
+        if (this.playing && !playing) {
+            stopClock(); // The times shown at the end stay
+        } else if (!this.playing && playing) {
+            timesSince = System.nanoTime(); // Counts from the start until the server sends the times
+        }
+        this.playing = playing;
+    }
+
+    /**
+     * Sets the position received and triggers or replays the premoves on it.
+     *
+     * @param fen
+     */
+    public void setFen(String fen) {
+        gameState.loadFromFen(fen);
+        this.fen = fen;
+        try {
+            executePremoves();
+        } catch (Exception e) {
+            cancelPremoves();
+        }
+    }
+
+    /**
+     * @param hand - e.g. "PPN"
+     * @param side
+     */
+    public void setHand(String hand, Side side) {
+        gameState.setHand(hand, side);
+        setFen(this.fen);
+    }
+
+    /**
+     * Applies the whole state of the board at once.
+     * Hands are set first so premoves are checked against them, and the last move
+     * is pushed before the position.
+     *
+     * @param state
+     */
+    public void applyState(GameStateUpdate.BoardState state) {
+        playing = true;
+        gameState.setHand(state.getWhiteHand(), Side.WHITE);
+        gameState.setHand(state.getBlackHand(), Side.BLACK);
+        if (!state.getLastMove().isEmpty()) {
+            pushMove(state.getLastMove());
+        }
+        setTimes(state.getWhiteTime(), state.getBlackTime());
+        setFen(state.getFen());
+    }
+
+    /**
+     * Forgets the moves of the game.
+     */
+    public void reset() {
+        moveHistory.clear();
+    }
+
+    public void pushMove(String move) {
+        moveHistory.add(move);
+    }
+
+    /**
+     * Returns the last move played, or null if none.
+     */
+    public String getLastMove() {
+        if (moveHistory.isEmpty()) {
+            return null;
+        }
+        String move = moveHistory.get(moveHistory.size() - 1);
+        if (move.length() == 0) {
+            return null;
+        }
+        return move;
+    }
+
+    /**
+     * @param whiteTime - deciseconds
+     * @param blackTime - deciseconds
+     */
+    public void setTimes(int whiteTime, int blackTime) {
+        this.whiteTime = whiteTime;
+        this.blackTime = blackTime;
+        this.timesSince = System.nanoTime() - core.getLatency().getOneWayNanos();
+    }
+
+    /**
+     * Returns the time of a side as last received, in deciseconds.
+     *
+     * @param side
+     */
+    public int getTime(Side side) {
+        return side.equals(Side.WHITE) ? whiteTime : blackTime;
+    }
+
+    /**
+     * Returns the time left now, counting down the clock of the side to move while playing.
+     * The times received are taken as read one network delay before they arrived.
+     *
+     * @param side
+     */
+    public int getTimeLeft(Side side) {
+        int time = getTime(side);
+        if (!playing || !side.equals(gameState.sideToMove())) {
+            return time;
+        }
+        return (int) Math.max(0, time - (System.nanoTime() - timesSince) / NANOS_PER_DECISECOND);
+    }
+
+    /**
+     * Stops the clock of the side to move at the time left, the other side's counts from now once
+     * its turn comes, until the server sends the times.
+     */
+    private void stopClock() {
+        int left = getTimeLeft(gameState.sideToMove());
+        if (gameState.sideToMove().equals(Side.WHITE)) {
+            whiteTime = left;
+        } else {
+            blackTime = left;
+        }
+        timesSince = System.nanoTime();
+    }
+
+    /**
+     * @param players - white, then black
+     */
+    public void setPlayers(String[] players) {
+        if (userSide.equals(Side.WHITE)) {
+            username1 = players[1];
+            username2 = players[0];
+        } else {
+            username1 = players[0];
+            username2 = players[1];
+        }
+    }
+
+    /**
+     * @param ratings - white, then black
+     */
+    public void setRatings(String[] ratings) {
+        if (userSide.equals(Side.WHITE)) {
+            rating1 = ratings[1];
+            rating2 = ratings[0];
+        } else {
+            rating1 = ratings[0];
+            rating2 = ratings[1];
+        }
+    }
+
+    public String getUsername1() {
+        return username1;
+    }
+
+    public String getUsername2() {
+        return username2;
+    }
+
+    public String getRating1() {
+        return rating1;
+    }
+
+    public String getRating2() {
+        return rating2;
+    }
+
+    /**
+     * Returns the premoves waiting, oldest first.
+     */
+    public List<String> getPremoves() {
+        return Collections.unmodifiableList(premoves);
+    }
+
+    /**
+     * Adds the promotion piece to a pawn move to the last rank that has none.
+     *
+     * @param move
+     * @param underPromote - true to promote to a knight instead of a queen
+     */
+    public String withPromotion(String move, boolean underPromote) {
+        if (move.charAt(1) != '@' && move.length() < 5) {
+            Piece from = gameState.getPiece(Square.valueOf(move.substring(0, 2).toUpperCase()));
+            if (!from.equals(Piece.NONE)
+                    && from.getPieceType().equals(PieceType.PAWN)
+                    && (move.charAt(3) == '1' || move.charAt(3) == '8')) {
+                return move + (underPromote ? "n" : "q");
+            }
+        }
+        return move;
+    }
+
+    /**
+     * Plays a move of the user: a legal move is sent and played, a valid premove is sent and queued.
+     * On the partner board nothing is played, the move is only classified as a suggestion.
+     *
+     * @param move - with the promotion piece, see withPromotion
+     */
+    public MoveResult doMove(String move) {
+        if (!playing) {
+            return MoveResult.REJECTED;
+        }
+        boolean isPredrop = gameState.isPredrop(move, userSide);
+        if (!premoves.isEmpty()
+                || (!userSide.equals(gameState.sideToMove()) && gameState.isValidPremove(move))
+                || isPredrop) { // Potential premove
+            if (!userBoard) {
+                return MoveResult.SUGGESTED_PREMOVE;
+            }
+            core.send("premove " + move.toLowerCase() + " " + isPredrop);
+            gameState.doMove(move, BughouseBoard.MoveType.PREMOVE, userSide);
+            premoves.add(move);
+            predrops.add(isPredrop);
+            return MoveResult.PREMOVED;
+        } else if (gameState.isLegal(move)) {
+            if (!userBoard) {
+                return MoveResult.SUGGESTED_MOVE;
+            }
+            core.send("move " + move.toLowerCase());
+            stopClock();
+            gameState.doMove(move, BughouseBoard.MoveType.NORMAL, userSide);
+            pushMove(move);
+            fen = gameState.getFen();
+            return MoveResult.MOVED;
+        }
+        return MoveResult.REJECTED;
+    }
+
+    /**
+     * Attempts to trigger a premove and replays the remaining premoves on the position.
+     * In server premove mode the server triggers them and reconcilePremoves updates the queue instead.
+     */
+    public void executePremoves() {
+        assert premoves.size() == predrops.size();
+
+        if (!premoves.isEmpty() && gameState.sideToMove().equals(userSide)
+                && !core.isServerPremoves()) { // Attempt to trigger premove
+            if (Boolean.TRUE.equals(predrops.peek())) { // First premove is a predrop
+                for (int i = 0; i < premoves.size(); i++) {
+                    if (predrops.get(i) && gameState.isLegal(premoves.get(i))) {
+                        stopClock();
+                        gameState.doMove(premoves.get(i), BughouseBoard.MoveType.EXECUTED_PREMOVE, userSide);
+                        pushMove(premoves.get(i));
+                        for (int j = 0; j <= i; j++) {
+                            premoves.remove(); // Remove all premoves before and including executed predrop
+                            predrops.remove();
+                        }
+                        break;
+                    }
+                }
+            } else {
+                // Trigger first premove + all invalid premoves fall through
+                while (!premoves.isEmpty()) {
+                    String premove = premoves.remove();
+                    Boolean predrop = predrops.remove();
+                    if (gameState.isLegal(premove)) {
+                        stopClock();
+                        gameState.doMove(premove, BughouseBoard.MoveType.EXECUTED_PREMOVE, userSide);
+                        pushMove(premove);
+                        break;
+                    } else if (predrop) {
+                        premoves.addFirst(premove); // Re-add predrop since predrops are blocking
+                        predrops.addFirst(true);
+                        break;
+                    }
+                }
+            }
+        }
+
+        // Replay remaining premoves
+        for (String move : premoves) {
+            gameState.doMove(move, BughouseBoard.MoveType.REPLAYED_PREMOVE, userSide);
+        }
+    }
+
+    /**
+     * Cancels the current premoves.
+     */
+    public void cancelPremoves() {
+        core.send("cancel");
+        gameState.resetHandOffsets();
+        gameState.loadFromFen(fen);
+        premoves.clear();
+        predrops.clear();
+    }
+
+    /**
+     * Replaces the premoves with the queue left on the server, in server premove mode.
+     *
+     * @param queue - premoves as "move:isPredrop", e.g. "n@f3:true"
+     */
+    public void reconcilePremoves(String[] queue) {
+        premoves.clear();
+        predrops.clear();
+        gameState.resetHandOffsets();
+        for (String entry : queue) {
+            String[] premove = entry.split(":");
+            premoves.add(premove[0]);
+            predrops.add(premove.length > 1 && Boolean.parseBoolean(premove[1]));
+            if (premove[0].charAt(1) == '@') {
+                String symbol = premove[0].substring(0, 1);
+                Piece drop = Piece.fromFenSymbol(userSide.equals(Side.WHITE) ? symbol.toUpperCase() : symbol.toLowerCase());
+                gameState.subtractFromHandOffset(drop, userSide);
+            }
+        }
+        gameState.loadFromFen(fen);
+        executePremoves();
+    }
+
+    /**
+     * Sends the premoves again, replacing those the server has, e.g. after a reconnect.
+     */
+    public void resendPremoves() {
+        core.send("cancel");
+        for (int i = 0; i < premoves.size(); i++) {
+            core.send("premove " + premoves.get(i).toLowerCase() + " " + predrops.get(i));
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.github.cyrodw.debughouse;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Versioned update of the game state of one or both boards, sent by the server as a single frame
+ * in place of the separate fen, move, hand and times frames.
+ * Format: "state VERSION SEQ BOARD;BOARD" where each board is
+ * "NUMBER|FEN|WHITE_HAND|BLACK_HAND|WHITE_TIME,BLACK_TIME|LAST_MOVE", e.g.
+ * "state 1 42 1|rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq - 0 1|||1800,1800|e2e4".
+ * Hands are piece letters, times are deciseconds and the last move may be empty.
+ */
+public class GameStateUpdate {
+
+    public static final String TYPE = "state";
+    public static final int VERSION = 1;
+
+    private final long seq;
+    private final List<BoardState> boards;
+
+    /**
+     * @param seq    - sequence number, increasing with every update of the game
+     * @param boards - states of the boards that changed
+     */
+    public GameStateUpdate(long seq, List<BoardState> boards) {
+        this.seq = seq;
+        this.boards = Collections.unmodifiableList(new ArrayList<>(boards));
+    }
+
+    public long getSeq() {
+        return seq;
+    }
+
+    public List<BoardState> getBoards() {
+        return boards;
+    }
+
+    /**
+     * Returns the state of a board, or null if the update doesn't change it.
+     *
+     * @param number - 1 for the user board, 2 for the partner board
+     */
+    public BoardState getBoard(int number) {
+        for (BoardState board : boards) {
+            if (board.getNumber() == number) {
+                return board;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Parses the payload of a state frame, the part after "state ".
+     *
+     * @param payload
+     * @throws IllegalArgumentException if the payload is malformed or of another version
+     */
+    public static GameStateUpdate parse(String payload) {
+        String[] header = payload.split(" ", 3);
+        if (header.length < 3) {
+            throw new IllegalArgumentException("Malformed state update: " + payload);
+        }
+        int version;
+        long seq;
+        try {
+            version = Integer.parseInt(header[0]);
+            seq = Long.parseLong(header[1]);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed state update: " + payload, e);
+        }
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported state update version " + version);
+        }
+        List<BoardState> boards = new ArrayList<>(2);
+        for (String board : header[2].split(";")) {
+            boards.add(BoardState.parse(board));
+        }
+        return new GameStateUpdate(seq, boards);
+    }
+
+    /**
+     * Returns the full frame, including the "state" type.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(TYPE).append(' ').append(VERSION).append(' ').append(seq).append(' ');
+        for (int i = 0; i < boards.size(); i++) {
+            if (i > 0) {
+                sb.append(';');
+            }
+            boards.get(i).appendTo(sb);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * State of one board: position, hands, clocks and last move.
+     */
+    public static class BoardState {
+        private final int number;
+        private final String fen;
+        private final String whiteHand;
+        private final String blackHand;
+        private final int whiteTime;
+        private final int blackTime;
+        private final String lastMove;
+
+        /**
+         * @param number    - 1 for the user board, 2 for the partner board
+         * @param fen
+         * @param whiteHand - piece letters, e.g. "PPN"
+         * @param blackHand - piece letters, e.g. "pq"
+         * @param whiteTime - deciseconds
+         * @param blackTime - deciseconds
+         * @param lastMove  - e.g. "e2e4" or "N@f3", empty if none
+         */
+        public BoardState(int number, String fen, String whiteHand, String blackHand, int whiteTime, int blackTime,
+                          String lastMove) {
+            this.number = number;
+            this.fen = fen;
+            this.whiteHand = whiteHand;
+            this.blackHand = blackHand;
+            this.whiteTime = whiteTime;
+            this.blackTime = blackTime;
+            this.lastMove = lastMove == null ? "" : lastMove;
+        }
+
+        public int getNumber() {
+            return number;
+        }
+
+        public String getFen() {
+            return fen;
+        }
+
+        public String getWhiteHand() {
+            return whiteHand;
+        }
+
+        public String getBlackHand() {
+            return blackHand;
+        }
+
+        public int getWhiteTime() {
+            return whiteTime;
+        }
+
+        public int getBlackTime() {
+            return blackTime;
+        }
+
+        public String getLastMove() {
+            return lastMove;
+        }
+
+        private static BoardState parse(String board) {
+            String[] fields = board.split("\\|", -1);
+            if (fields.length != 6) {
+                throw new IllegalArgumentException("Malformed board state: " + board);
+            }
+            try {
+                int comma = fields[4].indexOf(',');
+                return new BoardState(Integer.parseInt(fields[0]), fields[1], fields[2].toUpperCase(),
+                        fields[3].toLowerCase(), Integer.parseInt(fields[4].substring(0, comma)),
+                        Integer.parseInt(fields[4].substring(comma + 1)), fields[5]);
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Malformed board state: " + board, e);
+            }
+        }
+
+        private void appendTo(StringBuilder sb) {
+            sb.append(number).append('|').append(fen).append('|').append(whiteHand).append('|').append(blackHand)
+                    .append('|').append(whiteTime).append(',').append(blackTime).append('|').append(lastMove);
+        }
+    }
+}
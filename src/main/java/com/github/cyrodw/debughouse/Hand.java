@@ -0,0 +1,87 @@
+package com.github.cyrodw.debughouse;
+
+import com.github.bhlangonijr.chesslib.Piece;
+import com.github.bhlangonijr.chesslib.Zobrist;
+
+import java.util.Arrays;
+
+/**
+ * Pieces in a pocket, counted by Piece ordinal.
+ * Keeps a Zobrist key of its contents up to date, so hands can be compared and hashed cheaply.
+ */
+public class Hand implements HandView {
+
+    private final int[] counts = new int[Piece.allPieces.length];
+    private long key;
+
+    @Override
+    public int get(Piece piece) {
+        return counts[piece.ordinal()];
+    }
+
+    /**
+     * Sets the number of pieces of a kind.
+     *
+     * @param piece
+     * @param count
+     */
+    public void set(Piece piece, int count) {
+        int previous = counts[piece.ordinal()];
+        counts[piece.ordinal()] = count;
+        if (piece != Piece.NONE) {
+            key ^= Zobrist.getPocketKey(piece, previous) ^ Zobrist.getPocketKey(piece, count);
+        }
+    }
+
+    /**
+     * Adds to the number of pieces of a kind, a negative amount removes pieces.
+     *
+     * @param piece
+     * @param amount
+     */
+    public void add(Piece piece, int amount) {
+        set(piece, counts[piece.ordinal()] + amount);
+    }
+
+    /**
+     * Removes all pieces.
+     */
+    public void clear() {
+        Arrays.fill(counts, 0);
+        key = 0L;
+    }
+
+    /**
+     * @return Zobrist key of the contents, zero for an empty hand
+     */
+    public long getKey() {
+        return key;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof Hand)) {
+            return false;
+        }
+        Hand hand = (Hand) obj;
+        return key == hand.key && Arrays.equals(counts, hand.counts);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(key);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Piece piece : Piece.allPieces) {
+            if (piece != Piece.NONE) {
+                for (int i = 0; i < counts[piece.ordinal()]; i++) {
+                    sb.append(piece.getFenSymbol());
+                }
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,15 @@
+package com.github.cyrodw.debughouse;
+
+import com.github.bhlangonijr.chesslib.Piece;
+
+/**
+ * Read-only view of the pieces in a pocket.
+ */
+public interface HandView {
+
+    /**
+     * @param piece
+     * @return number of pieces of the given kind in the pocket
+     */
+    int get(Piece piece);
+}
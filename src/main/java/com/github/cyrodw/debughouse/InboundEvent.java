@@ -0,0 +1,152 @@
+package com.github.cyrodw.debughouse;
+
+import com.github.bhlangonijr.chesslib.Side;
+
+/**
+ * Frame from the server, decoded off the UI thread so the UI only has to apply it.
+ */
+public class InboundEvent {
+
+    public enum Type {
+        CONNECTED,
+        MESSAGE,
+        STARTED,
+        FINISHED,
+        USERSIDE,
+        FEN,
+        MOVE,
+        HAND,
+        TIMES,
+        PLAYERS,
+        RATINGS,
+        STATE,
+        PREMOVE_MODE,
+        PREMOVES
+    }
+
+    private final Type type;
+    private final int board; // 1 for the user board, 2 for the partner board, 0 if none
+    private final Side side;
+    private final String text;
+    private final String[] values;
+    private final int whiteTime;
+    private final int blackTime;
+    private final GameStateUpdate state;
+
+    private InboundEvent(Type type, int board, Side side, String text, String[] values, int whiteTime, int blackTime,
+                         GameStateUpdate state) {
+        this.type = type;
+        this.board = board;
+        this.side = side;
+        this.text = text;
+        this.values = values;
+        this.whiteTime = whiteTime;
+        this.blackTime = blackTime;
+        this.state = state;
+    }
+
+    private static InboundEvent of(Type type, int board, Side side, String text, String[] values) {
+        return new InboundEvent(type, board, side, text, values, 0, 0, null);
+    }
+
+    public static InboundEvent message(String text) {
+        return of(Type.MESSAGE, 0, null, text, null);
+    }
+
+    public static InboundEvent move(int board, String move) {
+        return of(Type.MOVE, board, null, move, null);
+    }
+
+    public static InboundEvent state(GameStateUpdate state) {
+        return new InboundEvent(Type.STATE, 0, null, null, null, 0, 0, state);
+    }
+
+    /**
+     * Decodes a text frame, e.g. "fen2 ..." or "times1 1800,1795".
+     *
+     * @param frame
+     * @return the event, or null if the frame is not one the client handles
+     */
+    public static InboundEvent decode(String frame) {
+        String[] args = frame.split(" ", 2);
+        String name = args[0];
+        String arg = args.length > 1 ? args[1] : "";
+        int board = name.endsWith("1") ? 1 : name.endsWith("2") ? 2 : 0;
+        if (board != 0) {
+            name = name.substring(0, name.length() - 1);
+        }
+        try {
+            switch (name) {
+                case "connected":
+                    return of(Type.CONNECTED, 0, null, null, null);
+                case "message":
+                    return message(arg);
+                case "started":
+                    return of(Type.STARTED, 0, null, null, null);
+                case "finished":
+                    return of(Type.FINISHED, 0, null, null, null);
+                case "userside":
+                    return of(Type.USERSIDE, 0, Side.fromValue(arg.toUpperCase()), null, null);
+                case "fen":
+                    return of(Type.FEN, board, null, arg, null);
+                case "move":
+                    return move(board, arg);
+                case "whitehand":
+                    return of(Type.HAND, board, Side.WHITE, arg.toUpperCase(), null);
+                case "blackhand":
+                    return of(Type.HAND, board, Side.BLACK, arg.toLowerCase(), null);
+                case "times":
+                    String[] times = arg.split(",");
+                    return new InboundEvent(Type.TIMES, board, null, null, null, Integer.parseInt(times[0]),
+                            Integer.parseInt(times[1]), null);
+                case "players":
+                    return of(Type.PLAYERS, board, null, null, arg.split(","));
+                case "ratings":
+                    return of(Type.RATINGS, board, null, null, arg.split(","));
+                case "premovemode":
+                    return of(Type.PREMOVE_MODE, 0, null, arg, null);
+                case "premoves":
+                    // e.g. "e2e4:false,n@f3:true", the server's queue after a move
+                    return of(Type.PREMOVES, 0, null, null, arg.isEmpty() ? new String[0] : arg.split(","));
+                case GameStateUpdate.TYPE:
+                    return state(GameStateUpdate.parse(arg));
+                default:
+                    return null;
+            }
+        } catch (RuntimeException e) {
+            return message("Malformed frame: " + frame);
+        }
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public int getBoard() {
+        return board;
+    }
+
+    public Side getSide() {
+        return side;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public String[] getValues() {
+        return values;
+    }
+
+    public int getWhiteTime() {
+        return whiteTime;
+    }
+
+    public int getBlackTime() {
+        return blackTime;
+    }
+
+    public GameStateUpdate getState() {
+        return state;
+    }
+}
@@ -0,0 +1,128 @@
+package com.github.cyrodw.debughouse;
+
+import com.github.bhlangonijr.chesslib.Side;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Events decoded from the server, handed from the network thread to the UI thread.
+ * The UI drains the queue once per pulse; updates superseded by a later event of the same drain
+ * are dropped, so a burst of partner board frames costs one update instead of one per frame.
+ * Coalesced: clock times of either board, position and hands of the partner board, and the partner
+ * board of state updates, whose last move is kept for the move history.
+ * User board positions are never dropped, premoves are executed against each of them.
+ */
+public class InboundQueue {
+
+    public static final int CAPACITY = 4096;
+
+    // Coalescing keys
+    private static final int TIMES1 = 0;
+    private static final int TIMES2 = 1;
+    private static final int FEN2 = 2;
+    private static final int WHITEHAND2 = 3;
+    private static final int BLACKHAND2 = 4;
+    private static final int STATE2 = 5;
+    private static final int KEYS = 6;
+
+    private final SpscQueue<InboundEvent> queue = new SpscQueue<>(CAPACITY);
+    private final List<InboundEvent> drained = new ArrayList<>();
+    private final boolean[] seen = new boolean[KEYS];
+
+    /**
+     * Adds an event, waiting if the UI is that far behind. Network thread only.
+     *
+     * @param event - ignored if null
+     */
+    public void put(InboundEvent event) {
+        if (event != null) {
+            queue.put(event);
+        }
+    }
+
+    /**
+     * Removes the pending events, without the superseded ones. UI thread only.
+     *
+     * @param out - receives the events in order
+     * @return number of events dropped by coalescing
+     */
+    public int drain(List<InboundEvent> out) {
+        drained.clear();
+        if (queue.drainTo(drained) == 0) {
+            return 0;
+        }
+        Arrays.fill(seen, false);
+        int start = out.size();
+        int dropped = 0;
+        // Newest first, so the first event of a key is the one that stays
+        for (int i = drained.size() - 1; i >= 0; i--) {
+            if (!coalesce(drained.get(i), out)) {
+                dropped++;
+            }
+        }
+        Collections.reverse(out.subList(start, out.size()));
+        drained.clear();
+        return dropped;
+    }
+
+    /**
+     * Adds the part of an event that is not superseded by a newer one.
+     *
+     * @param event
+     * @param out
+     * @return false if the event was dropped entirely
+     */
+    private boolean coalesce(InboundEvent event, List<InboundEvent> out) {
+        boolean keep;
+        switch (event.getType()) {
+            case TIMES:
+                keep = mark(event.getBoard() == 1 ? TIMES1 : TIMES2);
+                break;
+            case FEN:
+                keep = event.getBoard() != 2 || mark(FEN2);
+                break;
+            case HAND:
+                keep = event.getBoard() != 2 || mark(event.getSide() == Side.WHITE ? WHITEHAND2 : BLACKHAND2);
+                break;
+            case STATE:
+                GameStateUpdate.BoardState partner = event.getState().getBoard(2);
+                keep = partner == null || mark(STATE2);
+                if (!keep) {
+                    // A newer state replaces the partner board, only its move is still needed
+                    List<GameStateUpdate.BoardState> boards = new ArrayList<>(event.getState().getBoards());
+                    boards.remove(partner);
+                    if (!boards.isEmpty()) {
+                        out.add(InboundEvent.state(new GameStateUpdate(event.getState().getSeq(), boards)));
+                    }
+                    if (!partner.getLastMove().isEmpty()) {
+                        out.add(InboundEvent.move(2, partner.getLastMove()));
+                    }
+                    return !boards.isEmpty();
+                }
+                break;
+            default:
+                keep = true;
+        }
+        if (keep) {
+            out.add(event);
+        }
+        return keep;
+    }
+
+    /**
+     * Marks a key as seen.
+     *
+     * @param key
+     * @return true if it was not seen yet, i.e. the event is the newest of its key
+     */
+    private boolean mark(int key) {
+        if (seen[key]) {
+            return false;
+        }
+        seen[key] = true;
+        return true;
+    }
+}
@@ -0,0 +1,176 @@
+package com.github.cyrodw.debughouse;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * Estimates the round-trip time to the server and the offset of its clock from pings.
+ * The round-trip time is smoothed with an EWMA and its jitter tracked as the smoothed deviation,
+ * as TCP does, and the last samples are kept for percentiles. Times are from System.nanoTime,
+ * so changes of the wall clock don't affect them.
+ * The server answers pings in order, so each pong belongs to the oldest ping without an answer.
+ */
+public class LatencyEstimator {
+
+    public static final int SAMPLES = 256; // Samples kept for percentiles
+    public static final int MAX_PENDING = 16; // Pings without an answer before the oldest is given up
+
+    private static final double ALPHA = 1.0 / 8; // Weight of a new sample in the smoothed round-trip time
+    private static final double BETA = 1.0 / 4; // Weight of a new sample in the jitter
+
+    /**
+     * Ping sent or about to be sent.
+     */
+    private static class Ping {
+        private final boolean manual;
+        private long sentNanos = -1;
+        private long sentMillis;
+
+        Ping(boolean manual) {
+            this.manual = manual;
+        }
+    }
+
+    private final ArrayDeque<Ping> pending = new ArrayDeque<>();
+    private final long[] samples = new long[SAMPLES];
+    private int sampleCount = 0;
+    private double smoothedNanos = -1;
+    private double jitterNanos = 0;
+    private double offsetMillis = 0;
+    private boolean offsetKnown = false;
+
+    /**
+     * Records a ping queued for sending.
+     *
+     * @param manual - true if the user asked for it, and wants to see the answer
+     */
+    public synchronized void pingQueued(boolean manual) {
+        if (pending.size() >= MAX_PENDING) {
+            pending.poll();
+        }
+        pending.add(new Ping(manual));
+    }
+
+    /**
+     * Records the moment the oldest unsent ping goes out.
+     *
+     * @param nanos - System.nanoTime
+     */
+    public synchronized void pingSent(long nanos) {
+        for (Ping ping : pending) {
+            if (ping.sentNanos < 0) {
+                ping.sentNanos = nanos;
+                ping.sentMillis = System.currentTimeMillis();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Records the answer to the oldest ping.
+     *
+     * @param nanos        - System.nanoTime of the receipt
+     * @param serverMillis - server time in the pong, or -1 if it has none
+     * @return true if the ping was asked for by the user
+     */
+    public synchronized boolean pongReceived(long nanos, long serverMillis) {
+        Ping ping = pending.poll();
+        if (ping == null) {
+            return true; // Not ours, e.g. sent before a restart
+        }
+        if (ping.sentNanos < 0) {
+            return ping.manual;
+        }
+        long rtt = nanos - ping.sentNanos;
+        samples[sampleCount++ % SAMPLES] = rtt;
+        if (smoothedNanos < 0) {
+            smoothedNanos = rtt;
+            jitterNanos = rtt / 2.0;
+        } else {
+            jitterNanos += BETA * (Math.abs(rtt - smoothedNanos) - jitterNanos);
+            smoothedNanos += ALPHA * (rtt - smoothedNanos);
+        }
+        if (serverMillis >= 0) {
+            // The server read its clock about half way through the round trip
+            double offset = serverMillis - (ping.sentMillis + rtt / 2e6);
+            offsetMillis = offsetKnown ? offsetMillis + ALPHA * (offset - offsetMillis) : offset;
+            offsetKnown = true;
+        }
+        return ping.manual;
+    }
+
+    /**
+     * Forgets the pings without an answer, e.g. when the connection dropped.
+     */
+    public synchronized void clearPending() {
+        pending.clear();
+    }
+
+    /**
+     * Returns true once a round trip was measured.
+     */
+    public synchronized boolean hasSamples() {
+        return sampleCount > 0;
+    }
+
+    /**
+     * Returns the smoothed round-trip time in nanoseconds, 0 before the first sample.
+     */
+    public synchronized long getRoundTripNanos() {
+        return smoothedNanos < 0 ? 0 : (long) smoothedNanos;
+    }
+
+    /**
+     * Returns the estimated time for a frame from the server to arrive, in nanoseconds.
+     */
+    public synchronized long getOneWayNanos() {
+        return getRoundTripNanos() / 2;
+    }
+
+    /**
+     * Returns the smoothed deviation of the round-trip time in nanoseconds.
+     */
+    public synchronized long getJitterNanos() {
+        return (long) jitterNanos;
+    }
+
+    /**
+     * Returns the server clock minus the local wall clock in milliseconds, 0 if the server never
+     * sent its time.
+     */
+    public synchronized long getClockOffsetMillis() {
+        return Math.round(offsetMillis);
+    }
+
+    /**
+     * Returns a percentile of the recent round-trip times in nanoseconds, 0 before the first sample.
+     *
+     * @param percentile - from 0 to 100
+     */
+    public synchronized long getPercentile(double percentile) {
+        int count = Math.min(sampleCount, SAMPLES);
+        if (count == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100 * count) - 1;
+        return sorted[Math.max(0, Math.min(count - 1, index))];
+    }
+
+    /**
+     * Returns a summary for the chat, e.g. "rtt 42ms, jitter 3ms, p50 41ms, p95 55ms, p99 60ms".
+     */
+    public synchronized String getSummary() {
+        if (sampleCount == 0) {
+            return "No round trip measured yet";
+        }
+        String summary = "rtt " + getRoundTripNanos() / 1_000_000 + "ms, jitter " + getJitterNanos() / 1_000_000
+                + "ms, p50 " + getPercentile(50) / 1_000_000 + "ms, p95 " + getPercentile(95) / 1_000_000
+                + "ms, p99 " + getPercentile(99) / 1_000_000 + "ms";
+        if (offsetKnown) {
+            summary += ", server clock offset " + getClockOffsetMillis() + "ms";
+        }
+        return summary;
+    }
+}
@@ -0,0 +1,206 @@
+package com.github.cyrodw.debughouse;
+
+import java.io.IOException;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Sends messages to the server from a dedicated thread, so callers on the UI thread never wait.
+ * Moves, premoves, cancels and other commands go out before any chat message; chat messages and
+ * ptells are sent in batches behind them, checking for a new command between each one.
+ * Frames are sent one at a time, the next one once the transport completes the previous one.
+ * While the transport is disconnected messages are kept, including one whose send failed because of
+ * the disconnect, and sent in order once signal() reports the transport is back.
+ */
+public class OutboundScheduler {
+
+    public static final int CHAT_BATCH = 8; // Chat messages sent per wake-up while no command waits
+    public static final long SEND_TIMEOUT = 5000; // Milliseconds to wait for a send to complete
+    public static final int MAX_IO_RETRIES = 3; // I/O errors can precede the close of a dropped connection
+
+    /**
+     * Asynchronous transport of a frame, e.g. a websocket session.
+     */
+    public interface Transport {
+        /**
+         * @param message
+         * @param done    - called with null when sent, or the error
+         */
+        void send(String message, Consumer<Throwable> done);
+    }
+
+    private final Transport transport;
+    private final BooleanSupplier connected;
+    private final Consumer<Throwable> errorHandler;
+    private final Deque<Outbound> commands = new ConcurrentLinkedDeque<>();
+    private final Deque<Outbound> chat = new ConcurrentLinkedDeque<>();
+    private final Thread thread;
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private volatile long lastCommandNanos = 0; // Queue to completion time of the last command
+    private volatile boolean running = true;
+
+    /**
+     * Message waiting to be sent, with the future completed once it is.
+     */
+    private static class Outbound {
+        private final String message;
+        private final long queued = System.nanoTime();
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+        private int retries = 0;
+
+        Outbound(String message) {
+            this.message = message;
+        }
+    }
+
+    /**
+     * @param transport
+     * @param connected    - whether the transport can send, messages wait while it can't
+     * @param errorHandler - called on the sender thread when a send fails while connected
+     */
+    public OutboundScheduler(Transport transport, BooleanSupplier connected, Consumer<Throwable> errorHandler) {
+        this.transport = transport;
+        this.connected = connected;
+        this.errorHandler = errorHandler;
+        this.thread = new Thread(this::run, "debughouse-outbound");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Queues a message, commands ahead of chat.
+     *
+     * @param message - e.g. "move e2e4" or "message hi"
+     * @return future completed when the message is sent, or exceptionally if it fails
+     */
+    public CompletableFuture<Void> send(String message) {
+        Outbound outbound = new Outbound(message);
+        if (!running) {
+            outbound.future.completeExceptionally(new IllegalStateException("Scheduler is shut down"));
+            return outbound.future;
+        }
+        (isChat(message) ? chat : commands).add(outbound);
+        LockSupport.unpark(thread);
+        return outbound.future;
+    }
+
+    /**
+     * Returns true for chat messages, which include ptells such as ":bughouse-bq".
+     *
+     * @param message
+     */
+    public static boolean isChat(String message) {
+        return message.startsWith("message ");
+    }
+
+    public long getSent() {
+        return sent.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    public int getPending() {
+        return commands.size() + chat.size();
+    }
+
+    /**
+     * Returns the time from queueing to send completion of the last command, in microseconds.
+     */
+    public long getLastCommandLatency() {
+        return lastCommandNanos / 1000;
+    }
+
+    /**
+     * Wakes the sender thread, e.g. when the transport is connected again.
+     */
+    public void signal() {
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * Stops the sender thread, failing the messages not sent yet.
+     */
+    public void shutdown() {
+        running = false;
+        LockSupport.unpark(thread);
+    }
+
+    private void run() {
+        while (running) {
+            Outbound outbound;
+            while (connected.getAsBoolean() && (outbound = commands.poll()) != null) {
+                transmit(outbound, commands);
+            }
+            for (int i = 0; i < CHAT_BATCH && commands.isEmpty() && connected.getAsBoolean()
+                    && (outbound = chat.poll()) != null; i++) {
+                transmit(outbound, chat);
+            }
+            if (!connected.getAsBoolean() || (commands.isEmpty() && chat.isEmpty())) {
+                LockSupport.park(this);
+            }
+        }
+        Outbound outbound;
+        while ((outbound = commands.poll()) != null || (outbound = chat.poll()) != null) {
+            outbound.future.completeExceptionally(new IllegalStateException("Scheduler is shut down"));
+        }
+    }
+
+    /**
+     * Sends a message and waits for its completion, the transport takes one frame at a time.
+     *
+     * @param outbound
+     * @param queue    - queue the message came from, it goes back to its head if the transport disconnects
+     */
+    private void transmit(Outbound outbound, Deque<Outbound> queue) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        try {
+            transport.send(outbound.message, error -> {
+                if (error == null) {
+                    done.complete(null);
+                } else {
+                    done.completeExceptionally(error);
+                }
+            });
+            done.get(SEND_TIMEOUT, TimeUnit.MILLISECONDS);
+            sent.incrementAndGet();
+            if (queue == commands) {
+                lastCommandNanos = System.nanoTime() - outbound.queued;
+            }
+            outbound.future.complete(null);
+        } catch (InterruptedException e) {
+            running = false;
+            fail(outbound, e);
+        } catch (ExecutionException e) {
+            retryOrFail(outbound, queue, e.getCause());
+        } catch (TimeoutException | RuntimeException e) {
+            retryOrFail(outbound, queue, e);
+        }
+    }
+
+    private void retryOrFail(Outbound outbound, Deque<Outbound> queue, Throwable error) {
+        if (!connected.getAsBoolean() || (error instanceof IOException && outbound.retries++ < MAX_IO_RETRIES)) {
+            queue.addFirst(outbound);
+        } else {
+            fail(outbound, error);
+        }
+    }
+
+    private void fail(Outbound outbound, Throwable error) {
+        failed.incrementAndGet();
+        outbound.future.completeExceptionally(error);
+        if (errorHandler != null) {
+            errorHandler.accept(error);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.github.cyrodw.debughouse;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded lock-free queue for exactly one producer thread and one consumer thread.
+ * Each index is only written by one side, so a release store of it publishes the element.
+ *
+ * @param <E> element type
+ */
+public class SpscQueue<E> {
+
+    private final Object[] buffer;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong(); // Next index to read, written by the consumer
+    private final AtomicLong tail = new AtomicLong(); // Next index to write, written by the producer
+    private long headCache = 0; // Producer's last view of head, saves reading it on every offer
+
+    /**
+     * @param capacity - rounded up to a power of two
+     */
+    public SpscQueue(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.buffer = new Object[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * Adds an element. Producer thread only.
+     *
+     * @param e
+     * @return false if the queue is full
+     */
+    public boolean offer(E e) {
+        long t = tail.get();
+        if (t - headCache >= buffer.length) {
+            headCache = head.get();
+            if (t - headCache >= buffer.length) {
+                return false;
+            }
+        }
+        buffer[(int) t & mask] = e;
+        tail.lazySet(t + 1);
+        return true;
+    }
+
+    /**
+     * Adds an element, waiting for the consumer while the queue is full. Producer thread only.
+     *
+     * @param e
+     */
+    public void put(E e) {
+        while (!offer(e)) {
+            LockSupport.parkNanos(100_000L);
+        }
+    }
+
+    /**
+     * Removes the oldest element. Consumer thread only.
+     *
+     * @return the element, or null if the queue is empty
+     */
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        long h = head.get();
+        if (h == tail.get()) {
+            return null;
+        }
+        int index = (int) h & mask;
+        E e = (E) buffer[index];
+        buffer[index] = null;
+        head.lazySet(h + 1);
+        return e;
+    }
+
+    /**
+     * Moves all available elements to a collection, in order. Consumer thread only.
+     *
+     * @param out
+     * @return number of elements moved
+     */
+    @SuppressWarnings("unchecked")
+    public int drainTo(Collection<? super E> out) {
+        long h = head.get();
+        long t = tail.get();
+        for (long i = h; i < t; i++) {
+            int index = (int) i & mask;
+            out.add((E) buffer[index]);
+            buffer[index] = null;
+        }
+        head.lazySet(t);
+        return (int) (t - h);
+    }
+
+    public boolean isEmpty() {
+        return head.get() == tail.get();
+    }
+}
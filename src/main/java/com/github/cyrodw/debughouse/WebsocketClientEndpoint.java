@@ -1,18 +1,90 @@
 package com.github.cyrodw.debughouse;
 
+import com.github.cyrodw.debughouse.protocol.BinaryCodec;
+
 import javax.websocket.*;
+import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
 
-@ClientEndpoint
+/**
+ * Connection to the server. When the connection drops it reconnects with exponential backoff and,
+ * if the server gave a session token, resumes the session: the new connection adds
+ * "resume=TOKEN&seq=SEQ" to the query, asking for the state updates after the last one the client
+ * applied instead of a new game.
+ */
+@ClientEndpoint(subprotocols = {BinaryCodec.SUBPROTOCOL})
 public class WebsocketClientEndpoint {
 
-    Session userSession = null;
-    private MessageHandler messageHandler;
+    public static final long INITIAL_BACKOFF = 250; // Milliseconds before the first reconnect attempt
+    public static final long MAX_BACKOFF = 8000; // Milliseconds between attempts at most
+
+    volatile Session userSession = null;
+    // Set on the caller's thread, read on the websocket threads
+    private volatile MessageHandler messageHandler;
+    private volatile StateHandler stateHandler;
+    private volatile ConnectionListener connectionListener;
+    // Set if the server selected the binary protocol, text otherwise
+    private volatile BinaryCodec codec;
+    private final URI endpointURI;
+    private final WebSocketContainer container;
+    private ScheduledExecutorService reconnector; // Created on the first drop unless given, see getReconnector
+    private boolean ownsReconnector = false;
+    private volatile String resumeToken; // Sent by the server as "session TOKEN"
+    private volatile LongSupplier resumeSeq = () -> -1;
+    private volatile boolean ready = false;
+    private volatile boolean resuming = false; // Connecting with a resume request
+    private volatile boolean closing = false;
+    private volatile int attempts = 0;
 
+    /**
+     * Creates the endpoint without connecting, set the handlers and the listener before calling connect.
+     *
+     * @param endpointURI
+     */
     public WebsocketClientEndpoint(URI endpointURI) {
+        this(endpointURI, ContainerProvider.getWebSocketContainer(), null);
+    }
+
+    /**
+     * Creates the endpoint without connecting, on a container and a scheduler shared with other endpoints.
+     * Each container of the implementation has its own transport and threads, so processes running
+     * many connections should share one.
+     *
+     * @param endpointURI
+     * @param container   - container to connect with
+     * @param reconnector - schedules the reconnects, not shut down by close; null to create one on the first drop
+     */
+    public WebsocketClientEndpoint(URI endpointURI, WebSocketContainer container, ScheduledExecutorService reconnector) {
+        this.endpointURI = endpointURI;
+        this.container = container;
+        this.reconnector = reconnector;
+    }
+
+    private synchronized ScheduledExecutorService getReconnector() {
+        if (reconnector == null) {
+            reconnector = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "debughouse-reconnect");
+                thread.setDaemon(true);
+                return thread;
+            });
+            ownsReconnector = true;
+        }
+        return reconnector;
+    }
+
+    /**
+     * Opens the first connection, the handlers and the listener set so far are told about it.
+     */
+    public void connect() {
         try {
-            WebSocketContainer container = ContainerProvider.getWebSocketContainer();
             container.connectToServer(this, endpointURI);
         } catch (Exception e) {
             throw new RuntimeException(e);
@@ -27,17 +99,89 @@ public class WebsocketClientEndpoint {
     @OnOpen
     public void onOpen(Session userSession) {
         this.userSession = userSession;
+        boolean binary = BinaryCodec.SUBPROTOCOL.equals(userSession.getNegotiatedSubprotocol());
+        this.codec = binary ? new BinaryCodec() : null;
+        attempts = 0;
+        ready = true;
+        if (connectionListener != null) {
+            connectionListener.onConnected(resuming);
+        }
     }
 
     /**
      * Callback hook for Connection close events.
+     * Unless the client closed it, schedules a reconnect.
      *
      * @param userSession the userSession which is getting closed.
      * @param reason the reason for connection close
      */
     @OnClose
     public void onClose(Session userSession, CloseReason reason) {
+        ready = false;
         this.userSession = null;
+        if (closing) {
+            return;
+        }
+        if (connectionListener != null) {
+            connectionListener.onDisconnected();
+        }
+        scheduleReconnect();
+    }
+
+    @OnError
+    public void onError(Session userSession, Throwable error) {
+        // Followed by onClose if the connection is lost
+    }
+
+    private void scheduleReconnect() {
+        // Doubles up to the maximum, with jitter so clients dropped together don't retry together
+        long delay = Math.min(MAX_BACKOFF, INITIAL_BACKOFF << Math.min(attempts, 10));
+        delay = delay * (80 + ThreadLocalRandom.current().nextInt(41)) / 100;
+        attempts++;
+        getReconnector().schedule(() -> {
+            if (closing || userSession != null) {
+                return;
+            }
+            try {
+                String token = resumeToken;
+                resuming = token != null;
+                container.connectToServer(this, resuming ? getResumeURI(token) : endpointURI);
+            } catch (Exception e) {
+                scheduleReconnect();
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private URI getResumeURI(String token) {
+        String uri = endpointURI.toString();
+        return URI.create(uri + (uri.contains("?") ? "&" : "?") + "resume=" + token + "&seq=" + resumeSeq.getAsLong());
+    }
+
+    /**
+     * Closes the connection for good.
+     */
+    public void close() {
+        closing = true;
+        synchronized (this) {
+            if (ownsReconnector) {
+                reconnector.shutdownNow();
+            }
+        }
+        Session session = this.userSession;
+        if (session != null) {
+            try {
+                session.close();
+            } catch (IOException e) {
+                // Closing anyway
+            }
+        }
+    }
+
+    /**
+     * Returns true if messages can be sent.
+     */
+    public boolean isConnected() {
+        return ready;
     }
 
     /**
@@ -47,23 +191,95 @@ public class WebsocketClientEndpoint {
      */
     @OnMessage
     public void onMessage(String message) {
+        if (message.startsWith("session ")) {
+            resumeToken = message.substring(8).trim();
+            return;
+        }
         if (this.messageHandler != null) {
             this.messageHandler.handleMessage(message);
         }
     }
 
+    /**
+     * Callback hook for binary messages of the binary protocol.
+     * States go to the state handler if there is one, anything else to the message handler as text.
+     *
+     * @param message The binary message
+     */
+    @OnMessage
+    public void onMessage(ByteBuffer message) {
+        if (this.codec == null) {
+            return;
+        }
+        byte type = message.get();
+        if (type == BinaryCodec.STATE) {
+            GameStateUpdate update = codec.decodeState(message);
+            if (this.stateHandler != null) {
+                this.stateHandler.handleState(update);
+            } else {
+                onMessage(update.toString());
+            }
+        } else if (type == BinaryCodec.TEXT) {
+            onMessage(BinaryCodec.getText(message));
+        }
+    }
+
     public void addMessageHandler(MessageHandler msgHandler) {
         this.messageHandler = msgHandler;
     }
 
+    public void addStateHandler(StateHandler stateHandler) {
+        this.stateHandler = stateHandler;
+    }
+
+    /**
+     * @param listener - told when the connection drops and when it is back
+     */
+    public void setConnectionListener(ConnectionListener listener) {
+        this.connectionListener = listener;
+    }
+
+    /**
+     * @param seq - sequence number of the last state update applied, sent when resuming
+     */
+    public void setResumeSeq(LongSupplier seq) {
+        this.resumeSeq = seq;
+    }
+
+    public boolean isBinary() {
+        return codec != null;
+    }
+
 
     /**
-     * Send a message.
+     * Send a message, dropped if not connected.
      *
      * @param message
      */
     public void sendMessage(String message) {
-        this.userSession.getAsyncRemote().sendText(message);
+        sendMessage(message, error -> {
+        });
+    }
+
+    /**
+     * Send a message, reporting its completion.
+     *
+     * @param message
+     * @param done    - called with null when sent, or the error
+     */
+    public void sendMessage(String message, Consumer<Throwable> done) {
+        Session session = this.userSession;
+        BinaryCodec codec = this.codec;
+        if (session == null || !ready) {
+            done.accept(new IllegalStateException("Not connected"));
+            return;
+        }
+        SendHandler handler = result -> done.accept(result.isOK() ? null : result.getException());
+        if (codec != null) {
+            session.getAsyncRemote().sendBinary(BinaryCodec.encodeCommand(message), handler);
+        } else {
+            session.getAsyncRemote().sendText(message, handler);
+        }
     }
 
     public static interface MessageHandler {
@@ -71,4 +287,19 @@ public class WebsocketClientEndpoint {
         public void handleMessage(String message);
     }
 
+    public static interface StateHandler {
+
+        public void handleState(GameStateUpdate update);
+    }
+
+    public static interface ConnectionListener {
+
+        /**
+         * @param resumed - true if the session was resumed after a drop
+         */
+        public void onConnected(boolean resumed);
+
+        public void onDisconnected();
+    }
+
 }
\ No newline at end of file
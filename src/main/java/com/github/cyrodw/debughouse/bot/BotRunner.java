@@ -0,0 +1,182 @@
+package com.github.cyrodw.debughouse.bot;
+
+import com.github.cyrodw.debughouse.server.LoadStats;
+import org.glassfish.tyrus.client.ClientManager;
+import org.glassfish.tyrus.client.ClientProperties;
+import org.glassfish.tyrus.client.ThreadPoolConfig;
+import org.glassfish.tyrus.container.grizzly.client.GrizzlyClientProperties;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Runs many bot sessions against a server from one JVM, one thread per session, and reports every
+ * second the frames and moves per second, the latency of moves and the garbage collections.
+ * Sessions run on virtual threads where the JVM has them, Java 21 or a preview-enabled 19 or 20,
+ * and on platform threads otherwise, which limits a run to a few thousand sessions.
+ * The sessions share one websocket container, with bounded transport pools, and one reconnect scheduler,
+ * so the threads of the connections don't grow with the sessions.
+ * <p>
+ * Run with [sessions] [seconds] [--uri URI] [--minutes MINUTES] [--think MILLISECONDS].
+ */
+public class BotRunner {
+
+    public static final int DEFAULT_SESSIONS = 100;
+    public static final int DEFAULT_SECONDS = 30;
+    public static final String DEFAULT_URI = "ws://localhost:8080/";
+    public static final int DEFAULT_MINUTES = 1;
+    public static final long DEFAULT_THINK = 200;
+    public static final double PREMOVE_CHANCE = 0.3;
+    public static final int SELECTOR_THREADS = 3; // The least Tyrus accepts
+    public static final int WORKER_THREADS = 8;
+
+    public static void main(String[] args) throws InterruptedException {
+        int sessions = DEFAULT_SESSIONS;
+        int seconds = DEFAULT_SECONDS;
+        String uri = DEFAULT_URI;
+        int minutes = DEFAULT_MINUTES;
+        long think = DEFAULT_THINK;
+        List<String> positional = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--uri" -> uri = args[++i];
+                case "--minutes" -> minutes = Integer.parseInt(args[++i]);
+                case "--think" -> think = Long.parseLong(args[++i]);
+                default -> positional.add(args[i]);
+            }
+        }
+        if (positional.size() > 0) {
+            sessions = Integer.parseInt(positional.get(0));
+        }
+        if (positional.size() > 1) {
+            seconds = Integer.parseInt(positional.get(1));
+        }
+
+        ThreadFactory factory = getThreadFactory();
+        boolean virtual = factory != null;
+        if (!virtual) {
+            factory = runnable -> {
+                Thread thread = new Thread(runnable);
+                thread.setDaemon(true);
+                return thread;
+            };
+        }
+        ClientManager container = createContainer();
+        ScheduledExecutorService reconnector = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "bot-reconnect");
+            thread.setDaemon(true);
+            return thread;
+        });
+        LoadStats stats = new LoadStats();
+        List<BotSession> bots = new ArrayList<>(sessions);
+        List<Thread> threads = new ArrayList<>(sessions);
+        for (int i = 0; i < sessions; i++) {
+            URI session = URI.create(uri + (uri.contains("?") ? "&" : "?") + "username=bot" + i);
+            BotSession bot = new BotSession(session, minutes, think, new RandomMovePolicy(PREMOVE_CHANCE), stats,
+                    container, reconnector);
+            Thread thread = factory.newThread(bot);
+            thread.setName("bot-session-" + i);
+            bots.add(bot);
+            threads.add(thread);
+            thread.start();
+        }
+        System.out.println(sessions + " sessions on " + (virtual ? "virtual" : "platform") + " threads against "
+                + uri + " for " + seconds + "s");
+
+        long start = System.nanoTime();
+        long frames = 0;
+        long moves = 0;
+        long[] gc = getGarbageCollections();
+        for (int second = 1; second <= seconds; second++) {
+            Thread.sleep(Math.max(0, start + second * 1_000_000_000L - System.nanoTime()) / 1_000_000);
+            long[] now = getGarbageCollections();
+            long heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+            System.out.printf("%ds: %d frames/s, %d moves/s, p50 %.2fms p99 %.2fms, %d gc/s, %dms gc, heap %dMB%n",
+                    second, stats.getFrames() - frames, stats.getMoves() - moves, stats.getPercentile(50) / 1e6,
+                    stats.getPercentile(99) / 1e6, now[0] - gc[0], now[1] - gc[1], heap >> 20);
+            frames = stats.getFrames();
+            moves = stats.getMoves();
+            gc = now;
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        for (BotSession bot : bots) {
+            bot.stop();
+        }
+        for (Thread thread : threads) {
+            thread.join(1000);
+        }
+        reconnector.shutdownNow();
+        container.shutdown();
+        System.out.printf("Total: %.0f frames/s, %.0f moves/s, latency p50 %.2fms p95 %.2fms p99 %.2fms, "
+                        + "%d games finished, %d errors%n", stats.getFrames() / elapsed, stats.getMoves() / elapsed,
+                stats.getPercentile(50) / 1e6, stats.getPercentile(95) / 1e6, stats.getPercentile(99) / 1e6,
+                stats.getGames(), stats.getErrors());
+        printSessions(bots);
+    }
+
+    /**
+     * Returns a client container for all the sessions. Tyrus otherwise starts a transport, with its
+     * selector and worker pools, per connection.
+     */
+    private static ClientManager createContainer() {
+        ClientManager container = ClientManager.createClient();
+        container.getProperties().put(ClientProperties.SHARED_CONTAINER, true);
+        container.getProperties().put(GrizzlyClientProperties.SELECTOR_THREAD_POOL_CONFIG,
+                ThreadPoolConfig.defaultConfig().setPoolName("bot-selector").setDaemon(true)
+                        .setMaxPoolSize(SELECTOR_THREADS).setCorePoolSize(SELECTOR_THREADS));
+        container.getProperties().put(ClientProperties.WORKER_THREAD_POOL_CONFIG,
+                ThreadPoolConfig.defaultConfig().setPoolName("bot-worker").setDaemon(true)
+                        .setMaxPoolSize(WORKER_THREADS).setCorePoolSize(WORKER_THREADS));
+        return container;
+    }
+
+    /**
+     * Prints the spread of the mean latency over the sessions that moved, and the slowest session.
+     *
+     * @param bots
+     */
+    private static void printSessions(List<BotSession> bots) {
+        long[] means = bots.stream().filter(bot -> bot.getMoves() > 0).mapToLong(BotSession::getMeanLatency)
+                .sorted().toArray();
+        if (means.length == 0) {
+            System.out.println("No session moved");
+            return;
+        }
+        long worst = bots.stream().mapToLong(BotSession::getMaxLatency).max().orElse(0);
+        System.out.printf("Sessions: %d moved, mean latency min %.2fms median %.2fms max %.2fms, worst move %.2fms%n",
+                means.length, means[0] / 1e6, means[means.length / 2] / 1e6, means[means.length - 1] / 1e6,
+                worst / 1e6);
+    }
+
+    /**
+     * Returns the collections and the milliseconds spent collecting since the JVM started.
+     */
+    private static long[] getGarbageCollections() {
+        long[] totals = new long[2];
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            totals[0] += Math.max(0, collector.getCollectionCount());
+            totals[1] += Math.max(0, collector.getCollectionTime());
+        }
+        return totals;
+    }
+
+    /**
+     * Returns a factory of virtual threads, or null if the JVM has none.
+     * Looked up reflectively so the client still builds and runs on Java 17.
+     */
+    static ThreadFactory getThreadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            return null; // Before Java 19, or a preview without --enable-preview
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.github.cyrodw.debughouse.bot;
+
+import com.github.cyrodw.debughouse.BughouseClientCore;
+import com.github.cyrodw.debughouse.ClientBoard;
+import com.github.cyrodw.debughouse.GameStateUpdate;
+import com.github.cyrodw.debughouse.LatencyEstimator;
+import com.github.cyrodw.debughouse.WebsocketClientEndpoint;
+import com.github.cyrodw.debughouse.server.LoadStats;
+
+import javax.websocket.WebSocketContainer;
+import java.net.URI;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bot playing bughouse through a websocket session and a client core of its own, like the JavaFX
+ * client does, server premove mode included. Its thread polls the core, thinks and moves; it spends
+ * most of its time sleeping, which costs next to nothing on a virtual thread.
+ * The latency of a move is measured on the network thread, from sending it to its echo: the
+ * "move1" frame of the same move, or the first state update of the board after it.
+ */
+public class BotSession implements Runnable, BughouseClientCore.Listener {
+
+    public static final long POLL_INTERVAL = 10; // Milliseconds between polls of the core
+    public static final long ECHO_TIMEOUT = 5000; // Milliseconds to wait for the echo of a move
+
+    private final URI uri;
+    private final int minutes;
+    private final long think;
+    private final MovePolicy policy;
+    private final LoadStats stats;
+    private final WebSocketContainer container;
+    private final ScheduledExecutorService reconnector;
+    private final AtomicLong moves = new AtomicLong();
+    private final AtomicLong latencyTotal = new AtomicLong(); // Nanoseconds
+    private final AtomicLong latencyMax = new AtomicLong();
+    private WebsocketClientEndpoint endpoint;
+    private BughouseClientCore core;
+    private volatile String sentMove = null; // Move waiting for its echo
+    private volatile long sentNanos = 0;
+    private long thinkUntil = 0; // System.nanoTime the move is due, 0 while not thinking
+    private boolean premoved = false; // Premoved on the current opponent turn
+    private volatile boolean running = true;
+
+    /**
+     * @param uri         - server, with the username in the query
+     * @param minutes     - time control to seek
+     * @param think       - average think time in milliseconds
+     * @param policy      - chooses the moves, one per session
+     * @param stats       - shared by the sessions of a run
+     * @param container   - websocket container shared by the sessions of a run
+     * @param reconnector - reconnect scheduler shared by the sessions of a run
+     */
+    public BotSession(URI uri, int minutes, long think, MovePolicy policy, LoadStats stats,
+                      WebSocketContainer container, ScheduledExecutorService reconnector) {
+        this.uri = uri;
+        this.minutes = minutes;
+        this.think = think;
+        this.policy = policy;
+        this.stats = stats;
+        this.container = container;
+        this.reconnector = reconnector;
+    }
+
+    /**
+     * Moves echoed by the server.
+     */
+    public long getMoves() {
+        return moves.get();
+    }
+
+    /**
+     * Returns the mean latency of the moves in nanoseconds, 0 before the first echo.
+     */
+    public long getMeanLatency() {
+        long count = moves.get();
+        return count == 0 ? 0 : latencyTotal.get() / count;
+    }
+
+    public long getMaxLatency() {
+        return latencyMax.get();
+    }
+
+    /**
+     * Stops the session after its current poll.
+     */
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public void run() {
+        try {
+            core = new BughouseClientCore(message -> endpoint.sendMessage(message), new LatencyEstimator());
+            core.addListener(this);
+            endpoint = new WebsocketClientEndpoint(uri, container, reconnector);
+            endpoint.addMessageHandler(this::receive);
+            endpoint.addStateHandler(this::receiveState);
+            endpoint.connect();
+            core.send("premovemode server");
+            core.send("seek " + minutes);
+            while (running) {
+                core.poll();
+                act();
+                Thread.sleep(POLL_INTERVAL);
+            }
+        } catch (InterruptedException e) {
+            // Stopped
+        } catch (RuntimeException e) {
+            stats.error();
+        } finally {
+            if (endpoint != null) {
+                endpoint.close();
+            }
+        }
+    }
+
+    /**
+     * Frame from the server, on the network thread.
+     *
+     * @param message
+     */
+    private void receive(String message) {
+        stats.frameReceived();
+        String move = sentMove;
+        if (move != null && (message.startsWith("move1 ") && message.substring(6).equalsIgnoreCase(move)
+                || message.startsWith(GameStateUpdate.TYPE + " ") && updatesUserBoard(message))) {
+            echoed();
+        }
+        core.receive(message);
+    }
+
+    private void receiveState(GameStateUpdate update) {
+        stats.frameReceived();
+        if (sentMove != null && update.getBoard(1) != null) {
+            echoed();
+        }
+        core.receiveState(update);
+    }
+
+    /**
+     * Returns true if a text state frame updates board 1, e.g. "state 1 42 1|...;2|...".
+     *
+     * @param state
+     */
+    private static boolean updatesUserBoard(String state) {
+        int seq = state.indexOf(' ', GameStateUpdate.TYPE.length() + 1) + 1;
+        int boards = state.indexOf(' ', seq) + 1;
+        return state.startsWith("1|", boards) || state.contains(";1|");
+    }
+
+    private void echoed() {
+        long latency = System.nanoTime() - sentNanos;
+        sentMove = null;
+        moves.incrementAndGet();
+        latencyTotal.addAndGet(latency);
+        latencyMax.accumulateAndGet(latency, Math::max);
+        stats.moveEchoed(latency);
+    }
+
+    /**
+     * Moves after thinking on the user's turn, premoves on the opponent's.
+     */
+    private void act() {
+        ClientBoard board = core.getUserBoard();
+        if (!board.isPlaying()) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (sentMove != null) {
+            if (now - sentNanos < ECHO_TIMEOUT * 1_000_000) {
+                return;
+            }
+            sentMove = null; // Rejected or lost, don't wait forever
+            stats.error();
+        }
+        if (!board.getGameState().sideToMove().equals(board.getUserSide())) {
+            thinkUntil = 0;
+            if (!premoved && board.getPremoves().isEmpty()) {
+                premoved = true;
+                String premove = policy.choosePremove(board);
+                if (premove != null) {
+                    core.doMove(board, premove);
+                }
+            }
+            return;
+        }
+        premoved = false;
+        if (thinkUntil == 0) {
+            thinkUntil = now + (long) (ThreadLocalRandom.current().nextDouble() * 2 * think * 1_000_000);
+            return;
+        }
+        if (now < thinkUntil) {
+            return;
+        }
+        thinkUntil = 0;
+        String move = policy.chooseMove(board);
+        if (move != null) {
+            sentNanos = now;
+            sentMove = move;
+            if (core.doMove(board, move) != ClientBoard.MoveResult.MOVED) {
+                sentMove = null;
+            }
+        }
+    }
+
+    @Override
+    public void onGameFinished() {
+        stats.gameFinished();
+        sentMove = null;
+        thinkUntil = 0;
+        if (running) {
+            core.send("seek " + minutes);
+        }
+    }
+}
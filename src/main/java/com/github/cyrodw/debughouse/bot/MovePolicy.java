@@ -0,0 +1,23 @@
+package com.github.cyrodw.debughouse.bot;
+
+import com.github.cyrodw.debughouse.ClientBoard;
+
+/**
+ * Chooses the moves of a bot session. Called on the session's thread.
+ */
+public interface MovePolicy {
+
+    /**
+     * @param board - board of the user, with the user to move
+     * @return the move to play, e.g. "e2e4" or "N@f3", or null to wait, e.g. for a piece to drop
+     */
+    String chooseMove(ClientBoard board);
+
+    /**
+     * @param board - board of the user, with the opponent to move
+     * @return a premove, or null for none
+     */
+    default String choosePremove(ClientBoard board) {
+        return null;
+    }
+}
@@ -0,0 +1,48 @@
+package com.github.cyrodw.debughouse.bot;
+
+import com.github.bhlangonijr.chesslib.Side;
+import com.github.cyrodw.debughouse.BughouseBoard;
+import com.github.cyrodw.debughouse.ClientBoard;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Plays random legal moves, and sometimes premoves a random move of the position with the sides flipped.
+ * It keeps a scratch board, so each session needs its own.
+ */
+public class RandomMovePolicy implements MovePolicy {
+
+    private final double premoveChance;
+    private final BughouseBoard premoveBoard = new BughouseBoard();
+
+    /**
+     * @param premoveChance - chance of a premove on each opponent turn, from 0 to 1
+     */
+    public RandomMovePolicy(double premoveChance) {
+        this.premoveChance = premoveChance;
+    }
+
+    @Override
+    public String chooseMove(ClientBoard board) {
+        return pick(board.getGameState().getLegalMoveList());
+    }
+
+    @Override
+    public String choosePremove(ClientBoard board) {
+        if (ThreadLocalRandom.current().nextDouble() >= premoveChance) {
+            return null;
+        }
+        Side side = board.getUserSide();
+        String[] fields = board.getFen().split(" ");
+        fields[1] = side == Side.WHITE ? "w" : "b";
+        fields[3] = "-";
+        premoveBoard.loadFromFen(String.join(" ", fields));
+        premoveBoard.setHand(board.getGameState().getHandString(side), side);
+        return pick(premoveBoard.getLegalMoveList());
+    }
+
+    private static String pick(List<String> moves) {
+        return moves.isEmpty() ? null : moves.get(ThreadLocalRandom.current().nextInt(moves.size()));
+    }
+}
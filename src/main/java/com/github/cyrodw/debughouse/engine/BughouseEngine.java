@@ -0,0 +1,120 @@
+package com.github.cyrodw.debughouse.engine;
+
+import com.github.bhlangonijr.chesslib.Piece;
+import com.github.bhlangonijr.chesslib.PieceType;
+import com.github.bhlangonijr.chesslib.Side;
+import com.github.cyrodw.debughouse.BughouseBoard;
+import com.github.cyrodw.debughouse.BughouseMoveGenerator;
+import com.github.cyrodw.debughouse.HandView;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Multi-threaded bughouse search engine.
+ * A search runs on a pool of daemon threads with Lazy SMP: all threads search the same position
+ * and share a lock-free transposition table. Searches never block the caller, results are
+ * delivered to a SearchListener on a search thread after each completed depth.
+ * Starting a new search cancels the previous one. Each pool thread keeps one worker, with its
+ * move and line arrays, for all the searches it runs.
+ */
+public class BughouseEngine {
+
+    public static final int MAX_DEPTH = 32;
+
+    // 2^20 entries of 16 bytes
+    private static final int TABLE_BITS = 20;
+
+    private final int threads;
+    private final ExecutorService pool;
+    private final TranspositionTable table = new TranspositionTable(TABLE_BITS);
+    private final ThreadLocal<SearchWorker> workers = ThreadLocal.withInitial(SearchWorker::new);
+    private Search current;
+
+    /**
+     * Creates an engine using all available cores.
+     */
+    public BughouseEngine() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param threads - number of search threads
+     */
+    public BughouseEngine(int threads) {
+        this.threads = Math.max(1, threads);
+        this.pool = Executors.newFixedThreadPool(this.threads, runnable -> {
+            Thread thread = new Thread(runnable, "bughouse-search");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts searching a position and returns immediately.
+     * The position is copied, so it can be changed while the search runs.
+     *
+     * @param position
+     * @param millis   - time budget
+     * @param listener - receives the best line after each completed depth, on a search thread
+     */
+    public synchronized void search(BughouseBoard position, long millis, SearchListener listener) {
+        start(position, millis, listener);
+    }
+
+    /**
+     * Searches a position and waits for the result. Not to be called on the JavaFX thread.
+     *
+     * @param position
+     * @param millis   - time budget
+     * @return best line, or null if the search was cancelled before depth 1 was complete
+     */
+    public SearchResult searchAndWait(BughouseBoard position, long millis) throws InterruptedException {
+        Search search;
+        synchronized (this) {
+            search = start(position, millis, null);
+        }
+        return search.await();
+    }
+
+    /**
+     * Cancels the current search, if any.
+     */
+    public synchronized void stop() {
+        if (current != null) {
+            current.cancel();
+            current = null;
+        }
+    }
+
+    /**
+     * Cancels the current search and releases the threads.
+     */
+    public synchronized void shutdown() {
+        stop();
+        pool.shutdownNow();
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    private Search start(BughouseBoard position, long millis, SearchListener listener) {
+        stop();
+        int[] hand = new int[Piece.values().length];
+        for (Side side : Side.allSides) {
+            HandView pocket = position.getActualHand(side);
+            for (PieceType type : BughouseMoveGenerator.dropTypes) {
+                Piece piece = Piece.make(side, type);
+                hand[piece.ordinal()] = Math.max(0, pocket.get(piece));
+            }
+        }
+        Search search = new Search(position.getFen(), hand, position.getHashKey(), table, millis, MAX_DEPTH, listener);
+        for (int i = 0; i < threads; i++) {
+            int id = i;
+            pool.execute(() -> workers.get().run(search, id));
+        }
+        current = search;
+        return search;
+    }
+}
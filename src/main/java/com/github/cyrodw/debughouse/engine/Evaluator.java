@@ -0,0 +1,91 @@
+package com.github.cyrodw.debughouse.engine;
+
+import com.github.bhlangonijr.chesslib.*;
+import com.github.cyrodw.debughouse.BughouseMoveGenerator;
+
+/**
+ * Static evaluation of bughouse positions, in centipawns from the point of view of the side to move.
+ * Pieces in hand count as material, and an exposed king is penalized by the pieces the opponent can drop next to it.
+ */
+public class Evaluator {
+
+    // Values by PieceType ordinal: pawn, knight, bishop, rook, queen, king
+    private static final int[] pieceValues = {100, 300, 320, 450, 850, 0};
+
+    // Pieces in hand can be dropped anywhere, so they are worth slightly more than on the board
+    private static final int handBonus = 15;
+    private static final int kingShelterBonus = 12;
+    private static final int kingHoleWeight = 3;
+
+    // Centralization bonus by square index for knights and bishops
+    private static final int[] centerBonus = new int[64];
+
+    static {
+        for (int sq = 0; sq < 64; sq++) {
+            int file = sq & 7;
+            int rank = sq >> 3;
+            int distance = Math.max(Math.abs(2 * file - 7), Math.abs(2 * rank - 7)) / 2;
+            centerBonus[sq] = (3 - distance) * 8;
+        }
+    }
+
+    private Evaluator() {
+    }
+
+    /**
+     * Returns the value of a piece type, 0 for the king and for PieceType.NONE.
+     *
+     * @param type
+     */
+    public static int getValue(PieceType type) {
+        return type == null || type == PieceType.NONE ? 0 : pieceValues[type.ordinal()];
+    }
+
+    /**
+     * Evaluates the position for the side to move.
+     *
+     * @param board
+     * @param hand - pieces in hand of both sides, by Piece ordinal
+     */
+    public static int evaluate(Board board, int[] hand) {
+        int score = evaluateSide(board, hand, Side.WHITE) - evaluateSide(board, hand, Side.BLACK);
+        return board.getSideToMove() == Side.WHITE ? score : -score;
+    }
+
+    private static int evaluateSide(Board board, int[] hand, Side side) {
+        int score = 0;
+        Side other = side.flip();
+        for (PieceType type : BughouseMoveGenerator.dropTypes) {
+            Piece piece = Piece.make(side, type);
+            long bb = board.getBitboard(piece);
+            score += Long.bitCount(bb) * pieceValues[type.ordinal()];
+            score += hand[piece.ordinal()] * (pieceValues[type.ordinal()] + handBonus);
+            if (type == PieceType.KNIGHT || type == PieceType.BISHOP) {
+                while (bb != 0L) {
+                    score += centerBonus[Long.numberOfTrailingZeros(bb)];
+                    bb &= bb - 1;
+                }
+            } else if (type == PieceType.PAWN) {
+                while (bb != 0L) {
+                    int rank = Long.numberOfTrailingZeros(bb) >> 3;
+                    score += (side == Side.WHITE ? rank - 1 : 6 - rank) * 6;
+                    bb &= bb - 1;
+                }
+            }
+        }
+
+        // King safety: shelter from own pieces and holes next to the king the opponent can drop into
+        Square kingSq = board.getKingSquare(side);
+        if (kingSq == Square.NONE) {
+            return score;
+        }
+        long zone = Bitboard.getKingAttacks(kingSq, ~0L);
+        score += Long.bitCount(zone & board.getBitboard(side)) * kingShelterBonus;
+        int enemyHand = 0;
+        for (PieceType type : BughouseMoveGenerator.dropTypes) {
+            enemyHand += hand[Piece.make(other, type).ordinal()];
+        }
+        score -= Long.bitCount(zone & ~board.getBitboard()) * enemyHand * kingHoleWeight;
+        return score;
+    }
+}
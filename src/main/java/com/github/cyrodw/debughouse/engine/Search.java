@@ -0,0 +1,120 @@
+package com.github.cyrodw.debughouse.engine;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * State of one search shared by its worker threads: the root position, the time budget,
+ * the stop flags and the latest published result.
+ */
+class Search {
+
+    static final int MAX_PLY = 64;
+    static final int INFINITY = 32000;
+    static final int MATE = 31000;
+    static final int MATE_BOUND = MATE - MAX_PLY;
+
+    final String fen;
+    final int[] hand;
+    final long hashKey;
+    final TranspositionTable table;
+    final int maxDepth;
+    final LongAdder nodes = new LongAdder();
+    private final long startNanos;
+    private final long budgetNanos;
+    private final SearchListener listener;
+    private final CountDownLatch done = new CountDownLatch(1);
+    // Set when the time is up or the main thread finished, workers stop once depth 1 is complete
+    private volatile boolean stopped = false;
+    // Set when the search is superseded, workers stop immediately
+    private volatile boolean cancelled = false;
+    private volatile SearchResult result;
+
+    /**
+     * @param fen      - root position without pockets
+     * @param hand     - pieces in hand of both sides, by Piece ordinal
+     * @param hashKey  - BughouseBoard hash key of the root position
+     * @param table
+     * @param millis   - time budget
+     * @param maxDepth
+     * @param listener - may be null
+     */
+    Search(String fen, int[] hand, long hashKey, TranspositionTable table, long millis, int maxDepth,
+           SearchListener listener) {
+        this.fen = fen;
+        this.hand = hand;
+        this.hashKey = hashKey;
+        this.table = table;
+        this.maxDepth = Math.min(maxDepth, MAX_PLY - 1);
+        this.listener = listener;
+        this.startNanos = System.nanoTime();
+        this.budgetNanos = millis * 1_000_000L;
+    }
+
+    /**
+     * Stops the search if the time budget is spent.
+     */
+    void checkTime() {
+        if (System.nanoTime() - startNanos >= budgetNanos) {
+            stopped = true;
+        }
+    }
+
+    /**
+     * Returns true if there is no time left to start another iteration, which would
+     * take several times longer than all the previous ones.
+     */
+    boolean isIterationTimeOver() {
+        return System.nanoTime() - startNanos >= budgetNanos / 2;
+    }
+
+    void stop() {
+        stopped = true;
+    }
+
+    void cancel() {
+        cancelled = true;
+        stopped = true;
+    }
+
+    boolean isStopped() {
+        return stopped;
+    }
+
+    boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Publishes the result of a completed iteration of the main thread.
+     *
+     * @param depth
+     * @param score
+     * @param line
+     */
+    void publish(int depth, int score, List<String> line) {
+        SearchResult result = new SearchResult(hashKey, depth, score, nodes.sum(),
+                (System.nanoTime() - startNanos) / 1_000_000L, line);
+        this.result = result;
+        if (listener != null && !cancelled) {
+            listener.onResult(result);
+        }
+    }
+
+    /**
+     * Called by the main thread when it is done, stopping the helper threads.
+     */
+    void finish() {
+        stopped = true;
+        done.countDown();
+    }
+
+    /**
+     * Waits until the main thread is done and returns the last published result, null if there is none.
+     */
+    SearchResult await() throws InterruptedException {
+        done.await();
+        return result;
+    }
+}
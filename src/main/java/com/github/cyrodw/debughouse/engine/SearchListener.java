@@ -0,0 +1,14 @@
+package com.github.cyrodw.debughouse.engine;
+
+/**
+ * Receives the results of a search after each completed iteration.
+ * It is called on a search thread, so UI code has to hand the result over to its own thread,
+ * e.g. with Platform.runLater.
+ */
+public interface SearchListener {
+
+    /**
+     * @param result - best line found so far
+     */
+    void onResult(SearchResult result);
+}
@@ -0,0 +1,92 @@
+package com.github.cyrodw.debughouse.engine;
+
+import java.util.List;
+
+/**
+ * Immutable result of a completed search iteration.
+ * Moves are in the format used by BughouseBoard, e.g. "e2e4", "e7e8q" or "N@f3".
+ */
+public class SearchResult {
+
+    private final long hashKey;
+    private final int depth;
+    private final int score;
+    private final long nodes;
+    private final long millis;
+    private final List<String> line;
+
+    /**
+     * @param hashKey - BughouseBoard hash key of the searched position
+     * @param depth   - completed depth in plies
+     * @param score   - centipawns from the point of view of the side to move
+     * @param nodes   - nodes searched by all threads
+     * @param millis  - time elapsed since the start of the search
+     * @param line    - principal variation
+     */
+    public SearchResult(long hashKey, int depth, int score, long nodes, long millis, List<String> line) {
+        this.hashKey = hashKey;
+        this.depth = depth;
+        this.score = score;
+        this.nodes = nodes;
+        this.millis = millis;
+        this.line = List.copyOf(line);
+    }
+
+    /**
+     * Returns the hash key of the searched position, to check the result still applies to a board.
+     */
+    public long getHashKey() {
+        return hashKey;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public long getMillis() {
+        return millis;
+    }
+
+    public List<String> getLine() {
+        return line;
+    }
+
+    /**
+     * Returns the first move of the principal variation, or null if the side to move has no moves.
+     */
+    public String getBestMove() {
+        return line.isEmpty() ? null : line.get(0);
+    }
+
+    /**
+     * Returns true if the score is a forced mate for either side.
+     */
+    public boolean isMate() {
+        return Math.abs(score) >= Search.MATE_BOUND;
+    }
+
+    /**
+     * Returns the score as pawns, e.g. "+1.25", or as moves to mate, e.g. "#3" or "#-2".
+     */
+    public String getFormattedScore() {
+        if (isMate()) {
+            int plies = Search.MATE - Math.abs(score);
+            int moves = (plies + 1) / 2;
+            return score > 0 ? "#" + moves : "#-" + moves;
+        }
+        return (score >= 0 ? "+" : "-") + Math.abs(score) / 100 + "." + String.format("%02d", Math.abs(score) % 100);
+    }
+
+    @Override
+    public String toString() {
+        return getFormattedScore() + " d" + depth + " " + String.join(" ", line);
+    }
+}
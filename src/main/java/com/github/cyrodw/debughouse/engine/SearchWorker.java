@@ -0,0 +1,446 @@
+package com.github.cyrodw.debughouse.engine;
+
+import com.github.bhlangonijr.chesslib.*;
+import com.github.bhlangonijr.chesslib.game.GameContext;
+import com.github.bhlangonijr.chesslib.move.MoveGenerator;
+import com.github.bhlangonijr.chesslib.move.PackedMove;
+import com.github.cyrodw.debughouse.BughouseMoveGenerator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * One thread of a Lazy SMP search. Every worker runs its own iterative deepening alpha-beta search
+ * over a private copy of the position, and the workers only share the transposition table.
+ * Worker 0 is the main thread, it publishes the results and decides when the search is over.
+ * Helper threads start on alternate depths so they fill the table ahead of the main thread.
+ * A worker is reused by the searches run on the same thread, one at a time.
+ */
+class SearchWorker {
+
+    // Board moves plus drops of five piece types on at most 64 squares
+    private static final int MAX_MOVES = MoveGenerator.MAX_MOVES + 5 * 64;
+    private static final int TT_MOVE_SCORE = 1 << 30;
+    private static final int CAPTURE_SCORE = 1 << 28;
+    private static final int KILLER_SCORE = 1 << 27;
+    private static final int HISTORY_LIMIT = 1 << 20;
+
+    private Search search;
+    private int id;
+    private TranspositionTable table;
+    private final Board board = new Board(new GameContext(), false, false);
+    private final int[] hand = new int[Piece.values().length];
+    private long handKey = 0L;
+
+    private final int[][] moves = new int[Search.MAX_PLY + 1][MAX_MOVES];
+    private final int[][] scores = new int[Search.MAX_PLY + 1][MAX_MOVES];
+    private final int[][] killers = new int[Search.MAX_PLY + 1][2];
+    private final int[][] history = new int[12][64];
+    private final int[][] pv = new int[Search.MAX_PLY + 1][Search.MAX_PLY + 1];
+    private final int[] pvLength = new int[Search.MAX_PLY + 1];
+
+    private long nodes = 0L;
+    private int completedDepth = 0;
+    private boolean aborted = false;
+
+    /**
+     * Runs this worker's part of a search, clearing what the previous search left.
+     *
+     * @param search
+     * @param id     - 0 for the main thread
+     */
+    void run(Search search, int id) {
+        this.search = search;
+        this.id = id;
+        this.table = search.table;
+        handKey = 0L;
+        nodes = 0L;
+        completedDepth = 0;
+        aborted = false;
+        for (int[] plyKillers : killers) {
+            Arrays.fill(plyKillers, 0);
+        }
+        for (int[] pieceHistory : history) {
+            Arrays.fill(pieceHistory, 0);
+        }
+        try {
+            if (search.isCancelled()) {
+                return;
+            }
+            board.loadFromFen(search.fen);
+            System.arraycopy(search.hand, 0, hand, 0, hand.length);
+            for (PieceType type : BughouseMoveGenerator.dropTypes) {
+                for (Side side : Side.allSides) {
+                    Piece piece = Piece.make(side, type);
+                    handKey ^= Zobrist.getPocketKey(piece, hand[piece.ordinal()]);
+                }
+            }
+            iterate();
+        } finally {
+            if (id == 0) {
+                search.finish();
+            }
+            this.search = null; // Not kept alive with its listener until the next search
+        }
+    }
+
+    private void iterate() {
+        for (int depth = 1 + (id & 1); depth <= search.maxDepth; depth++) {
+            int score = search(depth, -Search.INFINITY, Search.INFINITY, 0);
+            if (aborted) {
+                return;
+            }
+            completedDepth = depth;
+            if (id == 0) {
+                search.publish(depth, score, getLine());
+                if (pvLength[0] == 0 || Math.abs(score) >= Search.MATE_BOUND || search.isIterationTimeOver()) {
+                    return;
+                }
+            } else if (search.isStopped()) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Alpha-beta search with principal variation search, check extensions and late move reductions.
+     *
+     * @param depth - remaining depth in plies
+     * @param alpha
+     * @param beta
+     * @param ply   - distance from the root
+     */
+    private int search(int depth, int alpha, int beta, int ply) {
+        pvLength[ply] = ply;
+        if (shouldAbort()) {
+            return 0;
+        }
+        boolean inCheck = board.isKingAttacked();
+        if (inCheck && ply < Search.MAX_PLY - 1) {
+            depth++;
+        }
+        if (depth <= 0 || ply >= Search.MAX_PLY - 1) {
+            return quiesce(alpha, beta, ply);
+        }
+
+        long key = board.getIncrementalHashKey() ^ handKey;
+        long entry = table.probe(key);
+        int ttMove = 0;
+        if (entry != 0L) {
+            ttMove = TranspositionTable.getMove(entry);
+            if (ply > 0 && TranspositionTable.getDepth(entry) >= depth) {
+                int score = fromTable(TranspositionTable.getScore(entry), ply);
+                int bound = TranspositionTable.getBound(entry);
+                if (bound == TranspositionTable.BOUND_EXACT
+                        || (bound == TranspositionTable.BOUND_LOWER && score >= beta)
+                        || (bound == TranspositionTable.BOUND_UPPER && score <= alpha)) {
+                    return score;
+                }
+            }
+        }
+
+        int count = generateMoves(ply);
+        if (count == 0) {
+            return inCheck ? -Search.MATE + ply : 0;
+        }
+        scoreMoves(ply, count, ttMove);
+
+        int originalAlpha = alpha;
+        int bestScore = -Search.INFINITY;
+        int bestMove = 0;
+        for (int i = 0; i < count; i++) {
+            int move = pickMove(ply, i, count);
+            boolean quiet = isQuiet(move);
+            makeMove(move);
+            int score;
+            if (i == 0) {
+                score = -search(depth - 1, -beta, -alpha, ply + 1);
+            } else {
+                // Late quiet moves are searched with a reduced depth first
+                int reduction = depth >= 3 && i >= 4 && quiet && !inCheck ? 1 : 0;
+                score = -search(depth - 1 - reduction, -alpha - 1, -alpha, ply + 1);
+                if (score > alpha && !aborted) {
+                    score = -search(depth - 1, -beta, -alpha, ply + 1);
+                }
+            }
+            unmakeMove(move);
+            if (aborted) {
+                return 0;
+            }
+            if (score > bestScore) {
+                bestScore = score;
+                bestMove = move;
+                if (score > alpha) {
+                    alpha = score;
+                    updatePv(ply, move);
+                    if (score >= beta) {
+                        if (quiet) {
+                            updateQuietStats(move, depth, ply);
+                        }
+                        break;
+                    }
+                }
+            }
+        }
+
+        int bound = bestScore >= beta ? TranspositionTable.BOUND_LOWER
+                : bestScore > originalAlpha ? TranspositionTable.BOUND_EXACT : TranspositionTable.BOUND_UPPER;
+        table.store(key, bestMove, toTable(bestScore, ply), depth, bound);
+        return bestScore;
+    }
+
+    /**
+     * Searches captures only, until the position is quiet.
+     * Drops are left out, they never capture.
+     *
+     * @param alpha
+     * @param beta
+     * @param ply
+     */
+    private int quiesce(int alpha, int beta, int ply) {
+        pvLength[ply] = ply;
+        if (shouldAbort()) {
+            return 0;
+        }
+        int standPat = Evaluator.evaluate(board, hand);
+        if (standPat >= beta || ply >= Search.MAX_PLY) {
+            return standPat;
+        }
+        if (standPat > alpha) {
+            alpha = standPat;
+        }
+        int[] list = moves[ply];
+        int count = MoveGenerator.generatePseudoLegalCaptures(board, list);
+        for (int i = 0; i < count; i++) {
+            scores[ply][i] = captureScore(list[i]);
+        }
+        for (int i = 0; i < count; i++) {
+            int move = pickMove(ply, i, count);
+            if (!board.isMoveLegal(move, false)) {
+                continue;
+            }
+            board.doMove(move);
+            int score = -quiesce(-beta, -alpha, ply + 1);
+            board.undoPackedMove();
+            if (aborted) {
+                return 0;
+            }
+            if (score > alpha) {
+                alpha = score;
+                if (score >= beta) {
+                    return score;
+                }
+            }
+        }
+        return alpha;
+    }
+
+    /**
+     * Generates the legal board moves and drops of the side to move at a ply.
+     *
+     * @param ply
+     * @return number of moves
+     */
+    private int generateMoves(int ply) {
+        int[] list = moves[ply];
+        int count = MoveGenerator.generateLegalMoves(board, list);
+        long dropMask = BughouseMoveGenerator.getDropMask(board);
+        if (dropMask == 0L) {
+            return count;
+        }
+        Side side = board.getSideToMove();
+        for (PieceType type : BughouseMoveGenerator.dropTypes) {
+            Piece piece = Piece.make(side, type);
+            if (hand[piece.ordinal()] == 0) {
+                continue;
+            }
+            long targets = BughouseMoveGenerator.getDropTargets(type, dropMask);
+            while (targets != 0L) {
+                list[count++] = PackedMove.encodeDrop(piece, Square.squareAt(Long.numberOfTrailingZeros(targets)));
+                targets &= targets - 1;
+            }
+        }
+        return count;
+    }
+
+    private void scoreMoves(int ply, int count, int ttMove) {
+        int[] list = moves[ply];
+        int[] values = scores[ply];
+        for (int i = 0; i < count; i++) {
+            int move = list[i];
+            if (move == ttMove) {
+                values[i] = TT_MOVE_SCORE;
+            } else if (!isQuiet(move)) {
+                values[i] = CAPTURE_SCORE + captureScore(move);
+            } else if (move == killers[ply][0]) {
+                values[i] = KILLER_SCORE + 1;
+            } else if (move == killers[ply][1]) {
+                values[i] = KILLER_SCORE;
+            } else {
+                values[i] = history[movingPiece(move).ordinal()][PackedMove.getToIndex(move)];
+            }
+        }
+    }
+
+    /**
+     * Most valuable victim, least valuable attacker.
+     *
+     * @param move
+     */
+    private int captureScore(int move) {
+        Piece victim = board.getPiece(PackedMove.getTo(move));
+        int value = victim == Piece.NONE ? Evaluator.getValue(PieceType.PAWN) : Evaluator.getValue(victim.getPieceType());
+        if (PackedMove.isPromotion(move)) {
+            value += Evaluator.getValue(PackedMove.getPromotion(move).getPieceType());
+        }
+        return value * 16 - movingPiece(move).getPieceType().ordinal();
+    }
+
+    /**
+     * Selection sort step: moves the best scored remaining move to index i and returns it.
+     */
+    private int pickMove(int ply, int i, int count) {
+        int[] list = moves[ply];
+        int[] values = scores[ply];
+        int best = i;
+        for (int j = i + 1; j < count; j++) {
+            if (values[j] > values[best]) {
+                best = j;
+            }
+        }
+        int move = list[best];
+        list[best] = list[i];
+        list[i] = move;
+        int value = values[best];
+        values[best] = values[i];
+        values[i] = value;
+        return move;
+    }
+
+    private boolean isQuiet(int move) {
+        return !PackedMove.hasFlag(move, PackedMove.FLAG_CAPTURE) && !PackedMove.isPromotion(move);
+    }
+
+    private Piece movingPiece(int move) {
+        return PackedMove.isDrop(move) ? PackedMove.getDropPiece(move) : board.getPiece(PackedMove.getFrom(move));
+    }
+
+    private void updateQuietStats(int move, int depth, int ply) {
+        if (killers[ply][0] != move) {
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = move;
+        }
+        int[] pieceHistory = history[movingPiece(move).ordinal()];
+        int to = PackedMove.getToIndex(move);
+        pieceHistory[to] = Math.min(pieceHistory[to] + depth * depth, HISTORY_LIMIT);
+    }
+
+    private void updatePv(int ply, int move) {
+        pv[ply][ply] = move;
+        System.arraycopy(pv[ply + 1], ply + 1, pv[ply], ply + 1, pvLength[ply + 1] - ply - 1);
+        pvLength[ply] = Math.max(pvLength[ply + 1], ply + 1);
+    }
+
+    private void makeMove(int move) {
+        if (PackedMove.isDrop(move)) {
+            Piece piece = PackedMove.getDropPiece(move);
+            int count = hand[piece.ordinal()]--;
+            handKey ^= Zobrist.getPocketKey(piece, count) ^ Zobrist.getPocketKey(piece, count - 1);
+        }
+        board.doMove(move);
+    }
+
+    private void unmakeMove(int move) {
+        board.undoPackedMove();
+        if (PackedMove.isDrop(move)) {
+            Piece piece = PackedMove.getDropPiece(move);
+            int count = hand[piece.ordinal()]++;
+            handKey ^= Zobrist.getPocketKey(piece, count) ^ Zobrist.getPocketKey(piece, count + 1);
+        }
+    }
+
+    /**
+     * Counts the node and checks the stop flags. Once set, aborted unwinds the whole search.
+     */
+    private boolean shouldAbort() {
+        if (aborted) {
+            return true;
+        }
+        if ((++nodes & 1023) == 0) {
+            search.nodes.add(1024);
+            search.checkTime();
+        }
+        if (search.isCancelled() || (search.isStopped() && (id != 0 || completedDepth > 0))) {
+            aborted = true;
+        }
+        return aborted;
+    }
+
+    // Mate scores are stored relative to the node, so they stay valid at any ply
+    private static int toTable(int score, int ply) {
+        return score >= Search.MATE_BOUND ? score + ply : score <= -Search.MATE_BOUND ? score - ply : score;
+    }
+
+    private static int fromTable(int score, int ply) {
+        return score >= Search.MATE_BOUND ? score - ply : score <= -Search.MATE_BOUND ? score + ply : score;
+    }
+
+    /**
+     * Returns the principal variation of the last iteration, extended with the best moves stored in the
+     * table when it was cut short by a table hit.
+     */
+    private List<String> getLine() {
+        List<String> line = new ArrayList<>();
+        int[] played = new int[Search.MAX_PLY];
+        int length = 0;
+        for (int i = 0; i < pvLength[0]; i++) {
+            played[length++] = pv[0][i];
+        }
+        for (int i = 0; i < length; i++) {
+            line.add(toString(played[i]));
+            makeMove(played[i]);
+        }
+        while (length < completedDepth) {
+            int move = TranspositionTable.getMove(table.probe(board.getIncrementalHashKey() ^ handKey));
+            if (move == 0 || !isLegalMove(move)) {
+                break;
+            }
+            line.add(toString(move));
+            makeMove(move);
+            played[length++] = move;
+        }
+        for (int i = length - 1; i >= 0; i--) {
+            unmakeMove(played[i]);
+        }
+        return line;
+    }
+
+    private boolean isLegalMove(int move) {
+        int count = generateMoves(Search.MAX_PLY);
+        for (int i = 0; i < count; i++) {
+            if (moves[Search.MAX_PLY][i] == move) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Formats a packed move like the moves handled by BughouseBoard, e.g. "e2e4", "e7e8q" or "N@f3".
+     *
+     * @param move
+     */
+    static String toString(int move) {
+        String to = PackedMove.getTo(move).value().toLowerCase();
+        if (PackedMove.isDrop(move)) {
+            PieceType type = PackedMove.getDropPiece(move).getPieceType();
+            return "PNBRQ".charAt(type.ordinal()) + "@" + to;
+        }
+        String from = PackedMove.getFrom(move).value().toLowerCase();
+        if (PackedMove.isPromotion(move)) {
+            return from + to + "pnbrq".charAt(PackedMove.getPromotion(move).getPieceType().ordinal());
+        }
+        return from + to;
+    }
+}
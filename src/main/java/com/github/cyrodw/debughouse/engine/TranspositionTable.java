@@ -0,0 +1,93 @@
+package com.github.cyrodw.debughouse.engine;
+
+import java.util.Arrays;
+
+/**
+ * Transposition table shared by all the search threads without locks.
+ * Each entry is stored as two longs, the key xor the data and the data, so an entry torn by
+ * concurrent writes fails the key check on probe and is treated as a miss.
+ */
+public class TranspositionTable {
+
+    public static final int BOUND_EXACT = 0;
+    public static final int BOUND_LOWER = 1;
+    public static final int BOUND_UPPER = 2;
+
+    // Data layout: bits 0-23 move, bits 24-39 score, bits 40-47 depth, bits 48-49 bound
+    private static final long MOVE_MASK = (1L << 24) - 1;
+
+    private final long[] keys;
+    private final long[] data;
+    private final int mask;
+
+    /**
+     * @param sizeBits - log2 of the number of entries
+     */
+    public TranspositionTable(int sizeBits) {
+        keys = new long[1 << sizeBits];
+        data = new long[1 << sizeBits];
+        mask = (1 << sizeBits) - 1;
+    }
+
+    /**
+     * Stores an entry, replacing the previous one unless it is deeper and for the same position.
+     *
+     * @param key   - hash of the position
+     * @param move  - best packed move, or 0
+     * @param score - score adjusted to be independent of the ply
+     * @param depth
+     * @param bound - BOUND_EXACT, BOUND_LOWER or BOUND_UPPER
+     */
+    public void store(long key, int move, int score, int depth, int bound) {
+        int index = (int) key & mask;
+        long old = data[index];
+        if ((keys[index] ^ old) == key && getDepth(old) > depth && bound != BOUND_EXACT) {
+            return;
+        }
+        if (move == 0 && (keys[index] ^ old) == key) {
+            move = getMove(old); // Keep the known best move of the position
+        }
+        long entry = (move & MOVE_MASK)
+                | ((long) (score & 0xffff) << 24)
+                | ((long) (depth & 0xff) << 40)
+                | ((long) bound << 48);
+        data[index] = entry;
+        keys[index] = key ^ entry;
+    }
+
+    /**
+     * Returns the data of the entry of a position, or 0 if there is none.
+     * Use the static getters to decode it.
+     *
+     * @param key - hash of the position
+     */
+    public long probe(long key) {
+        int index = (int) key & mask;
+        long entry = data[index];
+        return (keys[index] ^ entry) == key ? entry : 0L;
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public void clear() {
+        Arrays.fill(keys, 0L);
+        Arrays.fill(data, 0L);
+    }
+
+    public static int getMove(long entry) {
+        return (int) (entry & MOVE_MASK);
+    }
+
+    public static int getScore(long entry) {
+        return (short) (entry >>> 24);
+    }
+
+    public static int getDepth(long entry) {
+        return (int) (entry >>> 40) & 0xff;
+    }
+
+    public static int getBound(long entry) {
+        return (int) (entry >>> 48) & 0x3;
+    }
+}
@@ -0,0 +1,441 @@
+package com.github.cyrodw.debughouse.protocol;
+
+import com.github.cyrodw.debughouse.GameStateUpdate;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compact binary encoding of the messages exchanged with the server.
+ * Every message starts with a type byte:
+ * - STATE: sequence number and the boards of a GameStateUpdate. The position is sent as the squares
+ * that changed since the last position sent for the board, or as all 64 squares packed in nibbles
+ * when that is shorter. Hands are a bitmask of the non-empty counts followed by the counts,
+ * clocks are varints and the last move takes two bytes.
+ * - MOVE, PREMOVE: a move in two bytes, a board move as from and to squares with the promotion in the
+ * spare bits, a drop as piece and square. A premove is followed by its predrop flag.
+ * - TEXT: any other frame, as UTF-8.
+ * <p>
+ * Positions are tracked per board, so a codec instance must be used for a single connection,
+ * and for a single direction of the state messages.
+ */
+public class BinaryCodec {
+
+    // Websocket subprotocol offered by the client, the server falls back to text if it doesn't select it
+    public static final String SUBPROTOCOL = "debughouse.binary.v1";
+
+    public static final byte STATE = 1;
+    public static final byte MOVE = 2;
+    public static final byte PREMOVE = 3;
+    public static final byte TEXT = 4;
+
+    // Board encodings within a state message
+    private static final byte FULL = 0;
+    private static final byte DELTA = 1;
+
+    // Move encoding: first byte is the from square, or the dropped piece with DROP_FLAG
+    private static final int DROP_FLAG = 0x80;
+    private static final int PROMOTION_FLAG = 0x40;
+    private static final int LOWER_CASE_FLAG = 0x08; // Keeps the case of the dropped piece letter
+    private static final int NO_MOVE = 0xff;
+
+    private static final String PIECES = "PNBRQKpnbrqk";
+    private static final String DROP_PIECES = "PNBRQ";
+    private static final String PROMOTION_PIECES = "nbrq";
+    private static final String HAND_PIECES = "PNBRQpnbrq";
+    private static final String CASTLE_RIGHTS = "KQkq";
+
+    // Last position sent or received for each board, by board number; null until the first one
+    private final Position[] positions = new Position[3];
+
+    /**
+     * Encodes a state update, as a delta from the previous update encoded by this codec.
+     *
+     * @param update
+     */
+    public ByteBuffer encodeState(GameStateUpdate update) {
+        ByteBuffer buffer = ByteBuffer.allocate(32 + update.getBoards().size() * 128);
+        buffer.put(STATE);
+        putVarint(buffer, update.getSeq());
+        buffer.put((byte) update.getBoards().size());
+        for (GameStateUpdate.BoardState board : update.getBoards()) {
+            Position position = Position.fromFen(board.getFen());
+            Position previous = positions[board.getNumber()];
+            buffer.put((byte) board.getNumber());
+            int changed = previous == null ? 64 : position.countChanges(previous);
+            if (changed * 2 < 32) {
+                buffer.put(DELTA);
+                buffer.put((byte) changed);
+                for (int sq = 0; sq < 64; sq++) {
+                    if (position.squares[sq] != previous.squares[sq]) {
+                        buffer.put((byte) sq);
+                        buffer.put(position.squares[sq]);
+                    }
+                }
+            } else {
+                buffer.put(FULL);
+                for (int sq = 0; sq < 64; sq += 2) {
+                    buffer.put((byte) (position.squares[sq] | position.squares[sq + 1] << 4));
+                }
+            }
+            buffer.put((byte) position.flags);
+            buffer.put((byte) position.enPassant);
+            putVarint(buffer, position.halfMoves);
+            putVarint(buffer, position.fullMoves);
+            putHands(buffer, board.getWhiteHand() + board.getBlackHand());
+            putVarint(buffer, board.getWhiteTime());
+            putVarint(buffer, board.getBlackTime());
+            putMove(buffer, board.getLastMove());
+            positions[board.getNumber()] = position;
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * Decodes a state message, applying deltas to the previous positions decoded by this codec.
+     *
+     * @param buffer - positioned after the type byte
+     * @throws IllegalArgumentException if a delta arrives before any full position of its board
+     */
+    public GameStateUpdate decodeState(ByteBuffer buffer) {
+        long seq = getVarint(buffer);
+        int count = buffer.get();
+        List<GameStateUpdate.BoardState> boards = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int number = buffer.get();
+            if (number < 1 || number > 2) {
+                throw new IllegalArgumentException("Invalid board number " + number);
+            }
+            Position position;
+            if (buffer.get() == DELTA) {
+                Position previous = positions[number];
+                if (previous == null) {
+                    throw new IllegalArgumentException("Delta without a previous position for board " + number);
+                }
+                position = previous.copy();
+                int changed = buffer.get();
+                for (int j = 0; j < changed; j++) {
+                    int sq = buffer.get();
+                    position.squares[sq] = buffer.get();
+                }
+            } else {
+                position = new Position();
+                for (int sq = 0; sq < 64; sq += 2) {
+                    int packed = buffer.get();
+                    position.squares[sq] = (byte) (packed & 0xf);
+                    position.squares[sq + 1] = (byte) (packed >> 4 & 0xf);
+                }
+            }
+            position.flags = buffer.get();
+            position.enPassant = buffer.get();
+            position.halfMoves = (int) getVarint(buffer);
+            position.fullMoves = (int) getVarint(buffer);
+            String hands = getHands(buffer);
+            int split = 0;
+            while (split < hands.length() && Character.isUpperCase(hands.charAt(split))) {
+                split++;
+            }
+            int whiteTime = (int) getVarint(buffer);
+            int blackTime = (int) getVarint(buffer);
+            String lastMove = getMove(buffer);
+            positions[number] = position;
+            boards.add(new GameStateUpdate.BoardState(number, position.toFen(), hands.substring(0, split),
+                    hands.substring(split), whiteTime, blackTime, lastMove));
+        }
+        return new GameStateUpdate(seq, boards);
+    }
+
+    /**
+     * Forgets the previous positions, so the next state is encoded in full.
+     */
+    public void reset() {
+        Arrays.fill(positions, null);
+    }
+
+    /**
+     * Encodes a command sent to the server. Moves and premoves are packed, anything else is sent as text.
+     *
+     * @param command - e.g. "move e2e4", "premove n@f3 true" or "message hi"
+     */
+    public static ByteBuffer encodeCommand(String command) {
+        String[] args = command.split(" ");
+        if (args.length == 2 && args[0].equals("move") && isMove(args[1])) {
+            ByteBuffer buffer = ByteBuffer.allocate(3).put(MOVE);
+            putMove(buffer, args[1]);
+            return buffer.flip();
+        }
+        if (args.length == 3 && args[0].equals("premove") && isMove(args[1])) {
+            ByteBuffer buffer = ByteBuffer.allocate(4).put(PREMOVE);
+            putMove(buffer, args[1]);
+            buffer.put((byte) (Boolean.parseBoolean(args[2]) ? 1 : 0));
+            return buffer.flip();
+        }
+        return encodeText(command);
+    }
+
+    /**
+     * Decodes a command encoded by encodeCommand back to its text form.
+     *
+     * @param buffer - the whole message
+     */
+    public static String decodeCommand(ByteBuffer buffer) {
+        byte type = buffer.get();
+        switch (type) {
+            case MOVE:
+                return "move " + getMove(buffer);
+            case PREMOVE:
+                return "premove " + getMove(buffer) + " " + (buffer.get() != 0);
+            case TEXT:
+                return getText(buffer);
+            default:
+                throw new IllegalArgumentException("Unexpected message type " + type);
+        }
+    }
+
+    /**
+     * Encodes a text frame.
+     *
+     * @param text
+     */
+    public static ByteBuffer encodeText(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(bytes.length + 1).put(TEXT).put(bytes).flip();
+    }
+
+    /**
+     * Decodes the rest of a text frame.
+     *
+     * @param buffer - positioned after the type byte
+     */
+    public static String getText(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static boolean isMove(String move) {
+        return move.length() == 4 || (move.length() == 5 && move.charAt(1) != '@');
+    }
+
+    /**
+     * Writes a move in two bytes, or a single NO_MOVE byte for an empty move.
+     *
+     * @param buffer
+     * @param move   - e.g. "e2e4", "e7e8q" or "N@f3"
+     */
+    static void putMove(ByteBuffer buffer, String move) {
+        if (move.isEmpty()) {
+            buffer.put((byte) NO_MOVE);
+            return;
+        }
+        int to = squareIndex(move, 2);
+        if (move.charAt(1) == '@') {
+            char piece = move.charAt(0);
+            int caseFlag = Character.isLowerCase(piece) ? LOWER_CASE_FLAG : 0;
+            buffer.put((byte) (DROP_FLAG | caseFlag | DROP_PIECES.indexOf(Character.toUpperCase(piece))));
+            buffer.put((byte) to);
+            return;
+        }
+        int from = squareIndex(move, 0);
+        if (move.length() == 5) {
+            buffer.put((byte) (from | PROMOTION_FLAG));
+            buffer.put((byte) (to | PROMOTION_PIECES.indexOf(Character.toLowerCase(move.charAt(4))) << 6));
+        } else {
+            buffer.put((byte) from);
+            buffer.put((byte) to);
+        }
+    }
+
+    /**
+     * Reads a move written by putMove.
+     *
+     * @param buffer
+     * @return the move, empty for NO_MOVE
+     */
+    static String getMove(ByteBuffer buffer) {
+        int first = buffer.get() & 0xff;
+        if (first == NO_MOVE) {
+            return "";
+        }
+        int second = buffer.get() & 0xff;
+        if ((first & DROP_FLAG) != 0) {
+            char piece = DROP_PIECES.charAt(first & 0x7);
+            return ((first & LOWER_CASE_FLAG) != 0 ? Character.toLowerCase(piece) : piece) + "@" + squareName(second);
+        }
+        String move = squareName(first & 0x3f) + squareName(second & 0x3f);
+        if ((first & PROMOTION_FLAG) != 0) {
+            move += PROMOTION_PIECES.charAt(second >> 6);
+        }
+        return move;
+    }
+
+    private static void putHands(ByteBuffer buffer, String hands) {
+        int[] counts = new int[HAND_PIECES.length()];
+        for (char c : hands.toCharArray()) {
+            counts[HAND_PIECES.indexOf(c)]++;
+        }
+        int mask = 0;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                mask |= 1 << i;
+            }
+        }
+        buffer.putShort((short) mask);
+        for (int count : counts) {
+            if (count > 0) {
+                buffer.put((byte) count);
+            }
+        }
+    }
+
+    private static String getHands(ByteBuffer buffer) {
+        int mask = buffer.getShort();
+        StringBuilder hands = new StringBuilder();
+        for (int i = 0; i < HAND_PIECES.length(); i++) {
+            if ((mask & 1 << i) != 0) {
+                int count = buffer.get();
+                for (int j = 0; j < count; j++) {
+                    hands.append(HAND_PIECES.charAt(i));
+                }
+            }
+        }
+        return hands.toString();
+    }
+
+    static void putVarint(ByteBuffer buffer, long value) {
+        while ((value & ~0x7fL) != 0L) {
+            buffer.put((byte) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    static long getVarint(ByteBuffer buffer) {
+        long value = 0L;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    private static int squareIndex(String move, int offset) {
+        return (Character.toLowerCase(move.charAt(offset)) - 'a') + (move.charAt(offset + 1) - '1') * 8;
+    }
+
+    private static String squareName(int sq) {
+        return (char) ('a' + (sq & 7)) + "" + (char) ('1' + (sq >> 3));
+    }
+
+    /**
+     * Position of a board as in a FEN, with the squares as piece codes: 0 for empty, 1 to 12 for the
+     * pieces in the order of PIECES.
+     */
+    private static class Position {
+        private final byte[] squares = new byte[64];
+        // Side to move in bit 4, castle rights KQkq in bits 0-3
+        private int flags;
+        // En passant square index, 64 for none
+        private int enPassant = 64;
+        private int halfMoves;
+        private int fullMoves = 1;
+
+        private static Position fromFen(String fen) {
+            Position position = new Position();
+            String[] fields = fen.trim().split(" +");
+            int rank = 7;
+            int file = 0;
+            for (char c : fields[0].toCharArray()) {
+                if (c == '/') {
+                    rank--;
+                    file = 0;
+                } else if (Character.isDigit(c)) {
+                    file += c - '0';
+                } else {
+                    position.squares[rank * 8 + file++] = (byte) (PIECES.indexOf(c) + 1);
+                }
+            }
+            if (fields.length > 1 && fields[1].equals("b")) {
+                position.flags |= 0x10;
+            }
+            if (fields.length > 2) {
+                for (char c : fields[2].toCharArray()) {
+                    int right = CASTLE_RIGHTS.indexOf(c);
+                    if (right >= 0) {
+                        position.flags |= 1 << right;
+                    }
+                }
+            }
+            if (fields.length > 3 && !fields[3].equals("-")) {
+                position.enPassant = squareIndex(fields[3], 0);
+            }
+            if (fields.length > 5) {
+                position.halfMoves = Integer.parseInt(fields[4]);
+                position.fullMoves = Integer.parseInt(fields[5]);
+            }
+            return position;
+        }
+
+        private String toFen() {
+            StringBuilder fen = new StringBuilder(90);
+            for (int rank = 7; rank >= 0; rank--) {
+                int empty = 0;
+                for (int file = 0; file < 8; file++) {
+                    int code = squares[rank * 8 + file];
+                    if (code == 0) {
+                        empty++;
+                        continue;
+                    }
+                    if (empty > 0) {
+                        fen.append(empty);
+                        empty = 0;
+                    }
+                    fen.append(PIECES.charAt(code - 1));
+                }
+                if (empty > 0) {
+                    fen.append(empty);
+                }
+                if (rank > 0) {
+                    fen.append('/');
+                }
+            }
+            fen.append((flags & 0x10) != 0 ? " b " : " w ");
+            if ((flags & 0xf) == 0) {
+                fen.append('-');
+            }
+            for (int right = 0; right < 4; right++) {
+                if ((flags & 1 << right) != 0) {
+                    fen.append(CASTLE_RIGHTS.charAt(right));
+                }
+            }
+            fen.append(' ').append(enPassant == 64 ? "-" : squareName(enPassant));
+            return fen.append(' ').append(halfMoves).append(' ').append(fullMoves).toString();
+        }
+
+        private int countChanges(Position other) {
+            int changed = 0;
+            for (int sq = 0; sq < 64; sq++) {
+                if (squares[sq] != other.squares[sq]) {
+                    changed++;
+                }
+            }
+            return changed;
+        }
+
+        private Position copy() {
+            Position position = new Position();
+            System.arraycopy(squares, 0, position.squares, 0, 64);
+            position.flags = flags;
+            position.enPassant = enPassant;
+            position.halfMoves = halfMoves;
+            position.fullMoves = fullMoves;
+            return position;
+        }
+    }
+}
@@ -0,0 +1,500 @@
+package com.github.cyrodw.debughouse.protocol;
+
+import com.github.bhlangonijr.chesslib.Piece;
+import com.github.bhlangonijr.chesslib.Side;
+import com.github.bhlangonijr.chesslib.Square;
+import com.github.cyrodw.debughouse.BughouseBoard;
+import com.github.cyrodw.debughouse.GameStateUpdate;
+import com.github.cyrodw.debughouse.server.PremoveQueue;
+
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Local stand-in for the game server, for testing the client without the real server.
+ * It speaks plain websockets and negotiates the binary protocol, or falls back to text when the
+ * client doesn't offer it or binary is disabled.
+ * Each connection gets its own game: the client plays white on board 1 and the server answers
+ * with random legal moves. Captures go to the hands of board 2, premoves are played by the server.
+ * In server premove mode the premove queue is authoritative on the server: the answer to a move is a
+ * "premoves" frame with the queue left, and a single state with the reply and any premoves played.
+ * The game is kept under a session token, and a client that reconnects with "resume=TOKEN&seq=SEQ"
+ * in the query gets the updates after SEQ, or the whole state if they are no longer kept.
+ * <p>
+ * Run with an optional port and "--text" to disable the binary protocol, or with "--check" to run
+ * a quick self test of both protocols against a local client.
+ */
+public class LocalServer implements Closeable {
+
+    public static final int DEFAULT_PORT = 8080;
+    public static final int HISTORY = 64; // Updates kept per game for resuming sessions
+
+    private final ServerSocket serverSocket;
+    private final boolean binaryEnabled;
+    private final Random random;
+    private final Map<String, Game> games = new ConcurrentHashMap<>();
+
+    /**
+     * @param port          - 0 for any free port
+     * @param binaryEnabled - false to only accept the text protocol
+     * @param seed          - seed of the moves played by the server
+     */
+    public LocalServer(int port, boolean binaryEnabled, long seed) throws IOException {
+        this.serverSocket = new ServerSocket(port);
+        this.binaryEnabled = binaryEnabled;
+        this.random = new Random(seed);
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Accepts connections on a background thread, each one served by its own thread.
+     */
+    public void start() {
+        Thread acceptor = new Thread(() -> {
+            while (!serverSocket.isClosed()) {
+                try {
+                    Socket socket = serverSocket.accept();
+                    Thread connection = new Thread(new Connection(socket), "local-server-connection");
+                    connection.setDaemon(true);
+                    connection.start();
+                } catch (IOException e) {
+                    return; // Closed
+                }
+            }
+        }, "local-server");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+    }
+
+    /**
+     * Game of a session, kept when the connection drops so that the client can resume it.
+     */
+    private static class Game {
+        private final String token = UUID.randomUUID().toString();
+        private final BughouseBoard board1 = new BughouseBoard();
+        private final BughouseBoard board2 = new BughouseBoard();
+        private final PremoveQueue premoves = new PremoveQueue();
+        private boolean serverPremoves = false; // Premove queue is authoritative here, see "premovemode"
+        private final ArrayDeque<GameStateUpdate> history = new ArrayDeque<>(); // Recent updates, oldest first
+        private long seq = 0;
+        private String lastMove = "";
+        private boolean partnerChanged = false;
+    }
+
+    /**
+     * Serves one client: handshake, then the game of its session.
+     */
+    private class Connection implements Runnable {
+        private final Socket socket;
+        private OutputStream out;
+        private BinaryCodec codec; // null for the text protocol
+        private Game game = new Game();
+        private String username = "guest";
+        private String resumeToken = null;
+        private long resumeSeq = -1;
+
+        Connection(Socket socket) {
+            this.socket = socket;
+        }
+
+        @Override
+        public void run() {
+            try (socket) {
+                InputStream in = new BufferedInputStream(socket.getInputStream());
+                out = new BufferedOutputStream(socket.getOutputStream());
+                if (!handshake(in)) {
+                    return;
+                }
+                Game previous = resumeToken == null ? null : games.get(resumeToken);
+                if (previous != null) {
+                    game = previous;
+                    send("connected");
+                    send("session " + game.token);
+                    send("userside white");
+                    resync();
+                } else {
+                    games.put(game.token, game);
+                    send("connected");
+                    send("session " + game.token);
+                    send("userside white");
+                    send("started");
+                    sendState(true);
+                }
+                DataInputStream data = new DataInputStream(in);
+                while (true) {
+                    WebSocketFrames.Frame frame = WebSocketFrames.read(data);
+                    switch (frame.opcode) {
+                        case WebSocketFrames.TEXT -> handle(frame.text());
+                        case WebSocketFrames.BINARY -> handle(BinaryCodec.decodeCommand(ByteBuffer.wrap(frame.payload)));
+                        case WebSocketFrames.PING -> WebSocketFrames.write(out, WebSocketFrames.PONG, frame.payload, false);
+                        case WebSocketFrames.CLOSE -> {
+                            WebSocketFrames.write(out, WebSocketFrames.CLOSE, frame.payload, false);
+                            return;
+                        }
+                        default -> {
+                        }
+                    }
+                }
+            } catch (EOFException | SocketException e) {
+                // Client went away
+            } catch (IOException | RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+
+        private boolean handshake(InputStream in) throws IOException {
+            WebSocketFrames.Request request = WebSocketFrames.readRequest(in, out);
+            if (request == null) {
+                return false;
+            }
+            username = request.getParameter("username", username);
+            resumeToken = request.getParameter("resume", null);
+            resumeSeq = Long.parseLong(request.getParameter("seq", "-1"));
+            boolean binary = binaryEnabled && request.offers(BinaryCodec.SUBPROTOCOL);
+            codec = binary ? new BinaryCodec() : null;
+            WebSocketFrames.accept(out, request, binary ? BinaryCodec.SUBPROTOCOL : null);
+            return true;
+        }
+
+        private void handle(String message) throws IOException {
+            String[] args = message.split(" ", 2);
+            switch (args[0]) {
+                case "move" -> {
+                    if (game.board1.sideToMove() == Side.WHITE && play(args[1].toLowerCase())) {
+                        reply();
+                    }
+                }
+                case "premove" -> {
+                    String[] premove = args[1].split(" ");
+                    game.premoves.add(premove[0].toLowerCase(), premove.length > 1 && Boolean.parseBoolean(premove[1]));
+                }
+                case "cancel" -> game.premoves.clear();
+                case "premovemode" -> {
+                    game.serverPremoves = args.length > 1 && args[1].equals("server");
+                    send("premovemode " + (game.serverPremoves ? "server" : "client"));
+                }
+                case "message" -> send("message " + username + ": " + args[1]);
+                case "ping" -> send("pong " + System.currentTimeMillis());
+                case "seek", "rematch" -> {
+                    game.board1.reset();
+                    game.board2.reset();
+                    game.premoves.clear();
+                    game.lastMove = "";
+                    if (codec != null) {
+                        codec.reset();
+                    }
+                    send("started");
+                    sendState(true);
+                }
+                default -> send("message Unknown command: " + message);
+            }
+        }
+
+        /**
+         * Sends the updates the client missed after resuming, or the whole state if they are no longer kept.
+         */
+        private void resync() throws IOException {
+            GameStateUpdate oldest = game.history.peekFirst();
+            if (resumeSeq >= 0 && oldest != null && oldest.getSeq() <= resumeSeq + 1) {
+                for (GameStateUpdate update : game.history) {
+                    if (update.getSeq() > resumeSeq) {
+                        sendUpdate(update);
+                    }
+                }
+            } else {
+                sendState(true);
+            }
+        }
+
+        /**
+         * Plays a move on board 1 for the side to move if it is legal, captures go to board 2.
+         *
+         * @param move
+         * @return true if the move was played
+         */
+        private boolean play(String move) {
+            if (move.length() < 4 || !game.board1.isLegal(move)) {
+                return false;
+            }
+            Side side = game.board1.sideToMove();
+            if (move.charAt(1) != '@') {
+                Piece captured = game.board1.getPiece(Square.fromValue(move.substring(2, 4).toUpperCase()));
+                if (captured != Piece.NONE) {
+                    // The partner of the capturing player plays the other color on board 2
+                    Side partner = side.flip();
+                    game.board2.addToHand(Piece.make(partner, captured.getPieceType()), partner);
+                    game.partnerChanged = true;
+                }
+            }
+            game.board1.doMove(move, BughouseBoard.MoveType.NORMAL, side);
+            game.lastMove = move;
+            return true;
+        }
+
+        /**
+         * Answers with a random legal move for black, then plays the premoves and the answers to them.
+         */
+        private void reply() throws IOException {
+            playRandom();
+            if (game.serverPremoves) {
+                // One combined update, the client only reconciles its premoves with the queue left
+                while (executePremove()) {
+                    playRandom();
+                }
+                sendPremoves();
+                sendState(false);
+                return;
+            }
+            while (executePremove()) {
+                sendState(false);
+                playRandom();
+            }
+            sendState(false);
+        }
+
+        private void playRandom() {
+            List<String> moves = game.board1.getLegalMoveList();
+            if (!moves.isEmpty()) {
+                play(moves.get(random.nextInt(moves.size())));
+            }
+        }
+
+        private boolean executePremove() {
+            return game.premoves.execute(this::play) != null;
+        }
+
+        /**
+         * Sends the premoves left, e.g. "premoves e2e4:false,n@f3:true".
+         */
+        private void sendPremoves() throws IOException {
+            send("premoves " + game.premoves);
+        }
+
+        private void sendState(boolean both) throws IOException {
+            List<GameStateUpdate.BoardState> boards = new ArrayList<>(2);
+            boards.add(boardState(1, game.board1, game.lastMove));
+            if (both || game.partnerChanged) {
+                boards.add(boardState(2, game.board2, ""));
+                game.partnerChanged = false;
+            }
+            GameStateUpdate update = new GameStateUpdate(++game.seq, boards);
+            game.history.add(update);
+            if (game.history.size() > HISTORY) {
+                game.history.poll();
+            }
+            sendUpdate(update);
+        }
+
+        private void sendUpdate(GameStateUpdate update) throws IOException {
+            if (codec != null) {
+                ByteBuffer buffer = codec.encodeState(update);
+                byte[] payload = new byte[buffer.remaining()];
+                buffer.get(payload);
+                WebSocketFrames.write(out, WebSocketFrames.BINARY, payload, false);
+            } else {
+                send(update.toString());
+            }
+        }
+
+        private void send(String message) throws IOException {
+            if (codec != null) {
+                ByteBuffer buffer = BinaryCodec.encodeText(message);
+                WebSocketFrames.write(out, WebSocketFrames.BINARY, Arrays.copyOf(buffer.array(), buffer.limit()), false);
+            } else {
+                WebSocketFrames.write(out, WebSocketFrames.TEXT, message.getBytes(StandardCharsets.UTF_8), false);
+            }
+        }
+    }
+
+    private static GameStateUpdate.BoardState boardState(int number, BughouseBoard board, String lastMove) {
+        return new GameStateUpdate.BoardState(number, board.getFen(), board.getHandString(Side.WHITE),
+                board.getHandString(Side.BLACK), 1800, 1800, lastMove);
+    }
+
+    /**
+     * Raw websocket client for the self test.
+     */
+    private static class CheckClient implements Closeable {
+        private final Socket socket;
+        private final DataInputStream in;
+        private final OutputStream out;
+        private final boolean binary;
+        private final BinaryCodec codec = new BinaryCodec();
+
+        /**
+         * Connects and checks that the server selects the binary protocol if, and only if, it was offered.
+         *
+         * @param port
+         * @param binary - whether to offer the binary protocol
+         * @param query  - more query parameters, e.g. "&resume=TOKEN&seq=3"
+         */
+        CheckClient(int port, boolean binary, String query) throws IOException {
+            this.socket = new Socket("localhost", port);
+            this.binary = binary;
+            socket.setSoTimeout(5000);
+            out = socket.getOutputStream();
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            String protocol = WebSocketFrames.connect(in, out, "/?username=check" + query,
+                    binary ? BinaryCodec.SUBPROTOCOL : null);
+            boolean negotiated = BinaryCodec.SUBPROTOCOL.equals(protocol);
+            if (negotiated != binary) {
+                throw new IOException("Expected binary " + binary + " but negotiated " + negotiated);
+            }
+        }
+
+        /**
+         * Reads the next frame.
+         *
+         * @return a GameStateUpdate for states, the text otherwise
+         */
+        Object read() throws IOException {
+            WebSocketFrames.Frame frame = WebSocketFrames.read(in);
+            if (frame.opcode == WebSocketFrames.BINARY) {
+                ByteBuffer buffer = ByteBuffer.wrap(frame.payload);
+                return buffer.get() == BinaryCodec.STATE ? codec.decodeState(buffer) : BinaryCodec.getText(buffer);
+            }
+            String text = frame.text();
+            if (text.startsWith(GameStateUpdate.TYPE + " ")) {
+                return GameStateUpdate.parse(text.substring(GameStateUpdate.TYPE.length() + 1));
+            }
+            return text;
+        }
+
+        /**
+         * Reads frames up to the next state update of board 1.
+         */
+        GameStateUpdate readState() throws IOException {
+            while (true) {
+                Object frame = read();
+                if (frame instanceof GameStateUpdate && ((GameStateUpdate) frame).getBoard(1) != null) {
+                    return (GameStateUpdate) frame;
+                }
+            }
+        }
+
+        void send(String command) throws IOException {
+            byte[] payload;
+            if (binary) {
+                ByteBuffer buffer = BinaryCodec.encodeCommand(command);
+                payload = Arrays.copyOf(buffer.array(), buffer.limit());
+            } else {
+                payload = command.getBytes(StandardCharsets.UTF_8);
+            }
+            WebSocketFrames.write(out, binary ? WebSocketFrames.BINARY : WebSocketFrames.TEXT, payload, true);
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+
+    /**
+     * Plays a few moves against a server with a raw client, checking the negotiated protocol and
+     * that the positions received match the moves, then drops the connection and resumes the session.
+     *
+     * @param binary - whether the client offers the binary protocol
+     * @return true if the check passed
+     */
+    static boolean check(boolean binary) throws IOException {
+        try (LocalServer server = new LocalServer(0, true, 1)) {
+            server.start();
+            String token = null;
+            GameStateUpdate last = null;
+            BughouseBoard expected = new BughouseBoard();
+            String[] moves = {"e2e4", "d2d4", "g1f3"};
+            try (CheckClient client = new CheckClient(server.getPort(), binary, "")) {
+                while (token == null) {
+                    Object frame = client.read();
+                    if (frame instanceof String && ((String) frame).startsWith("session ")) {
+                        token = ((String) frame).substring(8);
+                    }
+                }
+                // The first state is the initial position, the next ones follow the server's reply
+                for (int played = -1; played < moves.length; played++) {
+                    last = client.readState();
+                    GameStateUpdate.BoardState state = last.getBoard(1);
+                    if (played >= 0) {
+                        expected.doMove(moves[played], BughouseBoard.MoveType.NORMAL, Side.WHITE);
+                        expected.doMove(state.getLastMove(), BughouseBoard.MoveType.NORMAL, Side.BLACK);
+                    }
+                    if (!state.getFen().equals(expected.getFen())) {
+                        System.out.println("Expected " + expected.getFen() + " but received " + state.getFen());
+                        return false;
+                    }
+                    if (played + 1 < moves.length) {
+                        client.send("move " + moves[played + 1]);
+                    }
+                }
+            }
+            // Server premove mode: the premove is played with the reply, in the same update
+            try (CheckClient client = new CheckClient(server.getPort(), binary, "")) {
+                client.send("premovemode server");
+                while (!"premovemode server".equals(client.read())) {
+                    // Connection frames and the initial state
+                }
+                client.send("premove h2h3 false");
+                client.send("move b1c3");
+                Object premoves;
+                while (!((premoves = client.read()) instanceof String) || !((String) premoves).startsWith("premoves")) {
+                    // Nothing else expected before the premoves left
+                }
+                BughouseBoard board = new BughouseBoard();
+                board.loadFromFen(client.readState().getBoard(1).getFen());
+                if (!premoves.equals("premoves ") || board.getPiece(Square.H3) != Piece.WHITE_PAWN
+                        || board.getPiece(Square.C3) != Piece.WHITE_KNIGHT) {
+                    System.out.println("Server premove not played: " + premoves + ", " + board.getFen());
+                    return false;
+                }
+            }
+            // Resume as if the last update was lost with the connection
+            String query = "&resume=" + token + "&seq=" + (last.getSeq() - 1);
+            try (CheckClient client = new CheckClient(server.getPort(), binary, query)) {
+                GameStateUpdate resumed = client.readState();
+                if (resumed.getSeq() != last.getSeq() || !resumed.getBoard(1).getFen().equals(expected.getFen())) {
+                    System.out.println("Resume sent " + resumed + " instead of " + last);
+                    return false;
+                }
+            }
+            System.out.println((binary ? "Binary" : "Text") + " protocol: " + moves.length + " moves, server premove and resume OK");
+            return true;
+        }
+    }
+
+    /**
+     * @param args - [port] [--text] or --check
+     */
+    public static void main(String[] args) throws Exception {
+        List<String> options = Arrays.asList(args);
+        if (options.contains("--check")) {
+            boolean passed = check(true) & check(false);
+            System.out.println(passed ? "Check passed" : "Check failed");
+            System.exit(passed ? 0 : 1);
+        }
+        int port = DEFAULT_PORT;
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                port = Integer.parseInt(arg);
+            }
+        }
+        LocalServer server = new LocalServer(port, !options.contains("--text"), System.nanoTime());
+        server.start();
+        System.out.println("Local server listening on port " + server.getPort()
+                + (server.binaryEnabled ? " (binary and text)" : " (text only)"));
+        Thread.currentThread().join();
+    }
+}
@@ -0,0 +1,286 @@
+package com.github.cyrodw.debughouse.protocol;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Minimal RFC 6455 websockets for the local servers and their test clients: the upgrade handshake,
+ * unfragmented frames only, which is all the client sends, and masking for the client side.
+ */
+public class WebSocketFrames {
+
+    public static final int TEXT = 0x1;
+    public static final int BINARY = 0x2;
+    public static final int CLOSE = 0x8;
+    public static final int PING = 0x9;
+    public static final int PONG = 0xa;
+
+    private static final String ACCEPT_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+    private static final int MAX_PAYLOAD = 1 << 20;
+
+    private WebSocketFrames() {
+    }
+
+    /**
+     * A received frame.
+     */
+    public static class Frame {
+        public final int opcode;
+        public final byte[] payload;
+
+        Frame(int opcode, byte[] payload) {
+            this.opcode = opcode;
+            this.payload = payload;
+        }
+
+        public String text() {
+            return new String(payload, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Upgrade request of a client, as read by a server.
+     */
+    public static class Request {
+        private final String line;
+        private final String key;
+        private final List<String> protocols;
+
+        Request(String line, String key, List<String> protocols) {
+            this.line = line;
+            this.key = key;
+            this.protocols = protocols;
+        }
+
+        /**
+         * Returns true if the client offered a subprotocol.
+         *
+         * @param protocol
+         */
+        public boolean offers(String protocol) {
+            return protocols.contains(protocol);
+        }
+
+        /**
+         * Returns a query parameter of the request.
+         *
+         * @param name
+         * @param defaultValue - returned if the parameter is missing
+         */
+        public String getParameter(String name, String defaultValue) {
+            String[] parts = line.split(" ");
+            if (parts.length < 2 || parts[1].indexOf('?') < 0) {
+                return defaultValue;
+            }
+            for (String parameter : parts[1].substring(parts[1].indexOf('?') + 1).split("&")) {
+                if (parameter.startsWith(name + "=")) {
+                    return parameter.substring(name.length() + 1);
+                }
+            }
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Reads the upgrade request of a client, answering 400 if it is not one.
+     *
+     * @param in
+     * @param out
+     * @return the request, or null if the client is to be dropped
+     */
+    public static Request readRequest(InputStream in, OutputStream out) throws IOException {
+        String request = readLine(in);
+        if (request == null) {
+            return null;
+        }
+        String key = null;
+        List<String> protocols = new ArrayList<>();
+        String line;
+        while ((line = readLine(in)) != null && !line.isEmpty()) {
+            int colon = line.indexOf(':');
+            if (colon < 0) {
+                continue;
+            }
+            String name = line.substring(0, colon).trim().toLowerCase();
+            String value = line.substring(colon + 1).trim();
+            if (name.equals("sec-websocket-key")) {
+                key = value;
+            } else if (name.equals("sec-websocket-protocol")) {
+                for (String protocol : value.split(",")) {
+                    protocols.add(protocol.trim());
+                }
+            }
+        }
+        if (key == null) {
+            out.write("HTTP/1.1 400 Bad Request\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1));
+            out.flush();
+            return null;
+        }
+        return new Request(request, key, protocols);
+    }
+
+    /**
+     * Completes the upgrade of a request.
+     *
+     * @param out
+     * @param request
+     * @param protocol - subprotocol selected, null for none
+     */
+    public static void accept(OutputStream out, Request request, String protocol) throws IOException {
+        StringBuilder response = new StringBuilder("HTTP/1.1 101 Switching Protocols\r\n")
+                .append("Upgrade: websocket\r\nConnection: Upgrade\r\n")
+                .append("Sec-WebSocket-Accept: ").append(acceptKey(request.key)).append("\r\n");
+        if (protocol != null) {
+            response.append("Sec-WebSocket-Protocol: ").append(protocol).append("\r\n");
+        }
+        out.write(response.append("\r\n").toString().getBytes(StandardCharsets.ISO_8859_1));
+        out.flush();
+    }
+
+    /**
+     * Sends the upgrade request of a client and reads the answer.
+     *
+     * @param in
+     * @param out
+     * @param target   - path and query, e.g. "/?username=bot"
+     * @param protocol - subprotocol offered, null for none
+     * @return the subprotocol selected by the server, null for none
+     * @throws IOException if the server refused the upgrade
+     */
+    public static String connect(InputStream in, OutputStream out, String target, String protocol) throws IOException {
+        String request = "GET " + target + " HTTP/1.1\r\nHost: localhost\r\nUpgrade: websocket\r\n"
+                + "Connection: Upgrade\r\nSec-WebSocket-Key: dGhlIHNhbXBsZSBub25jZQ==\r\n"
+                + "Sec-WebSocket-Version: 13\r\n"
+                + (protocol != null ? "Sec-WebSocket-Protocol: " + protocol + "\r\n" : "") + "\r\n";
+        out.write(request.getBytes(StandardCharsets.ISO_8859_1));
+        out.flush();
+        String status = readLine(in);
+        if (status == null || !status.contains(" 101 ")) {
+            throw new IOException("Upgrade refused: " + status);
+        }
+        String selected = null;
+        String line;
+        while ((line = readLine(in)) != null && !line.isEmpty()) {
+            if (line.toLowerCase().startsWith("sec-websocket-protocol:")) {
+                selected = line.substring(line.indexOf(':') + 1).trim();
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Reads a frame, unmasking it if needed.
+     *
+     * @param in
+     * @throws EOFException if the connection was closed
+     */
+    public static Frame read(DataInputStream in) throws IOException {
+        int first = in.readUnsignedByte();
+        int second = in.readUnsignedByte();
+        long length = second & 0x7f;
+        if (length == 126) {
+            length = in.readUnsignedShort();
+        } else if (length == 127) {
+            length = in.readLong();
+        }
+        if (length > MAX_PAYLOAD) {
+            throw new IOException("Frame too large: " + length);
+        }
+        byte[] mask = null;
+        if ((second & 0x80) != 0) {
+            mask = new byte[4];
+            in.readFully(mask);
+        }
+        byte[] payload = new byte[(int) length];
+        in.readFully(payload);
+        if (mask != null) {
+            for (int i = 0; i < payload.length; i++) {
+                payload[i] ^= mask[i & 3];
+            }
+        }
+        return new Frame(first & 0xf, payload);
+    }
+
+    /**
+     * Writes a final frame. Clients must mask their frames, servers must not.
+     *
+     * @param out
+     * @param opcode
+     * @param payload
+     * @param masked
+     */
+    public static void write(OutputStream out, int opcode, byte[] payload, boolean masked) throws IOException {
+        ByteArrayOutputStream frame = new ByteArrayOutputStream(payload.length + 14);
+        frame.write(0x80 | opcode);
+        int maskBit = masked ? 0x80 : 0;
+        if (payload.length < 126) {
+            frame.write(maskBit | payload.length);
+        } else if (payload.length < 65536) {
+            frame.write(maskBit | 126);
+            frame.write(payload.length >> 8);
+            frame.write(payload.length);
+        } else {
+            frame.write(maskBit | 127);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                frame.write((int) ((long) payload.length >> shift));
+            }
+        }
+        if (masked) {
+            byte[] mask = new byte[4];
+            ThreadLocalRandom.current().nextBytes(mask);
+            frame.write(mask);
+            for (int i = 0; i < payload.length; i++) {
+                frame.write(payload[i] ^ mask[i & 3]);
+            }
+        } else {
+            frame.write(payload);
+        }
+        synchronized (out) {
+            frame.writeTo(out);
+            out.flush();
+        }
+    }
+
+    /**
+     * Returns the Sec-WebSocket-Accept value for a handshake key.
+     *
+     * @param key
+     */
+    public static String acceptKey(String key) {
+        try {
+            MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+            byte[] digest = sha1.digest((key.trim() + ACCEPT_GUID).getBytes(StandardCharsets.ISO_8859_1));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Reads an HTTP header line terminated by CRLF.
+     *
+     * @param in
+     * @return the line, or null at the end of the stream
+     */
+    public static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) != -1) {
+            if (c == '\n') {
+                int length = line.length();
+                if (length > 0 && line.charAt(length - 1) == '\r') {
+                    line.setLength(length - 1);
+                }
+                return line.toString();
+            }
+            line.append((char) c);
+        }
+        return line.length() == 0 ? null : line.toString();
+    }
+}
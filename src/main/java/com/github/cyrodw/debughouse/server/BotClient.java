@@ -0,0 +1,228 @@
+package com.github.cyrodw.debughouse.server;
+
+import com.github.bhlangonijr.chesslib.Side;
+import com.github.cyrodw.debughouse.BughouseBoard;
+import com.github.cyrodw.debughouse.protocol.WebSocketFrames;
+
+import java.io.*;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bot player speaking the text protocol to a bughouse server over a websocket.
+ * It plays a random legal move after thinking up to twice its average think time, and while the
+ * opponent thinks it sometimes premoves a random move of the position with the sides flipped.
+ * It seeks again after each game unless rematching is turned off.
+ */
+public class BotClient implements Closeable {
+
+    public static final double PREMOVE_CHANCE = 0.3; // Chance of a premove on the opponent's turn
+
+    // Think timers of all bots, the bots only read from the network on their own threads
+    private static final ScheduledExecutorService thinker = Executors.newScheduledThreadPool(2, runnable -> {
+        Thread thread = new Thread(runnable, "bot-thinker");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final String host;
+    private final int port;
+    private final String username;
+    private final int minutes;
+    private final long think;
+    private final LoadStats stats;
+    private final Random random = new Random();
+    private final BughouseBoard board = new BughouseBoard();
+    private final BughouseBoard premoveBoard = new BughouseBoard();
+    private Socket socket;
+    private OutputStream out;
+    private Side side = Side.WHITE;
+    private boolean playing = false;
+    private boolean premoved = false; // Premoved on the current opponent turn
+    private int version = 0; // Positions received, a move thought about an older one is not sent
+    private String sentMove = null;
+    private long sentNanos = 0;
+    private volatile boolean rematch = true;
+    private volatile boolean running = true;
+
+    /**
+     * @param host
+     * @param port
+     * @param username - names starting with "bot" don't get seeks filled with bots
+     * @param minutes  - time control to seek
+     * @param think    - average think time in milliseconds
+     * @param stats    - null to not record
+     */
+    public BotClient(String host, int port, String username, int minutes, long think, LoadStats stats) {
+        this.host = host;
+        this.port = port;
+        this.username = username;
+        this.minutes = minutes;
+        this.think = think;
+        this.stats = stats;
+    }
+
+    /**
+     * @param rematch - false to disconnect after the first game
+     */
+    public void setRematch(boolean rematch) {
+        this.rematch = rematch;
+    }
+
+    /**
+     * Connects and seeks a game on a thread of its own.
+     */
+    public void start() {
+        Thread thread = new Thread(this::run, "bot-" + username);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        try {
+            if (socket != null) {
+                socket.close();
+            }
+        } catch (IOException e) {
+            // Already closed
+        }
+    }
+
+    private void run() {
+        try (Socket connection = new Socket(host, port)) {
+            socket = connection;
+            connection.setTcpNoDelay(true);
+            out = new BufferedOutputStream(connection.getOutputStream());
+            DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream()));
+            WebSocketFrames.connect(in, out, "/?username=" + username, null);
+            send("seek " + minutes);
+            while (running) {
+                WebSocketFrames.Frame frame = WebSocketFrames.read(in);
+                if (frame.opcode == WebSocketFrames.CLOSE) {
+                    return;
+                }
+                if (frame.opcode == WebSocketFrames.TEXT) {
+                    if (stats != null) {
+                        stats.frameReceived();
+                    }
+                    handle(frame.text());
+                }
+            }
+        } catch (EOFException | SocketException e) {
+            // Closed
+        } catch (IOException | RuntimeException e) {
+            if (running) {
+                if (stats != null) {
+                    stats.error();
+                }
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private synchronized void handle(String message) {
+        String[] args = message.split(" ", 2);
+        String arg = args.length > 1 ? args[1] : "";
+        switch (args[0]) {
+            case "userside" -> side = arg.equals("white") ? Side.WHITE : Side.BLACK;
+            case "started" -> {
+                board.reset();
+                playing = true;
+                sentMove = null;
+            }
+            case "whitehand1" -> board.setHand(arg, Side.WHITE);
+            case "blackhand1" -> board.setHand(arg, Side.BLACK);
+            case "move1" -> {
+                if (arg.equals(sentMove)) {
+                    if (stats != null) {
+                        stats.moveEchoed(System.nanoTime() - sentNanos);
+                    }
+                    sentMove = null;
+                } else if (board.sideToMove() == side && stats != null) {
+                    stats.premovePlayed(); // Our move, but not sent, so the server played a premove
+                }
+            }
+            case "fen1" -> {
+                board.loadFromFen(arg);
+                version++;
+                if (!playing) {
+                    return;
+                }
+                if (board.sideToMove() == side) {
+                    premoved = false;
+                    int thought = version;
+                    thinker.schedule(() -> move(thought), (long) (random.nextDouble() * 2 * think),
+                            TimeUnit.MILLISECONDS);
+                } else if (!premoved && random.nextDouble() < PREMOVE_CHANCE) {
+                    premoved = true;
+                    premove(arg);
+                }
+            }
+            case "finished" -> {
+                playing = false;
+                if (stats != null) {
+                    stats.gameFinished();
+                }
+                if (rematch && running) {
+                    send("seek " + minutes);
+                } else {
+                    close();
+                }
+            }
+            default -> {
+            }
+        }
+    }
+
+    /**
+     * Plays a random legal move if the position did not change while thinking.
+     *
+     * @param thought - version of the position thought about
+     */
+    private synchronized void move(int thought) {
+        if (!playing || thought != version || board.sideToMove() != side) {
+            return;
+        }
+        List<String> moves = board.getLegalMoveList();
+        if (moves.isEmpty()) {
+            return; // Wait for a piece to drop
+        }
+        sentMove = moves.get(random.nextInt(moves.size()));
+        sentNanos = System.nanoTime();
+        send("move " + sentMove);
+    }
+
+    /**
+     * Sends a random move of the position with the sides flipped as a premove, drops as predrops.
+     *
+     * @param fen
+     */
+    private void premove(String fen) {
+        String[] fields = fen.split(" ");
+        fields[1] = side == Side.WHITE ? "w" : "b";
+        fields[3] = "-";
+        premoveBoard.loadFromFen(String.join(" ", fields));
+        premoveBoard.setHand(board.getHandString(side), side);
+        List<String> moves = premoveBoard.getLegalMoveList();
+        if (!moves.isEmpty()) {
+            String move = moves.get(random.nextInt(moves.size()));
+            send("premove " + move.toLowerCase() + " " + (move.charAt(1) == '@'));
+        }
+    }
+
+    private void send(String message) {
+        try {
+            WebSocketFrames.write(out, WebSocketFrames.TEXT, message.getBytes(StandardCharsets.UTF_8), true);
+        } catch (IOException e) {
+            close();
+        }
+    }
+}
@@ -0,0 +1,342 @@
+package com.github.cyrodw.debughouse.server;
+
+import com.github.cyrodw.debughouse.protocol.WebSocketFrames;
+
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Embedded bughouse server speaking the text protocol of the game server over websockets, for
+ * playing and load testing the client offline.
+ * Players seek a game with "seek MINUTES" and every four seeks of the same time control start a
+ * game, seated in the order they came. Moves, premoves, cancels, chat, pings and resigns are handled
+ * as by the game server; partner requests and ratings are not, every player is rated RATING.
+ * With bots enabled the other three seats of a seek are filled by BotClients at once.
+ * <p>
+ * Run with an optional port and "--bots" to play against bots.
+ */
+public class BughouseServer implements Closeable {
+
+    public static final int DEFAULT_PORT = 8080;
+    public static final int RATING = 1500;
+    public static final long BOT_THINK = 500; // Average milliseconds a bot filling a seek thinks
+
+    private final ServerSocket serverSocket;
+    private final ScheduledExecutorService timer;
+    private final Map<Integer, List<Connection>> seeks = new HashMap<>(); // By minutes, guarded by itself
+    private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+    private final LongAdder gamesStarted = new LongAdder();
+    private final LongAdder gamesFinished = new LongAdder();
+    private volatile boolean botsEnabled = false;
+    private int botCount = 0;
+
+    /**
+     * @param port - 0 for any free port
+     */
+    public BughouseServer(int port) throws IOException {
+        this.serverSocket = new ServerSocket(port);
+        this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "bughouse-server-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * @param botsEnabled - true to fill the seeks of players with bots
+     */
+    public void setBotsEnabled(boolean botsEnabled) {
+        this.botsEnabled = botsEnabled;
+    }
+
+    public long getGamesStarted() {
+        return gamesStarted.sum();
+    }
+
+    public long getGamesFinished() {
+        return gamesFinished.sum();
+    }
+
+    /**
+     * Accepts connections on a background thread, each one served by its own thread.
+     */
+    public void start() {
+        Thread acceptor = new Thread(() -> {
+            while (!serverSocket.isClosed()) {
+                try {
+                    Socket socket = serverSocket.accept();
+                    socket.setTcpNoDelay(true);
+                    Thread connection = new Thread(new Connection(socket), "bughouse-server-connection");
+                    connection.setDaemon(true);
+                    connection.start();
+                } catch (IOException e) {
+                    return; // Closed
+                }
+            }
+        }, "bughouse-server");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        timer.shutdownNow();
+        for (Connection connection : connections) {
+            connection.close();
+        }
+    }
+
+    /**
+     * Adds a player to the seeks of a time control, starting a game once there are four.
+     *
+     * @param player
+     * @param minutes
+     */
+    private void seek(Connection player, int minutes) {
+        Connection[] seated = null;
+        synchronized (seeks) {
+            List<Connection> waiting = seeks.computeIfAbsent(minutes, m -> new ArrayList<>());
+            if (!waiting.contains(player)) {
+                waiting.add(player);
+            }
+            if (waiting.size() == 4) {
+                seated = waiting.toArray(new Connection[4]);
+                waiting.clear();
+            }
+        }
+        if (seated != null) {
+            gamesStarted.increment();
+            new ServerGame(this, seated, minutes).start(timer);
+        } else {
+            player.send("message Seeking a " + minutes + " minute game");
+            if (botsEnabled && !player.isBot()) {
+                fillWithBots(minutes);
+            }
+        }
+    }
+
+    private void unseek(Connection player) {
+        synchronized (seeks) {
+            for (List<Connection> waiting : seeks.values()) {
+                waiting.remove(player);
+            }
+        }
+    }
+
+    /**
+     * Starts bots seeking a time control, enough to start a game with the players seeking it.
+     *
+     * @param minutes
+     */
+    private void fillWithBots(int minutes) {
+        int missing;
+        synchronized (seeks) {
+            missing = 4 - seeks.getOrDefault(minutes, Collections.emptyList()).size();
+        }
+        for (int i = 0; i < missing; i++) {
+            BotClient bot;
+            synchronized (this) {
+                bot = new BotClient("localhost", getPort(), "bot" + ++botCount, minutes, BOT_THINK, null);
+            }
+            bot.setRematch(false);
+            bot.start();
+        }
+    }
+
+    void gameFinished(ServerGame game) {
+        gamesFinished.increment();
+    }
+
+    /**
+     * Connection of a player: handshake, then their commands.
+     */
+    class Connection implements Runnable {
+        private final Socket socket;
+        private OutputStream out;
+        private String username = "guest";
+        private volatile boolean serverPremoves = false;
+        private volatile ServerGame game; // null while not playing
+        private volatile int seat;
+        private int minutes = 0; // Time control of the last seek
+
+        Connection(Socket socket) {
+            this.socket = socket;
+        }
+
+        String getUsername() {
+            return username;
+        }
+
+        boolean isServerPremoves() {
+            return serverPremoves;
+        }
+
+        boolean isBot() {
+            return username.startsWith("bot");
+        }
+
+        void join(ServerGame game, int seat) {
+            this.game = game;
+            this.seat = seat;
+        }
+
+        void leave(ServerGame game) {
+            if (this.game == game) {
+                this.game = null;
+            }
+        }
+
+        /**
+         * Sends a text frame, closing the connection if that fails.
+         *
+         * @param message
+         */
+        void send(String message) {
+            try {
+                WebSocketFrames.write(out, WebSocketFrames.TEXT, message.getBytes(StandardCharsets.UTF_8), false);
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Already closed
+            }
+        }
+
+        @Override
+        public void run() {
+            connections.add(this);
+            try (socket) {
+                InputStream in = new BufferedInputStream(socket.getInputStream());
+                out = new BufferedOutputStream(socket.getOutputStream());
+                WebSocketFrames.Request request = WebSocketFrames.readRequest(in, out);
+                if (request == null) {
+                    return;
+                }
+                username = request.getParameter("username", username);
+                WebSocketFrames.accept(out, request, null);
+                send("connected");
+                DataInputStream data = new DataInputStream(in);
+                while (true) {
+                    WebSocketFrames.Frame frame = WebSocketFrames.read(data);
+                    switch (frame.opcode) {
+                        case WebSocketFrames.TEXT -> handle(frame.text());
+                        case WebSocketFrames.PING -> WebSocketFrames.write(out, WebSocketFrames.PONG, frame.payload, false);
+                        case WebSocketFrames.CLOSE -> {
+                            WebSocketFrames.write(out, WebSocketFrames.CLOSE, frame.payload, false);
+                            return;
+                        }
+                        default -> {
+                        }
+                    }
+                }
+            } catch (EOFException | SocketException e) {
+                // Player went away
+            } catch (IOException | RuntimeException e) {
+                e.printStackTrace();
+            } finally {
+                connections.remove(this);
+                unseek(this);
+                ServerGame current = game;
+                if (current != null) {
+                    current.forfeit(seat, "left the game");
+                }
+            }
+        }
+
+        private void handle(String message) {
+            String[] args = message.split(" ", 2);
+            String arg = args.length > 1 ? args[1] : "";
+            ServerGame current = game;
+            switch (args[0]) {
+                case "seek" -> {
+                    if (current != null) {
+                        send("message You are already playing");
+                        return;
+                    }
+                    try {
+                        minutes = Integer.parseInt(arg.trim());
+                    } catch (NumberFormatException e) {
+                        send("message Usage: seek MINUTES");
+                        return;
+                    }
+                    seek(this, minutes);
+                }
+                case "rematch" -> {
+                    if (current == null && minutes > 0) {
+                        seek(this, minutes);
+                    }
+                }
+                case "move" -> {
+                    if (current != null) {
+                        current.move(seat, arg.toLowerCase());
+                    }
+                }
+                case "premove" -> {
+                    if (current != null) {
+                        String[] premove = arg.split(" ");
+                        current.premove(seat, premove[0].toLowerCase(),
+                                premove.length > 1 && Boolean.parseBoolean(premove[1]));
+                    }
+                }
+                case "cancel" -> {
+                    if (current != null) {
+                        current.cancel(seat);
+                    }
+                }
+                case "premovemode" -> {
+                    serverPremoves = arg.equals("server");
+                    send("premovemode " + (serverPremoves ? "server" : "client"));
+                }
+                case "resign" -> {
+                    if (current != null) {
+                        current.forfeit(seat, "resigns");
+                    }
+                }
+                case "message" -> {
+                    if (current != null) {
+                        current.message(seat, arg);
+                    } else {
+                        send("message " + username + ": " + arg);
+                    }
+                }
+                case "ping" -> send("pong " + System.currentTimeMillis());
+                default -> send("message Unknown command: " + message);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port = DEFAULT_PORT;
+        boolean bots = false;
+        for (String arg : args) {
+            if (arg.equals("--bots")) {
+                bots = true;
+            } else {
+                port = Integer.parseInt(arg);
+            }
+        }
+        BughouseServer server = new BughouseServer(port);
+        server.setBotsEnabled(bots);
+        server.start();
+        System.out.println("Bughouse server on port " + server.getPort() + (bots ? " with bots" : ""));
+        Thread.currentThread().join();
+    }
+}
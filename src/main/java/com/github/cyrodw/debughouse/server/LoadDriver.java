@@ -0,0 +1,86 @@
+package com.github.cyrodw.debughouse.server;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Load test of a bughouse server: N concurrent games of four bots each, reporting the frames and
+ * moves per second and the latency of moves every second.
+ * It starts an embedded BughouseServer unless the port of a running server is given.
+ * <p>
+ * Run with [games] [seconds] [--port PORT] [--minutes MINUTES] [--think MILLISECONDS].
+ */
+public class LoadDriver {
+
+    public static final int DEFAULT_GAMES = 10;
+    public static final int DEFAULT_SECONDS = 30;
+    public static final int DEFAULT_MINUTES = 1;
+    public static final long DEFAULT_THINK = 50;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int games = DEFAULT_GAMES;
+        int seconds = DEFAULT_SECONDS;
+        int port = -1;
+        int minutes = DEFAULT_MINUTES;
+        long think = DEFAULT_THINK;
+        List<String> positional = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--port" -> port = Integer.parseInt(args[++i]);
+                case "--minutes" -> minutes = Integer.parseInt(args[++i]);
+                case "--think" -> think = Long.parseLong(args[++i]);
+                default -> positional.add(args[i]);
+            }
+        }
+        if (positional.size() > 0) {
+            games = Integer.parseInt(positional.get(0));
+        }
+        if (positional.size() > 1) {
+            seconds = Integer.parseInt(positional.get(1));
+        }
+
+        BughouseServer server = null;
+        if (port < 0) {
+            server = new BughouseServer(0);
+            server.start();
+            port = server.getPort();
+        }
+        LoadStats stats = new LoadStats();
+        List<BotClient> bots = new ArrayList<>(games * 4);
+        for (int i = 0; i < games * 4; i++) {
+            BotClient bot = new BotClient("localhost", port, "bot" + i, minutes, think, stats);
+            bots.add(bot);
+            bot.start();
+        }
+        System.out.println(games + " games at " + minutes + " min on port " + port + " for " + seconds + "s");
+
+        long start = System.nanoTime();
+        long frames = 0;
+        long moves = 0;
+        for (int second = 1; second <= seconds; second++) {
+            Thread.sleep(Math.max(0, start + second * 1_000_000_000L - System.nanoTime()) / 1_000_000);
+            System.out.println(second + "s: " + (stats.getFrames() - frames) + " frames/s, "
+                    + (stats.getMoves() - moves) + " moves/s, " + latencies(stats) + ", "
+                    + stats.getGames() + " games finished");
+            frames = stats.getFrames();
+            moves = stats.getMoves();
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        for (BotClient bot : bots) {
+            bot.close();
+        }
+        if (server != null) {
+            server.close();
+        }
+        System.out.printf("Total: %.0f frames/s, %.0f moves/s, %d premoves played, %s, %d games finished, %d errors%n",
+                stats.getFrames() / elapsed, stats.getMoves() / elapsed, stats.getPremoves(), latencies(stats),
+                stats.getGames(), stats.getErrors());
+    }
+
+    private static String latencies(LoadStats stats) {
+        return String.format("latency p50 %.2fms p95 %.2fms p99 %.2fms", stats.getPercentile(50) / 1e6,
+                stats.getPercentile(95) / 1e6, stats.getPercentile(99) / 1e6);
+    }
+}
@@ -0,0 +1,96 @@
+package com.github.cyrodw.debughouse.server;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency samples shared by the bots of a load test.
+ * The latency of a move is the time from sending it to receiving its echo from the server.
+ */
+public class LoadStats {
+
+    public static final int SAMPLES = 1 << 16; // Latencies kept for percentiles
+
+    private final LongAdder frames = new LongAdder();
+    private final LongAdder moves = new LongAdder();
+    private final LongAdder premoves = new LongAdder();
+    private final LongAdder games = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final long[] samples = new long[SAMPLES];
+    private long sampleCount = 0;
+
+    public void frameReceived() {
+        frames.increment();
+    }
+
+    /**
+     * Records a move echoed by the server.
+     *
+     * @param latencyNanos
+     */
+    public void moveEchoed(long latencyNanos) {
+        moves.increment();
+        synchronized (samples) {
+            samples[(int) (sampleCount++ % SAMPLES)] = latencyNanos;
+        }
+    }
+
+    /**
+     * Records a premove played by the server.
+     */
+    public void premovePlayed() {
+        premoves.increment();
+    }
+
+    /**
+     * Records the end of a game, once per player.
+     */
+    public void gameFinished() {
+        games.increment();
+    }
+
+    public void error() {
+        errors.increment();
+    }
+
+    public long getFrames() {
+        return frames.sum();
+    }
+
+    public long getMoves() {
+        return moves.sum();
+    }
+
+    public long getPremoves() {
+        return premoves.sum();
+    }
+
+    /**
+     * Returns the games finished, each is reported by its four players.
+     */
+    public long getGames() {
+        return games.sum() / 4;
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    /**
+     * Returns a percentile of the recent move latencies in nanoseconds, 0 before the first sample.
+     *
+     * @param percentile - from 0 to 100
+     */
+    public long getPercentile(double percentile) {
+        long[] sorted;
+        synchronized (samples) {
+            sorted = Arrays.copyOf(samples, (int) Math.min(sampleCount, SAMPLES));
+        }
+        if (sorted.length == 0) {
+            return 0;
+        }
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+}
@@ -0,0 +1,90 @@
+package com.github.cyrodw.debughouse.server;
+
+import java.util.LinkedList;
+import java.util.function.Predicate;
+
+/**
+ * Premoves of a player kept by a server, played by the rules of the client: illegal premoves are
+ * dropped, except predrops, which wait until they are legal and block the premoves after them.
+ * If the first premove is a predrop, the first legal predrop is played and the premoves before it
+ * are dropped.
+ */
+public class PremoveQueue {
+
+    private final LinkedList<String> premoves = new LinkedList<>();
+    private final LinkedList<Boolean> predrops = new LinkedList<>();
+
+    /**
+     * @param move    - e.g. "e2e4" or "n@f3"
+     * @param predrop
+     */
+    public void add(String move, boolean predrop) {
+        premoves.add(move);
+        predrops.add(predrop);
+    }
+
+    public void clear() {
+        premoves.clear();
+        predrops.clear();
+    }
+
+    public boolean isEmpty() {
+        return premoves.isEmpty();
+    }
+
+    public int size() {
+        return premoves.size();
+    }
+
+    /**
+     * Plays the first premove that can be played.
+     *
+     * @param play - plays a move if it is legal, returning whether it did
+     * @return the move played, or null if none
+     */
+    public String execute(Predicate<String> play) {
+        if (premoves.isEmpty()) {
+            return null;
+        }
+        if (predrops.peek()) {
+            for (int i = 0; i < premoves.size(); i++) {
+                String premove = premoves.get(i);
+                if (predrops.get(i) && play.test(premove)) {
+                    for (int j = 0; j <= i; j++) {
+                        premoves.remove();
+                        predrops.remove();
+                    }
+                    return premove;
+                }
+            }
+            return null;
+        }
+        while (!premoves.isEmpty()) {
+            String premove = premoves.remove();
+            boolean predrop = predrops.remove();
+            if (play.test(premove)) {
+                return premove;
+            } else if (predrop) {
+                premoves.addFirst(premove);
+                predrops.addFirst(true);
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the premoves as sent in a "premoves" frame, e.g. "e2e4:false,n@f3:true".
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < premoves.size(); i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(premoves.get(i)).append(':').append(predrops.get(i));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,375 @@
+package com.github.cyrodw.debughouse.server;
+
+import com.github.bhlangonijr.chesslib.Piece;
+import com.github.bhlangonijr.chesslib.Side;
+import com.github.bhlangonijr.chesslib.Square;
+import com.github.cyrodw.debughouse.BughouseBoard;
+import com.github.cyrodw.debughouse.GameStateUpdate;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bughouse game of four players on two boards, played on a BughouseServer.
+ * Seats 0 and 1 play white and black on board A, seats 2 and 3 white and black on board B.
+ * Partners play opposite colors on different boards, 0 with 3 and 1 with 2, and the pieces one
+ * captures go to the hand of the other.
+ * Every player sees their own board as board 1 and their partner's board as board 2.
+ * Premoves are kept and played here. Players in server premove mode get the result of a move and of
+ * the premoves it triggered as the "premoves" frame with the queue left, followed by one combined
+ * state update, as from LocalServer. The other players get the frames of every move played.
+ */
+class ServerGame {
+
+    public static final long FLAG_CHECK_INTERVAL = 100; // Milliseconds between checks of the clocks
+
+    private final BughouseServer server;
+    private final BughouseServer.Connection[] players;
+    private final BughouseBoard[] boards = {new BughouseBoard(), new BughouseBoard()};
+    private final PremoveQueue[] premoves = new PremoveQueue[4];
+    private final long[] remaining = new long[4]; // Nanoseconds left per seat, at the start of its turn
+    private final long[] turnStart = new long[2]; // nanoTime the side to move started thinking, per board
+    private final String[] lastMove = {"", ""};
+    private final ArrayDeque<Integer> turns = new ArrayDeque<>(); // Boards whose side to move may play a premove
+    private final boolean[] changed = new boolean[2]; // Boards not yet sent to the players in server premove mode
+    private final boolean[] premovesChanged = new boolean[4]; // Queues played from since the last update, by seat
+    private final long[] seq = new long[4]; // Sequence number of the last state update sent, by seat
+    private ScheduledFuture<?> flagCheck;
+    private boolean finished = false;
+
+    /**
+     * @param server
+     * @param players - by seat
+     * @param minutes - time control
+     */
+    ServerGame(BughouseServer server, BughouseServer.Connection[] players, int minutes) {
+        this.server = server;
+        this.players = players;
+        for (int seat = 0; seat < 4; seat++) {
+            premoves[seat] = new PremoveQueue();
+            remaining[seat] = TimeUnit.MINUTES.toNanos(minutes);
+        }
+    }
+
+    /**
+     * Tells the players about the game and starts the clocks of white.
+     *
+     * @param timer - runs the flag checks
+     */
+    synchronized void start(ScheduledExecutorService timer) {
+        long now = System.nanoTime();
+        turnStart[0] = now;
+        turnStart[1] = now;
+        for (int seat = 0; seat < 4; seat++) {
+            BughouseServer.Connection player = players[seat];
+            player.join(this, seat);
+            int board = board(seat);
+            player.send("userside " + (side(seat) == Side.WHITE ? "white" : "black"));
+            player.send("players1 " + players[seat(board, Side.WHITE)].getUsername() + ","
+                    + players[seat(board, Side.BLACK)].getUsername());
+            player.send("players2 " + players[seat(1 - board, Side.WHITE)].getUsername() + ","
+                    + players[seat(1 - board, Side.BLACK)].getUsername());
+            player.send("ratings1 " + BughouseServer.RATING + "," + BughouseServer.RATING);
+            player.send("ratings2 " + BughouseServer.RATING + "," + BughouseServer.RATING);
+            player.send("started");
+        }
+        sendBoard(0, true);
+        sendBoard(1, true);
+        sendUpdates();
+        flagCheck = timer.scheduleAtFixedRate(this::checkFlags, FLAG_CHECK_INTERVAL, FLAG_CHECK_INTERVAL,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Plays a move of a player if it is their turn and the move is legal.
+     *
+     * @param seat
+     * @param move - e.g. "e2e4" or "n@f3"
+     */
+    synchronized void move(int seat, String move) {
+        int board = board(seat);
+        if (finished || seat != seat(board, boards[board].sideToMove())) {
+            return;
+        }
+        if (!play(board, move)) {
+            players[seat].send("message Illegal move: " + move);
+            return;
+        }
+        executePremoves();
+        sendUpdates();
+    }
+
+    /**
+     * Queues a premove, played at once if it is already the player's turn.
+     *
+     * @param seat
+     * @param move
+     * @param predrop
+     */
+    synchronized void premove(int seat, String move, boolean predrop) {
+        if (finished) {
+            return;
+        }
+        premoves[seat].add(move, predrop);
+        int board = board(seat);
+        if (seat == seat(board, boards[board].sideToMove())) {
+            turns.add(board);
+            executePremoves();
+            sendUpdates();
+        }
+    }
+
+    synchronized void cancel(int seat) {
+        premoves[seat].clear();
+    }
+
+    /**
+     * Sends a chat message to all players.
+     *
+     * @param seat
+     * @param text
+     */
+    synchronized void message(int seat, String text) {
+        for (BughouseServer.Connection player : players) {
+            player.send("message " + players[seat].getUsername() + ": " + text);
+        }
+    }
+
+    /**
+     * Ends the game with a loss for the team of a player, e.g. when they resign or leave.
+     *
+     * @param seat
+     * @param reason - e.g. "resigns"
+     */
+    synchronized void forfeit(int seat, String reason) {
+        if (!finished) {
+            finish(players[seat].getUsername() + " " + reason, seat);
+        }
+    }
+
+    /**
+     * Ends the game if the side to move on a board is out of time.
+     */
+    synchronized void checkFlags() {
+        long now = System.nanoTime();
+        for (int board = 0; board < 2 && !finished; board++) {
+            int seat = seat(board, boards[board].sideToMove());
+            if (remaining[seat] - (now - turnStart[board]) <= 0) {
+                finish(players[seat].getUsername() + " forfeits on time", seat);
+            }
+        }
+    }
+
+    synchronized boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * Plays a move on a board if it is legal, captures go to the hand of the mover's partner.
+     *
+     * @param board
+     * @param move
+     * @return true if the move was played
+     */
+    private boolean play(int board, String move) {
+        BughouseBoard position = boards[board];
+        if (move.length() < 4 || !position.isLegal(move)) {
+            return false;
+        }
+        Side side = position.sideToMove();
+        long now = System.nanoTime();
+        remaining[seat(board, side)] -= now - turnStart[board];
+        turnStart[board] = now;
+        boolean capture = false;
+        if (move.charAt(1) != '@') {
+            Piece captured = position.getPiece(Square.fromValue(move.substring(2, 4).toUpperCase()));
+            if (captured != Piece.NONE) {
+                // The partner plays the other color on the other board
+                boards[1 - board].addToHand(Piece.make(side.flip(), captured.getPieceType()), side.flip());
+                capture = true;
+            }
+        }
+        position.doMove(move, BughouseBoard.MoveType.NORMAL, side);
+        lastMove[board] = move;
+        sendBoard(board, false);
+        if (capture) {
+            sendHands(1 - board);
+            turns.add(1 - board); // A predrop may be legal now
+        }
+        turns.add(board);
+        if (position.getLegalMoves().size() == 0 && position.isKingAttacked()) {
+            // Waiting for a piece to block is not allowed here, mate ends the game at once
+            int mated = seat(board, position.sideToMove());
+            finish(players[mated].getUsername() + " is checkmated", mated);
+        }
+        return true;
+    }
+
+    /**
+     * Plays the premoves of the players whose turn came or whose hand changed, until none is left to play.
+     */
+    private void executePremoves() {
+        Integer next;
+        while (!finished && (next = turns.poll()) != null) {
+            int board = next;
+            int seat = seat(board, boards[board].sideToMove());
+            PremoveQueue queue = premoves[seat];
+            if (queue.isEmpty()) {
+                continue;
+            }
+            int before = queue.size();
+            queue.execute(move -> play(board, move));
+            if (queue.size() != before) {
+                premovesChanged[seat] = true;
+            }
+        }
+        turns.clear();
+    }
+
+    /**
+     * Sends the players in server premove mode what changed since the last update: the premoves left
+     * if any were played, then one state update of the boards changed.
+     */
+    private void sendUpdates() {
+        for (int seat = 0; seat < 4; seat++) {
+            BughouseServer.Connection player = players[seat];
+            if (!player.isServerPremoves()) {
+                continue;
+            }
+            if (premovesChanged[seat]) {
+                player.send("premoves " + premoves[seat]);
+            }
+            List<GameStateUpdate.BoardState> states = new ArrayList<>(2);
+            int own = board(seat);
+            if (changed[own]) {
+                states.add(getState(own, 1));
+            }
+            if (changed[1 - own]) {
+                states.add(getState(1 - own, 2));
+            }
+            if (!states.isEmpty()) {
+                player.send(new GameStateUpdate(++seq[seat], states).toString());
+            }
+        }
+        changed[0] = false;
+        changed[1] = false;
+        Arrays.fill(premovesChanged, false);
+    }
+
+    /**
+     * @param seat  - of a player on the losing team
+     * @param result
+     */
+    private void finish(String result, int seat) {
+        finished = true;
+        sendUpdates(); // The last move before the end
+        if (flagCheck != null) {
+            flagCheck.cancel(false);
+        }
+        String winners = players[partner(opponent(seat))].getUsername() + " and "
+                + players[opponent(seat)].getUsername();
+        for (BughouseServer.Connection player : players) {
+            player.leave(this);
+            player.send("finished");
+            player.send("message Game over: " + result + ", " + winners + " win");
+        }
+        server.gameFinished(this);
+    }
+
+    /**
+     * Sends the last move, the hands, the clocks and the position of a board to the players not in
+     * server premove mode, the others get it with the next update.
+     *
+     * @param board
+     * @param start - true for the start of the game, without a last move
+     */
+    private void sendBoard(int board, boolean start) {
+        changed[board] = true;
+        String times = getTimes(board);
+        String fen = boards[board].getFen();
+        for (int seat = 0; seat < 4; seat++) {
+            String number = board(seat) == board ? "1" : "2";
+            BughouseServer.Connection player = players[seat];
+            if (player.isServerPremoves()) {
+                continue;
+            }
+            if (!start) {
+                player.send("move" + number + " " + lastMove[board]);
+            }
+            player.send("whitehand" + number + " " + boards[board].getHandString(Side.WHITE));
+            player.send("blackhand" + number + " " + boards[board].getHandString(Side.BLACK));
+            player.send("times" + number + " " + times);
+            player.send("fen" + number + " " + fen);
+        }
+    }
+
+    private void sendHands(int board) {
+        changed[board] = true;
+        for (int seat = 0; seat < 4; seat++) {
+            if (players[seat].isServerPremoves()) {
+                continue;
+            }
+            String number = board(seat) == board ? "1" : "2";
+            players[seat].send("whitehand" + number + " " + boards[board].getHandString(Side.WHITE));
+            players[seat].send("blackhand" + number + " " + boards[board].getHandString(Side.BLACK));
+        }
+    }
+
+    /**
+     * Returns the state of a board as seen by a player.
+     *
+     * @param board
+     * @param number - 1 for the player's board, 2 for the partner's
+     */
+    private GameStateUpdate.BoardState getState(int board, int number) {
+        BughouseBoard position = boards[board];
+        return new GameStateUpdate.BoardState(number, position.getFen(), position.getHandString(Side.WHITE),
+                position.getHandString(Side.BLACK), getTime(board, Side.WHITE), getTime(board, Side.BLACK),
+                lastMove[board]);
+    }
+
+    /**
+     * Returns the clocks of a board in deciseconds, e.g. "1800,1795".
+     *
+     * @param board
+     */
+    private String getTimes(int board) {
+        return getTime(board, Side.WHITE) + "," + getTime(board, Side.BLACK);
+    }
+
+    /**
+     * Returns the clock of a side in deciseconds.
+     *
+     * @param board
+     * @param side
+     */
+    private int getTime(int board, Side side) {
+        long elapsed = side == boards[board].sideToMove() ? System.nanoTime() - turnStart[board] : 0;
+        return (int) Math.max(0, (remaining[seat(board, side)] - elapsed) / 100_000_000);
+    }
+
+    private static int seat(int board, Side side) {
+        return board * 2 + (side == Side.WHITE ? 0 : 1);
+    }
+
+    private static int board(int seat) {
+        return seat / 2;
+    }
+
+    private static Side side(int seat) {
+        return seat % 2 == 0 ? Side.WHITE : Side.BLACK;
+    }
+
+    private static int partner(int seat) {
+        return 3 - seat;
+    }
+
+    private static int opponent(int seat) {
+        return seat ^ 1;
+    }
+}
@@ -1,13 +1,18 @@
 package com.github.cyrodw.debughouse.ui;
 
 import com.github.cyrodw.debughouse.BughouseBoard;
+import com.github.cyrodw.debughouse.ClientBoard;
+import com.github.cyrodw.debughouse.engine.BughouseEngine;
+import com.github.cyrodw.debughouse.engine.SearchResult;
 import com.github.bhlangonijr.chesslib.Piece;
 import com.github.bhlangonijr.chesslib.Side;
 import com.github.bhlangonijr.chesslib.Square;
+import javafx.animation.AnimationTimer;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.SimpleBooleanProperty;
-import javafx.geometry.Bounds;
+import javafx.geometry.Point2D;
 import javafx.geometry.Insets;
 import javafx.scene.Cursor;
 import javafx.scene.Scene;
@@ -24,40 +29,62 @@ import javafx.scene.text.FontWeight;
 import javafx.scene.text.Text;
 import javafx.stage.Stage;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.prefs.Preferences;
 
 public class Board extends Application {
     public static double MIN_SQUARE_SIZE = 10;
     public static double MAX_SQUARE_SIZE = 100;
+    public static long ENGINE_TIME = 3000; // Milliseconds per engine search
     public double squareSize;
     public double scale;
     public boolean underPromote = false;
-    private boolean playing = false;
     private final BorderPane boardPane = new BorderPane();
     private Pocket bottomPocket, topPocket;
     private Pockets leftPockets, rightPockets;
     private int pocketLayoutSetting = 0;
     private Clock bottomClock, topClock;
-    public BughouseBoard gameState = new BughouseBoard();
+    public final ClientBoard state;
+    public final BughouseBoard gameState;
 
     public Position position;
-    public Side userSide = Side.WHITE;
-    private final List<String> moveHistory = new ArrayList<>();
 
     public Rectangle[] squares = new Rectangle[64];
     public Rectangle[] lastMoveSquares = new Rectangle[64];
     public Rectangle[] premoveSquares = new Rectangle[64];
     public Rectangle[] outlineSquares = new Rectangle[64];
+    public Rectangle[] suggestionSquares = new Rectangle[64];
+    private long lastMoveMask = 0L; // Squares shown in each highlight layer, bit i for square ordinal i
+    private long premoveMask = 0L;
+    private long suggestionMask = 0L;
+    private long outlineMask = 0L;
+    private BoardCanvas canvas; // Draws the board instead of the nodes, null while they are shown
+    // Parts of the board to render on the next pulse, see invalidate
+    static final int BOARD = 1; // The pieces, or the whole canvas
+    static final int HIGHLIGHTS = 2;
+    static final int HANDS = 4;
+    static final int CLOCKS = 8;
+    static final int ANALYSIS = 16;
+    private int dirty = 0;
+    private final AnimationTimer renderTimer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            flush();
+        }
+    };
+    private boolean canvasRendering = false;
+    private final Text[] coordinates = new Text[16];
+    private final BorderPane center = new BorderPane();
+    private final GridPane topControls = new GridPane();
+    private final GridPane bottomControls = new GridPane();
+    private Text usernameText, ratingText, username2Text, rating2Text;
+    private Side layoutSide; // Side of the user the components are placed for
     private final ImageView cursorImage = new ImageView();
-    public int[] times = new int[2];
 
-    public String fen = gameState.getFen();
-    public boolean userBoard;
-    private int toX, toY;
-    public String username1 = "username", username2 = "username";
-    public String rating1 = "(1600)", rating2 = "(1600)";
+    public final boolean userBoard;
+    private BughouseEngine engine; // Created when the analysis is first turned on
+    private boolean analyzing;
+    private SearchResult suggestion;
+    private Text engineText;
 
     public int getDropPieceSelected() {
         return dropPieceSelected;
@@ -65,30 +92,75 @@ public class Board extends Application {
 
     private int dropPieceSelected = 0;
 
-    public Board(boolean userBoard) {
-        this.userBoard = userBoard;
+    /**
+     * @param state - board of the client core this one shows
+     */
+    public Board(ClientBoard state) {
+        this.state = state;
+        this.gameState = state.getGameState();
+        this.userBoard = state.isUserBoard();
+        this.analyzing = !userBoard; // Suggestions for the partner board by default
     }
 
-    public void reset() {
-        moveHistory.clear();
+    public Side getUserSide() {
+        return state.getUserSide();
     }
 
-    public void render() {
-        position.render();
-        renderHands();
+    /**
+     * Marks parts of the board to render on the next pulse, so that all the updates received in a
+     * pulse cost one render.
+     *
+     * @param parts - e.g. BOARD | HANDS
+     */
+    public void invalidate(int parts) {
+        dirty |= parts;
     }
 
-    public void setUserSide(Side side) {
-        if (!this.userSide.equals(side)) {
-            this.userSide = side;
-            createComponents();
+    /**
+     * Renders the parts of the board invalidated since the last flush.
+     */
+    public void flush() {
+        if ((dirty & ANALYSIS) != 0) {
+            analyze();
+        }
+        if ((dirty & HIGHLIGHTS) != 0) {
+            showHighlights();
+        }
+        int parts = dirty; // Including the canvas redraw the highlights asked for
+        dirty = 0;
+        if ((parts & BOARD) != 0) {
+            if (canvas != null) {
+                canvas.draw();
+            } else {
+                position.render();
+            }
+        }
+        if ((parts & HANDS) != 0) {
+            renderHands();
         }
+        if ((parts & CLOCKS) != 0) {
+            if (isPlaying()) {
+                updateClockTurns();
+            }
+            bottomClock.render();
+            topClock.render();
+        }
+    }
+
+    long getLastMoveMask() {
+        return lastMoveMask;
     }
 
-    public void setHand(String hand, Side side) {
-        gameState.setHand(hand, side);
-        setFen(this.fen);
-        renderHands();
+    long getPremoveMask() {
+        return premoveMask;
+    }
+
+    long getSuggestionMask() {
+        return suggestionMask;
+    }
+
+    long getOutlineMask() {
+        return outlineMask;
     }
 
     /**
@@ -105,7 +177,7 @@ public class Board extends Application {
      * Update which clocks are running
      */
     public void updateClockTurns() {
-        if (gameState.sideToMove() != userSide) {
+        if (gameState.sideToMove() != getUserSide()) {
             bottomClock.stop();
             topClock.start();
         } else {
@@ -122,84 +194,68 @@ public class Board extends Application {
         topClock.stop();
     }
 
-    public void setTimes(String[] times, boolean flip) {
-        this.times[0] = Integer.parseInt(times[0]);
-        this.times[1] = Integer.parseInt(times[1]);
-        if (!flip) {
-            bottomClock.setTime(this.times[0]);
-            topClock.setTime(this.times[1]);
-        } else {
-            bottomClock.setTime(this.times[1]);
-            topClock.setTime(this.times[0]);
-        }
+    /**
+     * Shows the clocks of the client board on the next pulse, e.g. after the server sent the times.
+     */
+    public void showTimes() {
+        invalidate(CLOCKS);
     }
 
+    /**
+     * Creates the nodes of the board, once. Changes of the square size or of the side of the user
+     * are applied to them by relayout, and changes of the game by refresh.
+     */
     public void createComponents() {
-        boardPane.getChildren().clear();
-
         // Pockets
-        bottomPocket = new Pocket(this, userSide);
-        topPocket = new Pocket(this, userSide.flip());
+        bottomPocket = new Pocket(this, getUserSide());
+        topPocket = new Pocket(this, getUserSide().flip());
 
         // Clocks
-        bottomClock = new Clock(this, 1800);
-        topClock = new Clock(this, 1800);
+        bottomClock = new Clock(this, false);
+        topClock = new Clock(this, true);
 
         // Player info
-        Text username = new Text(squareSize * 1.2, squareSize * 0.6, username1);
-        username.setFont(Font.font("Arial", FontWeight.BOLD, 20));
-        username.setFill(Color.WHITE);
-
-        Text rating = new Text(squareSize * 1.3 + username.prefWidth(-1), squareSize * 0.6, rating1);
-        rating.setFont(Font.font("Arial", 20));
-        rating.setFill(Color.LIGHTGREY);
-        boardPane.getChildren().addAll(username, rating);
-
-        Text username2label = new Text(squareSize * 1.2, squareSize * 10.1, username2);
-        username2label.setFont(Font.font("Arial", FontWeight.BOLD, 20));
-        username2label.setFill(Color.WHITE);
+        usernameText = new Text();
+        usernameText.setFont(Font.font("Arial", FontWeight.BOLD, 20));
+        usernameText.setFill(Color.WHITE);
+
+        ratingText = new Text();
+        ratingText.setFont(Font.font("Arial", 20));
+        ratingText.setFill(Color.LIGHTGREY);
+        boardPane.getChildren().addAll(usernameText, ratingText);
+
+        username2Text = new Text();
+        username2Text.setFont(Font.font("Arial", FontWeight.BOLD, 20));
+        username2Text.setFill(Color.WHITE);
+
+        rating2Text = new Text();
+        rating2Text.setFont(Font.font("Arial", 20));
+        rating2Text.setFill(Color.LIGHTGREY);
+        boardPane.getChildren().addAll(username2Text, rating2Text);
+
+        // Engine line
+        engineText = new Text(suggestion == null ? "" : suggestion.toString());
+        engineText.setFont(Font.font("Arial", 14));
+        engineText.setFill(Color.LIGHTGREY);
+        boardPane.getChildren().add(engineText);
 
-        Text rating2label = new Text(squareSize * 1.3 + username2label.prefWidth(-1), squareSize * 10.1, rating2);
-        rating2label.setFont(Font.font("Arial", 20));
-        rating2label.setFill(Color.LIGHTGREY);
-        boardPane.getChildren().addAll(username2label, rating2label);
-
-        GridPane topControls = new GridPane();
         topControls.addRow(0, topPocket, topClock);
         boardPane.setTop(topControls);
 
-        GridPane bottomControls = new GridPane();
         bottomControls.addRow(0, bottomPocket, bottomClock);
         boardPane.setBottom(bottomControls);
 
-        leftPockets = new Pockets(this, userSide);
+        leftPockets = new Pockets(this, getUserSide());
         boardPane.setLeft(leftPockets);
 
-        rightPockets = new Pockets(this, userSide);
+        rightPockets = new Pockets(this, getUserSide());
         boardPane.setRight(rightPockets);
 
         // Board
-        BorderPane center = new BorderPane();
-        drawBoard(center);
-        drawCoordinates(center);
-        position = new Position(this);
-        center.getChildren().add(position);
-        center.setPrefHeight(squareSize * 8);
-        center.setPrefWidth(squareSize * 8);
-
+        createBoard();
         boardPane.setCenter(center);
-
-        // Set margins
-        BorderPane.setMargin(topControls, new Insets(squareSize * 7 / 30, 0, squareSize * 7 / 30, 20 * scale + squareSize * 4 / 5));
-        BorderPane.setMargin(bottomControls, new Insets(0, 0, squareSize * 5 / 8, 20 * scale + squareSize * 4 / 5));
-        BorderPane.setMargin(leftPockets, new Insets(0, 10 * scale, 0, 10 * scale));
-        BorderPane.setMargin(rightPockets, new Insets(0, 10 * scale, 0, 10 * scale));
-        GridPane.setMargin(topPocket, new Insets(0, squareSize * 7 / 4, 0, 0));
-        GridPane.setMargin(bottomPocket, new Insets(0, squareSize * 7 / 4, 0, 0));
         boardPane.setStyle("-fx-background-color: #232323;");
 
-        cursorImage.setFitWidth(squareSize * 4 / 5);
-        cursorImage.setFitHeight(squareSize * 4 / 5);
         cursorImage.setMouseTransparent(true);
         boardPane.getChildren().add(cursorImage);
 
@@ -208,20 +264,7 @@ public class Board extends Application {
             cursorImage.setY(e.getSceneY() - cursorImage.getBoundsInLocal().getHeight() / 2);
 
             if (dropPieceSelected != 0) {
-                if (!(toX < 0 || toX > 7 || toY < 0 || toY > 7)) {
-                    outlineSquares[Square.fromValue(Character.toString('A' + toX) + (1 + toY)).ordinal()].setVisible(false);
-                }
-                Bounds boundsInScene = position.localToScene(boardPane.getBoundsInLocal());
-                if (userSide.equals(Side.BLACK)) {
-                    toX = 7 - (int) Math.floor((e.getSceneX() - boundsInScene.getMinX()) / squareSize);
-                    toY = (int) Math.floor((e.getSceneY() - boundsInScene.getMinY()) / squareSize);
-                } else {
-                    toX = (int) Math.floor((e.getSceneX() - boundsInScene.getMinX()) / squareSize);
-                    toY = 7 - (int) Math.floor((e.getSceneY() - boundsInScene.getMinY()) / squareSize);
-                }
-                if (!(toX < 0 || toX > 7 || toY < 0 || toY > 7)) {
-                    outlineSquares[Square.fromValue(Character.toString('A' + toX) + (1 + toY)).ordinal()].setVisible(true);
-                }
+                setOutline(getSquareAt(e.getSceneX(), e.getSceneY()));
             }
             e.consume();
         });
@@ -230,100 +273,249 @@ public class Board extends Application {
             cursorImage.setX(e.getSceneX() - cursorImage.getBoundsInLocal().getWidth() / 2);
             cursorImage.setY(e.getSceneY() - cursorImage.getBoundsInLocal().getHeight() / 2);
 
-            if (!(toX < 0 || toX > 7 || toY < 0 || toY > 7)) {
-                outlineSquares[Square.fromValue(Character.toString('A' + toX) + (1 + toY)).ordinal()].setVisible(false);
-            }
-            Bounds boundsInScene = position.localToScene(boardPane.getBoundsInLocal());
-            if (userSide.equals(Side.BLACK)) {
-                toX = 7 - (int) Math.floor((e.getSceneX() - boundsInScene.getMinX()) / squareSize);
-                toY = (int) Math.floor((e.getSceneY() - boundsInScene.getMinY()) / squareSize);
-            } else {
-                toX = (int) Math.floor((e.getSceneX() - boundsInScene.getMinX()) / squareSize);
-                toY = 7 - (int) Math.floor((e.getSceneY() - boundsInScene.getMinY()) / squareSize);
-            }
-            if (!(toX < 0 || toX > 7 || toY < 0 || toY > 7)) {
-                outlineSquares[Square.fromValue(Character.toString('A' + toX) + (1 + toY)).ordinal()].setVisible(true);
-            }
+            setOutline(getSquareAt(e.getSceneX(), e.getSceneY()));
             e.consume();
         });
 
         boardPane.setOnMouseReleased(e -> {
-            if (!(toX < 0 || toX > 7 || toY < 0 || toY > 7)) {
-                outlineSquares[Square.fromValue(Character.toString('A' + toX) + (1 + toY)).ordinal()].setVisible(false);
-            }
+            setOutline(-1);
             int pieceIndex = dropPieceSelected - 1;
             setSelectedDrop(null);
             if (pieceIndex == -1) {
                 e.consume();
                 return;
             }
-            String move;
-            Bounds boundsInScene = position.localToScene(position.getBoundsInLocal());
-            String to;
-            if (userSide.equals(Side.BLACK)) {
-                toX = 7 - (int) Math.floor((e.getSceneX() - boundsInScene.getMinX()) / squareSize);
-                toY = (int) Math.floor((e.getSceneY() - boundsInScene.getMinY()) / squareSize);
-            } else {
-                toX = (int) Math.floor((e.getSceneX() - boundsInScene.getMinX()) / squareSize);
-                toY = 7 - (int) Math.floor((e.getSceneY() - boundsInScene.getMinY()) / squareSize);
-            }
-            if (toX < 0 || toX > 7 || toY < 0 || toY > 7) {
+            int to = getSquareAt(e.getSceneX(), e.getSceneY());
+            if (to == -1) {
                 e.consume();
                 return;
             }
-            to = Character.toString('A' + toX) + (1 + toY);
-            move = new char[]{'P', 'N', 'B', 'R', 'Q'}[pieceIndex] + "@" + to;
-            position.doMove(move);
+            doMove(new char[]{'P', 'N', 'B', 'R', 'Q'}[pieceIndex] + "@" + Square.squareAt(to).value());
             e.consume();
         });
 
         pocketLayoutSetting--;
         togglePocketLocation();
 
-        this.setFen(this.fen);
-        render();
+        relayout();
+        showTimes();
+        refresh();
     }
 
-    public void highlightSquare(Square sq) {
-        lastMoveSquares[sq.ordinal()].setVisible(true);
+    /**
+     * Sizes and places the components for the square size and the side of the user, without
+     * creating them again.
+     */
+    public void relayout() {
+        layoutSide = getUserSide();
+        bottomPocket.setSide(getUserSide());
+        topPocket.setSide(getUserSide().flip());
+        leftPockets.setUserSide(getUserSide());
+        rightPockets.setUserSide(getUserSide());
+        bottomClock.resize();
+        topClock.resize();
+
+        if (canvas != null) {
+            canvas.relayout();
+        } else {
+            Rectangle[][] layers = {squares, lastMoveSquares, premoveSquares, suggestionSquares, outlineSquares};
+            for (int i = 0; i < 64; i++) {
+                int x = i % 8;
+                int y = i / 8;
+                for (Rectangle[] layer : layers) {
+                    Rectangle square = layer[i];
+                    square.setWidth(squareSize);
+                    square.setHeight(squareSize);
+                    if (getUserSide().equals(Side.BLACK)) {
+                        square.setX(squareSize * (7 - x));
+                        square.setY(squareSize * y);
+                    } else {
+                        square.setX(squareSize * x);
+                        square.setY(squareSize * (7 - y));
+                    }
+                }
+                outlineSquares[i].setStrokeWidth(2 * scale);
+            }
+            layoutCoordinates();
+            position.relayout();
+        }
+        center.setPrefHeight(squareSize * 8);
+        center.setPrefWidth(squareSize * 8);
+
+        engineText.setX(squareSize * 1.2);
+        engineText.setY(squareSize * 10.5);
+
+        // Set margins
+        BorderPane.setMargin(topControls, new Insets(squareSize * 7 / 30, 0, squareSize * 7 / 30, 20 * scale + squareSize * 4 / 5));
+        BorderPane.setMargin(bottomControls, new Insets(0, 0, squareSize * 5 / 8, 20 * scale + squareSize * 4 / 5));
+        BorderPane.setMargin(leftPockets, new Insets(0, 10 * scale, 0, 10 * scale));
+        BorderPane.setMargin(rightPockets, new Insets(0, 10 * scale, 0, 10 * scale));
+        GridPane.setMargin(topPocket, new Insets(0, squareSize * 7 / 4, 0, 0));
+        GridPane.setMargin(bottomPocket, new Insets(0, squareSize * 7 / 4, 0, 0));
+
+        cursorImage.setFitWidth(squareSize * 4 / 5);
+        cursorImage.setFitHeight(squareSize * 4 / 5);
+        showPlayers();
     }
 
-    public void unhighlightSquare(Square sq) {
-        lastMoveSquares[sq.ordinal()].setVisible(false);
+    /**
+     * Shows the usernames and ratings last received, and turns the board if the side of the user changed.
+     */
+    public void showPlayers() {
+        if (!getUserSide().equals(layoutSide)) {
+            relayout();
+            showTimes();
+            refresh();
+            return;
+        }
+        usernameText.setText(state.getUsername1());
+        usernameText.setX(squareSize * 1.2);
+        usernameText.setY(squareSize * 0.6);
+        ratingText.setText(state.getRating1());
+        ratingText.setX(squareSize * 1.3 + usernameText.prefWidth(-1));
+        ratingText.setY(squareSize * 0.6);
+
+        username2Text.setText(state.getUsername2());
+        username2Text.setX(squareSize * 1.2);
+        username2Text.setY(squareSize * 10.1);
+        rating2Text.setText(state.getRating2());
+        rating2Text.setX(squareSize * 1.3 + username2Text.prefWidth(-1));
+        rating2Text.setY(squareSize * 10.1);
     }
 
-    public void highlightPremove(String move) {
-        if (move == null) {
+    /**
+     * Creates the center of the board: the canvas, or the squares, highlight layers, coordinates
+     * and fields. The highlights shown are cleared, refresh shows them again.
+     */
+    private void createBoard() {
+        center.getChildren().clear();
+        canvas = null;
+        lastMoveMask = 0L;
+        premoveMask = 0L;
+        suggestionMask = 0L;
+        outlineMask = 0L;
+        if (canvasRendering) {
+            position = null;
+            canvas = new BoardCanvas(this);
+            center.getChildren().add(canvas);
+        } else {
+            drawBoard(center);
+            drawCoordinates(center);
+            position = new Position(this);
+            center.getChildren().add(position);
+        }
+    }
+
+    /**
+     * Switches between drawing the board on a canvas and showing it as nodes.
+     */
+    private void toggleCanvasRendering() {
+        canvasRendering = !canvasRendering;
+        createBoard();
+        relayout();
+        refresh();
+
+        Preferences prefs = Preferences.userRoot().node("preferences");
+        if (userBoard) {
+            prefs.putBoolean("left_board_canvas", canvasRendering);
+        } else {
+            prefs.putBoolean("right_board_canvas", canvasRendering);
+        }
+    }
+
+    /**
+     * Returns the ordinal of the square under a point of the scene, or -1 off the board.
+     *
+     * @param sceneX
+     * @param sceneY
+     */
+    public int getSquareAt(double sceneX, double sceneY) {
+        Point2D origin = center.localToScene(0, 0);
+        int column = (int) Math.floor((sceneX - origin.getX()) / squareSize);
+        int row = (int) Math.floor((sceneY - origin.getY()) / squareSize);
+        if (column < 0 || column > 7 || row < 0 || row > 7) {
+            return -1;
+        }
+        if (getUserSide().equals(Side.BLACK)) {
+            return row * 8 + 7 - column;
+        }
+        return (7 - row) * 8 + column;
+    }
+
+    /**
+     * Outlines the square a piece would be dropped on.
+     *
+     * @param square - ordinal of the square, -1 for none
+     */
+    public void setOutline(int square) {
+        outlineMask = showLayer(outlineSquares, outlineMask, square == -1 ? 0L : 1L << square);
+    }
+
+    /**
+     * Execute move on board, or suggest it to the partner on the partner board.
+     *
+     * @param move
+     */
+    public void doMove(String move) {
+        if (!isPlaying()) {
             return;
         }
-        Square to = Square.fromValue(move.substring(2, 4).toUpperCase());
-        lastMoveSquares[to.ordinal()].setVisible(false);
-        premoveSquares[to.ordinal()].setVisible(true);
-        if (move.charAt(1) != '@') {
-            Square from = Square.fromValue(move.substring(0, 2).toUpperCase());
-            lastMoveSquares[from.ordinal()].setVisible(false);
-            premoveSquares[from.ordinal()].setVisible(true);
+        move = state.withPromotion(move, underPromote);
+        switch (Client.core.doMove(state, move)) {
+            case SUGGESTED_PREMOVE -> Client.sendToChat("premove " + gameState.getSan(move)); // Premove suggestion
+            case SUGGESTED_MOVE -> Client.sendToChat(gameState.getSan(move)); // Move suggestion
+            default -> {
+            }
         }
     }
 
-    public void highlightLastMove(String move) {
+    public void highlightSquare(Square sq) {
+        lastMoveMask = showLayer(lastMoveSquares, lastMoveMask, lastMoveMask | sq.getBitboard());
+    }
+
+    public void unhighlightSquare(Square sq) {
+        lastMoveMask = showLayer(lastMoveSquares, lastMoveMask, lastMoveMask & ~sq.getBitboard());
+    }
+
+    /**
+     * Returns the squares of a move, the destination only for a drop.
+     *
+     * @param move - e.g. "e2e4" or "N@f3", or null for none
+     */
+    private static long getMoveMask(String move) {
         if (move == null) {
-            return;
+            return 0L;
         }
-        pushMove(move);
-        Square to = Square.fromValue(move.substring(2, 4).toUpperCase());
-        lastMoveSquares[to.ordinal()].setVisible(true);
+        long mask = Square.fromValue(move.substring(2, 4).toUpperCase()).getBitboard();
         if (move.charAt(1) != '@') {
-            Square from = Square.fromValue(move.substring(0, 2).toUpperCase());
-            lastMoveSquares[from.ordinal()].setVisible(true);
+            mask |= Square.fromValue(move.substring(0, 2).toUpperCase()).getBitboard();
         }
+        return mask;
     }
 
-    public void unhighlightAll() {
-        for (int i = 0; i < 64; i++) {
-            premoveSquares[i].setVisible(false);
-            lastMoveSquares[i].setVisible(false);
+    /**
+     * Shows a highlight layer on the squares of a mask, only the squares that changed are touched.
+     * On the canvas the board is redrawn instead.
+     *
+     * @param layer
+     * @param shown - squares of the layer visible now
+     * @param mask  - squares to show
+     * @return the mask
+     */
+    private long showLayer(Rectangle[] layer, long shown, long mask) {
+        if (canvas != null) {
+            if (shown != mask) {
+                invalidate(BOARD);
+            }
+            return mask;
         }
+        long changed = shown ^ mask;
+        while (changed != 0L) {
+            int i = Long.numberOfTrailingZeros(changed);
+            changed &= changed - 1;
+            layer[i].setVisible((mask & 1L << i) != 0);
+        }
+        return mask;
     }
 
     private void drawBoard(BorderPane pane) {
@@ -331,15 +523,6 @@ public class Board extends Application {
             int x = i % 8;
             int y = i / 8;
             Rectangle square = new Rectangle();
-            square.setWidth(squareSize);
-            square.setHeight(squareSize);
-            if (userSide.equals(Side.BLACK)) {
-                square.setX(squareSize * (7 - x));
-                square.setY(squareSize * y);
-            } else {
-                square.setX(squareSize * x);
-                square.setY(squareSize * (7 - y));
-            }
             if ((x + y) % 2 != 0) {
                 square.setFill(Color.web("#dbe3e3"));
             } else {
@@ -349,56 +532,29 @@ public class Board extends Application {
             pane.getChildren().add(square);
         }
         for (int i = 0; i < 64; i++) {
-            int x = i % 8;
-            int y = i / 8;
             Rectangle square = new Rectangle();
-            square.setWidth(squareSize);
-            square.setHeight(squareSize);
-            if (userSide.equals(Side.BLACK)) {
-                square.setX(squareSize * (7 - x));
-                square.setY(squareSize * y);
-            } else {
-                square.setX(squareSize * x);
-                square.setY(squareSize * (7 - y));
-            }
             square.setStyle("-fx-fill: rgba(155,199,0,0.41);");
             square.setVisible(false);
             lastMoveSquares[i] = square;
             pane.getChildren().add(square);
         }
         for (int i = 0; i < 64; i++) {
-            int x = i % 8;
-            int y = i / 8;
             Rectangle square = new Rectangle();
-            square.setWidth(squareSize);
-            square.setHeight(squareSize);
-            if (userSide.equals(Side.BLACK)) {
-                square.setX(squareSize * (7 - x));
-                square.setY(squareSize * y);
-            } else {
-                square.setX(squareSize * x);
-                square.setY(squareSize * (7 - y));
-            }
             square.setStyle("-fx-fill: rgba(20,30,85,0.5);");
             square.setVisible(false);
             premoveSquares[i] = square;
             pane.getChildren().add(square);
         }
         for (int i = 0; i < 64; i++) {
-            int x = i % 8;
-            int y = i / 8;
             Rectangle square = new Rectangle();
-            square.setWidth(squareSize);
-            square.setHeight(squareSize);
-            if (userSide.equals(Side.BLACK)) {
-                square.setX(squareSize * (7 - x));
-                square.setY(squareSize * y);
-            } else {
-                square.setX(squareSize * x);
-                square.setY(squareSize * (7 - y));
-            }
+            square.setStyle("-fx-fill: rgba(230,126,34,0.45);");
+            square.setVisible(false);
+            suggestionSquares[i] = square;
+            pane.getChildren().add(square);
+        }
+        for (int i = 0; i < 64; i++) {
+            Rectangle square = new Rectangle();
             square.setFill(Color.TRANSPARENT);
-            square.setStrokeWidth(2 * scale);
             square.setStroke(Color.SLATEGRAY);
             square.setVisible(false);
             outlineSquares[i] = square;
@@ -407,77 +563,153 @@ public class Board extends Application {
     }
 
     /**
-     * Draw board coordinates
+     * Draw board coordinates, ranks then files
      */
     private void drawCoordinates(BorderPane pane) {
-        Font font = Font.font("Sans-Serif", FontWeight.BOLD, 20 * scale);
         for (int i = 0; i < 8; i++) {
-            Text text;
-            if (userSide.equals(Side.WHITE)) {
-                text = new Text(squareSize, squareSize, Character.toString('8' - i));
-            } else {
-                text = new Text(squareSize, squareSize, Character.toString('1' + i));
-            }
-            text.setFont(font);
-            text.setX(2.0 * scale);
-            text.setY(20.0 * scale + squareSize * i);
+            Text text = new Text();
             if (i % 2 == 0) {
                 text.setFill(Color.web("#8ba3ab"));
             } else {
                 text.setFill(Color.web("#dbe3e3"));
             }
+            coordinates[i] = text;
             pane.getChildren().add(text);
         }
         for (int i = 0; i < 8; i++) {
-            Text text;
-            if (userSide.equals(Side.WHITE)) {
-                text = new Text(squareSize, squareSize, Character.toString('a' + i));
-            } else {
-                text = new Text(squareSize, squareSize, Character.toString('h' - i));
-            }
-            text.setFont(font);
-            text.setX(82.0 * scale + squareSize * i);
-            text.setY(-5.0 * scale + squareSize * 8);
+            Text text = new Text();
             if (i % 2 != 0) {
                 text.setFill(Color.web("#8ba3ab"));
             } else {
                 text.setFill(Color.web("#dbe3e3"));
             }
+            coordinates[8 + i] = text;
             pane.getChildren().add(text);
         }
     }
 
-    public void pushMove(String move) {
-        moveHistory.add(move);
+    /**
+     * Labels and places the coordinates for the square size and the side of the user.
+     */
+    private void layoutCoordinates() {
+        Font font = Font.font("Sans-Serif", FontWeight.BOLD, 20 * scale);
+        for (int i = 0; i < 8; i++) {
+            Text rank = coordinates[i];
+            Text file = coordinates[8 + i];
+            if (getUserSide().equals(Side.WHITE)) {
+                rank.setText(Character.toString('8' - i));
+                file.setText(Character.toString('a' + i));
+            } else {
+                rank.setText(Character.toString('1' + i));
+                file.setText(Character.toString('h' - i));
+            }
+            rank.setFont(font);
+            rank.setX(2.0 * scale);
+            rank.setY(20.0 * scale + squareSize * i);
+            file.setFont(font);
+            file.setX(82.0 * scale + squareSize * i);
+            file.setY(-5.0 * scale + squareSize * 8);
+        }
+    }
+
+    /**
+     * Shows the board after the core changed it on the next pulse: the pieces, the hands, the last move
+     * and the premoves, runs the clock of the side to move and restarts the engine.
+     */
+    public void refresh() {
+        invalidate(BOARD | HIGHLIGHTS | HANDS | CLOCKS | ANALYSIS);
+    }
+
+    /**
+     * Highlights the last move and the premoves.
+     */
+    private void showHighlights() {
+        long premoves = 0L;
+        for (String premove : state.getPremoves()) {
+            premoves |= getMoveMask(premove);
+        }
+        premoveMask = showLayer(premoveSquares, premoveMask, premoves);
+        lastMoveMask = showLayer(lastMoveSquares, lastMoveMask, getMoveMask(state.getLastMove()) & ~premoves);
+    }
+
+    /**
+     * Shows the end of the game: stops the engine and the clocks and drops the selected piece.
+     */
+    public void gameFinished() {
+        stopEngine();
+        clearSuggestion();
+        setSelectedDrop(null);
+        refresh();
+        flush(); // Now, the core forgets the last move once the game is over
+        stopClocks();
     }
 
-    public String getLastMove() {
-        if (moveHistory.isEmpty()) {
-            return null;
+    /**
+     * Starts the engine on the current position, the best line is shown once the first depth is done.
+     * The search runs on the engine threads, results come back through Platform.runLater.
+     */
+    public void analyze() {
+        clearSuggestion();
+        if (!analyzing || !isPlaying()) {
+            stopEngine();
+            return;
         }
-        String move = moveHistory.get(moveHistory.size() - 1);
-        if (move.length() == 0) {
-            return null;
+        if (engine == null) {
+            engine = new BughouseEngine();
         }
-        return move;
+        engine.search(gameState, ENGINE_TIME, result -> Platform.runLater(() -> showSuggestion(result)));
     }
 
-    public void setFen(String fen) {
-        unhighlightAll();
-        gameState.loadFromFen(fen);
-        this.fen = fen;
-        try {
-            position.executePremoves();
-        } catch (Exception e) {
-            position.cancelPremoves();
+    private void stopEngine() {
+        if (engine != null) {
+            engine.stop();
         }
-        if (playing) {
-            updateClockTurns();
+    }
+
+    /**
+     * Displays an engine result if it is still for the current position.
+     *
+     * @param result
+     */
+    private void showSuggestion(SearchResult result) {
+        if (result.getHashKey() != gameState.getHashKey() || !analyzing) {
+            return;
         }
+        clearSuggestion();
+        suggestion = result;
+        engineText.setText(result.toString());
+        suggestionMask = showLayer(suggestionSquares, suggestionMask, getMoveMask(result.getBestMove()));
+    }
+
+    private void clearSuggestion() {
+        suggestion = null;
+        if (engineText != null) {
+            engineText.setText("");
+        }
+        suggestionMask = showLayer(suggestionSquares, suggestionMask, 0L);
+    }
+
+    /**
+     * Toggles the engine on this board.
+     */
+    private void toggleAnalysis() {
+        analyzing = !analyzing;
+        analyze();
+    }
+
+    /**
+     * Suggests the engine move to the partner, through the same path as a dragged move.
+     */
+    private void sendSuggestion() {
+        if (userBoard || suggestion == null || suggestion.getBestMove() == null
+                || !gameState.sideToMove().equals(getUserSide())) {
+            return;
+        }
+        doMove(suggestion.getBestMove());
     }
 
     public void setSelectedDrop(Piece piece) {
-        Image image = BoardField.pieceToImage.get(piece);
+        Image image = piece == null ? null : PieceImages.get(piece, squareSize * 4 / 5);
         cursorImage.setImage(image);
         if (image == null) {
             dropPieceSelected = 0;
@@ -488,9 +720,7 @@ public class Board extends Application {
             boardPane.setCursor(Cursor.NONE);
             cursorImage.setVisible(true);
         }
-        if (!(toX < 0 || toX > 7 || toY < 0 || toY > 7)) {
-            outlineSquares[Square.fromValue(Character.toString('A' + toX) + (1 + toY)).ordinal()].setVisible(false);
-        }
+        setOutline(-1);
     }
 
     public static double clamp(double value, double min, double max) {
@@ -564,13 +794,16 @@ public class Board extends Application {
         if (userBoard) {
             pocketLayoutSetting = prefs.getInt("left_board_pocket_location", 0);
             squareSize = prefs.getDouble("left_board_square_size", MAX_SQUARE_SIZE);
+            canvasRendering = prefs.getBoolean("left_board_canvas", false);
         } else {
             pocketLayoutSetting = prefs.getInt("right_board_pocket_location", 0);
             squareSize = prefs.getDouble("right_board_square_size", MAX_SQUARE_SIZE);
+            canvasRendering = prefs.getBoolean("right_board_canvas", false);
         }
 
         setSquareSize(squareSize);
         createComponents();
+        renderTimer.start();
         Scene scene = new Scene(boardPane);
         stage.setScene(scene);
         stage.show();
@@ -586,20 +819,29 @@ public class Board extends Application {
         scene.addEventHandler(KeyEvent.KEY_PRESSED, (key) -> {
             if (key.getCode() == KeyCode.EQUALS) {
                 setSquareSize(squareSize + 1);
-                createComponents();
+                relayout();
                 resizeScene(stage, squareSize * 10, squareSize * 12);
             }
             if (key.getCode() == KeyCode.MINUS) {
                 setSquareSize(squareSize - 1);
-                createComponents();
+                relayout();
                 resizeScene(stage, squareSize * 10, squareSize * 12);
             }
             if (key.getCode() == KeyCode.H) {
                 togglePocketLocation();
             }
+            if (key.getCode() == KeyCode.E) {
+                toggleAnalysis();
+            }
+            if (key.getCode() == KeyCode.W) {
+                sendSuggestion();
+            }
+            if (key.getCode() == KeyCode.V) {
+                toggleCanvasRendering();
+            }
             if (key.getCode() == KeyCode.DIGIT1) {
                 if (dropPieceSelected != 1) {
-                    if (userSide.equals(Side.WHITE)) {
+                    if (getUserSide().equals(Side.WHITE)) {
                         setSelectedDrop(Piece.WHITE_PAWN);
                     } else {
                         setSelectedDrop(Piece.BLACK_PAWN);
@@ -608,7 +850,7 @@ public class Board extends Application {
             }
             if (key.getCode() == KeyCode.DIGIT2) {
                 if (dropPieceSelected != 2) {
-                    if (userSide.equals(Side.WHITE)) {
+                    if (getUserSide().equals(Side.WHITE)) {
                         setSelectedDrop(Piece.WHITE_KNIGHT);
                     } else {
                         setSelectedDrop(Piece.BLACK_KNIGHT);
@@ -617,7 +859,7 @@ public class Board extends Application {
             }
             if (key.getCode() == KeyCode.DIGIT3) {
                 if (dropPieceSelected != 3) {
-                    if (userSide.equals(Side.WHITE)) {
+                    if (getUserSide().equals(Side.WHITE)) {
                         setSelectedDrop(Piece.WHITE_BISHOP);
                     } else {
                         setSelectedDrop(Piece.BLACK_BISHOP);
@@ -626,7 +868,7 @@ public class Board extends Application {
             }
             if (key.getCode() == KeyCode.DIGIT4) {
                 if (dropPieceSelected != 4) {
-                    if (userSide.equals(Side.WHITE)) {
+                    if (getUserSide().equals(Side.WHITE)) {
                         setSelectedDrop(Piece.WHITE_ROOK);
                     } else {
                         setSelectedDrop(Piece.BLACK_ROOK);
@@ -635,7 +877,7 @@ public class Board extends Application {
             }
             if (key.getCode() == KeyCode.DIGIT5) {
                 if (dropPieceSelected != 5) {
-                    if (userSide.equals(Side.WHITE)) {
+                    if (getUserSide().equals(Side.WHITE)) {
                         setSelectedDrop(Piece.WHITE_QUEEN);
                     } else {
                         setSelectedDrop(Piece.BLACK_QUEEN);
@@ -729,19 +971,10 @@ public class Board extends Application {
         });
     }
 
-    /**
-     * Sets if board is active i.e. game in session
-     *
-     * @param value
-     */
-    public void setPlaying(boolean value) {
-        this.playing = value;
-    }
-
     /**
      * Returns if there is a game in session.
      */
     public boolean isPlaying() {
-        return this.playing;
+        return state.isPlaying();
     }
 }
\ No newline at end of file
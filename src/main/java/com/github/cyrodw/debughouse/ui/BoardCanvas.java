@@ -0,0 +1,206 @@
+package com.github.cyrodw.debughouse.ui;
+
+import com.github.bhlangonijr.chesslib.Piece;
+import com.github.bhlangonijr.chesslib.Side;
+import com.github.bhlangonijr.chesslib.Square;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.Image;
+import javafx.scene.input.MouseButton;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.FontWeight;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Draws a board onto a single canvas instead of the nodes of Position and the highlight layers:
+ * squares, highlights, coordinates, pieces and the piece being dragged. The board redraws it on the
+ * pulses something changed in, with the sprites of the pieces at the square size.
+ */
+public class BoardCanvas extends Canvas {
+    private static final Color LIGHT = Color.web("#dbe3e3");
+    private static final Color DARK = Color.web("#8ba3ab");
+    private static final Color LAST_MOVE = Color.rgb(155, 199, 0, 0.41);
+    private static final Color PREMOVE = Color.rgb(20, 30, 85, 0.5);
+    private static final Color SUGGESTION = Color.rgb(230, 126, 34, 0.45);
+    private static final String[] RANKS = {"1", "2", "3", "4", "5", "6", "7", "8"};
+    private static final String[] FILES = {"a", "b", "c", "d", "e", "f", "g", "h"};
+
+    private final Board board;
+    private final Map<Piece, Image> sprites = new EnumMap<>(Piece.class);
+    private Font font;
+    private int dragFrom = -1; // Square of the piece dragged, -1 while not dragging
+    private double dragX, dragY; // Cursor on the canvas
+
+    public BoardCanvas(Board board) {
+        this.board = board;
+        relayout();
+        setOnMousePressed(this::onMousePressed);
+        setOnMouseDragged(this::onMouseDragged);
+        setOnMouseReleased(this::onMouseReleased);
+        setOnMouseClicked(this::onMouseClicked);
+    }
+
+    /**
+     * Redraws the board on the next pulse.
+     */
+    public void invalidate() {
+        board.invalidate(Board.BOARD);
+    }
+
+    /**
+     * Sizes the canvas and the sprites for the square size of the board.
+     */
+    public void relayout() {
+        setWidth(board.squareSize * 8);
+        setHeight(board.squareSize * 8);
+        font = Font.font("Sans-Serif", FontWeight.BOLD, 20 * board.scale);
+        for (Piece piece : Position.PIECES) {
+            sprites.put(piece, PieceImages.get(piece, board.squareSize));
+        }
+        invalidate();
+    }
+
+    /**
+     * Draws the whole board. Filling the canvas first lets JavaFX drop the commands of the previous frame.
+     */
+    void draw() {
+        GraphicsContext g = getGraphicsContext2D();
+        double size = board.squareSize;
+        long lastMove = board.getLastMoveMask();
+        long premoves = board.getPremoveMask();
+        long suggestion = board.getSuggestionMask();
+        long outline = board.getOutlineMask();
+
+        g.setFill(DARK);
+        g.fillRect(0, 0, getWidth(), getHeight());
+        for (int i = 0; i < 64; i++) {
+            int x = i % 8;
+            int y = i / 8;
+            double left = getLeft(i);
+            double top = getTop(i);
+            if ((x + y) % 2 != 0) {
+                g.setFill(LIGHT);
+                g.fillRect(left, top, size, size);
+            }
+            long bit = 1L << i;
+            if ((lastMove & bit) != 0) {
+                g.setFill(LAST_MOVE);
+                g.fillRect(left, top, size, size);
+            }
+            if ((premoves & bit) != 0) {
+                g.setFill(PREMOVE);
+                g.fillRect(left, top, size, size);
+            }
+            if ((suggestion & bit) != 0) {
+                g.setFill(SUGGESTION);
+                g.fillRect(left, top, size, size);
+            }
+            if ((outline & bit) != 0) {
+                g.setStroke(Color.SLATEGRAY);
+                g.setLineWidth(2 * board.scale);
+                g.strokeRect(left, top, size, size);
+            }
+        }
+
+        // Coordinates
+        boolean white = board.getUserSide().equals(Side.WHITE);
+        g.setFont(font);
+        for (int i = 0; i < 8; i++) {
+            g.setFill(i % 2 == 0 ? DARK : LIGHT);
+            g.fillText(RANKS[white ? 7 - i : i], 2.0 * board.scale, 20.0 * board.scale + size * i);
+            g.setFill(i % 2 != 0 ? DARK : LIGHT);
+            g.fillText(FILES[white ? i : 7 - i], 82.0 * board.scale + size * i, -5.0 * board.scale + size * 8);
+        }
+
+        // Pieces, the one dragged under the cursor
+        for (Piece piece : Position.PIECES) {
+            long bitboard = board.gameState.getBitboard(piece);
+            while (bitboard != 0L) {
+                int i = Long.numberOfTrailingZeros(bitboard);
+                bitboard &= bitboard - 1;
+                if (i != dragFrom) {
+                    g.drawImage(sprites.get(piece), getLeft(i), getTop(i), size, size);
+                }
+            }
+        }
+        if (dragFrom != -1) {
+            Piece piece = board.gameState.getPiece(Square.squareAt(dragFrom));
+            if (piece != Piece.NONE) {
+                g.drawImage(sprites.get(piece), dragX - size / 2, dragY - size / 2, size, size);
+            }
+        }
+    }
+
+    private double getLeft(int square) {
+        int x = square % 8;
+        return board.squareSize * (board.getUserSide().equals(Side.BLACK) ? 7 - x : x);
+    }
+
+    private double getTop(int square) {
+        int y = square / 8;
+        return board.squareSize * (board.getUserSide().equals(Side.BLACK) ? y : 7 - y);
+    }
+
+    /**
+     * Picks up a piece. With a piece to drop selected the event is left to the board.
+     */
+    private void onMousePressed(MouseEvent e) {
+        if (e.getButton() != MouseButton.PRIMARY || board.getDropPieceSelected() != 0) {
+            return;
+        }
+        int square = board.getSquareAt(e.getSceneX(), e.getSceneY());
+        if (square != -1 && board.gameState.getPiece(Square.squareAt(square)) != Piece.NONE) {
+            dragFrom = square;
+            dragX = e.getX();
+            dragY = e.getY();
+            board.highlightSquare(Square.squareAt(square));
+        }
+        board.setOutline(square);
+        invalidate();
+        e.consume();
+    }
+
+    private void onMouseDragged(MouseEvent e) {
+        if (dragFrom == -1) {
+            return;
+        }
+        dragX = e.getX();
+        dragY = e.getY();
+        board.setOutline(board.getSquareAt(e.getSceneX(), e.getSceneY()));
+        invalidate();
+        e.consume();
+    }
+
+    /**
+     * Drops the piece dragged and plays the move.
+     */
+    private void onMouseReleased(MouseEvent e) {
+        if (dragFrom == -1) {
+            return;
+        }
+        int from = dragFrom;
+        dragFrom = -1;
+        board.setOutline(-1);
+        board.unhighlightSquare(Square.squareAt(from));
+        invalidate();
+        int to = board.getSquareAt(e.getSceneX(), e.getSceneY());
+        if (e.getButton() == MouseButton.PRIMARY && to != -1 && to != from) {
+            board.doMove(Square.squareAt(from).value() + Square.squareAt(to).value());
+        }
+        e.consume();
+    }
+
+    /**
+     * Right click cancels premoves
+     */
+    private void onMouseClicked(MouseEvent e) {
+        if (e.getButton() == MouseButton.SECONDARY) {
+            board.setSelectedDrop(null);
+            Client.core.cancelPremoves();
+        }
+    }
+}
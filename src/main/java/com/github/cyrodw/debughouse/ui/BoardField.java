@@ -9,43 +9,23 @@ import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.input.*;
 
-import java.util.HashMap;
-import java.util.Objects;
-
 public class BoardField extends Label {
 
+    private Piece piece = null;
     private Image image = null;
+    private final ImageView view = new ImageView();
     private final int x; // The x position of the field on the board
     private final int y; // The y position
-    private int toX; // Destination x used when calculating the move made
-    private int toY;
     private double dragDeltaX, dragDeltaY;
     private Board board;
 
-    public static HashMap<Piece, Image> pieceToImage = new HashMap<>();
-
-    static {
-        pieceToImage.put(Piece.WHITE_PAWN, new Image(Objects.requireNonNull(BoardField.class.getClassLoader().getResourceAsStream("images/white_pawn.png"))));
-        pieceToImage.put(Piece.WHITE_KNIGHT, new Image(Objects.requireNonNull(BoardField.class.getClassLoader().getResourceAsStream("images/white_knight.png"))));
-        pieceToImage.put(Piece.WHITE_BISHOP, new Image(Objects.requireNonNull(BoardField.class.getClassLoader().getResourceAsStream("images/white_bishop.png"))));
-        pieceToImage.put(Piece.WHITE_ROOK, new Image(Objects.requireNonNull(BoardField.class.getClassLoader().getResourceAsStream("images/white_rook.png"))));
-        pieceToImage.put(Piece.WHITE_QUEEN, new Image(Objects.requireNonNull(BoardField.class.getClassLoader().getResourceAsStream("images/white_queen.png"))));
-        pieceToImage.put(Piece.WHITE_KING, new Image(Objects.requireNonNull(BoardField.class.getClassLoader().getResourceAsStream("images/white_king.png"))));
-        pieceToImage.put(Piece.BLACK_PAWN, new Image(Objects.requireNonNull(BoardField.class.getClassLoader().getResourceAsStream("images/black_pawn.png"))));
-        pieceToImage.put(Piece.BLACK_KNIGHT, new Image(Objects.requireNonNull(BoardField.class.getClassLoader().getResourceAsStream("images/black_knight.png"))));
-        pieceToImage.put(Piece.BLACK_BISHOP, new Image(Objects.requireNonNull(BoardField.class.getClassLoader().getResourceAsStream("images/black_bishop.png"))));
-        pieceToImage.put(Piece.BLACK_ROOK, new Image(Objects.requireNonNull(BoardField.class.getClassLoader().getResourceAsStream("images/black_rook.png"))));
-        pieceToImage.put(Piece.BLACK_QUEEN, new Image(Objects.requireNonNull(BoardField.class.getClassLoader().getResourceAsStream("images/black_queen.png"))));
-        pieceToImage.put(Piece.BLACK_KING, new Image(Objects.requireNonNull(BoardField.class.getClassLoader().getResourceAsStream("images/black_king.png"))));
-    }
-
     public BoardField(Board board, int x, int y) {
         this.board = board;
         this.x = x;
         this.y = y;
 
-        setMinSize(board.squareSize, board.squareSize);
-        setMaxSize(board.squareSize, board.squareSize);
+        setGraphic(view);
+        resize();
 
         setOnMousePressed(this::onMousePressed);
         setOnMouseDragged(this::onMouseDragged);
@@ -70,20 +50,7 @@ public class BoardField extends Label {
                 board.highlightSquare(Square.fromValue(Character.toString('A' + x) + (y + 1)));
             }
 
-            if (!(toX < 0 || toX > 7 || toY < 0 || toY > 7)) {
-                board.outlineSquares[Square.fromValue(Character.toString('A' + toX) + (1 + toY)).ordinal()].setVisible(false);
-            }
-            boundsInScene = board.position.localToScene(this.getBoundsInLocal());
-            if (board.userSide.equals(Side.BLACK)) {
-                toX = 7 - (int) Math.floor((e.getSceneX() - boundsInScene.getMinX()) / board.squareSize);
-                toY = (int) Math.floor((e.getSceneY() - boundsInScene.getMinY()) / board.squareSize);
-            } else {
-                toX = (int) Math.floor((e.getSceneX() - boundsInScene.getMinX()) / board.squareSize);
-                toY = 7 - (int) Math.floor((e.getSceneY() - boundsInScene.getMinY()) / board.squareSize);
-            }
-            if (!(toX < 0 || toX > 7 || toY < 0 || toY > 7)) {
-                board.outlineSquares[Square.fromValue(Character.toString('A' + toX) + (1 + toY)).ordinal()].setVisible(true);
-            }
+            board.setOutline(board.getSquareAt(e.getSceneX(), e.getSceneY()));
         }
         e.consume();
     }
@@ -96,20 +63,7 @@ public class BoardField extends Label {
             this.setTranslateX(e.getSceneX() - dragDeltaX - board.squareSize / 2);
             this.setTranslateY(e.getSceneY() - dragDeltaY - board.squareSize / 2);
 
-            if (!(toX < 0 || toX > 7 || toY < 0 || toY > 7)) {
-                board.outlineSquares[Square.fromValue(Character.toString('A' + toX) + (1 + toY)).ordinal()].setVisible(false);
-            }
-            Bounds boundsInScene = board.position.localToScene(this.getBoundsInLocal());
-            if (board.userSide.equals(Side.BLACK)) {
-                toX = 7 - (int) Math.floor((e.getSceneX() - boundsInScene.getMinX()) / board.squareSize);
-                toY = (int) Math.floor((e.getSceneY() - boundsInScene.getMinY()) / board.squareSize);
-            } else {
-                toX = (int) Math.floor((e.getSceneX() - boundsInScene.getMinX()) / board.squareSize);
-                toY = 7 - (int) Math.floor((e.getSceneY() - boundsInScene.getMinY()) / board.squareSize);
-            }
-            if (!(toX < 0 || toX > 7 || toY < 0 || toY > 7)) {
-                board.outlineSquares[Square.fromValue(Character.toString('A' + toX) + (1 + toY)).ordinal()].setVisible(true);
-            }
+            board.setOutline(board.getSquareAt(e.getSceneX(), e.getSceneY()));
         }
     }
 
@@ -119,14 +73,12 @@ public class BoardField extends Label {
     private void onMouseReleased(MouseEvent e) {
         this.setTranslateX(0);
         this.setTranslateY(0);
-        if (!(toX < 0 || toX > 7 || toY < 0 || toY > 7)) {
-            board.outlineSquares[Square.fromValue(Character.toString('A' + toX) + (1 + toY)).ordinal()].setVisible(false);
-        }
+        board.setOutline(-1);
         board.unhighlightSquare(Square.fromValue(Character.toString('A' + x) + (1 + y)));
         if (e.getButton() == MouseButton.PRIMARY) {
             int offsetX, offsetY;
             String move;
-            if (board.userSide.equals(Side.BLACK)) {
+            if (board.getUserSide().equals(Side.BLACK)) {
                 offsetX = -(int) Math.floor((e.getSceneX() - dragDeltaX) / board.squareSize);
                 offsetY = (int) Math.floor((e.getSceneY() - dragDeltaY) / board.squareSize);
             } else {
@@ -135,24 +87,15 @@ public class BoardField extends Label {
             }
 
             if (board.getDropPieceSelected() != 0) {
-                Bounds boundsInScene = board.position.localToScene(this.getBoundsInLocal());
-                String to;
-                if (board.userSide.equals(Side.BLACK)) {
-                    toX = 7 - (int) Math.floor((e.getSceneX() - boundsInScene.getMinX()) / board.squareSize);
-                    toY = (int) Math.floor((e.getSceneY() - boundsInScene.getMinY()) / board.squareSize);
-                } else {
-                    toX = (int) Math.floor((e.getSceneX() - boundsInScene.getMinX()) / board.squareSize);
-                    toY = 7 - (int) Math.floor((e.getSceneY() - boundsInScene.getMinY()) / board.squareSize);
-                }
-                if (toX < 0 || toX > 7 || toY < 0 || toY > 7) {
+                int to = board.getSquareAt(e.getSceneX(), e.getSceneY());
+                if (to == -1) {
                     e.consume();
                     return;
                 }
-                to = Character.toString('A' + toX) + (1 + toY);
-                move = new char[]{'P', 'N', 'B', 'R', 'Q'}[board.getDropPieceSelected() - 1] + "@" + to;
+                move = new char[]{'P', 'N', 'B', 'R', 'Q'}[board.getDropPieceSelected() - 1] + "@" + Square.squareAt(to).value();
             } else {
-                toX = x + offsetX;
-                toY = y + offsetY;
+                int toX = x + offsetX;
+                int toY = y + offsetY;
                 if (toX < 0 || toX > 7 || toY < 0 || toY > 7) {
                     e.consume();
                     return;
@@ -165,7 +108,7 @@ public class BoardField extends Label {
                 }
                 move = from + to;
             }
-            board.position.doMove(move);
+            board.doMove(move);
         }
         e.consume();
     }
@@ -176,10 +119,19 @@ public class BoardField extends Label {
      * @param piece
      */
     public void setImage(Piece piece) {
-        image = pieceToImage.get(piece);
-        ImageView iv = new ImageView(image);
-        iv.setFitHeight(board.squareSize);
-        iv.setFitWidth(board.squareSize);
-        setGraphic(iv);
+        this.piece = piece;
+        image = piece == null ? null : PieceImages.get(piece, board.squareSize);
+        view.setImage(image);
+    }
+
+    /**
+     * Sizes the field and its image for the square size of the board.
+     */
+    public void resize() {
+        setMinSize(board.squareSize, board.squareSize);
+        setMaxSize(board.squareSize, board.squareSize);
+        view.setFitHeight(board.squareSize);
+        view.setFitWidth(board.squareSize);
+        setImage(piece);
     }
 }
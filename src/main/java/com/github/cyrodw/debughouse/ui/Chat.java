@@ -22,7 +22,6 @@ public class Chat extends Application {
     private TextArea transcript;
     private final ArrayList<String> commandHistory = new ArrayList<>();
     private int index;
-    private long lastSendTime = 0;
     public static double HEIGHT = 196;
     public static double WIDTH = 392;
 
@@ -99,7 +98,6 @@ public class Chat extends Application {
             return;
         }
 
-        lastSendTime = System.currentTimeMillis();
         if (message.equals("/help")) {
             transcript.appendText(message + "\n");
             transcript.appendText("Commands: \n /seek x - Seek a game with a time control of \"x\" minutes \n /partner x - Send partnership request to \"x\" \n /resign - Resigns game \n /rematch x - Rematch current opponent \n");
@@ -117,7 +115,7 @@ public class Chat extends Application {
 
     public void receivedMessaged(String message) {
         if (message.equals("pong")) {
-            transcript.appendText((System.currentTimeMillis() - lastSendTime) + "ms\n");
+            transcript.appendText(Client.latency.getSummary() + "\n");
             return;
         }
         if (message.contains(":bughouse-bp")) {
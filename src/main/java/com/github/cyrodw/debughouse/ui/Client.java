@@ -1,18 +1,32 @@
 package com.github.cyrodw.debughouse.ui;
 
+import com.github.cyrodw.debughouse.BughouseClientCore;
+import com.github.cyrodw.debughouse.ClientBoard;
+import com.github.cyrodw.debughouse.LatencyEstimator;
+import com.github.cyrodw.debughouse.OutboundScheduler;
 import com.github.cyrodw.debughouse.SoundPlayer;
 import com.github.cyrodw.debughouse.WebsocketClientEndpoint;
-import com.github.bhlangonijr.chesslib.Side;
+import javafx.animation.AnimationTimer;
 import javafx.application.Application;
 import javafx.application.Platform;
 import javafx.stage.Stage;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.prefs.Preferences;
 
+/**
+ * JavaFX client. The game is played by the client core, the boards and the chat only show it.
+ */
 public class Client extends Application {
+    public static BughouseClientCore core;
     public static WebsocketClientEndpoint clientEndPoint;
+    public static OutboundScheduler outbound;
+    public static final LatencyEstimator latency = new LatencyEstimator();
+    public static final long PING_INTERVAL = 2000; // Milliseconds between pings measuring the latency
     public static boolean connect = true;
     public static Board leftBoard;
     public static Board rightBoard;
@@ -24,9 +38,42 @@ public class Client extends Application {
 
     @Override
     public void start(Stage stage) throws Exception {
-        leftBoard = new Board(true);
-        rightBoard = new Board(false);
+        core = new BughouseClientCore(Client::sendToServer, latency);
+        leftBoard = new Board(core.getUserBoard());
+        rightBoard = new Board(core.getPartnerBoard());
         chat = new Chat();
+        core.addListener(new BughouseClientCore.Listener() {
+            @Override
+            public void onMessage(String message) {
+                chat.receivedMessaged(message);
+            }
+
+            @Override
+            public void onGameStarted() {
+                SoundPlayer.playSound("Gamestart.wav");
+            }
+
+            @Override
+            public void onGameFinished() {
+                leftBoard.gameFinished();
+                rightBoard.gameFinished();
+            }
+
+            @Override
+            public void onBoardChanged(ClientBoard board) {
+                getBoard(board).refresh();
+            }
+
+            @Override
+            public void onTimesChanged(ClientBoard board) {
+                getBoard(board).showTimes();
+            }
+
+            @Override
+            public void onPlayersChanged(ClientBoard board) {
+                getBoard(board).showPlayers();
+            }
+        });
 
         Stage stage1 = new Stage();
         stage1.initOwner(stage);
@@ -37,6 +84,14 @@ public class Client extends Application {
         Stage stage3 = new Stage();
         stage3.initOwner(stage);
 
+        // Started before the boards so that they render what is applied in the same pulse
+        new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                core.poll();
+            }
+        }.start();
+
         leftBoard.start(stage1);
         rightBoard.start(stage2);
         chat.start(stage3);
@@ -107,8 +162,25 @@ public class Client extends Application {
      */
     public static void sendToServer(String message) {
         if (connect) {
-            clientEndPoint.sendMessage(message);
+            if (message.equals("ping")) {
+                ping(true);
+            } else {
+                outbound.send(message);
+            }
+        }
+    }
+
+    /**
+     * Sends a ping, the answer is timed by the latency estimator.
+     *
+     * @param manual - true if the user asked for it, which shows the latency in chat
+     */
+    private static synchronized void ping(boolean manual) {
+        if (!manual && !clientEndPoint.isConnected()) {
+            return;
         }
+        latency.pingQueued(manual);
+        outbound.send("ping");
     }
 
     /**
@@ -124,119 +196,60 @@ public class Client extends Application {
         else
             clientEndPoint = new WebsocketClientEndpoint(new URI("ws://" + ip + "/:" + host + "/?username=" + username + "&password=" + password));
 
-        clientEndPoint.addMessageHandler(message -> {
-            if (message.equals("connected")) {
-                Platform.runLater(() -> {
-                    chat.receivedMessaged("Connected!");
-                });
+        // Moves and premoves are sent ahead of chat, off the UI thread
+        outbound = new OutboundScheduler((message, done) -> {
+            if (message.equals("ping")) {
+                latency.pingSent(System.nanoTime());
             }
-            String[] args = message.split(" ", 2);
-            switch (args[0]) {
-                case "message" -> Platform.runLater(() -> {
-                    chat.receivedMessaged(args[1]);
-                });
-                case "started" -> Platform.runLater(() -> {
-                    leftBoard.setPlaying(true);
-                    rightBoard.setPlaying(true);
-                    SoundPlayer.playSound("Gamestart.wav");
-                });
-                case "finished" -> Platform.runLater(() -> {
-                    leftBoard.setPlaying(false);
-                    rightBoard.setPlaying(false);
-                    leftBoard.position.cancelPremoves();
-                    leftBoard.position.render();
-                    leftBoard.reset();
-                    leftBoard.stopClocks();
-                    rightBoard.reset();
-                    rightBoard.stopClocks();
-                });
-                case "userside" -> Platform.runLater(() -> {
-                    Side userSide = Side.fromValue(args[1].toUpperCase());
-                    leftBoard.setUserSide(userSide);
-                    rightBoard.setUserSide(userSide.flip());
-                });
-                case "fen1" -> Platform.runLater(() -> {
-                    leftBoard.setPlaying(true);
-                    leftBoard.setFen(args[1]);
-                    leftBoard.render();
-                });
-                case "fen2" -> Platform.runLater(() -> {
-                    rightBoard.setPlaying(true);
-                    rightBoard.setFen(args[1]);
-                    rightBoard.render();
-                });
-                case "move1" -> Platform.runLater(() -> {
-                    if (args[1].length() > 0) {
-                        leftBoard.pushMove(args[1]);
-                    }
-                });
-                case "move2" -> Platform.runLater(() -> {
-                    if (args[1].length() > 0) {
-                        rightBoard.pushMove(args[1]);
-                    }
-                });
-                case "whitehand1" -> Platform.runLater(() -> {
-                    leftBoard.setHand(args[1].toUpperCase(), Side.WHITE);
-                });
-                case "blackhand1" -> Platform.runLater(() -> {
-                    leftBoard.setHand(args[1].toLowerCase(), Side.BLACK);
-                });
-                case "whitehand2" -> Platform.runLater(() -> {
-                    rightBoard.setHand(args[1].toUpperCase(), Side.WHITE);
-                });
-                case "blackhand2" -> Platform.runLater(() -> {
-                    rightBoard.setHand(args[1].toLowerCase(), Side.BLACK);
-                });
-                case "times1" -> Platform.runLater(() -> {
-                    leftBoard.setTimes(args[1].split(","), !leftBoard.userSide.equals(Side.WHITE));
-                });
-                case "times2" -> Platform.runLater(() -> {
-                    rightBoard.setTimes(args[1].split(","), !rightBoard.userSide.equals(Side.WHITE));
-                });
-                case "players1" -> Platform.runLater(() -> {
-                    String[] players = args[1].split(",");
-                    if (leftBoard.userSide.equals(Side.WHITE)) {
-                        leftBoard.username1 = players[1];
-                        leftBoard.username2 = players[0];
-                    } else {
-                        leftBoard.username1 = players[0];
-                        leftBoard.username2 = players[1];
-                    }
-                });
-                case "players2" -> Platform.runLater(() -> {
-                    String[] players = args[1].split(",");
-                    if (rightBoard.userSide.equals(Side.WHITE)) {
-                        rightBoard.username1 = players[1];
-                        rightBoard.username2 = players[0];
-                    } else {
-                        rightBoard.username1 = players[0];
-                        rightBoard.username2 = players[1];
-                    }
-                });
-                case "ratings1" -> Platform.runLater(() -> {
-                    String[] ratings = args[1].split(",");
-                    if (leftBoard.userSide.equals(Side.WHITE)) {
-                        leftBoard.rating1 = ratings[1];
-                        leftBoard.rating2 = ratings[0];
-                    } else {
-                        leftBoard.rating1 = ratings[0];
-                        leftBoard.rating2 = ratings[1];
-                    }
-                    leftBoard.createComponents();
-                });
-                case "ratings2" -> Platform.runLater(() -> {
-                    String[] ratings = args[1].split(",");
-                    if (rightBoard.userSide.equals(Side.WHITE)) {
-                        rightBoard.rating1 = ratings[1];
-                        rightBoard.rating2 = ratings[0];
-                    } else {
-                        rightBoard.rating1 = ratings[0];
-                        rightBoard.rating2 = ratings[1];
+            clientEndPoint.sendMessage(message, done);
+        }, clientEndPoint::isConnected, e -> Platform.runLater(() -> chat.receivedMessaged("Failed to send: " + e.getMessage())));
+
+        // Moves made and premoves queued while reconnecting are sent once the session is resumed
+        clientEndPoint.setResumeSeq(core::getLastStateSeq);
+        clientEndPoint.setConnectionListener(new WebsocketClientEndpoint.ConnectionListener() {
+            private boolean connected = false; // Connected before, on the websocket threads only
+
+            @Override
+            public void onConnected(boolean resumed) {
+                boolean reconnected = connected;
+                connected = true;
+                // Servers that don't know the mode leave the client triggering premoves
+                outbound.send("premovemode server");
+                outbound.signal();
+                if (!reconnected) {
+                    return;
+                }
+                Platform.runLater(() -> {
+                    chat.receivedMessaged(resumed ? "Reconnected, resuming game" : "Reconnected");
+                    if (resumed) {
+                        core.getUserBoard().resendPremoves();
                     }
-                    rightBoard.createComponents();
                 });
             }
+
+            @Override
+            public void onDisconnected() {
+                latency.clearPending();
+                Platform.runLater(() -> chat.receivedMessaged("Connection lost, reconnecting..."));
+            }
+        });
+
+        // Frames are decoded on the websocket thread, the only producer of the core's inbound queue,
+        // and applied on the UI thread once per pulse
+        clientEndPoint.addStateHandler(core::receiveState);
+        clientEndPoint.addMessageHandler(core::receive);
+        clientEndPoint.connect();
+
+        ScheduledExecutorService pinger = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "debughouse-ping");
+            thread.setDaemon(true);
+            return thread;
         });
+        pinger.scheduleAtFixedRate(() -> ping(false), 0, PING_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    private static Board getBoard(ClientBoard board) {
+        return board.isUserBoard() ? leftBoard : rightBoard;
     }
 
     public static void main(String[] args) {
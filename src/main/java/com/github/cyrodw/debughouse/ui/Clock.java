@@ -1,97 +1,158 @@
 package com.github.cyrodw.debughouse.ui;
 
-import javafx.animation.KeyFrame;
-import javafx.animation.Timeline;
+import javafx.animation.AnimationTimer;
 import javafx.scene.layout.Pane;
 import javafx.scene.paint.Color;
 import javafx.scene.shape.Rectangle;
 import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
 import javafx.scene.text.Text;
-import javafx.util.Duration;
+import javafx.scene.text.TextAlignment;
 
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Clock of one player, showing the time left of its side as counted down by the client board, see
+ * ClientBoard.getTimeLeft. While running it is rendered on the pulses the decisecond shown changes.
+ * Rendering allocates nothing once warmed up: the text node is reused, the font is cached per scale
+ * and the formatted times are cached per decisecond, shared by all clocks.
+ */
 public class Clock extends Pane {
-    private int deciseconds;
     private boolean running;
-    private Timeline timeline;
-    private Text clockText;
+    private final Text clockText = new Text();
     private final Rectangle background;
-    private final double HEIGHT;
-    private final double WIDTH;
     private final Board board;
+    private final boolean opponent; // Clock of the side opposite the user
+    private int shown = -1; // Deciseconds last rendered
+    private boolean shownRunning = false;
 
     private static final int lowWarningThreshold = 100;
+    private static final int CACHED_TIMES = 60 * 60 * 10; // Up to an hour, in deciseconds
+    private static final String[] times = new String[CACHED_TIMES];
+    private static final char[] buffer = new char[12];
+    private static final Map<Double, Font> fonts = new HashMap<>();
+    private static final Color IDLE = Color.color(0.2f, 0.2f, 0.2f, 1.0f);
+    private static final Color IDLE_LOW = Color.web("#512827");
+    private static final Color RUNNING = Color.web("#39561FFF");
+    private static final Color RUNNING_LOW = Color.web("#7b2c2b");
+    private static final Color TEXT_RUNNING = Color.WHITE;
+    private static final Color TEXT_IDLE = Color.color(0.5f, 0.5f, 0.5f, 1.0f);
+
+    // Ticks on every pulse while running, only rendering when the decisecond shown changes
+    private final AnimationTimer timer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            int left = getDeciseconds();
+            if (left <= 0) {
+                Clock.this.stop(); // Shows 0:00.0 and stops the timer
+                return;
+            }
+            if (left < lowWarningThreshold) {
+                background.setFill(RUNNING_LOW);
+            }
+            if (left != shown) {
+                render();
+            }
+        }
+    };
 
-    public Clock(Board board, int deciseconds) {
+    /**
+     * @param board
+     * @param opponent - true for the clock of the side opposite the user
+     */
+    public Clock(Board board, boolean opponent) {
         this.board = board;
-        this.deciseconds = deciseconds;
+        this.opponent = opponent;
         this.running = false;
 
-        HEIGHT = board.squareSize * 4 / 5;
-        WIDTH = board.squareSize * 2;
-
         background = new Rectangle();
+        background.setFill(IDLE);
+        clockText.setTextAlignment(TextAlignment.CENTER);
+        clockText.setFill(TEXT_IDLE);
+        this.getChildren().addAll(background, clockText);
+        resize();
+    }
+
+    /**
+     * Sizes the clock for the square size of the board and renders it.
+     */
+    public void resize() {
+        double height = board.squareSize * 4 / 5;
+        double width = board.squareSize * 2;
 
-        background.setWidth(WIDTH);
-        background.setHeight(HEIGHT);
+        background.setWidth(width);
+        background.setHeight(height);
 
         background.setArcWidth(10 * board.scale);
         background.setArcHeight(10 * board.scale);
 
-        background.setFill(Color.color(0.2f, 0.2f, 0.2f, 1.0f));
-
-        this.getChildren().add(background);
+        clockText.setFont(fonts.computeIfAbsent(board.scale, scale -> Font.font("", FontWeight.BOLD, 45 * scale)));
+        clockText.setWrappingWidth(width); // Centered by the alignment, without measuring the text
+        clockText.setY(height / 2 + 15 * board.scale);
+        shown = -1;
+        render();
     }
 
     /**
      * Returns the formatted time from the deciseconds.
      */
     public String getFormattedTime() {
+        return format(getDeciseconds());
+    }
+
+    /**
+     * Returns a time as minutes:seconds.deciseconds, e.g. 2:05.3, cached below an hour.
+     * JavaFX thread only.
+     *
+     * @param deciseconds - negative shown as 0:00.0
+     */
+    static String format(int deciseconds) {
+        deciseconds = Math.max(0, deciseconds);
+        if (deciseconds < CACHED_TIMES && times[deciseconds] != null) {
+            return times[deciseconds];
+        }
         int seconds = deciseconds / 10;
         int minutes = seconds / 60;
-        return minutes + ":" + String.format("%02d", seconds - minutes * 60) + "." + deciseconds % 10;
+        seconds -= minutes * 60;
+        int length = 1;
+        for (int m = minutes; m >= 10; m /= 10) {
+            length++;
+        }
+        for (int i = length - 1, m = minutes; i >= 0; i--, m /= 10) {
+            buffer[i] = (char) ('0' + m % 10);
+        }
+        buffer[length++] = ':';
+        buffer[length++] = (char) ('0' + seconds / 10);
+        buffer[length++] = (char) ('0' + seconds % 10);
+        buffer[length++] = '.';
+        buffer[length++] = (char) ('0' + deciseconds % 10);
+        String time = new String(buffer, 0, length);
+        if (deciseconds < CACHED_TIMES) {
+            times[deciseconds] = time;
+        }
+        return time;
     }
 
     /**
-     * Sets the time of the clock and renders
-     *
-     * @param deciseconds
+     * Returns the time left now.
      */
-    public void setTime(int deciseconds) {
-        this.deciseconds = deciseconds;
-        render();
+    public int getDeciseconds() {
+        return board.state.getTimeLeft(opponent ? board.getUserSide().flip() : board.getUserSide());
     }
 
     /**
      * Start clock animation
      */
     public void start() {
-        if (deciseconds < 100) {
-            background.setFill(Color.web("#7b2c2b"));
+        if (getDeciseconds() < lowWarningThreshold) {
+            background.setFill(RUNNING_LOW);
         } else {
-            background.setFill(Color.web("#39561FFF"));
+            background.setFill(RUNNING);
         }
-        running = true;
-        if (timeline == null) {
-            timeline = new Timeline();
-            timeline.setCycleCount(Timeline.INDEFINITE);
-            timeline.getKeyFrames().add(
-                    new KeyFrame(Duration.millis(100),
-                            actionEvent -> {
-                                if (running) {
-                                    deciseconds -= 1;
-                                    if (deciseconds <= 0) {
-                                        deciseconds = 0;
-                                        stop();
-                                    }
-                                    if (deciseconds < lowWarningThreshold) {
-                                        background.setFill(Color.web("#7b2c2b"));
-                                    }
-                                    render();
-                                }
-                            })
-            );
-            timeline.playFromStart();
+        if (!running) {
+            running = true;
+            timer.start();
         }
     }
 
@@ -99,30 +160,27 @@ public class Clock extends Pane {
      * Stop clock
      */
     public void stop() {
-        if (deciseconds < lowWarningThreshold) {
-            background.setFill(Color.web("#512827"));
+        if (getDeciseconds() < lowWarningThreshold) {
+            background.setFill(IDLE_LOW);
         } else {
-            background.setFill(Color.color(0.2f, 0.2f, 0.2f, 1.0f));
+            background.setFill(IDLE);
         }
         running = false;
+        timer.stop();
         render();
     }
 
     /**
-     * Render clock component.
+     * Render clock component, if the time or the state shown changed.
      */
     public void render() {
-        this.getChildren().remove(clockText);
-        clockText = new Text(WIDTH, HEIGHT, getFormattedTime());
-        Font font = Font.font("", FontWeight.BOLD, 45 * board.scale);
-        clockText.setFont(font);
-        if (running) {
-            clockText.setFill(Color.WHITE);
-        } else {
-            clockText.setFill(Color.color(0.5f, 0.5f, 0.5f, 1.0f));
+        int left = getDeciseconds();
+        if (left == shown && running == shownRunning) {
+            return;
         }
-        clockText.setX(background.getWidth() / 2 - clockText.getLayoutBounds().getWidth() / 2);
-        clockText.setY(background.getHeight() / 2 + 15 * board.scale);
-        this.getChildren().add(clockText);
+        shown = left;
+        shownRunning = running;
+        clockText.setText(format(left));
+        clockText.setFill(running ? TEXT_RUNNING : TEXT_IDLE);
     }
 }
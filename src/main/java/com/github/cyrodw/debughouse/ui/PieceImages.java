@@ -0,0 +1,35 @@
+package com.github.cyrodw.debughouse.ui;
+
+import com.github.bhlangonijr.chesslib.Piece;
+import javafx.scene.image.Image;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Images of the pieces shared by the whole client, keyed by piece and pixel size. An image is decoded
+ * and scaled with smoothing the first time a size is asked for, e.g. once per zoom level, so shown at
+ * that size it is drawn without scaling. Only used from the JavaFX thread.
+ */
+public final class PieceImages {
+    private static final Map<Integer, Image> images = new HashMap<>();
+
+    private PieceImages() {
+    }
+
+    /**
+     * @param piece - not NONE
+     * @param size  - width and height in pixels, rounded
+     * @return image of the piece at that size
+     */
+    public static Image get(Piece piece, double size) {
+        int pixels = (int) Math.max(1, Math.round(size));
+        return images.computeIfAbsent(piece.ordinal() << 16 | pixels, key -> load(piece, pixels));
+    }
+
+    private static Image load(Piece piece, int pixels) {
+        return new Image(Objects.requireNonNull(PieceImages.class.getClassLoader().getResourceAsStream(
+                "images/" + piece.toString().toLowerCase() + ".png")), pixels, pixels, true, true);
+    }
+}
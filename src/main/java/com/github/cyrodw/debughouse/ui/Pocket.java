@@ -2,6 +2,7 @@ package com.github.cyrodw.debughouse.ui;
 
 import com.github.bhlangonijr.chesslib.Piece;
 import com.github.bhlangonijr.chesslib.Side;
+import com.github.cyrodw.debughouse.HandView;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.input.MouseEvent;
@@ -13,11 +14,9 @@ import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
 import javafx.scene.text.Text;
 
-import java.util.HashMap;
-
 public class Pocket extends GridPane {
     private final Board board;
-    private final Side side;
+    private Side side;
 
     public Pocket(Board board, Side side) {
         this.board = board;
@@ -25,6 +24,16 @@ public class Pocket extends GridPane {
         render();
     }
 
+    /**
+     * Shows the hand of a side instead, when the side of the user changed.
+     *
+     * @param side
+     */
+    public void setSide(Side side) {
+        this.side = side;
+        render();
+    }
+
     /**
      * Render background.
      */
@@ -54,11 +63,11 @@ public class Pocket extends GridPane {
         } else {
             pieces = new String[]{"p", "n", "b", "r", "q"};
         }
-        HashMap<Piece, Integer> hand = board.gameState.getDisplayedHand(side);
+        HandView hand = board.gameState.getDisplayedHand(side);
         for (int i = 0; i < pieces.length; i++) {
             Piece drop = Piece.fromFenSymbol(pieces[i]);
             int count = hand.get(drop);
-            Image image = new Image(getClass().getClassLoader().getResourceAsStream("images/" + drop.toString().toLowerCase() + ".png"));
+            Image image = PieceImages.get(drop, board.squareSize * 4 / 5);
             ImageView view = new ImageView();
             Rectangle square = new Rectangle();
             Rectangle selectBoundary = new Rectangle();
@@ -91,7 +100,7 @@ public class Pocket extends GridPane {
             }
             add(pane, i, 0);
             selectBoundary.setOnMousePressed((MouseEvent event) -> {
-                if (side.equals(board.userSide)) {
+                if (side.equals(board.getUserSide())) {
                     board.setSelectedDrop(drop);
                 }
                 event.consume();
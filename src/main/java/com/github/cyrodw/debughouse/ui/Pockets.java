@@ -2,6 +2,7 @@ package com.github.cyrodw.debughouse.ui;
 
 import com.github.bhlangonijr.chesslib.Piece;
 import com.github.bhlangonijr.chesslib.Side;
+import com.github.cyrodw.debughouse.HandView;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.input.MouseEvent;
@@ -13,11 +14,9 @@ import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
 import javafx.scene.text.Text;
 
-import java.util.HashMap;
-
 public class Pockets extends GridPane {
     private final Board board;
-    private final Side userSide;
+    private Side userSide;
 
     public Pockets(Board board, Side userSide) {
         this.board = board;
@@ -25,6 +24,16 @@ public class Pockets extends GridPane {
         render();
     }
 
+    /**
+     * Orders the hands for a side of the user, when it changed.
+     *
+     * @param userSide
+     */
+    public void setUserSide(Side userSide) {
+        this.userSide = userSide;
+        render();
+    }
+
     /**
      * Render pieces in hand
      */
@@ -36,8 +45,8 @@ public class Pockets extends GridPane {
         } else {
             pieces = new String[]{"P", "N", "B", "R", "Q", "q", "r", "b", "n", "p"};
         }
-        HashMap<Piece, Integer> whitehand = board.gameState.getDisplayedHand(Side.WHITE);
-        HashMap<Piece, Integer> blackhand = board.gameState.getDisplayedHand(Side.BLACK);
+        HandView whitehand = board.gameState.getDisplayedHand(Side.WHITE);
+        HandView blackhand = board.gameState.getDisplayedHand(Side.BLACK);
         for (int i = 0; i < pieces.length; i++) {
             Piece drop = Piece.fromFenSymbol(pieces[i]);
             int count;
@@ -46,7 +55,7 @@ public class Pockets extends GridPane {
             } else {
                 count = blackhand.get(drop);
             }
-            Image image = new Image(getClass().getClassLoader().getResourceAsStream("images/" + drop.toString().toLowerCase() + ".png"));
+            Image image = PieceImages.get(drop, board.squareSize * 4 / 5);
             ImageView view = new ImageView();
             Rectangle square = new Rectangle();
             Rectangle selectBoundary = new Rectangle();